@@ -21,7 +21,27 @@ package org.jclouds.abiquo;
 
 import static org.jclouds.Constants.PROPERTY_MAX_REDIRECTS;
 import static org.jclouds.abiquo.reference.AbiquoConstants.ASYNC_TASK_MONITOR_DELAY;
+import static org.jclouds.abiquo.reference.AbiquoConstants.BULK_OPERATIONS_CONCURRENCY;
+import static org.jclouds.abiquo.reference.AbiquoConstants.CIRCUIT_BREAKER_OPEN_PERIOD;
+import static org.jclouds.abiquo.reference.AbiquoConstants.CIRCUIT_BREAKER_PROBE_TIMEOUT;
+import static org.jclouds.abiquo.reference.AbiquoConstants.CIRCUIT_BREAKER_THRESHOLD;
+import static org.jclouds.abiquo.reference.AbiquoConstants.COMPRESS_RESPONSES;
 import static org.jclouds.abiquo.reference.AbiquoConstants.CREDENTIAL_IS_TOKEN;
+import static org.jclouds.abiquo.reference.AbiquoConstants.DEPLOY_GATHER_WINDOW;
+import static org.jclouds.abiquo.reference.AbiquoConstants.DEPLOY_TIMEOUT;
+import static org.jclouds.abiquo.reference.AbiquoConstants.IDENTITY_MAP;
+import static org.jclouds.abiquo.reference.AbiquoConstants.LAZY_LISTINGS;
+import static org.jclouds.abiquo.reference.AbiquoConstants.NODE_GROUP_CACHE_TTL;
+import static org.jclouds.abiquo.reference.AbiquoConstants.NODE_SNAPSHOT_REFRESH;
+import static org.jclouds.abiquo.reference.AbiquoConstants.PARENT_CACHE_SIZE;
+import static org.jclouds.abiquo.reference.AbiquoConstants.PARENT_CACHE_TTL;
+import static org.jclouds.abiquo.reference.AbiquoConstants.RATE_LIMIT_POLLING;
+import static org.jclouds.abiquo.reference.AbiquoConstants.RATE_LIMIT_READS;
+import static org.jclouds.abiquo.reference.AbiquoConstants.RATE_LIMIT_WRITES;
+import static org.jclouds.abiquo.reference.AbiquoConstants.RETRY_DELAY_MAX;
+import static org.jclouds.abiquo.reference.AbiquoConstants.RETRY_DELAY_START;
+import static org.jclouds.abiquo.reference.AbiquoConstants.TEMPLATE_CATALOG_REFRESH;
+import static org.jclouds.abiquo.reference.AbiquoConstants.UPDATE_COALESCING_WINDOW;
 
 import java.net.URI;
 import java.util.Properties;
@@ -74,6 +94,40 @@ public class AbiquoApiMetadata extends BaseRestApiMetadata
         properties.setProperty(ASYNC_TASK_MONITOR_DELAY, "5000");
         // By default the provided credential is not a token
         properties.setProperty(CREDENTIAL_IS_TOKEN, "false");
+        // Responses are not compressed unless the decompressing executor is configured
+        properties.setProperty(COMPRESS_RESPONSES, "false");
+        // Transient failures of idempotent requests are retried with an exponential backoff
+        properties.setProperty(RETRY_DELAY_START, "500");
+        properties.setProperty(RETRY_DELAY_MAX, "10000");
+        // The circuit breaker is disabled unless a failure threshold is configured
+        properties.setProperty(CIRCUIT_BREAKER_THRESHOLD, "0");
+        properties.setProperty(CIRCUIT_BREAKER_OPEN_PERIOD, "30000");
+        properties.setProperty(CIRCUIT_BREAKER_PROBE_TIMEOUT, "5000");
+        // Request rates are not limited unless a maximum rate is configured
+        properties.setProperty(RATE_LIMIT_READS, "0");
+        properties.setProperty(RATE_LIMIT_WRITES, "0");
+        properties.setProperty(RATE_LIMIT_POLLING, "0");
+        // Parent resources are always retrieved from the API unless a ttl is configured
+        properties.setProperty(PARENT_CACHE_TTL, "0");
+        properties.setProperty(PARENT_CACHE_SIZE, "1000");
+        // Each wrapped resource is a different domain object by default
+        properties.setProperty(IDENTITY_MAP, "false");
+        // Listings return mutable lists with all the elements already wrapped
+        properties.setProperty(LAZY_LISTINGS, "false");
+        // Templates are always retrieved from the API unless a refresh interval is configured
+        properties.setProperty(TEMPLATE_CATALOG_REFRESH, "0");
+        // Bulk node operations send up to 10 requests at the same time
+        properties.setProperty(BULK_OPERATIONS_CONCURRENCY, "10");
+        // Nodes are always listed from the API unless a refresh interval is configured
+        properties.setProperty(NODE_SNAPSHOT_REFRESH, "0");
+        // Coalesced updates of the same resource are gathered for 100 ms
+        properties.setProperty(UPDATE_COALESCING_WINDOW, "100");
+        // Nodes that have not been deployed after 20 minutes are considered failed
+        properties.setProperty(DEPLOY_TIMEOUT, "1200000");
+        // Nodes of a group created within 5 seconds of each other are deployed together
+        properties.setProperty(DEPLOY_GATHER_WINDOW, "5000");
+        // The resources of a group are reused by the nodes created in the following minute
+        properties.setProperty(NODE_GROUP_CACHE_TTL, "60000");
         return properties;
     }
 
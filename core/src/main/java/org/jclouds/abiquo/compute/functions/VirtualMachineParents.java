@@ -0,0 +1,331 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.functions;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.Constants;
+import org.jclouds.abiquo.domain.DomainWrapper;
+import org.jclouds.abiquo.domain.cloud.VirtualAppliance;
+import org.jclouds.abiquo.domain.cloud.VirtualDatacenter;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.cloud.VirtualMachineTemplate;
+import org.jclouds.abiquo.domain.infrastructure.Datacenter;
+import org.jclouds.abiquo.reference.rest.ParentLinkName;
+import org.jclouds.logging.Logger;
+import org.jclouds.rest.AuthorizationException;
+
+import com.abiquo.model.rest.RESTLink;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFutureTask;
+
+/**
+ * Resolves the parent resources needed to convert virtual machines to nodes.
+ * <p>
+ * Many virtual machines share the same virtual appliance, virtual datacenter, datacenter and
+ * template, so when a list of virtual machines is going to be converted, the distinct parents are
+ * retrieved only once and concurrently. Prefetched parents belong to the listing they were
+ * retrieved for, and are only used to convert the virtual machines of that listing. Each listing
+ * retrieves the parents again, so they are never older than the listing itself. Parents that have
+ * not been prefetched are retrieved from the virtual machine, through the
+ * {@link org.jclouds.abiquo.domain.util.ParentCache}.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class VirtualMachineParents
+{
+    @Resource
+    protected Logger logger = Logger.NULL;
+
+    private final Executor userExecutor;
+
+    /**
+     * The listing of each prefetched virtual machine and virtual datacenter. Keys are weakly
+     * referenced, so the prefetched parents are discarded with the listing.
+     */
+    private final Cache<DomainWrapper< ? >, Listing> listings = CacheBuilder.newBuilder()
+        .weakKeys().build();
+
+    @Inject
+    public VirtualMachineParents(
+        @Named(Constants.PROPERTY_USER_THREADS) final ExecutorService userExecutor)
+    {
+        super();
+        this.userExecutor = checkNotNull(userExecutor, "userExecutor");
+    }
+
+    /**
+     * Retrieves the distinct parents of the given virtual machines concurrently.
+     * <p>
+     * Virtual appliances, virtual datacenters and templates are retrieved first, and then the
+     * datacenters of the virtual datacenters. Parents that can not be retrieved are skipped, and
+     * will be retrieved again when needed.
+     * <p>
+     * The calling thread retrieves the parents that no user thread has started to retrieve, so
+     * this method can be called from a user thread without waiting for the pool.
+     */
+    public void prefetch(final Iterable<VirtualMachine> vms)
+    {
+        final Listing listing = new Listing();
+        Map<String, VirtualMachine> vapps = Maps.newHashMap();
+        Map<String, VirtualMachine> vdcs = Maps.newHashMap();
+        Map<String, VirtualMachine> templates = Maps.newHashMap();
+
+        // Use one virtual machine of each parent to retrieve it
+        for (VirtualMachine vm : vms)
+        {
+            putIfAbsent(vapps, href(vm, ParentLinkName.VIRTUAL_APPLIANCE), vm);
+            putIfAbsent(vdcs, href(vm, ParentLinkName.VIRTUAL_DATACENTER), vm);
+            putIfAbsent(templates, href(vm, ParentLinkName.VIRTUAL_MACHINE_TEMPLATE), vm);
+        }
+
+        List<ListenableFutureTask<DomainWrapper< ? >>> tasks = Lists.newArrayList();
+        for (final Map.Entry<String, VirtualMachine> vapp : vapps.entrySet())
+        {
+            tasks.add(fetch(listing, vapp.getKey(), new Callable<DomainWrapper< ? >>()
+            {
+                @Override
+                public DomainWrapper< ? > call() throws Exception
+                {
+                    return vapp.getValue().getVirtualAppliance();
+                }
+            }));
+        }
+        for (final Map.Entry<String, VirtualMachine> vdc : vdcs.entrySet())
+        {
+            tasks.add(fetch(listing, vdc.getKey(), new Callable<DomainWrapper< ? >>()
+            {
+                @Override
+                public DomainWrapper< ? > call() throws Exception
+                {
+                    return vdc.getValue().getVirtualDatacenter();
+                }
+            }));
+        }
+        for (final Map.Entry<String, VirtualMachine> template : templates.entrySet())
+        {
+            tasks.add(fetch(listing, template.getKey(), new Callable<DomainWrapper< ? >>()
+            {
+                @Override
+                public DomainWrapper< ? > call() throws Exception
+                {
+                    return template.getValue().getTemplate();
+                }
+            }));
+        }
+        await(tasks);
+
+        // Datacenters can only be retrieved from the virtual datacenters
+        Map<String, VirtualDatacenter> datacenters = Maps.newHashMap();
+        for (String vdcHref : vdcs.keySet())
+        {
+            VirtualDatacenter vdc = (VirtualDatacenter) listing.parents.get(vdcHref);
+            if (vdc != null)
+            {
+                putIfAbsent(datacenters, href(vdc, ParentLinkName.DATACENTER), vdc);
+                listings.put(vdc, listing);
+            }
+        }
+
+        tasks.clear();
+        for (final Map.Entry<String, VirtualDatacenter> datacenter : datacenters.entrySet())
+        {
+            tasks.add(fetch(listing, datacenter.getKey(), new Callable<DomainWrapper< ? >>()
+            {
+                @Override
+                public DomainWrapper< ? > call() throws Exception
+                {
+                    try
+                    {
+                        return datacenter.getValue().getDatacenter();
+                    }
+                    catch (AuthorizationException ex)
+                    {
+                        // Do not try again for every node of the listing
+                        listing.deniedDatacenters.add(datacenter.getKey());
+                        throw ex;
+                    }
+                }
+            }));
+        }
+        await(tasks);
+
+        for (VirtualMachine vm : vms)
+        {
+            listings.put(vm, listing);
+        }
+    }
+
+    public VirtualAppliance getVirtualAppliance(final VirtualMachine vm)
+    {
+        VirtualAppliance vapp =
+            (VirtualAppliance) prefetched(vm, href(vm, ParentLinkName.VIRTUAL_APPLIANCE));
+        return vapp != null ? vapp : vm.getVirtualAppliance();
+    }
+
+    public VirtualDatacenter getVirtualDatacenter(final VirtualMachine vm)
+    {
+        VirtualDatacenter vdc =
+            (VirtualDatacenter) prefetched(vm, href(vm, ParentLinkName.VIRTUAL_DATACENTER));
+        return vdc != null ? vdc : vm.getVirtualDatacenter();
+    }
+
+    public VirtualMachineTemplate getTemplate(final VirtualMachine vm)
+    {
+        VirtualMachineTemplate template =
+            (VirtualMachineTemplate) prefetched(vm,
+                href(vm, ParentLinkName.VIRTUAL_MACHINE_TEMPLATE));
+        return template != null ? template : vm.getTemplate();
+    }
+
+    /**
+     * Get the datacenter of the given virtual datacenter.
+     * 
+     * @throws AuthorizationException If the current user is not allowed to see the datacenter.
+     */
+    public Datacenter getDatacenter(final VirtualDatacenter vdc)
+    {
+        String href = href(vdc, ParentLinkName.DATACENTER);
+        Listing listing = listings.getIfPresent(vdc);
+        if (href != null && listing != null && listing.deniedDatacenters.contains(href))
+        {
+            throw new AuthorizationException("not allowed to see the datacenter " + href);
+        }
+
+        Datacenter datacenter = (Datacenter) prefetched(vdc, href);
+        return datacenter != null ? datacenter : vdc.getDatacenter();
+    }
+
+    private ListenableFutureTask<DomainWrapper< ? >> fetch(final Listing listing,
+        final String href, final Callable<DomainWrapper< ? >> loader)
+    {
+        ListenableFutureTask<DomainWrapper< ? >> task =
+            ListenableFutureTask.create(new Callable<DomainWrapper< ? >>()
+            {
+                @Override
+                public DomainWrapper< ? > call() throws Exception
+                {
+                    DomainWrapper< ? > parent = loader.call();
+                    if (parent != null)
+                    {
+                        listing.parents.put(href, parent);
+                    }
+                    return parent;
+                }
+            });
+
+        try
+        {
+            userExecutor.execute(task);
+        }
+        catch (RejectedExecutionException ex)
+        {
+            // The calling thread will retrieve it
+        }
+        return task;
+    }
+
+    private void await(final List<ListenableFutureTask<DomainWrapper< ? >>> tasks)
+    {
+        for (ListenableFutureTask<DomainWrapper< ? >> task : tasks)
+        {
+            // Run the tasks still waiting in the pool, instead of waiting for a free user thread
+            task.run();
+            try
+            {
+                task.get();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (ExecutionException ex)
+            {
+                // Failed parents will be retrieved when converting each node
+                logger.debug("could not prefetch a parent of the nodes: %s", ex.getCause());
+            }
+        }
+    }
+
+    private DomainWrapper< ? > prefetched(final DomainWrapper< ? > child, final String href)
+    {
+        Listing listing = listings.getIfPresent(child);
+        return listing == null || href == null ? null : listing.parents.get(href);
+    }
+
+    private static String href(final DomainWrapper< ? > wrapper, final String rel)
+    {
+        RESTLink link = wrapper.unwrap().searchLink(rel);
+        return link == null ? null : link.getHref();
+    }
+
+    private static <T> void putIfAbsent(final Map<String, T> map, final String href, final T value)
+    {
+        if (href != null && !map.containsKey(href))
+        {
+            map.put(href, value);
+        }
+    }
+
+    @VisibleForTesting
+    Set<String> prefetchedHrefs(final VirtualMachine vm)
+    {
+        Listing listing = listings.getIfPresent(vm);
+        return listing == null ? ImmutableSet.<String> of() : ImmutableSet.copyOf(listing.parents
+            .keySet());
+    }
+
+    /**
+     * The parents prefetched for a listing of virtual machines.
+     */
+    private static class Listing
+    {
+        /** Prefetched parents by the href of their link. */
+        private final Map<String, DomainWrapper< ? >> parents =
+            new ConcurrentHashMap<String, DomainWrapper< ? >>();
+
+        /** Hrefs of the datacenters the current user is not allowed to see. */
+        private final Set<String> deniedDatacenters = Collections
+            .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    }
+}
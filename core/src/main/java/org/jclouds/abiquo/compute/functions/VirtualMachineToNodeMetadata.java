@@ -29,6 +29,7 @@ import javax.annotation.Resource;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.jclouds.abiquo.compute.strategy.NodeSnapshot;
 import org.jclouds.abiquo.domain.cloud.VirtualDatacenter;
 import org.jclouds.abiquo.domain.cloud.VirtualMachine;
 import org.jclouds.abiquo.domain.cloud.VirtualMachineTemplate;
@@ -67,12 +68,28 @@ public class VirtualMachineToNodeMetadata implements Function<VirtualMachine, No
 
     private final DatacenterToLocation datacenterToLocation;
 
+    private final VirtualMachineParents parents;
+
+    private final NodeSnapshot nodeSnapshot;
+
+    /** Converts the nodes that have not been converted yet. */
+    private final Function<VirtualMachine, NodeMetadata> converter =
+        new Function<VirtualMachine, NodeMetadata>()
+        {
+            @Override
+            public NodeMetadata apply(final VirtualMachine vm)
+            {
+                return convert(vm);
+            }
+        };
+
     @Inject
     public VirtualMachineToNodeMetadata(
         final VirtualMachineTemplateToImage virtualMachineTemplateToImage,
         final VirtualMachineTemplateToHardware virtualMachineTemplateToHardware,
         final VirtualMachineStateToNodeState virtualMachineStateToNodeState,
-        final DatacenterToLocation datacenterToLocation)
+        final DatacenterToLocation datacenterToLocation, final VirtualMachineParents parents,
+        final NodeSnapshot nodeSnapshot)
     {
         this.virtualMachineTemplateToImage =
             checkNotNull(virtualMachineTemplateToImage, "virtualMachineTemplateToImage");
@@ -81,25 +98,33 @@ public class VirtualMachineToNodeMetadata implements Function<VirtualMachine, No
         this.virtualMachineStateToNodeState =
             checkNotNull(virtualMachineStateToNodeState, "virtualMachineStateToNodeState");
         this.datacenterToLocation = checkNotNull(datacenterToLocation, "datacenterToLocation");
+        this.parents = checkNotNull(parents, "parents");
+        this.nodeSnapshot = checkNotNull(nodeSnapshot, "nodeSnapshot");
     }
 
     @Override
     public NodeMetadata apply(final VirtualMachine vm)
+    {
+        // Nodes listed from the snapshot are shared, and converting them refreshes them
+        return nodeSnapshot.convert(vm, converter);
+    }
+
+    private NodeMetadata convert(final VirtualMachine vm)
     {
         NodeMetadataBuilder builder = new NodeMetadataBuilder();
         builder.ids(vm.getId().toString());
         builder.uri(vm.getURI());
         builder.name(vm.getNameLabel());
         builder.hostname(vm.getInternalName()); // TODO: Abiquo does not set the hostname
-        builder.group(vm.getVirtualAppliance().getName());
+        builder.group(parents.getVirtualAppliance(vm).getName());
 
         // TODO: builder.credentials() (http://jira.abiquo.com/browse/ABICLOUDPREMIUM-3647)
-        VirtualDatacenter vdc = vm.getVirtualDatacenter();
+        VirtualDatacenter vdc = parents.getVirtualDatacenter(vm);
 
         // Location details
         try
         {
-            Datacenter datacenter = vdc.getDatacenter();
+            Datacenter datacenter = parents.getDatacenter(vdc);
             builder.location(datacenterToLocation.apply(datacenter));
         }
         catch (AuthorizationException ex)
@@ -108,7 +133,7 @@ public class VirtualMachineToNodeMetadata implements Function<VirtualMachine, No
         }
 
         // Image details
-        VirtualMachineTemplate template = vm.getTemplate();
+        VirtualMachineTemplate template = parents.getTemplate(vm);
         Image image = virtualMachineTemplateToImage.apply(template);
         builder.imageId(image.getId().toString());
         builder.operatingSystem(image.getOperatingSystem());
@@ -134,8 +159,9 @@ public class VirtualMachineToNodeMetadata implements Function<VirtualMachine, No
         builder.publicAddresses(ips(filter(nics,
             Predicates.not(Predicates.instanceOf(PrivateIp.class)))));
 
-        // Node state
-        VirtualMachineState state = vm.getState();
+        // Node state. Nodes from the snapshot keep the state they had when they were listed
+        VirtualMachineState state =
+            nodeSnapshot.isShared(vm) ? vm.unwrap().getState() : vm.getState();
         builder.status(virtualMachineStateToNodeState.apply(state));
         builder.backendStatus(state.name());
 
@@ -51,6 +51,8 @@ public class AbiquoTemplateOptions extends TemplateOptions implements Cloneable
 
     private Network< ? > gatewayNetwork;
 
+    private boolean groupDeploy;
+
     @Override
     public TemplateOptions clone()
     {
@@ -71,6 +73,7 @@ public class AbiquoTemplateOptions extends TemplateOptions implements Cloneable
             options.vncPassword(vncPassword);
             options.virtualDatacenter(virtualDatacenter);
             options.ips(ips);
+            options.groupDeploy(groupDeploy);
         }
     }
 
@@ -189,6 +192,25 @@ public class AbiquoTemplateOptions extends TemplateOptions implements Cloneable
         return gatewayNetwork;
     }
 
+    /**
+     * Deploy the nodes created together in the group with a single deploy of their virtual
+     * appliance, instead of deploying each virtual machine.
+     * <p>
+     * By default each virtual machine is deployed independently.
+     * 
+     * @return The template options with the group deploy configuration.
+     */
+    public AbiquoTemplateOptions groupDeploy(final boolean groupDeploy)
+    {
+        this.groupDeploy = groupDeploy;
+        return this;
+    }
+
+    public boolean isGroupDeploy()
+    {
+        return groupDeploy;
+    }
+
     public static class Builder
     {
         /**
@@ -253,5 +275,14 @@ public class AbiquoTemplateOptions extends TemplateOptions implements Cloneable
             AbiquoTemplateOptions options = new AbiquoTemplateOptions();
             return options.gatewayNetwork(gatewayNetwork);
         }
+
+        /**
+         * @see AbiquoTemplateOptions#groupDeploy(boolean)
+         */
+        public static AbiquoTemplateOptions groupDeploy(final boolean groupDeploy)
+        {
+            AbiquoTemplateOptions options = new AbiquoTemplateOptions();
+            return options.groupDeploy(groupDeploy);
+        }
     }
 }
@@ -22,6 +22,7 @@ package org.jclouds.abiquo.compute.strategy;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Arrays;
+import java.util.List;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
@@ -30,21 +31,19 @@ import javax.inject.Singleton;
 
 import org.jclouds.abiquo.AbiquoApi;
 import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.compute.functions.VirtualMachineParents;
 import org.jclouds.abiquo.compute.options.AbiquoTemplateOptions;
+import org.jclouds.abiquo.compute.strategy.NodeGroupResolver.NodeGroup;
 import org.jclouds.abiquo.domain.cloud.VirtualAppliance;
-import org.jclouds.abiquo.domain.cloud.VirtualDatacenter;
 import org.jclouds.abiquo.domain.cloud.VirtualMachine;
 import org.jclouds.abiquo.domain.cloud.VirtualMachineTemplate;
 import org.jclouds.abiquo.domain.enterprise.Enterprise;
-import org.jclouds.abiquo.domain.enterprise.User;
 import org.jclouds.abiquo.domain.infrastructure.Datacenter;
 import org.jclouds.abiquo.features.services.AdministrationService;
-import org.jclouds.abiquo.features.services.CloudService;
 import org.jclouds.abiquo.features.services.MonitoringService;
+import org.jclouds.abiquo.monitor.MonitorStatus;
 import org.jclouds.abiquo.monitor.VirtualMachineMonitor;
-import org.jclouds.abiquo.predicates.cloud.VirtualAppliancePredicates;
 import org.jclouds.abiquo.predicates.cloud.VirtualMachineTemplatePredicates;
-import org.jclouds.abiquo.predicates.infrastructure.DatacenterPredicates;
 import org.jclouds.compute.ComputeService;
 import org.jclouds.compute.ComputeServiceAdapter;
 import org.jclouds.compute.domain.Hardware;
@@ -52,10 +51,13 @@ import org.jclouds.compute.domain.Processor;
 import org.jclouds.compute.domain.Template;
 import org.jclouds.compute.reference.ComputeServiceConstants;
 import org.jclouds.logging.Logger;
+import org.jclouds.rest.ResourceNotFoundException;
 import org.jclouds.rest.RestContext;
 
 import com.abiquo.server.core.cloud.VirtualMachineState;
-import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Defines the connection between the {@link AbiquoApi} implementation and the jclouds
@@ -76,23 +78,48 @@ public class AbiquoComputeServiceAdapter
 
     private final AdministrationService adminService;
 
-    private final CloudService cloudService;
-
     private final MonitoringService monitoringService;
 
     private AbiquoComputeServiceHelper helper;
 
+    private final VirtualMachineParents parents;
+
+    private final NodeGroupResolver groupResolver;
+
+    private final GroupDeployMonitor deployMonitor;
+
+    private final TemplateCatalog templateCatalog;
+
+    private final VirtualMachineIndex vmIndex;
+
+    private final BulkNodeOperations bulkOperations;
+
+    private final NodeSnapshot nodeSnapshot;
+
+    private final GroupDeployBatcher deployBatcher;
+
     @Inject
     public AbiquoComputeServiceAdapter(final RestContext<AbiquoApi, AbiquoAsyncApi> context,
-        final AdministrationService adminService, final CloudService cloudService,
-        final MonitoringService monitoringService, final AbiquoComputeServiceHelper helper)
+        final AdministrationService adminService, final MonitoringService monitoringService,
+        final AbiquoComputeServiceHelper helper, final VirtualMachineParents parents,
+        final NodeGroupResolver groupResolver, final GroupDeployMonitor deployMonitor,
+        final TemplateCatalog templateCatalog, final VirtualMachineIndex vmIndex,
+        final BulkNodeOperations bulkOperations, final NodeSnapshot nodeSnapshot,
+        final GroupDeployBatcher deployBatcher)
     {
         super();
         this.context = checkNotNull(context, "context");
         this.adminService = checkNotNull(adminService, "adminService");
-        this.cloudService = checkNotNull(cloudService, "cloudService");
         this.monitoringService = checkNotNull(monitoringService, "monitoringService");
         this.helper = checkNotNull(helper, "helper");
+        this.parents = checkNotNull(parents, "parents");
+        this.groupResolver = checkNotNull(groupResolver, "groupResolver");
+        this.deployMonitor = checkNotNull(deployMonitor, "deployMonitor");
+        this.templateCatalog = checkNotNull(templateCatalog, "templateCatalog");
+        this.vmIndex = checkNotNull(vmIndex, "vmIndex");
+        this.bulkOperations = checkNotNull(bulkOperations, "bulkOperations");
+        this.nodeSnapshot = checkNotNull(nodeSnapshot, "nodeSnapshot");
+        this.deployBatcher = checkNotNull(deployBatcher, "deployBatcher");
     }
 
     @Override
@@ -101,52 +128,105 @@ public class AbiquoComputeServiceAdapter
     {
         AbiquoTemplateOptions options = template.getOptions().as(AbiquoTemplateOptions.class);
 
-        User user = adminService.getCurrentUser();
-        Enterprise enterprise = adminService.getCurrentEnterprise();
-
-        Datacenter datacenter =
-            enterprise.findAllowedDatacenter(DatacenterPredicates.id(Integer.valueOf(template
-                .getLocation().getId())));
+        // The template, virtual datacenter and virtual appliance are shared by the whole group
+        NodeGroup group = groupResolver.resolve(tag, template);
+        VirtualAppliance vapp = group.getVirtualAppliance();
+        VirtualMachineTemplate virtualMachineTemplate = group.getTemplate();
 
-        VirtualMachineTemplate virtualMachineTemplate =
-            enterprise.getTemplateInRepository(datacenter,
-                Integer.valueOf(template.getImage().getId()));
+        VirtualMachine vm = buildVirtualMachine(vapp, virtualMachineTemplate, name, template);
+        try
+        {
+            vm.save();
+        }
+        catch (ResourceNotFoundException ex)
+        {
+            // The virtual appliance of the group no longer exists, so resolve it again next time
+            groupResolver.invalidate(tag, template);
+            throw ex;
+        }
+        vmIndex.index(vm);
+        nodeSnapshot.invalidate();
 
-        VirtualDatacenter vdc =
-            helper.getOrCreateVirtualDatacenter(user, enterprise, datacenter,
-                virtualMachineTemplate, options);
+        // Once the virtual machine is created, override the default network settings if needed
+        configureNetwork(vm, options);
 
-        // Load the virtual appliance or create it
-        VirtualAppliance vapp = vdc.findVirtualAppliance(VirtualAppliancePredicates.name(tag));
-        if (vapp == null)
+        if (options.isGroupDeploy())
         {
-            vapp = VirtualAppliance.builder(context, vdc).name(tag).build();
-            vapp.save();
+            // Deploy the virtual appliance once for all the nodes being created in the group
+            deployBatcher.deploy(vapp, vm);
         }
+        else
+        {
+            // Monitor the deploy together with the rest of the nodes of the group
+            vm.deploy();
+            deployMonitor.awaitCompletionDeploy(vapp, vm);
+        }
+        nodeSnapshot.invalidate();
 
-        Integer overrideCores = options.getOverrideCores();
-        Integer overrideRam = options.getOverrideRam();
+        return new NodeAndInitialCredentials<VirtualMachine>(vm, vm.getId().toString(), template
+            .getImage().getDefaultCredentials());
+    }
 
-        VirtualMachine vm = VirtualMachine.builder(context, vapp, virtualMachineTemplate) //
-            .nameLabel(name) //
-            .cpu(overrideCores != null ? overrideCores : totalCores(template.getHardware())) //
-            .ram(overrideRam != null ? overrideRam : template.getHardware().getRam()) //
-            .password(options.getVncPassword()) // Can be null
-            .build();
+    /**
+     * Creates the given nodes of a group concurrently, and deploys them together.
+     * <p>
+     * The template, virtual datacenter and virtual appliance of the group are resolved once, all
+     * the virtual machines are created concurrently, and the virtual appliance is deployed once
+     * for all of them.
+     * 
+     * @param tag The name of the group.
+     * @param names The names of the nodes to create.
+     * @param template The template of the nodes.
+     * @return The nodes that have been created.
+     */
+    public Iterable<NodeAndInitialCredentials<VirtualMachine>> createNodesWithGroupEncodedIntoName(
+        final String tag, final Iterable<String> names, final Template template)
+    {
+        AbiquoTemplateOptions options = template.getOptions().as(AbiquoTemplateOptions.class);
 
-        vm.save();
+        NodeGroup group = groupResolver.resolve(tag, template);
+        VirtualAppliance vapp = group.getVirtualAppliance();
 
-        // Once the virtual machine is created, override the default network settings if needed
-        helper.configureNetwork(vm, options.getGatewayNetwork(), options.getIps() == null ? null
-            : Arrays.asList(options.getIps()),
-            options.getUnmanagedIps() == null ? null : Arrays.asList(options.getUnmanagedIps()));
+        List<VirtualMachine> vms = Lists.newArrayList();
+        for (String name : names)
+        {
+            vms.add(buildVirtualMachine(vapp, group.getTemplate(), name, template));
+        }
 
-        VirtualMachineMonitor monitor = monitoringService.getVirtualMachineMonitor();
-        vm.deploy();
-        monitor.awaitCompletionDeploy(vm);
+        List<VirtualMachine> created;
+        try
+        {
+            created = bulkOperations.create(vms);
+        }
+        finally
+        {
+            nodeSnapshot.invalidate();
+        }
 
-        return new NodeAndInitialCredentials<VirtualMachine>(vm, vm.getId().toString(), template
-            .getImage().getDefaultCredentials());
+        if (created.size() < vms.size())
+        {
+            // The virtual appliance of the group may no longer exist, so resolve it again next time
+            groupResolver.invalidate(tag, template);
+        }
+
+        List<ListenableFuture<MonitorStatus>> deploys = Lists.newArrayList();
+        for (VirtualMachine vm : created)
+        {
+            configureNetwork(vm, options);
+            deploys.add(deployBatcher.deployAsync(vapp, vm));
+        }
+
+        // Failed deploys are reported by the monitor, and the nodes are returned anyway
+        Futures.getUnchecked(Futures.successfulAsList(deploys));
+        nodeSnapshot.invalidate();
+
+        List<NodeAndInitialCredentials<VirtualMachine>> nodes = Lists.newArrayList();
+        for (VirtualMachine vm : created)
+        {
+            nodes.add(new NodeAndInitialCredentials<VirtualMachine>(vm, vm.getId().toString(),
+                template.getImage().getDefaultCredentials()));
+        }
+        return nodes;
     }
 
     @Override
@@ -160,15 +240,14 @@ public class AbiquoComputeServiceAdapter
     @Override
     public Iterable<VirtualMachineTemplate> listImages()
     {
-        Enterprise enterprise = adminService.getCurrentEnterprise();
-        return enterprise.listTemplates();
+        return templateCatalog.listTemplates();
     }
 
     @Override
     public VirtualMachineTemplate getImage(final String id)
     {
-        Enterprise enterprise = adminService.getCurrentEnterprise();
-        return enterprise.findTemplate(VirtualMachineTemplatePredicates.id(Integer.valueOf(id)));
+        return templateCatalog.findTemplate(VirtualMachineTemplatePredicates.id(Integer
+            .valueOf(id)));
     }
 
     @Override
@@ -181,9 +260,8 @@ public class AbiquoComputeServiceAdapter
     @Override
     public VirtualMachine getNode(final String id)
     {
-        // FIXME: Try to avoid calling the cloudService.findVirtualMachine. Navigate the hierarchy
-        // instead.
-        return cloudService.findVirtualMachine(vmId(id));
+        // Known virtual machines are retrieved directly. The cloud is only scanned for the others
+        return vmIndex.find(Integer.valueOf(id));
     }
 
     @Override
@@ -191,6 +269,8 @@ public class AbiquoComputeServiceAdapter
     {
         VirtualMachine vm = getNode(id);
         vm.delete();
+        vmIndex.remove(vm.getId());
+        nodeSnapshot.invalidate();
     }
 
     @Override
@@ -200,6 +280,7 @@ public class AbiquoComputeServiceAdapter
         VirtualMachine vm = getNode(id);
         vm.reboot();
         monitor.awaitState(VirtualMachineState.ON, vm);
+        nodeSnapshot.invalidate();
     }
 
     @Override
@@ -209,6 +290,7 @@ public class AbiquoComputeServiceAdapter
         VirtualMachine vm = getNode(id);
         vm.changeState(VirtualMachineState.ON);
         monitor.awaitState(VirtualMachineState.ON, vm);
+        nodeSnapshot.invalidate();
     }
 
     @Override
@@ -218,24 +300,112 @@ public class AbiquoComputeServiceAdapter
         VirtualMachine vm = getNode(id);
         vm.changeState(VirtualMachineState.PAUSED);
         monitor.awaitState(VirtualMachineState.PAUSED, vm);
+        nodeSnapshot.invalidate();
+    }
+
+    /**
+     * Destroys the given nodes concurrently.
+     * 
+     * @param ids The ids of the nodes to destroy.
+     * @return The ids of the destroyed nodes.
+     */
+    public Iterable<Integer> destroyNodes(final Iterable<String> ids)
+    {
+        try
+        {
+            return bulkOperations.destroy(ids);
+        }
+        finally
+        {
+            nodeSnapshot.invalidate();
+        }
+    }
+
+    /**
+     * Reboots the given nodes concurrently and waits until they are running.
+     * 
+     * @param ids The ids of the nodes to reboot.
+     * @return The rebooted nodes.
+     */
+    public Iterable<VirtualMachine> rebootNodes(final Iterable<String> ids)
+    {
+        try
+        {
+            return bulkOperations.reboot(ids);
+        }
+        finally
+        {
+            nodeSnapshot.invalidate();
+        }
+    }
+
+    /**
+     * Resumes the given nodes concurrently and waits until they are running.
+     * 
+     * @param ids The ids of the nodes to resume.
+     * @return The resumed nodes.
+     */
+    public Iterable<VirtualMachine> resumeNodes(final Iterable<String> ids)
+    {
+        try
+        {
+            return bulkOperations.resume(ids);
+        }
+        finally
+        {
+            nodeSnapshot.invalidate();
+        }
+    }
+
+    /**
+     * Suspends the given nodes concurrently and waits until they are paused.
+     * 
+     * @param ids The ids of the nodes to suspend.
+     * @return The suspended nodes.
+     */
+    public Iterable<VirtualMachine> suspendNodes(final Iterable<String> ids)
+    {
+        try
+        {
+            return bulkOperations.suspend(ids);
+        }
+        finally
+        {
+            nodeSnapshot.invalidate();
+        }
     }
 
     @Override
     public Iterable<VirtualMachine> listNodes()
     {
-        return cloudService.listVirtualMachines();
+        // The nodes may come from a recent listing, if configured
+        Iterable<VirtualMachine> vms = nodeSnapshot.listNodes();
+        // Retrieve the shared parents once, instead of once for each node being converted
+        parents.prefetch(vms);
+        return vms;
     }
 
-    private static Predicate<VirtualMachine> vmId(final String id)
+    private VirtualMachine buildVirtualMachine(final VirtualAppliance vapp,
+        final VirtualMachineTemplate virtualMachineTemplate, final String name,
+        final Template template)
     {
-        return new Predicate<VirtualMachine>()
-        {
-            @Override
-            public boolean apply(final VirtualMachine input)
-            {
-                return Integer.valueOf(id).equals(input.getId());
-            }
-        };
+        AbiquoTemplateOptions options = template.getOptions().as(AbiquoTemplateOptions.class);
+        Integer overrideCores = options.getOverrideCores();
+        Integer overrideRam = options.getOverrideRam();
+
+        return VirtualMachine.builder(context, vapp, virtualMachineTemplate) //
+            .nameLabel(name) //
+            .cpu(overrideCores != null ? overrideCores : totalCores(template.getHardware())) //
+            .ram(overrideRam != null ? overrideRam : template.getHardware().getRam()) //
+            .password(options.getVncPassword()) // Can be null
+            .build();
+    }
+
+    private void configureNetwork(final VirtualMachine vm, final AbiquoTemplateOptions options)
+    {
+        helper.configureNetwork(vm, options.getGatewayNetwork(), options.getIps() == null ? null
+            : Arrays.asList(options.getIps()),
+            options.getUnmanagedIps() == null ? null : Arrays.asList(options.getUnmanagedIps()));
     }
 
     private static int totalCores(final Hardware hardware)
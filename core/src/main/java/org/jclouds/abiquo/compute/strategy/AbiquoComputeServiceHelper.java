@@ -24,7 +24,12 @@ import static com.google.common.collect.Iterables.filter;
 import static com.google.common.collect.Iterables.find;
 import static com.google.common.collect.Iterables.getFirst;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
@@ -36,6 +41,7 @@ import org.jclouds.abiquo.AbiquoAsyncApi;
 import org.jclouds.abiquo.compute.exception.NotEnoughResourcesException;
 import org.jclouds.abiquo.compute.options.AbiquoTemplateOptions;
 import org.jclouds.abiquo.domain.cloud.Conversion;
+import org.jclouds.abiquo.domain.cloud.VirtualAppliance;
 import org.jclouds.abiquo.domain.cloud.VirtualDatacenter;
 import org.jclouds.abiquo.domain.cloud.VirtualMachine;
 import org.jclouds.abiquo.domain.cloud.VirtualMachineTemplate;
@@ -47,8 +53,11 @@ import org.jclouds.abiquo.domain.network.Ip;
 import org.jclouds.abiquo.domain.network.Network;
 import org.jclouds.abiquo.domain.network.PrivateNetwork;
 import org.jclouds.abiquo.domain.network.UnmanagedNetwork;
+import org.jclouds.abiquo.events.monitor.CompletedEvent;
 import org.jclouds.abiquo.features.services.CloudService;
+import org.jclouds.abiquo.predicates.cloud.VirtualAppliancePredicates;
 import org.jclouds.abiquo.predicates.cloud.VirtualDatacenterPredicates;
+import org.jclouds.abiquo.reference.rest.ParentLinkName;
 import org.jclouds.compute.reference.ComputeServiceConstants;
 import org.jclouds.javax.annotation.Nullable;
 import org.jclouds.logging.Logger;
@@ -56,7 +65,15 @@ import org.jclouds.rest.RestContext;
 
 import com.abiquo.model.enumerator.ConversionState;
 import com.abiquo.model.enumerator.HypervisorType;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Sets;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
  * Helper methods to perform {@link AbiquoComputeServiceAdapter} operations.
@@ -66,6 +83,10 @@ import com.google.common.base.Predicate;
 @Singleton
 public class AbiquoComputeServiceHelper
 {
+    /** The time the hypervisors compatible with a template are kept. */
+    @VisibleForTesting
+    static final long COMPATIBILITY_TTL_SECONDS = 60;
+
     @Resource
     @Named(ComputeServiceConstants.COMPUTE_LOGGER)
     protected Logger logger = Logger.NULL;
@@ -74,19 +95,27 @@ public class AbiquoComputeServiceHelper
 
     private CloudService cloudService;
 
+    /** The hypervisor types compatible with each template, by template id. */
+    private final Cache<Integer, Set<HypervisorType>> compatibleHypervisors;
+
     @Inject
     public AbiquoComputeServiceHelper(final RestContext<AbiquoApi, AbiquoAsyncApi> context,
-        final CloudService cloudService)
+        final CloudService cloudService, final EventBus eventBus)
     {
         super();
         this.context = checkNotNull(context, "context");
         this.cloudService = checkNotNull(cloudService, "cloudService");
+        this.compatibleHypervisors =
+            CacheBuilder.newBuilder()
+                .expireAfterWrite(COMPATIBILITY_TTL_SECONDS, TimeUnit.SECONDS).build();
+        checkNotNull(eventBus, "eventBus").register(this);
     }
 
     /**
      * Gets a virtual datacenter where the given template can be deployed.
      * <p>
-     * If no compatible virtual datacenter is found, one will be created, if possible.
+     * If no compatible virtual datacenter is found, one will be created, if possible. The nodes
+     * of a group created concurrently resolve it only once, through the {@link NodeGroupResolver}.
      * 
      * @param user The current user.
      * @param enterprise The enterprise of the current user.
@@ -121,6 +150,29 @@ public class AbiquoComputeServiceHelper
         return vdc;
     }
 
+    /**
+     * Gets the virtual appliance with the given name in the given virtual datacenter.
+     * <p>
+     * If the virtual appliance does not exist, it will be created. The nodes of a group created
+     * concurrently resolve it only once, through the {@link NodeGroupResolver}.
+     * 
+     * @param vdc The virtual datacenter of the virtual appliance.
+     * @param name The name of the virtual appliance.
+     * @return The virtual appliance.
+     */
+    public VirtualAppliance getOrCreateVirtualAppliance(final VirtualDatacenter vdc,
+        final String name)
+    {
+        VirtualAppliance vapp = vdc.findVirtualAppliance(VirtualAppliancePredicates.name(name));
+        if (vapp == null)
+        {
+            logger.debug("creating virtual appliance %s", name);
+            vapp = VirtualAppliance.builder(context, vdc).name(name).build();
+            vapp.save();
+        }
+        return vapp;
+    }
+
     /**
      * Find the virtual datacenters compatible with the given template.
      * 
@@ -240,17 +292,119 @@ public class AbiquoComputeServiceHelper
      * @return Boolean indicating if the given template type is compatible with the given hypervisor
      *         type.
      */
-    private static boolean isTemplateCompatibleWithHypervisor(
-        final VirtualMachineTemplate template, final HypervisorType type)
+    private boolean isTemplateCompatibleWithHypervisor(final VirtualMachineTemplate template,
+        final HypervisorType type)
+    {
+        return getCompatibleHypervisors(template).contains(type);
+    }
+
+    /**
+     * Get the hypervisor types where the given template can be deployed, either because they
+     * support the disk format of the template or because the template has a finished conversion to
+     * a format they support.
+     * <p>
+     * The conversions of the template are retrieved once, and the result is reused for all the
+     * virtual datacenters and hypervisor types being checked.
+     * 
+     * @param template The template to check.
+     * @return The hypervisor types compatible with the template.
+     */
+    @VisibleForTesting
+    Set<HypervisorType> getCompatibleHypervisors(final VirtualMachineTemplate template)
+    {
+        return get(compatibleHypervisors, template.getId(), new Callable<Set<HypervisorType>>()
+        {
+            @Override
+            public Set<HypervisorType> call()
+            {
+                return loadCompatibleHypervisors(template);
+            }
+        });
+    }
+
+    /**
+     * Discards the compatible hypervisors of the template of a conversion that has just finished,
+     * since it may be compatible with new hypervisor types.
+     */
+    @Subscribe
+    public void conversionCompleted(final CompletedEvent< ? > event)
+    {
+        if (event.getTarget() instanceof Conversion)
+        {
+            Conversion conversion = (Conversion) event.getTarget();
+            Integer templateId =
+                conversion.unwrap().getIdFromLink(ParentLinkName.VIRTUAL_MACHINE_TEMPLATE);
+
+            if (templateId != null)
+            {
+                compatibleHypervisors.invalidate(templateId);
+            }
+            else
+            {
+                compatibleHypervisors.invalidateAll();
+            }
+        }
+    }
+
+    /**
+     * Gets the value for the given key, loading it only once if several threads ask for it at the
+     * same time. Values that fail to load are not cached, and the original exception is propagated.
+     */
+    private static <K, V> V get(final Cache<K, V> cache, final K key, final Callable<V> loader)
+    {
+        try
+        {
+            return cache.get(key, loader);
+        }
+        catch (ExecutionException ex)
+        {
+            throw Throwables.propagate(ex.getCause());
+        }
+        catch (UncheckedExecutionException ex)
+        {
+            throw Throwables.propagate(ex.getCause());
+        }
+    }
+
+    private static Set<HypervisorType> loadCompatibleHypervisors(
+        final VirtualMachineTemplate template)
     {
-        boolean compatible = type.isCompatible(template.getDiskFormatType());
-        if (!compatible)
+        Set<HypervisorType> compatible = EnumSet.noneOf(HypervisorType.class);
+        Set<HypervisorType> pending = EnumSet.noneOf(HypervisorType.class);
+
+        for (HypervisorType type : HypervisorType.values())
         {
-            List<Conversion> compatibleConversions =
-                template.listConversions(type, ConversionState.FINISHED);
-            compatible = compatibleConversions != null && !compatibleConversions.isEmpty();
+            if (type.isCompatible(template.getDiskFormatType()))
+            {
+                compatible.add(type);
+            }
+            else
+            {
+                pending.add(type);
+            }
         }
-        return compatible;
+
+        if (!pending.isEmpty())
+        {
+            // A single request returns the conversions for all the remaining hypervisor types
+            List<Conversion> conversions = template.listConversions();
+            for (Conversion conversion : conversions)
+            {
+                if (conversion.getState() == ConversionState.FINISHED
+                    && conversion.getTargetFormat() != null)
+                {
+                    for (HypervisorType type : pending)
+                    {
+                        if (type.isCompatible(conversion.getTargetFormat()))
+                        {
+                            compatible.add(type);
+                        }
+                    }
+                }
+            }
+        }
+
+        return Sets.immutableEnumSet(compatible);
     }
 
 }
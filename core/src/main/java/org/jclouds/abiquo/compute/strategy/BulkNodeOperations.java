@@ -0,0 +1,305 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.strategy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Iterables.toArray;
+import static org.jclouds.abiquo.reference.AbiquoConstants.BULK_OPERATIONS_CONCURRENCY;
+
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.util.RequestLimiter;
+import org.jclouds.abiquo.features.services.CloudService;
+import org.jclouds.abiquo.features.services.MonitoringService;
+import org.jclouds.compute.reference.ComputeServiceConstants;
+import org.jclouds.logging.Logger;
+
+import com.abiquo.server.core.cloud.VirtualMachineState;
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Creates, changes the state of or destroys several nodes at once.
+ * <p>
+ * The virtual machines are found with a single listing of the cloud, and the requests for all of
+ * them are sent concurrently, with a limited number of requests in flight. The nodes that change
+ * their state are monitored together until they reach the expected state.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class BulkNodeOperations
+{
+    @Resource
+    @Named(ComputeServiceConstants.COMPUTE_LOGGER)
+    protected Logger logger = Logger.NULL;
+
+    private final CloudService cloudService;
+
+    private final MonitoringService monitoringService;
+
+    private final VirtualMachineIndex vmIndex;
+
+    private final int maxConcurrency;
+
+    @Inject
+    public BulkNodeOperations(final CloudService cloudService,
+        final MonitoringService monitoringService, final VirtualMachineIndex vmIndex,
+        @Named(BULK_OPERATIONS_CONCURRENCY) final Integer maxConcurrency)
+    {
+        super();
+        this.cloudService = checkNotNull(cloudService, "cloudService");
+        this.monitoringService = checkNotNull(monitoringService, "monitoringService");
+        this.vmIndex = checkNotNull(vmIndex, "vmIndex");
+        this.maxConcurrency = checkNotNull(maxConcurrency, "maxConcurrency");
+        checkArgument(maxConcurrency > 0, "maxConcurrency must be greater than zero");
+    }
+
+    /**
+     * Creates the given virtual machines.
+     * 
+     * @param vms The virtual machines to create.
+     * @return The virtual machines that have been created.
+     */
+    public List<VirtualMachine> create(final List<VirtualMachine> vms)
+    {
+        List<VirtualMachine> created =
+            execute(vms, new Function<VirtualMachine, ListenableFuture< ? >>()
+            {
+                @Override
+                public ListenableFuture< ? > apply(final VirtualMachine vm)
+                {
+                    return vm.saveAsync();
+                }
+            });
+        vmIndex.index(created);
+        return created;
+    }
+
+    /**
+     * Reboots the given nodes and waits until they are running again.
+     * 
+     * @param ids The ids of the nodes.
+     * @return The nodes that have been rebooted.
+     */
+    public List<VirtualMachine> reboot(final Iterable<String> ids)
+    {
+        List<VirtualMachine> rebooted =
+            execute(find(ids), new Function<VirtualMachine, ListenableFuture< ? >>()
+            {
+                @Override
+                public ListenableFuture< ? > apply(final VirtualMachine vm)
+                {
+                    return vm.rebootAsync();
+                }
+            });
+        awaitState(VirtualMachineState.ON, rebooted);
+        return rebooted;
+    }
+
+    /**
+     * Resumes the given nodes and waits until they are running.
+     * 
+     * @param ids The ids of the nodes.
+     * @return The nodes that have been resumed.
+     */
+    public List<VirtualMachine> resume(final Iterable<String> ids)
+    {
+        return changeState(ids, VirtualMachineState.ON);
+    }
+
+    /**
+     * Suspends the given nodes and waits until they are paused.
+     * 
+     * @param ids The ids of the nodes.
+     * @return The nodes that have been suspended.
+     */
+    public List<VirtualMachine> suspend(final Iterable<String> ids)
+    {
+        return changeState(ids, VirtualMachineState.PAUSED);
+    }
+
+    /**
+     * Destroys the given nodes.
+     * 
+     * @param ids The ids of the nodes.
+     * @return The ids of the nodes that have been destroyed.
+     */
+    public List<Integer> destroy(final Iterable<String> ids)
+    {
+        List<VirtualMachine> vms = find(ids);
+
+        // Deleted virtual machines lose their transport object, so keep the ids first
+        List<Integer> vmIds = Lists.newArrayListWithCapacity(vms.size());
+        for (VirtualMachine vm : vms)
+        {
+            vmIds.add(vm.getId());
+        }
+
+        List<VirtualMachine> destroyed =
+            execute(vms, new Function<VirtualMachine, ListenableFuture< ? >>()
+            {
+                @Override
+                public ListenableFuture< ? > apply(final VirtualMachine vm)
+                {
+                    return vm.deleteAsync();
+                }
+            });
+
+        Set<VirtualMachine> succeeded = Sets.newIdentityHashSet();
+        succeeded.addAll(destroyed);
+
+        List<Integer> destroyedIds = Lists.newArrayListWithCapacity(destroyed.size());
+        for (int i = 0; i < vms.size(); i++)
+        {
+            if (succeeded.contains(vms.get(i)))
+            {
+                destroyedIds.add(vmIds.get(i));
+                vmIndex.remove(vmIds.get(i));
+            }
+        }
+        return destroyedIds;
+    }
+
+    private List<VirtualMachine> changeState(final Iterable<String> ids,
+        final VirtualMachineState state)
+    {
+        List<VirtualMachine> changed =
+            execute(find(ids), new Function<VirtualMachine, ListenableFuture< ? >>()
+            {
+                @Override
+                public ListenableFuture< ? > apply(final VirtualMachine vm)
+                {
+                    return vm.changeStateAsync(state);
+                }
+            });
+        awaitState(state, changed);
+        return changed;
+    }
+
+    /**
+     * Finds all the virtual machines with the given ids in a single listing.
+     */
+    private List<VirtualMachine> find(final Iterable<String> ids)
+    {
+        final Set<Integer> vmIds = ImmutableSet.copyOf(Iterables.transform(ids,
+            new Function<String, Integer>()
+            {
+                @Override
+                public Integer apply(final String input)
+                {
+                    return Integer.valueOf(input);
+                }
+            }));
+
+        if (vmIds.isEmpty())
+        {
+            return ImmutableList.of();
+        }
+
+        List<VirtualMachine> vms =
+            ImmutableList.copyOf(cloudService.listVirtualMachines(new Predicate<VirtualMachine>()
+            {
+                @Override
+                public boolean apply(final VirtualMachine input)
+                {
+                    return vmIds.contains(input.getId());
+                }
+            }));
+
+        vmIndex.index(vms);
+        if (vms.size() < vmIds.size())
+        {
+            logger.warn("found %s of the %s requested nodes", vms.size(), vmIds.size());
+        }
+        return vms;
+    }
+
+    /**
+     * Runs the given operation on all the virtual machines, with at most the configured number of
+     * operations in flight.
+     * 
+     * @return The virtual machines where the operation succeeded.
+     */
+    private List<VirtualMachine> execute(final List<VirtualMachine> vms,
+        final Function<VirtualMachine, ListenableFuture< ? >> operation)
+    {
+        List<ListenableFuture<VirtualMachine>> results =
+            new RequestLimiter(maxConcurrency).submit(vms,
+                new Function<VirtualMachine, ListenableFuture<VirtualMachine>>()
+                {
+                    @Override
+                    public ListenableFuture<VirtualMachine> apply(final VirtualMachine vm)
+                    {
+                        try
+                        {
+                            return Futures.transform(operation.apply(vm), Functions.constant(vm));
+                        }
+                        catch (RuntimeException ex)
+                        {
+                            logger.warn(ex, "could not send the request for node %s", vm.getId());
+                            throw ex;
+                        }
+                    }
+                });
+
+        // Failed operations are returned as null values
+        List<VirtualMachine> succeeded =
+            Futures.getUnchecked(Futures.successfulAsList(results));
+        List<VirtualMachine> done =
+            ImmutableList.copyOf(Iterables.filter(succeeded, Predicates.notNull()));
+
+        if (done.size() < vms.size())
+        {
+            logger.warn("the operation failed for %s of %s nodes", vms.size() - done.size(),
+                vms.size());
+        }
+        return done;
+    }
+
+    /**
+     * Waits for all the given virtual machines to reach the given state, using a single monitor.
+     */
+    private void awaitState(final VirtualMachineState state, final List<VirtualMachine> vms)
+    {
+        if (!vms.isEmpty())
+        {
+            monitoringService.getVirtualMachineMonitor().awaitState(state,
+                toArray(vms, VirtualMachine.class));
+        }
+    }
+}
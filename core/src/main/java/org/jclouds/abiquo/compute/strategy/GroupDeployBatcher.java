@@ -0,0 +1,352 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.strategy;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.Constants.PROPERTY_SCHEDULER_THREADS;
+import static org.jclouds.abiquo.reference.AbiquoConstants.DEPLOY_GATHER_WINDOW;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.abiquo.domain.cloud.VirtualAppliance;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.monitor.MonitorStatus;
+import org.jclouds.compute.reference.ComputeServiceConstants;
+import org.jclouds.logging.Logger;
+
+import com.abiquo.server.core.cloud.VirtualMachineState;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Deploys the nodes of a group with a single deploy of their virtual appliance.
+ * <p>
+ * jclouds creates the nodes of a group concurrently, one at a time. The virtual machines created
+ * in the same virtual appliance are gathered until no new virtual machine has been added for the
+ * configured gather window. Then the virtual appliance is deployed once, and all the gathered
+ * virtual machines are monitored together by the {@link GroupDeployMonitor}. If the virtual
+ * appliance has other virtual machines waiting to be deployed, only the gathered ones are
+ * deployed, one by one.
+ * <p>
+ * The deploy is requested without blocking the scheduler, and the virtual machines are not
+ * monitored until the deploy has been accepted. A batch does not deploy the virtual appliance
+ * until the deploy of all the virtual machines of the previous batch of the same virtual appliance
+ * has finished.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class GroupDeployBatcher
+{
+    @Resource
+    @Named(ComputeServiceConstants.COMPUTE_LOGGER)
+    protected Logger logger = Logger.NULL;
+
+    private final ScheduledExecutorService scheduler;
+
+    /** The time to wait for more virtual machines before deploying, in ms. */
+    private final Long gatherDelay;
+
+    private final GroupDeployMonitor deployMonitor;
+
+    /** The virtual machines waiting for the deploy, by virtual appliance id. Guarded by itself. */
+    private final Map<Integer, Batch> batches = Maps.newHashMap();
+
+    /** The virtual appliances with a deploy not finished yet. Guarded by the batches map. */
+    private final Set<Integer> deploying = Sets.newHashSet();
+
+    @Inject
+    public GroupDeployBatcher(
+        @Named(PROPERTY_SCHEDULER_THREADS) final ScheduledExecutorService scheduler,
+        @Named(DEPLOY_GATHER_WINDOW) final Long gatherDelay,
+        final GroupDeployMonitor deployMonitor)
+    {
+        super();
+        this.scheduler = checkNotNull(scheduler, "scheduler");
+        this.gatherDelay = checkNotNull(gatherDelay, "gatherDelay");
+        this.deployMonitor = checkNotNull(deployMonitor, "deployMonitor");
+    }
+
+    /**
+     * Deploys the given virtual machine together with the rest of the virtual machines being
+     * created in the same virtual appliance, and waits until its deploy finishes.
+     * 
+     * @param vapp The virtual appliance of the virtual machine.
+     * @param vm The virtual machine to deploy.
+     * @return The status of the deploy. It will be {@link MonitorStatus#DONE} or
+     *         {@link MonitorStatus#FAILED}.
+     */
+    public MonitorStatus deploy(final VirtualAppliance vapp, final VirtualMachine vm)
+    {
+        try
+        {
+            return deployAsync(vapp, vm).get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(ex);
+        }
+        catch (ExecutionException ex)
+        {
+            throw Throwables.propagate(ex.getCause());
+        }
+    }
+
+    /**
+     * Adds the given virtual machine to the next deploy of its virtual appliance.
+     * 
+     * @param vapp The virtual appliance of the virtual machine.
+     * @param vm The virtual machine to deploy.
+     * @return The future status of the deploy.
+     */
+    public ListenableFuture<MonitorStatus> deployAsync(final VirtualAppliance vapp,
+        final VirtualMachine vm)
+    {
+        checkNotNull(vapp, "vapp");
+        checkNotNull(vm, "vm");
+
+        SettableFuture<MonitorStatus> future = SettableFuture.create();
+        synchronized (batches)
+        {
+            Batch batch = batches.get(vapp.getId());
+            if (batch == null)
+            {
+                batch = new Batch(vapp);
+                batches.put(vapp.getId(), batch);
+                batch.schedule(gatherDelay);
+            }
+            batch.pending.put(vm, future);
+            batch.lastAdded = System.nanoTime();
+        }
+        return future;
+    }
+
+    @VisibleForTesting
+    int getPendingBatches()
+    {
+        synchronized (batches)
+        {
+            return batches.size();
+        }
+    }
+
+    /**
+     * The virtual machines waiting for the deploy of a virtual appliance.
+     * 
+     * @author Ignasi Barrera
+     */
+    private class Batch implements Runnable
+    {
+        private final VirtualAppliance vapp;
+
+        /** The virtual machines to deploy. Guarded by the batches map. */
+        private final Map<VirtualMachine, SettableFuture<MonitorStatus>> pending = Maps
+            .newLinkedHashMap();
+
+        /** The time the last virtual machine was added. Guarded by the batches map. */
+        private long lastAdded;
+
+        public Batch(final VirtualAppliance vapp)
+        {
+            super();
+            this.vapp = vapp;
+        }
+
+        public void schedule(final long delay)
+        {
+            scheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run()
+        {
+            synchronized (batches)
+            {
+                // Keep waiting while virtual machines are still being added
+                long idle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastAdded);
+                if (idle < gatherDelay)
+                {
+                    schedule(gatherDelay - idle);
+                    return;
+                }
+                // Wait until the previous deploy of the virtual appliance has finished
+                if (deploying.contains(vapp.getId()))
+                {
+                    schedule(gatherDelay);
+                    return;
+                }
+                // Virtual machines added from now on go to the next deploy
+                batches.remove(vapp.getId());
+                deploying.add(vapp.getId());
+            }
+
+            // The next batch can be deployed once all these virtual machines have been deployed
+            Futures.successfulAsList(pending.values()).addListener(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    finished();
+                }
+            }, MoreExecutors.sameThreadExecutor());
+
+            logger.debug("deploying %s virtual machines in %s", pending.size(), vapp);
+
+            boolean others;
+            try
+            {
+                others = hasOtherVirtualMachinesToDeploy();
+            }
+            catch (RuntimeException ex)
+            {
+                follow(Futures.immediateFailedFuture(ex), pending);
+                return;
+            }
+
+            if (!others)
+            {
+                ListenableFuture< ? > deploy;
+                try
+                {
+                    deploy = vapp.deployAsync();
+                }
+                catch (RuntimeException ex)
+                {
+                    deploy = Futures.immediateFailedFuture(ex);
+                }
+                follow(deploy, pending);
+                return;
+            }
+
+            // Deploying the virtual appliance would deploy the rest of virtual machines too
+            for (Map.Entry<VirtualMachine, SettableFuture<MonitorStatus>> entry : pending
+                .entrySet())
+            {
+                ListenableFuture< ? > deploy;
+                try
+                {
+                    deploy = entry.getKey().deployAsync();
+                }
+                catch (RuntimeException ex)
+                {
+                    deploy = Futures.immediateFailedFuture(ex);
+                }
+                follow(deploy, ImmutableMap.of(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        /**
+         * Checks if the virtual appliance has virtual machines waiting to be deployed that are not
+         * part of this batch.
+         */
+        private boolean hasOtherVirtualMachinesToDeploy()
+        {
+            Set<Integer> ids = Sets.newHashSet();
+            for (VirtualMachine vm : pending.keySet())
+            {
+                ids.add(vm.getId());
+            }
+
+            for (VirtualMachine vm : vapp.listVirtualMachines())
+            {
+                if (!ids.contains(vm.getId())
+                    && vm.unwrap().getState() == VirtualMachineState.NOT_ALLOCATED)
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Monitors the given virtual machines once their deploy has been accepted.
+         */
+        private void follow(final ListenableFuture< ? > deploy,
+            final Map<VirtualMachine, SettableFuture<MonitorStatus>> vms)
+        {
+            Futures.addCallback(deploy, new FutureCallback<Object>()
+            {
+                @Override
+                public void onSuccess(final Object result)
+                {
+                    monitor(vms);
+                }
+
+                @Override
+                public void onFailure(final Throwable t)
+                {
+                    for (SettableFuture<MonitorStatus> future : vms.values())
+                    {
+                        future.setException(t);
+                    }
+                }
+            });
+        }
+
+        private void finished()
+        {
+            synchronized (batches)
+            {
+                deploying.remove(vapp.getId());
+            }
+        }
+
+        private void monitor(final Map<VirtualMachine, SettableFuture<MonitorStatus>> vms)
+        {
+            for (Map.Entry<VirtualMachine, SettableFuture<MonitorStatus>> entry : vms.entrySet())
+            {
+                final SettableFuture<MonitorStatus> future = entry.getValue();
+                Futures.addCallback(deployMonitor.monitorDeploy(vapp, entry.getKey()),
+                    new FutureCallback<MonitorStatus>()
+                    {
+                        @Override
+                        public void onSuccess(final MonitorStatus result)
+                        {
+                            future.set(result);
+                        }
+
+                        @Override
+                        public void onFailure(final Throwable t)
+                        {
+                            future.setException(t);
+                        }
+                    });
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.strategy;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.Constants.PROPERTY_SCHEDULER_THREADS;
+import static org.jclouds.abiquo.monitor.functions.VirtualMachineDeployMonitor.deployStatus;
+import static org.jclouds.abiquo.reference.AbiquoConstants.ASYNC_TASK_MONITOR_DELAY;
+import static org.jclouds.abiquo.reference.AbiquoConstants.DEPLOY_TIMEOUT;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.abiquo.domain.cloud.VirtualAppliance;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.monitor.MonitorStatus;
+import org.jclouds.compute.reference.ComputeServiceConstants;
+import org.jclouds.logging.Logger;
+
+import com.abiquo.server.core.cloud.VirtualMachineState;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Monitors the deployment of the nodes of a group.
+ * <p>
+ * Instead of polling the state of each virtual machine being deployed, the virtual machines of
+ * each virtual appliance are listed once per polling interval, and all the virtual machines of
+ * the virtual appliance waiting for their deploy to finish are checked with that list.
+ * <p>
+ * A virtual machine may still be not allocated right after the deploy has been requested, so it
+ * is only considered failed when it goes back to the not allocated state after the deploy has
+ * started. Virtual machines that have not been deployed after the configured deploy timeout are
+ * also considered failed, so virtual machines stuck in any state are not monitored forever.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class GroupDeployMonitor
+{
+    @Resource
+    @Named(ComputeServiceConstants.COMPUTE_LOGGER)
+    protected Logger logger = Logger.NULL;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Long pollingDelay;
+
+    /** The maximum time to wait for a deploy to finish, in ms. */
+    private final Long deployTimeout;
+
+    /** The monitors by virtual appliance id. Guarded by itself. */
+    private final Map<Integer, VirtualApplianceMonitor> monitors = Maps.newHashMap();
+
+    @Inject
+    public GroupDeployMonitor(
+        @Named(PROPERTY_SCHEDULER_THREADS) final ScheduledExecutorService scheduler,
+        @Named(ASYNC_TASK_MONITOR_DELAY) final Long pollingDelay,
+        @Named(DEPLOY_TIMEOUT) final Long deployTimeout)
+    {
+        super();
+        this.scheduler = checkNotNull(scheduler, "scheduler");
+        this.pollingDelay = checkNotNull(pollingDelay, "pollingDelay");
+        this.deployTimeout = checkNotNull(deployTimeout, "deployTimeout");
+    }
+
+    /**
+     * Waits until the deploy of the given virtual machine finishes.
+     * 
+     * @param vapp The virtual appliance of the virtual machine.
+     * @param vm The virtual machine being deployed.
+     * @return The status of the deploy. It will be {@link MonitorStatus#DONE} or
+     *         {@link MonitorStatus#FAILED}.
+     */
+    public MonitorStatus awaitCompletionDeploy(final VirtualAppliance vapp, final VirtualMachine vm)
+    {
+        try
+        {
+            return monitorDeploy(vapp, vm).get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(ex);
+        }
+        catch (ExecutionException ex)
+        {
+            throw Throwables.propagate(ex.getCause());
+        }
+    }
+
+    /**
+     * Starts monitoring the deploy of the given virtual machine.
+     * 
+     * @param vapp The virtual appliance of the virtual machine.
+     * @param vm The virtual machine being deployed.
+     * @return The future status of the deploy.
+     */
+    public ListenableFuture<MonitorStatus> monitorDeploy(final VirtualAppliance vapp,
+        final VirtualMachine vm)
+    {
+        checkNotNull(vapp, "vapp");
+        checkNotNull(vm, "vm");
+
+        SettableFuture<MonitorStatus> future = SettableFuture.create();
+        synchronized (monitors)
+        {
+            VirtualApplianceMonitor monitor = monitors.get(vapp.getId());
+            if (monitor == null)
+            {
+                monitor = new VirtualApplianceMonitor(vapp);
+                monitors.put(vapp.getId(), monitor);
+                monitor.start();
+            }
+            monitor.pending.put(vm.getId(), new PendingDeploy(future, System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(deployTimeout)));
+        }
+        return future;
+    }
+
+    @VisibleForTesting
+    int getMonitoredVirtualAppliances()
+    {
+        synchronized (monitors)
+        {
+            return monitors.size();
+        }
+    }
+
+    /**
+     * A virtual machine waiting for its deploy to finish.
+     * 
+     * @author Ignasi Barrera
+     */
+    private static class PendingDeploy
+    {
+        private final SettableFuture<MonitorStatus> future;
+
+        /** The time when the deploy times out, in ns. */
+        private final long deadline;
+
+        /** Whether the virtual machine has already left the not allocated state. */
+        private boolean started = false;
+
+        public PendingDeploy(final SettableFuture<MonitorStatus> future, final long deadline)
+        {
+            super();
+            this.future = future;
+            this.deadline = deadline;
+        }
+
+        public MonitorStatus check(final VirtualMachine vm)
+        {
+            // Virtual machines that no longer exist will not be deployed
+            if (vm == null)
+            {
+                return MonitorStatus.FAILED;
+            }
+
+            VirtualMachineState state = vm.unwrap().getState();
+            if (state != VirtualMachineState.NOT_ALLOCATED)
+            {
+                started = true;
+            }
+            else if (!started)
+            {
+                // The deploy has not started yet
+                return MonitorStatus.CONTINUE;
+            }
+            return deployStatus(state);
+        }
+
+        public boolean isExpired(final long now)
+        {
+            return now - deadline >= 0;
+        }
+    }
+
+    /**
+     * Checks the state of the virtual machines being deployed in a virtual appliance.
+     * 
+     * @author Ignasi Barrera
+     */
+    private class VirtualApplianceMonitor implements Runnable
+    {
+        private final VirtualAppliance vapp;
+
+        /** The virtual machines being deployed, by id. */
+        private final Map<Integer, PendingDeploy> pending = Maps.newConcurrentMap();
+
+        private Future< ? > job;
+
+        public VirtualApplianceMonitor(final VirtualAppliance vapp)
+        {
+            super();
+            this.vapp = vapp;
+        }
+
+        public void start()
+        {
+            job =
+                scheduler.scheduleWithFixedDelay(this, pollingDelay, pollingDelay,
+                    TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                // Virtual machines registered while listing may not be in the listing yet
+                Map<Integer, PendingDeploy> checking = ImmutableMap.copyOf(pending);
+
+                // A single request for all the virtual machines being deployed
+                Map<Integer, VirtualMachine> vms = Maps.newHashMap();
+                for (VirtualMachine vm : vapp.listVirtualMachines())
+                {
+                    vms.put(vm.getId(), vm);
+                }
+
+                long now = System.nanoTime();
+                for (Map.Entry<Integer, PendingDeploy> entry : checking.entrySet())
+                {
+                    PendingDeploy deploy = entry.getValue();
+                    MonitorStatus status = deploy.check(vms.get(entry.getKey()));
+                    if (status == MonitorStatus.CONTINUE && deploy.isExpired(now))
+                    {
+                        logger.warn("deploy of virtual machine %s in %s timed out after %s ms",
+                            entry.getKey(), vapp, deployTimeout);
+                        status = MonitorStatus.FAILED;
+                    }
+
+                    if (status != MonitorStatus.CONTINUE)
+                    {
+                        pending.remove(entry.getKey());
+                        deploy.future.set(status);
+                    }
+                }
+            }
+            catch (Exception ex)
+            {
+                logger.warn(ex, "could not monitor the virtual machines of %s, retrying", vapp);
+            }
+
+            synchronized (monitors)
+            {
+                if (pending.isEmpty())
+                {
+                    job.cancel(false);
+                    monitors.remove(vapp.getId());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.strategy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.abiquo.reference.AbiquoConstants.NODE_GROUP_CACHE_TTL;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.abiquo.compute.options.AbiquoTemplateOptions;
+import org.jclouds.abiquo.domain.cloud.VirtualAppliance;
+import org.jclouds.abiquo.domain.cloud.VirtualDatacenter;
+import org.jclouds.abiquo.domain.cloud.VirtualMachineTemplate;
+import org.jclouds.abiquo.domain.enterprise.Enterprise;
+import org.jclouds.abiquo.domain.enterprise.User;
+import org.jclouds.abiquo.domain.infrastructure.Datacenter;
+import org.jclouds.abiquo.events.cloud.VirtualApplianceDeletedEvent;
+import org.jclouds.abiquo.events.cloud.VirtualDatacenterDeletedEvent;
+import org.jclouds.abiquo.features.services.AdministrationService;
+import org.jclouds.abiquo.predicates.infrastructure.DatacenterPredicates;
+import org.jclouds.compute.domain.Template;
+import org.jclouds.compute.reference.ComputeServiceConstants;
+import org.jclouds.logging.Logger;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Resolves the resources shared by all the nodes of a group.
+ * <p>
+ * jclouds creates the nodes of a group concurrently, and all of them are deployed in the same
+ * virtual appliance, using the same template and location. Those resources are resolved only once
+ * for each group, and the nodes being created at the same time wait for the first one to resolve
+ * them. Resolved groups are kept for the configured time, since they are only meant to be shared
+ * by the nodes created in the same operation, and are discarded as soon as their virtual appliance
+ * or virtual datacenter is deleted or is not found.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class NodeGroupResolver
+{
+    @Resource
+    @Named(ComputeServiceConstants.COMPUTE_LOGGER)
+    protected Logger logger = Logger.NULL;
+
+    private final AdministrationService adminService;
+
+    private final AbiquoComputeServiceHelper helper;
+
+    /** Resolved groups by group name, image, location and virtual datacenter name. */
+    private final Cache<List<String>, NodeGroup> groups;
+
+    @Inject
+    public NodeGroupResolver(final AdministrationService adminService,
+        final AbiquoComputeServiceHelper helper, @Named(NODE_GROUP_CACHE_TTL) final Long ttl,
+        final EventBus eventBus)
+    {
+        super();
+        this.adminService = checkNotNull(adminService, "adminService");
+        this.helper = checkNotNull(helper, "helper");
+        checkNotNull(ttl, "ttl");
+        checkArgument(ttl >= 0, "ttl must be equal or greater than zero");
+        this.groups =
+            CacheBuilder.newBuilder().expireAfterWrite(ttl, TimeUnit.MILLISECONDS).build();
+        checkNotNull(eventBus, "eventBus").register(this);
+    }
+
+    /**
+     * Get the resources shared by the nodes of the given group, using the given template.
+     * 
+     * @param group The name of the group.
+     * @param template The template of the nodes.
+     * @return The resources shared by the nodes of the group.
+     */
+    public NodeGroup resolve(final String group, final Template template)
+    {
+        final AbiquoTemplateOptions options =
+            template.getOptions().as(AbiquoTemplateOptions.class);
+        List<String> key = key(group, template);
+
+        try
+        {
+            return groups.get(key, new Callable<NodeGroup>()
+            {
+                @Override
+                public NodeGroup call()
+                {
+                    return load(group, template, options);
+                }
+            });
+        }
+        catch (ExecutionException ex)
+        {
+            throw Throwables.propagate(ex.getCause());
+        }
+        catch (UncheckedExecutionException ex)
+        {
+            // Propagate the original exception. Failed groups are not cached
+            throw Throwables.propagate(ex.getCause());
+        }
+    }
+
+    /**
+     * Discards the resources resolved for the given group, so they are resolved again the next
+     * time. It should be called when they are not found.
+     * 
+     * @param group The name of the group.
+     * @param template The template of the nodes.
+     */
+    public void invalidate(final String group, final Template template)
+    {
+        groups.invalidate(key(group, template));
+    }
+
+    /**
+     * Discards the groups deployed in a virtual appliance that has just been deleted.
+     */
+    @Subscribe
+    public void virtualApplianceDeleted(final VirtualApplianceDeletedEvent event)
+    {
+        for (Map.Entry<List<String>, NodeGroup> entry : groups.asMap().entrySet())
+        {
+            if (event.getVirtualApplianceId().equals(
+                entry.getValue().getVirtualAppliance().getId()))
+            {
+                groups.invalidate(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Discards the groups deployed in a virtual datacenter that has just been deleted.
+     */
+    @Subscribe
+    public void virtualDatacenterDeleted(final VirtualDatacenterDeletedEvent event)
+    {
+        for (Map.Entry<List<String>, NodeGroup> entry : groups.asMap().entrySet())
+        {
+            if (event.getVirtualDatacenterId().equals(
+                entry.getValue().getVirtualDatacenter().getId()))
+            {
+                groups.invalidate(entry.getKey());
+            }
+        }
+    }
+
+    private static List<String> key(final String group, final Template template)
+    {
+        AbiquoTemplateOptions options = template.getOptions().as(AbiquoTemplateOptions.class);
+        // The virtual datacenter name may be null, so it is not an immutable list
+        return Arrays.asList(group, template.getImage().getId(), template.getLocation().getId(),
+            options.getVirtualDatacenter());
+    }
+
+    private NodeGroup load(final String group, final Template template,
+        final AbiquoTemplateOptions options)
+    {
+        logger.debug("resolving resources for group %s", group);
+
+        User user = adminService.getCurrentUser();
+        Enterprise enterprise = adminService.getCurrentEnterprise();
+
+        Datacenter datacenter =
+            enterprise.findAllowedDatacenter(DatacenterPredicates.id(Integer.valueOf(template
+                .getLocation().getId())));
+
+        VirtualMachineTemplate virtualMachineTemplate =
+            enterprise.getTemplateInRepository(datacenter,
+                Integer.valueOf(template.getImage().getId()));
+
+        VirtualDatacenter vdc =
+            helper.getOrCreateVirtualDatacenter(user, enterprise, datacenter,
+                virtualMachineTemplate, options);
+
+        // Load the virtual appliance or create it
+        VirtualAppliance vapp = helper.getOrCreateVirtualAppliance(vdc, group);
+
+        return new NodeGroup(virtualMachineTemplate, vdc, vapp);
+    }
+
+    /**
+     * The resources shared by the nodes of a group.
+     * 
+     * @author Ignasi Barrera
+     */
+    public static class NodeGroup
+    {
+        private final VirtualMachineTemplate template;
+
+        private final VirtualDatacenter virtualDatacenter;
+
+        private final VirtualAppliance virtualAppliance;
+
+        public NodeGroup(final VirtualMachineTemplate template,
+            final VirtualDatacenter virtualDatacenter, final VirtualAppliance virtualAppliance)
+        {
+            super();
+            this.template = checkNotNull(template, "template");
+            this.virtualDatacenter = checkNotNull(virtualDatacenter, "virtualDatacenter");
+            this.virtualAppliance = checkNotNull(virtualAppliance, "virtualAppliance");
+        }
+
+        public VirtualMachineTemplate getTemplate()
+        {
+            return template;
+        }
+
+        public VirtualDatacenter getVirtualDatacenter()
+        {
+            return virtualDatacenter;
+        }
+
+        public VirtualAppliance getVirtualAppliance()
+        {
+            return virtualAppliance;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.strategy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.abiquo.reference.AbiquoConstants.NODE_SNAPSHOT_REFRESH;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.Constants;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.features.services.CloudService;
+import org.jclouds.compute.domain.NodeMetadata;
+import org.jclouds.compute.reference.ComputeServiceConstants;
+import org.jclouds.logging.Logger;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * The nodes of the current user, as returned by the last listing.
+ * <p>
+ * Listing the nodes requires walking all the virtual datacenters and virtual appliances of the
+ * cloud, and jclouds lists them many times. When a refresh interval is configured, the last listing
+ * is kept in memory. Once the interval has passed, a single background refresh lists the nodes
+ * again, while the previous ones are still returned. The snapshot is discarded when the nodes are
+ * modified, so the next listing reflects the changes.
+ * <p>
+ * The nodes of a snapshot are returned to all the callers, so they are converted only once: the
+ * first caller converts each node and the rest get the same converted node.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class NodeSnapshot
+{
+    @Resource
+    @Named(ComputeServiceConstants.COMPUTE_LOGGER)
+    protected Logger logger = Logger.NULL;
+
+    private final CloudService cloudService;
+
+    private final VirtualMachineIndex vmIndex;
+
+    private final ExecutorService userExecutor;
+
+    private final Ticker ticker;
+
+    /** The refresh interval in nanoseconds. Zero if the snapshot is disabled. */
+    private final long refreshNanos;
+
+    /** The last listing, or <code>null</code> if there is none or it has been discarded. */
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>();
+
+    /** Incremented each time the snapshot is discarded. */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /** Only one refresh runs at a time. */
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    /** The nodes returned to more than one caller. Compared by identity. */
+    private final Set<VirtualMachine> shared = Collections.newSetFromMap(new MapMaker()
+        .weakKeys().<VirtualMachine, Boolean> makeMap());
+
+    /** The converted shared nodes. Compared by identity. */
+    private final Cache<VirtualMachine, NodeMetadata> converted = CacheBuilder.newBuilder()
+        .weakKeys().build();
+
+    @Inject
+    public NodeSnapshot(final CloudService cloudService, final VirtualMachineIndex vmIndex,
+        @Named(NODE_SNAPSHOT_REFRESH) final Long refreshInterval,
+        @Named(Constants.PROPERTY_USER_THREADS) final ExecutorService userExecutor)
+    {
+        this(cloudService, vmIndex, refreshInterval, userExecutor, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    NodeSnapshot(final CloudService cloudService, final VirtualMachineIndex vmIndex,
+        final Long refreshInterval, final ExecutorService userExecutor, final Ticker ticker)
+    {
+        super();
+        this.cloudService = checkNotNull(cloudService, "cloudService");
+        this.vmIndex = checkNotNull(vmIndex, "vmIndex");
+        this.userExecutor = checkNotNull(userExecutor, "userExecutor");
+        this.ticker = checkNotNull(ticker, "ticker");
+        checkNotNull(refreshInterval, "refreshInterval");
+        checkArgument(refreshInterval >= 0, "refreshInterval must be equal or greater than zero");
+        this.refreshNanos = TimeUnit.MILLISECONDS.toNanos(refreshInterval);
+    }
+
+    /**
+     * Get the nodes of the current user.
+     * <p>
+     * If there is no snapshot the nodes are listed right away. If the snapshot is older than the
+     * refresh interval, it is returned and a refresh is started in the background.
+     */
+    public List<VirtualMachine> listNodes()
+    {
+        if (refreshNanos == 0)
+        {
+            return load().vms;
+        }
+
+        Snapshot current = snapshot.get();
+        if (current == null)
+        {
+            current = loadIfMissing();
+        }
+        else if (current.age() >= refreshNanos)
+        {
+            refresh(current);
+        }
+
+        logger.debug("returning %s nodes listed %s ms ago", current.vms.size(),
+            TimeUnit.NANOSECONDS.toMillis(current.age()));
+        return current.vms;
+    }
+
+    /**
+     * Get the age of the current snapshot.
+     * 
+     * @param unit The unit of the returned age.
+     * @return The age of the snapshot, or -1 if there is no snapshot.
+     */
+    public long getAge(final TimeUnit unit)
+    {
+        Snapshot current = snapshot.get();
+        return current == null ? -1 : unit.convert(current.age(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Checks if the given node comes from a snapshot returned to more than one caller.
+     * 
+     * @param vm The node to check.
+     * @return If the node comes from a snapshot.
+     */
+    public boolean isShared(final VirtualMachine vm)
+    {
+        return shared.contains(vm);
+    }
+
+    /**
+     * Converts the given node.
+     * <p>
+     * Converting a node refreshes it, so nodes returned to more than one caller are converted
+     * only once, by a single thread, and all the callers get the same converted node. The rest
+     * of the nodes are converted right away.
+     * 
+     * @param vm The node to convert.
+     * @param converter The function that converts the node.
+     * @return The converted node.
+     */
+    public NodeMetadata convert(final VirtualMachine vm,
+        final Function<VirtualMachine, NodeMetadata> converter)
+    {
+        if (!isShared(vm))
+        {
+            return converter.apply(vm);
+        }
+
+        try
+        {
+            return converted.get(vm, new Callable<NodeMetadata>()
+            {
+                @Override
+                public NodeMetadata call()
+                {
+                    return converter.apply(vm);
+                }
+            });
+        }
+        catch (ExecutionException ex)
+        {
+            throw Throwables.propagate(ex.getCause());
+        }
+        catch (UncheckedExecutionException ex)
+        {
+            // Propagate the original exception. Failed conversions are not cached
+            throw Throwables.propagate(ex.getCause());
+        }
+    }
+
+    /**
+     * Discards the current snapshot, so the next listing returns the nodes as they are now.
+     */
+    public void invalidate()
+    {
+        invalidations.incrementAndGet();
+        snapshot.set(null);
+    }
+
+    private synchronized Snapshot loadIfMissing()
+    {
+        // Concurrent callers wait for the first one to list the nodes
+        Snapshot current = snapshot.get();
+        if (current == null)
+        {
+            long generation = invalidations.get();
+            current = load();
+
+            // Do not keep a snapshot discarded after a modification while listing
+            if (snapshot.compareAndSet(null, current) && invalidations.get() != generation)
+            {
+                snapshot.compareAndSet(current, null);
+            }
+        }
+        return current;
+    }
+
+    private void refresh(final Snapshot current)
+    {
+        if (refreshing.compareAndSet(false, true))
+        {
+            userExecutor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        // Do not replace a snapshot discarded after a modification while listing
+                        snapshot.compareAndSet(current, load());
+                    }
+                    catch (RuntimeException ex)
+                    {
+                        logger.warn(ex, "could not refresh the nodes. Keeping the previous ones");
+                    }
+                    finally
+                    {
+                        refreshing.set(false);
+                    }
+                }
+            });
+        }
+    }
+
+    private Snapshot load()
+    {
+        List<VirtualMachine> vms = ImmutableList.copyOf(cloudService.listVirtualMachines());
+        vmIndex.index(vms);
+        if (refreshNanos > 0)
+        {
+            // The listing will be returned to every caller until it is refreshed
+            shared.addAll(vms);
+        }
+        return new Snapshot(vms, ticker.read());
+    }
+
+    private class Snapshot
+    {
+        private final List<VirtualMachine> vms;
+
+        private final long timestamp;
+
+        public Snapshot(final List<VirtualMachine> vms, final long timestamp)
+        {
+            super();
+            this.vms = vms;
+            this.timestamp = timestamp;
+        }
+
+        public long age()
+        {
+            return ticker.read() - timestamp;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.strategy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.abiquo.reference.AbiquoConstants.TEMPLATE_CATALOG_REFRESH;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.Constants;
+import org.jclouds.abiquo.domain.cloud.VirtualMachineTemplate;
+import org.jclouds.abiquo.domain.enterprise.Enterprise;
+import org.jclouds.abiquo.events.enterprise.TemplateRepositoryRefreshedEvent;
+import org.jclouds.abiquo.features.services.AdministrationService;
+import org.jclouds.compute.reference.ComputeServiceConstants;
+import org.jclouds.logging.Logger;
+
+import com.google.common.base.Predicate;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+
+/**
+ * The templates of the current enterprise, used as the images and hardware profiles of the
+ * compute service.
+ * <p>
+ * Listing the templates requires a request for each datacenter the enterprise is allowed to use,
+ * and jclouds lists them many times while building templates. When a refresh interval is
+ * configured, the templates are kept in memory and refreshed in the background once the interval
+ * has passed, returning the previous ones until the refresh finishes. If a refresh fails, the
+ * previous templates are kept. Templates are discarded when the template repository of the
+ * enterprise is refreshed.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class TemplateCatalog
+{
+    @Resource
+    @Named(ComputeServiceConstants.COMPUTE_LOGGER)
+    protected Logger logger = Logger.NULL;
+
+    private final AdministrationService adminService;
+
+    /** The templates by enterprise id, or <code>null</code> if the catalog is disabled. */
+    private final LoadingCache<Integer, List<VirtualMachineTemplate>> templates;
+
+    @Inject
+    public TemplateCatalog(final AdministrationService adminService,
+        @Named(TEMPLATE_CATALOG_REFRESH) final Long refreshInterval,
+        @Named(Constants.PROPERTY_USER_THREADS) final ExecutorService userExecutor,
+        final EventBus eventBus)
+    {
+        super();
+        this.adminService = checkNotNull(adminService, "adminService");
+        checkNotNull(refreshInterval, "refreshInterval");
+        checkArgument(refreshInterval >= 0, "refreshInterval must be equal or greater than zero");
+        checkNotNull(userExecutor, "userExecutor");
+
+        this.templates =
+            refreshInterval == 0 ? null : CacheBuilder.newBuilder()
+                .refreshAfterWrite(refreshInterval, TimeUnit.MILLISECONDS)
+                .build(new CacheLoader<Integer, List<VirtualMachineTemplate>>()
+                {
+                    @Override
+                    public List<VirtualMachineTemplate> load(final Integer enterpriseId)
+                    {
+                        return listTemplates(adminService.getCurrentEnterprise());
+                    }
+
+                    @Override
+                    public ListenableFuture<List<VirtualMachineTemplate>> reload(
+                        final Integer enterpriseId, final List<VirtualMachineTemplate> previous)
+                    {
+                        // Keep returning the previous templates while refreshing them
+                        ListenableFutureTask<List<VirtualMachineTemplate>> task =
+                            ListenableFutureTask.create(new Callable<List<VirtualMachineTemplate>>()
+                            {
+                                @Override
+                                public List<VirtualMachineTemplate> call()
+                                {
+                                    return load(enterpriseId);
+                                }
+                            });
+                        userExecutor.execute(task);
+                        return task;
+                    }
+                });
+
+        checkNotNull(eventBus, "eventBus").register(this);
+    }
+
+    /**
+     * Get the templates of the current enterprise.
+     */
+    public List<VirtualMachineTemplate> listTemplates()
+    {
+        Enterprise enterprise = adminService.getCurrentEnterprise();
+        return templates == null ? listTemplates(enterprise) : templates
+            .getUnchecked(enterprise.getId());
+    }
+
+    /**
+     * Get the first template of the current enterprise matching the given filter.
+     * 
+     * @return The template or <code>null</code> if there is no template matching the filter.
+     */
+    public VirtualMachineTemplate findTemplate(final Predicate<VirtualMachineTemplate> filter)
+    {
+        if (templates == null)
+        {
+            return adminService.getCurrentEnterprise().findTemplate(filter);
+        }
+        return Iterables.find(listTemplates(), filter, null);
+    }
+
+    /**
+     * Discards the templates of the given enterprise, since its template repository has been
+     * refreshed.
+     */
+    @Subscribe
+    public void templateRepositoryRefreshed(final TemplateRepositoryRefreshedEvent event)
+    {
+        if (templates != null)
+        {
+            logger.debug("discarding templates after %s", event);
+            templates.invalidate(event.getEnterpriseId());
+        }
+    }
+
+    private List<VirtualMachineTemplate> listTemplates(final Enterprise enterprise)
+    {
+        logger.debug("listing templates of enterprise %s", enterprise.getId());
+        return ImmutableList.copyOf(enterprise.listTemplates());
+    }
+}
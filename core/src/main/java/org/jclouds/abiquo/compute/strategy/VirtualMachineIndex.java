@@ -0,0 +1,185 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.strategy;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.features.services.CloudService;
+import org.jclouds.abiquo.rest.internal.ExtendedUtils;
+import org.jclouds.compute.reference.ComputeServiceConstants;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.functions.ParseXMLWithJAXB;
+import org.jclouds.logging.Logger;
+import org.jclouds.rest.RestContext;
+
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Maps;
+import com.google.inject.TypeLiteral;
+
+/**
+ * Finds virtual machines by id.
+ * <p>
+ * Virtual machines can only be retrieved through their virtual appliance, so finding a virtual
+ * machine given only its id requires listing all the virtual datacenters, virtual appliances and
+ * virtual machines in the cloud. This class remembers the link of every virtual machine that has
+ * been listed, created or found, so they can be retrieved with a single request. The whole cloud is
+ * only scanned for virtual machines that have not been seen yet or that have been moved.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class VirtualMachineIndex
+{
+    @Resource
+    @Named(ComputeServiceConstants.COMPUTE_LOGGER)
+    protected Logger logger = Logger.NULL;
+
+    private final RestContext<AbiquoApi, AbiquoAsyncApi> context;
+
+    private final CloudService cloudService;
+
+    /** The links of the known virtual machines, by id. */
+    private final ConcurrentMap<Integer, RESTLink> links = Maps.newConcurrentMap();
+
+    @Inject
+    public VirtualMachineIndex(final RestContext<AbiquoApi, AbiquoAsyncApi> context,
+        final CloudService cloudService)
+    {
+        super();
+        this.context = checkNotNull(context, "context");
+        this.cloudService = checkNotNull(cloudService, "cloudService");
+    }
+
+    /**
+     * Remembers the link of the given virtual machines.
+     * 
+     * @param vms The virtual machines to index.
+     */
+    public void index(final Iterable<VirtualMachine> vms)
+    {
+        for (VirtualMachine vm : vms)
+        {
+            index(vm);
+        }
+    }
+
+    /**
+     * Remembers the link of the given virtual machine.
+     * 
+     * @param vm The virtual machine to index.
+     */
+    public void index(final VirtualMachine vm)
+    {
+        RESTLink link = vm.unwrap().getEditLink();
+        if (vm.getId() != null && link != null)
+        {
+            links.put(vm.getId(), link);
+        }
+    }
+
+    /**
+     * Forgets the given virtual machine.
+     * 
+     * @param id The id of the virtual machine.
+     */
+    public void remove(final Integer id)
+    {
+        links.remove(id);
+    }
+
+    /**
+     * Gets the virtual machine with the given id.
+     * 
+     * @param id The id of the virtual machine.
+     * @return The virtual machine or <code>null</code> if it does not exist.
+     */
+    public VirtualMachine find(final Integer id)
+    {
+        checkNotNull(id, "id");
+
+        RESTLink link = links.get(id);
+        if (link != null)
+        {
+            VirtualMachine vm = get(link);
+            if (vm != null && id.equals(vm.getId()))
+            {
+                return vm;
+            }
+
+            // The virtual machine has been deleted or moved to another virtual appliance
+            links.remove(id, link);
+        }
+
+        logger.debug("virtual machine %s is not indexed. Scanning the cloud", id);
+        VirtualMachine vm = cloudService.findVirtualMachine(new Predicate<VirtualMachine>()
+        {
+            @Override
+            public boolean apply(final VirtualMachine input)
+            {
+                return id.equals(input.getId());
+            }
+        });
+
+        if (vm != null)
+        {
+            index(vm);
+        }
+
+        return vm;
+    }
+
+    @VisibleForTesting
+    int size()
+    {
+        return links.size();
+    }
+
+    private VirtualMachine get(final RESTLink link)
+    {
+        ExtendedUtils utils = (ExtendedUtils) context.getUtils();
+        HttpResponse response = utils.getAbiquoHttpClient().get(link);
+        if (response == null)
+        {
+            // The virtual machine does not exist
+            return null;
+        }
+
+        ParseXMLWithJAXB<VirtualMachineWithNodeExtendedDto> parser =
+            new ParseXMLWithJAXB<VirtualMachineWithNodeExtendedDto>(utils.getXml(),
+                TypeLiteral.get(VirtualMachineWithNodeExtendedDto.class));
+
+        // Remember the version, so the virtual machine can be updated conditionally
+        return wrap(context, VirtualMachine.class, parser.apply(response), response);
+    }
+}
@@ -51,6 +51,10 @@ import org.jclouds.abiquo.features.TaskAsyncApi;
 import org.jclouds.abiquo.features.VirtualMachineTemplateApi;
 import org.jclouds.abiquo.features.VirtualMachineTemplateAsyncApi;
 import org.jclouds.abiquo.handlers.AbiquoErrorHandler;
+import org.jclouds.abiquo.handlers.AbiquoRetryHandler;
+import org.jclouds.abiquo.http.filters.AcceptGzipEncoding;
+import org.jclouds.abiquo.http.filters.FailFastWhenCircuitIsOpen;
+import org.jclouds.abiquo.http.filters.LimitRequestRate;
 import org.jclouds.abiquo.rest.internal.AbiquoHttpAsyncClient;
 import org.jclouds.abiquo.rest.internal.AbiquoHttpClient;
 import org.jclouds.abiquo.rest.internal.ExtendedUtils;
@@ -58,6 +62,8 @@ import org.jclouds.abiquo.suppliers.GetCurrentEnterprise;
 import org.jclouds.abiquo.suppliers.GetCurrentUser;
 import org.jclouds.collect.Memoized;
 import org.jclouds.http.HttpErrorHandler;
+import org.jclouds.http.HttpRetryHandler;
+import org.jclouds.http.IOExceptionRetryHandler;
 import org.jclouds.http.annotation.ClientError;
 import org.jclouds.http.annotation.Redirection;
 import org.jclouds.http.annotation.ServerError;
@@ -118,6 +124,11 @@ public class AbiquoRestClientModule extends RestClientModule<AbiquoApi, AbiquoAs
     {
         super.configure();
         bind(Utils.class).to(ExtendedUtils.class);
+        // Fail when the context is created if the configured executor does not support the
+        // enabled features
+        bind(AcceptGzipEncoding.class).asEagerSingleton();
+        bind(FailFastWhenCircuitIsOpen.class).asEagerSingleton();
+        bind(LimitRequestRate.class).asEagerSingleton();
     }
 
     @Override
@@ -128,6 +139,14 @@ public class AbiquoRestClientModule extends RestClientModule<AbiquoApi, AbiquoAs
         bind(HttpErrorHandler.class).annotatedWith(ServerError.class).to(AbiquoErrorHandler.class);
     }
 
+    @Override
+    protected void bindRetryHandlers()
+    {
+        bind(HttpRetryHandler.class).annotatedWith(ClientError.class).to(AbiquoRetryHandler.class);
+        bind(HttpRetryHandler.class).annotatedWith(ServerError.class).to(AbiquoRetryHandler.class);
+        bind(IOExceptionRetryHandler.class).to(AbiquoRetryHandler.class);
+    }
+
     @Provides
     @Singleton
     @Memoized
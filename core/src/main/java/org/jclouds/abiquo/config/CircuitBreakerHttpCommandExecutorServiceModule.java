@@ -0,0 +1,70 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.config;
+
+import org.jclouds.abiquo.http.internal.RateLimitingHttpCommandExecutorService;
+import org.jclouds.abiquo.http.internal.SuccessReportingHttpCommandExecutorService;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.config.ConfiguresHttpCommandExecutorService;
+import org.jclouds.http.config.JavaUrlHttpCommandExecutorServiceModule;
+import org.jclouds.http.internal.JavaUrlHttpCommandExecutorService;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Scopes;
+import com.google.inject.name.Names;
+import com.google.inject.util.Modules;
+
+/**
+ * Configures the <code>java.net</code> executor to report the successful requests to the circuit
+ * breaker.
+ * <p>
+ * This module must be added to the context modules when the
+ * {@link org.jclouds.abiquo.reference.AbiquoConstants#CIRCUIT_BREAKER_THRESHOLD} property is
+ * enabled. It is not needed when the {@link GzipHttpCommandExecutorServiceModule} is used.
+ * <p>
+ * The requests are also delayed by the rate limiter, so this module can be used instead of the
+ * {@link RateLimitingHttpCommandExecutorServiceModule}.
+ * 
+ * @author Ignasi Barrera
+ */
+@ConfiguresHttpCommandExecutorService
+public class CircuitBreakerHttpCommandExecutorServiceModule extends AbstractModule
+{
+    @Override
+    protected void configure()
+    {
+        install(Modules.override(new JavaUrlHttpCommandExecutorServiceModule()).with(
+            new AbstractModule()
+            {
+                @Override
+                protected void configure()
+                {
+                    bind(HttpCommandExecutorService.class).annotatedWith(
+                        Names.named(SuccessReportingHttpCommandExecutorService.DELEGATE))
+                        .to(RateLimitingHttpCommandExecutorService.class).in(Scopes.SINGLETON);
+                    bind(HttpCommandExecutorService.class).annotatedWith(
+                        Names.named(RateLimitingHttpCommandExecutorService.DELEGATE))
+                        .to(JavaUrlHttpCommandExecutorService.class).in(Scopes.SINGLETON);
+                    bind(HttpCommandExecutorService.class).to(
+                        SuccessReportingHttpCommandExecutorService.class).in(Scopes.SINGLETON);
+                }
+            }));
+    }
+}
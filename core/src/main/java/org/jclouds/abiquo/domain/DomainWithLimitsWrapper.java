@@ -105,91 +105,115 @@ public abstract class DomainWithLimitsWrapper<T extends SingleResourceWithLimits
 
     public void setCpuCountHardLimit(final int cpuCountHardLimit)
     {
+        markDirty("cpuCountHardLimit", target.getCpuCountHardLimit(), cpuCountHardLimit);
         target.setCpuCountHardLimit(cpuCountHardLimit);
     }
 
     public void setCpuCountLimits(final int softLimit, final int hardLimit)
     {
+        markDirty("cpuCountSoftLimit", target.getCpuCountSoftLimit(), softLimit);
+        markDirty("cpuCountHardLimit", target.getCpuCountHardLimit(), hardLimit);
         target.setCpuCountLimits(softLimit, hardLimit);
     }
 
     public void setCpuCountSoftLimit(final int cpuCountSoftLimit)
     {
+        markDirty("cpuCountSoftLimit", target.getCpuCountSoftLimit(), cpuCountSoftLimit);
         target.setCpuCountSoftLimit(cpuCountSoftLimit);
     }
 
     public void setHdHardLimitInMb(final long hdHardLimitInMb)
     {
+        markDirty("hdHardLimitInMb", target.getHdHardLimitInMb(), hdHardLimitInMb);
         target.setHdHardLimitInMb(hdHardLimitInMb);
     }
 
     public void setHdLimitsInMb(final long softLimit, final long hardLimit)
     {
+        markDirty("hdSoftLimitInMb", target.getHdSoftLimitInMb(), softLimit);
+        markDirty("hdHardLimitInMb", target.getHdHardLimitInMb(), hardLimit);
         target.setHdLimitsInMb(softLimit, hardLimit);
     }
 
     public void setHdSoftLimitInMb(final long hdSoftLimitInMb)
     {
+        markDirty("hdSoftLimitInMb", target.getHdSoftLimitInMb(), hdSoftLimitInMb);
         target.setHdSoftLimitInMb(hdSoftLimitInMb);
     }
 
     public void setPublicIPLimits(final long softLimit, final long hardLimit)
     {
+        markDirty("publicIpsSoft", target.getPublicIpsSoft(), softLimit);
+        markDirty("publicIpsHard", target.getPublicIpsHard(), hardLimit);
         target.setPublicIPLimits(softLimit, hardLimit);
     }
 
     public void setPublicIpsHard(final long publicIpsHard)
     {
+        markDirty("publicIpsHard", target.getPublicIpsHard(), publicIpsHard);
         target.setPublicIpsHard(publicIpsHard);
     }
 
     public void setPublicIpsSoft(final long publicIpsSoft)
     {
+        markDirty("publicIpsSoft", target.getPublicIpsSoft(), publicIpsSoft);
         target.setPublicIpsSoft(publicIpsSoft);
     }
 
     public void setRamHardLimitInMb(final int ramHardLimitInMb)
     {
+        markDirty("ramHardLimitInMb", target.getRamHardLimitInMb(), ramHardLimitInMb);
         target.setRamHardLimitInMb(ramHardLimitInMb);
     }
 
     public void setRamLimitsInMb(final int softLimit, final int hardLimit)
     {
+        markDirty("ramSoftLimitInMb", target.getRamSoftLimitInMb(), softLimit);
+        markDirty("ramHardLimitInMb", target.getRamHardLimitInMb(), hardLimit);
         target.setRamLimitsInMb(softLimit, hardLimit);
     }
 
     public void setRamSoftLimitInMb(final int ramSoftLimitInMb)
     {
+        markDirty("ramSoftLimitInMb", target.getRamSoftLimitInMb(), ramSoftLimitInMb);
         target.setRamSoftLimitInMb(ramSoftLimitInMb);
     }
 
     public void setStorageHard(final long storageHard)
     {
+        markDirty("storageHard", target.getStorageHard(), storageHard);
         target.setStorageHard(storageHard);
     }
 
     public void setStorageLimits(final long softLimit, final long hardLimit)
     {
+        markDirty("storageSoft", target.getStorageSoft(), softLimit);
+        markDirty("storageHard", target.getStorageHard(), hardLimit);
         target.setStorageLimits(softLimit, hardLimit);
     }
 
     public void setStorageSoft(final long storageSoft)
     {
+        markDirty("storageSoft", target.getStorageSoft(), storageSoft);
         target.setStorageSoft(storageSoft);
     }
 
     public void setVlansHard(final long vlansHard)
     {
+        markDirty("vlansHard", target.getVlansHard(), vlansHard);
         target.setVlansHard(vlansHard);
     }
 
     public void setVlansLimits(final long softLimit, final long hardLimit)
     {
+        markDirty("vlansSoft", target.getVlansSoft(), softLimit);
+        markDirty("vlansHard", target.getVlansHard(), hardLimit);
         target.setVlansLimits(softLimit, hardLimit);
     }
 
     public void setVlansSoft(final long vlansSoft)
     {
+        markDirty("vlansSoft", target.getVlansSoft(), vlansSoft);
         target.setVlansSoft(vlansSoft);
     }
 }
@@ -21,7 +21,6 @@ package org.jclouds.abiquo.domain;
 
 import static com.google.common.collect.Iterables.filter;
 
-import java.util.Collections;
 import java.util.List;
 
 import org.jclouds.abiquo.AbiquoApi;
@@ -58,17 +57,15 @@ public abstract class DomainWithTasksWrapper<T extends SingleResourceTransportDt
         TasksDto result = context.getApi().getTaskApi().listTasks(target);
         List<AsyncTask> tasks = wrap(context, AsyncTask.class, result.getCollection());
 
-        // Return the most recent task first
-        Collections.sort(tasks, new Ordering<AsyncTask>()
+        // Return the most recent task first. Wrapped lists may be read-only, so sort a copy
+        return new Ordering<AsyncTask>()
         {
             @Override
             public int compare(final AsyncTask left, final AsyncTask right)
             {
                 return Longs.compare(left.getTimestamp(), right.getTimestamp());
             }
-        }.reverse());
-
-        return tasks;
+        }.reverse().sortedCopy(tasks);
     }
 
     public List<AsyncTask> listTasks(final Predicate<AsyncTask> filter)
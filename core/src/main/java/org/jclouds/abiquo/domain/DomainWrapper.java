@@ -20,19 +20,37 @@
 package org.jclouds.abiquo.domain;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Predicates.notNull;
 import static com.google.common.collect.Iterables.transform;
+import static org.jclouds.abiquo.reference.AbiquoConstants.LAZY_LISTINGS;
 
-import java.lang.reflect.Constructor;
 import java.net.URI;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.HttpHeaders;
 
 import org.jclouds.abiquo.AbiquoApi;
 import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.exception.AbiquoException;
 import org.jclouds.abiquo.domain.exception.WrapperException;
 import org.jclouds.abiquo.domain.task.AsyncTask;
-import org.jclouds.abiquo.domain.util.LinkUtils;
+import org.jclouds.abiquo.domain.util.IdentityMap;
+import org.jclouds.abiquo.domain.util.LazyWrappingList;
+import org.jclouds.abiquo.domain.util.LinkIndex;
+import org.jclouds.abiquo.domain.util.ParentCache;
+import org.jclouds.abiquo.domain.util.UpdateCoalescer;
+import org.jclouds.abiquo.functions.ParseXMLCollectionWithStAX;
 import org.jclouds.abiquo.reference.ValidationErrors;
+import org.jclouds.abiquo.rest.internal.ExtendedUtils;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.http.options.HttpRequestOptions;
 import org.jclouds.rest.RestContext;
 
 import com.abiquo.model.rest.RESTLink;
@@ -41,7 +59,17 @@ import com.abiquo.model.transport.SingleResourceTransportDto;
 import com.abiquo.model.transport.WrapperDto;
 import com.abiquo.server.core.task.TaskDto;
 import com.google.common.base.Function;
+import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
 
 /**
  * This class is used to decorate transport objects with high level functionality.
@@ -51,11 +79,30 @@ import com.google.common.collect.Lists;
  */
 public abstract class DomainWrapper<T extends SingleResourceTransportDto>
 {
+    /** Status code of the conditional requests whose precondition failed. */
+    private static final int PRECONDITION_FAILED = 412;
+
     /** The rest context. */
     protected RestContext<AbiquoApi, AbiquoAsyncApi> context;
 
-    /** The wrapped object. */
-    protected T target;
+    /**
+     * The wrapped object. It is replaced from the I/O threads when the asynchronous operations
+     * complete, so changes must be visible to the thread that waits for them.
+     */
+    protected volatile T target;
+
+    /** Index of the links of the wrapped object. */
+    private volatile LinkIndex linkIndex;
+
+    /** The fields modified since the wrapped object was last read from or written to the server. */
+    private final Set<String> dirtyFields = Collections
+        .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /** The number of times the wrapped object has been marked as modified as a whole. */
+    private final AtomicInteger modifications = new AtomicInteger();
+
+    /** The version of the wrapped object returned by the last request that read it. */
+    private volatile String etag;
 
     protected DomainWrapper(final RestContext<AbiquoApi, AbiquoAsyncApi> context,
         final T target)
@@ -72,7 +119,7 @@ public abstract class DomainWrapper<T extends SingleResourceTransportDto>
      */
     public URI getURI()
     {
-        RESTLink link = LinkUtils.getSelfLink(target);
+        RESTLink link = getLinkIndex().getSelfLink();
         return link == null ? null : URI.create(link.getHref());
     }
 
@@ -84,6 +131,268 @@ public abstract class DomainWrapper<T extends SingleResourceTransportDto>
         return target;
     }
 
+    /**
+     * Checks if the wrapped object has been modified since it was last read from or written to the
+     * server.
+     * <p>
+     * Only the changes made through the methods of the wrapper are tracked. Changes made directly
+     * to the object returned by {@link #unwrap()} are not, unless {@link #markModified()} is
+     * called.
+     * 
+     * @return Boolean indicating if there are changes that have not been sent to the server.
+     */
+    public boolean isDirty()
+    {
+        return modifications.get() > 0 || !dirtyFields.isEmpty();
+    }
+
+    /**
+     * Marks the wrapped object as modified, so the next update sends it to the server even if no
+     * field has been modified through the methods of the wrapper.
+     * <p>
+     * Call it after modifying the object returned by {@link #unwrap()}. Coalesced updates only
+     * send the fields modified through the methods of the wrapper.
+     */
+    public void markModified()
+    {
+        modifications.incrementAndGet();
+    }
+
+    /**
+     * Get the names of the fields modified since the wrapped object was last read from or written
+     * to the server.
+     * 
+     * @return The names of the modified fields.
+     */
+    public Set<String> getDirtyFields()
+    {
+        return ImmutableSet.copyOf(dirtyFields);
+    }
+
+    /**
+     * Marks the given field as modified.
+     * 
+     * @param field The name of the modified field.
+     */
+    protected void markDirty(final String field)
+    {
+        dirtyFields.add(field);
+    }
+
+    /**
+     * Marks the given field as modified if the new value is different from the current one.
+     * 
+     * @param field The name of the field.
+     * @param current The current value of the field.
+     * @param value The new value of the field.
+     */
+    protected void markDirty(final String field, final Object current, final Object value)
+    {
+        if (!Objects.equal(current, value))
+        {
+            markDirty(field);
+        }
+    }
+
+    /**
+     * Forgets the modified fields, once the wrapped object is in sync with the server.
+     */
+    protected void clearDirty()
+    {
+        dirtyFields.clear();
+        modifications.set(0);
+    }
+
+    /**
+     * Forgets the given modified fields, once they have been written, unless they have been
+     * modified again since.
+     * 
+     * @param written The written values of the fields, by name.
+     */
+    protected void clearDirty(final Map<String, Object> written)
+    {
+        Map<String, Object> current = UpdateCoalescer.readFields(target, written.keySet());
+        for (Map.Entry<String, Object> field : written.entrySet())
+        {
+            if (Objects.equal(current.get(field.getKey()), field.getValue()))
+            {
+                dirtyFields.remove(field.getKey());
+            }
+        }
+    }
+
+    /**
+     * Get the version of the wrapped object returned by the last request that read it.
+     * 
+     * @return The entity tag, or <code>null</code> if the version is unknown.
+     */
+    public String getETag()
+    {
+        return etag;
+    }
+
+    /**
+     * Remembers the version of the wrapped object returned in the given response.
+     * 
+     * @param response The response of the request that read the wrapped object.
+     */
+    protected void readETag(final HttpResponse response)
+    {
+        etag = response == null ? null : response.getFirstHeaderOrNull(HttpHeaders.ETAG);
+    }
+
+    /**
+     * Forgets the version of the wrapped object, once it has been modified.
+     */
+    protected void clearETag()
+    {
+        etag = null;
+    }
+
+    /**
+     * Checks if the given exception was caused by a conditional request whose precondition failed,
+     * because the resource was modified since it was read.
+     * 
+     * @param ex The exception to check.
+     * @return Boolean indicating if the precondition of the request failed.
+     */
+    protected static boolean isPreconditionFailed(final Throwable ex)
+    {
+        for (Throwable cause : Throwables.getCausalChain(ex))
+        {
+            if (cause instanceof AbiquoException)
+            {
+                return ((AbiquoException) cause).getHttpStatusCode() == PRECONDITION_FAILED;
+            }
+            if (cause instanceof HttpResponseException)
+            {
+                HttpResponse response = ((HttpResponseException) cause).getResponse();
+                return response != null && response.getStatusCode() == PRECONDITION_FAILED;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a future that forgets the modified fields and the version of the wrapped object when
+     * the given write of the whole object completes.
+     * <p>
+     * Only the changes made before the write was sent are forgotten. Fields modified again while
+     * the write was pending are kept, and so is any later call to {@link #markModified()}.
+     * 
+     * @param future The future result of the write.
+     * @param written The values of the modified fields when the write was sent, by name.
+     * @param modified The number of modifications of the whole object when the write was sent.
+     * @return The future result of the write.
+     */
+    protected <V> ListenableFuture<V> clearDirtyOnSuccess(final ListenableFuture<V> future,
+        final Map<String, Object> written, final int modified)
+    {
+        return Futures.transform(future, new Function<V, V>()
+        {
+            @Override
+            public V apply(final V input)
+            {
+                clearDirty(written);
+                modifications.compareAndSet(modified, 0);
+                clearETag();
+                return input;
+            }
+        });
+    }
+
+    /**
+     * Get the number of times the wrapped object has been marked as modified as a whole since it
+     * was last read from or written to the server.
+     * 
+     * @see #markModified()
+     */
+    protected int getModifications()
+    {
+        return modifications.get();
+    }
+
+    /**
+     * Sends the modified fields in the next coalesced write of this resource.
+     * <p>
+     * When the write completes, only the fields sent by this call are forgotten, and only if they
+     * have not been modified again while the write was pending.
+     * 
+     * @param writer The function that writes the merged transport object.
+     * @return The future result of the merged write.
+     * @see UpdateCoalescer
+     */
+    protected <R> ListenableFuture<R> updateCoalesced(
+        final Function< ? super T, ListenableFuture<R>> writer)
+    {
+        RESTLink link = getLinkIndex().getSelfLink();
+        UpdateCoalescer coalescer =
+            context.getUtils().getInjector().getInstance(UpdateCoalescer.class);
+        final Map<String, Object> submitted =
+            UpdateCoalescer.readFields(target, getDirtyFields());
+
+        return Futures.transform(coalescer.submit(link == null ? null : link.getHref(), target,
+            submitted.keySet(), writer), new Function<R, R>()
+        {
+            @Override
+            public R apply(final R input)
+            {
+                clearDirty(submitted);
+                clearETag();
+                return input;
+            }
+        });
+    }
+
+    /**
+     * Get the index of the links of the wrapped object.
+     * <p>
+     * The index is built the first time it is used, and again if the wrapped object or its link
+     * list are replaced, or after {@link #invalidateLinkIndex()} is called.
+     */
+    protected LinkIndex getLinkIndex()
+    {
+        LinkIndex index = linkIndex;
+        if (index == null || !index.isValidFor(target))
+        {
+            index = new LinkIndex(target);
+            linkIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Discards the index of the links of the wrapped object.
+     * <p>
+     * Must be called after links are added to or removed from the link list of the wrapped object.
+     */
+    protected void invalidateLinkIndex()
+    {
+        linkIndex = null;
+    }
+
+    /**
+     * Get the first link of the wrapped object with the given rel.
+     * 
+     * @param rel The rel of the link.
+     * @return The link or <code>null</code> if there is no link with the given rel.
+     */
+    protected RESTLink searchLink(final String rel)
+    {
+        return getLinkIndex().searchLink(rel);
+    }
+
+    /**
+     * Read the ID of the resource pointed by the first link with the given rel.
+     * 
+     * @param rel The rel of the link.
+     * @return The ID or <code>null</code> if there is no link with the given rel.
+     */
+    protected Integer getIdFromLink(final String rel)
+    {
+        return getLinkIndex().getIdFromLink(rel);
+    }
+
     /**
      * Read the ID of the parent resource from the given link.
      * 
@@ -92,11 +401,66 @@ public abstract class DomainWrapper<T extends SingleResourceTransportDto>
      */
     protected Integer getParentId(final String parentLinkRel)
     {
-        return target.getIdFromLink(parentLinkRel);
+        return getIdFromLink(parentLinkRel);
+    }
+
+    /**
+     * Get the parent resource pointed by the link with the given rel.
+     * <p>
+     * The parent is retrieved from the {@link ParentCache}, so children of the same parent do not
+     * retrieve it again while it is cached.
+     * 
+     * @param parentLinkRel The rel of the link to the parent resource.
+     * @param type The type of the parent resource.
+     * @param loader The function that retrieves the parent resource from the API.
+     * @return The parent resource.
+     */
+    protected <P extends SingleResourceTransportDto> P getParent(final String parentLinkRel,
+        final Class<P> type, final Supplier<P> loader)
+    {
+        RESTLink link = searchLink(parentLinkRel);
+        ParentCache cache = context.getUtils().getInjector().getInstance(ParentCache.class);
+        return cache.get(link == null ? null : link.getHref(), type, loader);
+    }
+
+    /**
+     * Removes this resource from the {@link ParentCache}, so its children do not see stale data.
+     * <p>
+     * Must be called after the resource is updated or deleted.
+     */
+    protected void invalidateParentCache()
+    {
+        RESTLink link = getLinkIndex().getSelfLink();
+        if (link != null)
+        {
+            ParentCache cache = context.getUtils().getInjector().getInstance(ParentCache.class);
+            cache.invalidate(link.getHref());
+        }
+    }
+
+    /**
+     * Build a link to the child collection with the given rel, using the given media type.
+     * 
+     * @param rel The rel of the link to the collection.
+     * @param mediaType The media type of the collection.
+     * @return The link to the collection.
+     */
+    protected RESTLink getCollectionLink(final String rel, final String mediaType)
+    {
+        RESTLink link =
+            checkNotNull(searchLink(rel), ValidationErrors.MISSING_REQUIRED_LINK + " " + rel);
+
+        RESTLink collection = new RESTLink(rel, link.getHref());
+        collection.setType(mediaType);
+        return collection;
     }
 
     /**
      * Wraps an object in the given wrapper class.
+     * <p>
+     * If the {@link IdentityMap} is enabled and the resource has already been wrapped, the
+     * existing domain object is updated with the given object and returned. Domain objects with
+     * unsaved changes are returned as they are, so the changes are not lost.
      */
     public static <T extends SingleResourceTransportDto, W extends DomainWrapper<T>> W wrap(
         final RestContext<AbiquoApi, AbiquoAsyncApi> context, final Class<W> wrapperClass,
@@ -107,15 +471,89 @@ public abstract class DomainWrapper<T extends SingleResourceTransportDto>
             return null;
         }
 
+        IdentityMap identityMap = identityMap(context);
+        if (identityMap == null)
+        {
+            return newWrapper(context, wrapperClass, target);
+        }
+
+        // Only build a new domain object if the resource has not been wrapped yet
+        String href = selfHref(target);
+        W canonical = identityMap.get(wrapperClass, href);
+        if (canonical == null)
+        {
+            canonical = identityMap.get(href, newWrapper(context, wrapperClass, target));
+        }
+
+        DomainWrapper<T> existing = canonical;
+        if (existing.target != target && !existing.isDirty())
+        {
+            // Keep the latest data in the existing domain object, unless it has unsaved changes
+            existing.target = target;
+            existing.invalidateLinkIndex();
+            existing.clearETag();
+        }
+        return canonical;
+    }
+
+    /**
+     * Wraps an object read with the given response, remembering the version of the object
+     * returned in it.
+     * <p>
+     * The version is not remembered if an existing domain object with unsaved changes is
+     * returned, since it keeps the object it was modified from.
+     * 
+     * @see #wrap(RestContext, Class, SingleResourceTransportDto)
+     */
+    public static <T extends SingleResourceTransportDto, W extends DomainWrapper<T>> W wrap(
+        final RestContext<AbiquoApi, AbiquoAsyncApi> context, final Class<W> wrapperClass,
+        final T target, final HttpResponse response)
+    {
+        W wrapper = wrap(context, wrapperClass, target);
+        if (wrapper != null && wrapper.target == target)
+        {
+            wrapper.readETag(response);
+        }
+        return wrapper;
+    }
+
+    private static String selfHref(final SingleResourceTransportDto target)
+    {
+        // The same link the LinkIndex considers the self link
+        RESTLink link = target.searchLink("edit");
+        if (link == null)
+        {
+            link = target.searchLink("self");
+        }
+        return link == null ? null : link.getHref();
+    }
+
+    private static IdentityMap identityMap(final RestContext<AbiquoApi, AbiquoAsyncApi> context)
+    {
+        // The utils may not be available in contexts built for testing purposes
+        if (context.getUtils() == null || context.getUtils().getInjector() == null)
+        {
+            return null;
+        }
+
+        IdentityMap identityMap = context.getUtils().getInjector().getInstance(IdentityMap.class);
+        return identityMap.isEnabled() ? identityMap : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends SingleResourceTransportDto, W extends DomainWrapper<T>> W newWrapper(
+        final RestContext<AbiquoApi, AbiquoAsyncApi> context, final Class<W> wrapperClass,
+        final T target)
+    {
         try
         {
-            Constructor<W> cons =
-                wrapperClass.getDeclaredConstructor(RestContext.class, target.getClass());
-            if (!cons.isAccessible())
-            {
-                cons.setAccessible(true);
-            }
-            return cons.newInstance(context, target);
+            WrapperFactory<T, W> factory =
+                WrapperFactories.get(wrapperClass, (Class<T>) target.getClass());
+            return factory.create(context, target);
+        }
+        catch (WrapperException ex)
+        {
+            throw ex;
         }
         catch (Exception ex)
         {
@@ -125,6 +563,9 @@ public abstract class DomainWrapper<T extends SingleResourceTransportDto>
 
     /**
      * Wrap a collection of objects to the given wrapper class.
+     * <p>
+     * If lazy listings are enabled, the returned list is a read-only {@link LazyWrappingList} that
+     * wraps each object the first time it is accessed.
      */
     public static <T extends SingleResourceTransportDto, W extends DomainWrapper<T>> List<W> wrap(
         final RestContext<AbiquoApi, AbiquoAsyncApi> context, final Class<W> wrapperClass,
@@ -135,6 +576,11 @@ public abstract class DomainWrapper<T extends SingleResourceTransportDto>
             return null;
         }
 
+        if (lazyListings(context))
+        {
+            return new LazyWrappingList<T, W>(context, wrapperClass, targets);
+        }
+
         return Lists.newLinkedList(transform(targets, new Function<T, W>()
         {
             @Override
@@ -145,6 +591,61 @@ public abstract class DomainWrapper<T extends SingleResourceTransportDto>
         }));
     }
 
+    private static boolean lazyListings(final RestContext<AbiquoApi, AbiquoAsyncApi> context)
+    {
+        // The utils may not be available in contexts built for testing purposes
+        if (context.getUtils() == null || context.getUtils().getInjector() == null)
+        {
+            return false;
+        }
+
+        return Boolean.valueOf(context.getUtils().getInjector()
+            .getInstance(Key.get(String.class, Names.named(LAZY_LISTINGS))));
+    }
+
+    /**
+     * Read the collection in the given link element by element, wrapping each one in the given
+     * wrapper class and handing it to the consumer as soon as it has been read.
+     * <p>
+     * Unlike listing methods, the whole collection is never kept in memory, so this is the
+     * preferred way to process big collections.
+     * 
+     * @param link The link to the collection. Its type must be the collection media type.
+     * @param options The query options to use, or <code>null</code>.
+     * @return The number of elements processed.
+     */
+    public static <T extends SingleResourceTransportDto, W extends DomainWrapper<T>> int stream(
+        final RestContext<AbiquoApi, AbiquoAsyncApi> context, final Class<W> wrapperClass,
+        final Class<T> elementType, final RESTLink link, final HttpRequestOptions options,
+        final Function< ? super W, ? > consumer)
+    {
+        checkNotNull(link, ValidationErrors.MISSING_REQUIRED_LINK);
+        checkNotNull(consumer, "consumer");
+
+        ExtendedUtils utils = (ExtendedUtils) context.getUtils();
+        HttpResponse response =
+            options == null ? utils.getAbiquoHttpClient().get(link) : utils
+                .getAbiquoHttpClient().get(link, options);
+
+        if (response == null)
+        {
+            return 0;
+        }
+
+        ParseXMLCollectionWithStAX parser =
+            utils.getInjector().getInstance(ParseXMLCollectionWithStAX.class);
+
+        return parser.apply(response, elementType, new Function<T, Void>()
+        {
+            @Override
+            public Void apply(final T input)
+            {
+                consumer.apply(wrap(context, wrapperClass, input));
+                return null;
+            }
+        });
+    }
+
     /**
      * Unwrap a collection of objects.
      */
@@ -175,6 +676,7 @@ public abstract class DomainWrapper<T extends SingleResourceTransportDto>
         if ((parent = target.searchLink(targetLinkRel)) == null)
         {
             target.addLink(new RESTLink(targetLinkRel, source.searchLink(sourceLinkRel).getHref()));
+            invalidateLinkIndex();
         }
         // Replace
         else
@@ -222,20 +724,115 @@ public abstract class DomainWrapper<T extends SingleResourceTransportDto>
      */
     protected AsyncTask[] getTasks(final AcceptedRequestDto<String> acceptedRequest)
     {
-        List<AsyncTask> tasks = new ArrayList<AsyncTask>();
+        // Request all the tasks at the same time instead of waiting for each one in turn
+        try
+        {
+            return getTasksAsync(Futures.immediateFuture(acceptedRequest)).get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(ex);
+        }
+        catch (ExecutionException ex)
+        {
+            throw Throwables.propagate(ex.getCause());
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #getTask(AcceptedRequestDto)}.
+     * <p>
+     * The task is retrieved with the async api once the accepted request is available, so no
+     * thread is blocked while waiting for the responses.
+     * 
+     * @param acceptedRequest The future accepted request dto.
+     * @return The future async task. Its value is <code>null</code> if the operation completed
+     *         synchronously.
+     */
+    protected ListenableFuture<AsyncTask> getTaskAsync(
+        final ListenableFuture<AcceptedRequestDto<String>> acceptedRequest)
+    {
+        return Futures.transform(acceptedRequest,
+            new AsyncFunction<AcceptedRequestDto<String>, AsyncTask>()
+            {
+                @Override
+                public ListenableFuture<AsyncTask> apply(final AcceptedRequestDto<String> input)
+                {
+                    if (input == null)
+                    {
+                        return Futures.immediateFuture(null);
+                    }
+
+                    RESTLink taskLink = input.getStatusLink();
+                    checkNotNull(taskLink, ValidationErrors.MISSING_REQUIRED_LINK
+                        + AsyncTask.class);
+
+                    return Futures.transform(context.getAsyncApi().getTaskApi()
+                        .getTask(taskLink), wrapTask());
+                }
+            });
+    }
 
-        for (RESTLink link : acceptedRequest.getLinks())
+    /**
+     * Asynchronous version of {@link #getTasks(AcceptedRequestDto)}.
+     * <p>
+     * All the tasks are retrieved concurrently with the async api once the accepted request is
+     * available.
+     * 
+     * @param acceptedRequest The future accepted request dto.
+     * @return The future async task array. It is empty if the operation completed synchronously.
+     */
+    protected ListenableFuture<AsyncTask[]> getTasksAsync(
+        final ListenableFuture<AcceptedRequestDto<String>> acceptedRequest)
+    {
+        return Futures.transform(acceptedRequest,
+            new AsyncFunction<AcceptedRequestDto<String>, AsyncTask[]>()
+            {
+                @Override
+                public ListenableFuture<AsyncTask[]> apply(final AcceptedRequestDto<String> input)
+                {
+                    if (input == null)
+                    {
+                        return Futures.immediateFuture(new AsyncTask[0]);
+                    }
+
+                    List<ListenableFuture<AsyncTask>> futures = Lists.newArrayList();
+                    for (RESTLink link : input.getLinks())
+                    {
+                        futures.add(Futures.transform(context.getAsyncApi().getTaskApi()
+                            .getTask(link), wrapTask()));
+                    }
+
+                    return Futures.transform(Futures.allAsList(futures),
+                        new Function<List<AsyncTask>, AsyncTask[]>()
+                        {
+                            @Override
+                            public AsyncTask[] apply(final List<AsyncTask> tasks)
+                            {
+                                // Untrackable tasks are null
+                                List<AsyncTask> trackable =
+                                    Lists.newArrayList(Iterables.filter(tasks, notNull()));
+                                return trackable.toArray(new AsyncTask[trackable.size()]);
+                            }
+                        });
+                }
+            });
+    }
+
+    /**
+     * Returns a function that wraps task transport objects.
+     */
+    private Function<TaskDto, AsyncTask> wrapTask()
+    {
+        return new Function<TaskDto, AsyncTask>()
         {
-            // This will return null on untrackable tasks
-            TaskDto task = context.getApi().getTaskApi().getTask(link);
-            if (task != null)
+            @Override
+            public AsyncTask apply(final TaskDto input)
             {
-                tasks.add(wrap(context, AsyncTask.class, task));
+                return wrap(context, AsyncTask.class, input);
             }
-        }
-
-        AsyncTask[] taskArr = new AsyncTask[tasks.size()];
-        return tasks.toArray(taskArr);
+        };
     }
 
 }
@@ -0,0 +1,45 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain;
+
+import java.util.Set;
+
+import com.abiquo.model.transport.SingleResourceTransportDto;
+
+/**
+ * Merges the changes of an update that was rejected because the resource had been modified since
+ * it was read.
+ * 
+ * @author Ignasi Barrera
+ */
+public interface MergeFunction<T extends SingleResourceTransportDto, W extends DomainWrapper<T>>
+{
+    /**
+     * Applies the rejected changes that must be kept to the latest version of the resource.
+     * <p>
+     * The changes must be made through the methods of the domain object, so they are tracked and
+     * sent when the update is retried.
+     * 
+     * @param latest The domain object, refreshed with the latest version of the resource.
+     * @param rejected The transport object with the rejected changes.
+     * @param fields The names of the rejected fields.
+     */
+    void merge(W latest, T rejected, Set<String> fields);
+}
@@ -0,0 +1,151 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.exception.WrapperException;
+import org.jclouds.rest.RestContext;
+
+import com.abiquo.model.transport.SingleResourceTransportDto;
+import com.google.common.collect.Maps;
+
+/**
+ * Registry of the factories used to wrap transport objects in domain objects.
+ * <p>
+ * Domain objects can register their own factory to avoid reflection. Otherwise the constructor
+ * that takes the context and the transport object is looked up once and reused.
+ * 
+ * @author Ignasi Barrera
+ */
+public class WrapperFactories
+{
+    /** Factories by wrapper class and transport object class. */
+    private static final ConcurrentMap<Class< ? >, ConcurrentMap<Class< ? >, WrapperFactory< ? , ? >>> FACTORIES =
+        Maps.newConcurrentMap();
+
+    /**
+     * Registers the factory used to wrap the given transport object type in the given wrapper
+     * class.
+     */
+    public static <T extends SingleResourceTransportDto, W extends DomainWrapper<T>> void register(
+        final Class<W> wrapperClass, final Class<T> targetClass, final WrapperFactory<T, W> factory)
+    {
+        checkNotNull(factory, "factory");
+        factories(checkNotNull(wrapperClass, "wrapperClass")).put(
+            checkNotNull(targetClass, "targetClass"), factory);
+    }
+
+    /**
+     * Get the factory used to wrap the given transport object type in the given wrapper class.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends SingleResourceTransportDto, W extends DomainWrapper<T>> WrapperFactory<T, W> get(
+        final Class<W> wrapperClass, final Class< ? extends T> targetClass)
+    {
+        ConcurrentMap<Class< ? >, WrapperFactory< ? , ? >> factories = factories(wrapperClass);
+        WrapperFactory< ? , ? > factory = factories.get(targetClass);
+
+        if (factory == null)
+        {
+            // Domain objects register their factories when initialized
+            initialize(wrapperClass);
+            factory = factories.get(targetClass);
+        }
+
+        if (factory == null)
+        {
+            WrapperFactory<T, W> reflective = reflectiveFactory(wrapperClass, targetClass);
+            factory = factories.putIfAbsent(targetClass, reflective);
+            if (factory == null)
+            {
+                factory = reflective;
+            }
+        }
+
+        return (WrapperFactory<T, W>) factory;
+    }
+
+    private static ConcurrentMap<Class< ? >, WrapperFactory< ? , ? >> factories(
+        final Class< ? > wrapperClass)
+    {
+        ConcurrentMap<Class< ? >, WrapperFactory< ? , ? >> factories = FACTORIES.get(wrapperClass);
+        if (factories == null)
+        {
+            ConcurrentMap<Class< ? >, WrapperFactory< ? , ? >> created = Maps.newConcurrentMap();
+            factories = FACTORIES.putIfAbsent(wrapperClass, created);
+            if (factories == null)
+            {
+                factories = created;
+            }
+        }
+        return factories;
+    }
+
+    private static void initialize(final Class< ? > wrapperClass)
+    {
+        try
+        {
+            Class.forName(wrapperClass.getName(), true, wrapperClass.getClassLoader());
+        }
+        catch (ClassNotFoundException ex)
+        {
+            // Can not happen, the class is already loaded
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static <T extends SingleResourceTransportDto, W extends DomainWrapper<T>> WrapperFactory<T, W> reflectiveFactory(
+        final Class<W> wrapperClass, final Class< ? extends T> targetClass)
+    {
+        final Constructor<W> constructor;
+        try
+        {
+            constructor = wrapperClass.getDeclaredConstructor(RestContext.class, targetClass);
+            constructor.setAccessible(true);
+        }
+        catch (NoSuchMethodException ex)
+        {
+            throw new IllegalArgumentException("there is no constructor in "
+                + wrapperClass.getName() + " to wrap " + targetClass.getName(), ex);
+        }
+
+        return new WrapperFactory<T, W>()
+        {
+            @Override
+            public W create(final RestContext<AbiquoApi, AbiquoAsyncApi> context, final T target)
+            {
+                try
+                {
+                    return constructor.newInstance(context, target);
+                }
+                catch (Exception ex)
+                {
+                    throw new WrapperException(wrapperClass, target, ex);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain;
+
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.rest.RestContext;
+
+import com.abiquo.model.transport.SingleResourceTransportDto;
+
+/**
+ * Creates the domain objects that wrap a given transport object type.
+ * 
+ * @author Ignasi Barrera
+ * @see WrapperFactories
+ */
+public interface WrapperFactory<T extends SingleResourceTransportDto, W extends DomainWrapper<T>>
+{
+    /**
+     * Wraps the given transport object.
+     * 
+     * @param context The rest context.
+     * @param target The transport object to wrap.
+     * @return The domain object.
+     */
+    W create(RestContext<AbiquoApi, AbiquoAsyncApi> context, T target);
+}
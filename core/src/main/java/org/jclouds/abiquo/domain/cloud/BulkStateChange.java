@@ -0,0 +1,189 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain.cloud;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.jclouds.abiquo.domain.task.AsyncTask;
+
+import com.abiquo.server.core.cloud.VirtualMachineState;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * The state change of several virtual machines at once.
+ * <p>
+ * Each virtual machine has its own result: the task that changes its state, or the error that
+ * prevented the change. The results are available once the corresponding request has been
+ * answered.
+ * 
+ * @author Ignasi Barrera
+ */
+public class BulkStateChange
+{
+    private final VirtualMachineState state;
+
+    /** The result of the request sent for each virtual machine. */
+    private final Map<VirtualMachine, ListenableFuture<AsyncTask>> results;
+
+    /** Completes when all the requests have been answered. */
+    private final ListenableFuture<List<AsyncTask>> completion;
+
+    public BulkStateChange(final VirtualMachineState state,
+        final Map<VirtualMachine, ? extends ListenableFuture<AsyncTask>> results)
+    {
+        super();
+        checkNotNull(results, "results");
+        this.state = checkNotNull(state, "state");
+        this.results =
+            Collections.unmodifiableMap(Maps
+                .<VirtualMachine, ListenableFuture<AsyncTask>> newLinkedHashMap(results));
+        this.completion = Futures.successfulAsList(this.results.values());
+    }
+
+    /**
+     * Get the state the virtual machines are changed to.
+     */
+    public VirtualMachineState getState()
+    {
+        return state;
+    }
+
+    /**
+     * Get the virtual machines whose state is changed.
+     */
+    public List<VirtualMachine> getVirtualMachines()
+    {
+        return ImmutableList.copyOf(results.keySet());
+    }
+
+    /**
+     * Checks if all the state change requests have been answered.
+     */
+    public boolean isDone()
+    {
+        return completion.isDone();
+    }
+
+    /**
+     * Waits until all the state change requests have been answered.
+     * 
+     * @return This state change, to chain calls.
+     */
+    public BulkStateChange await()
+    {
+        try
+        {
+            completion.get();
+            return this;
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(ex);
+        }
+        catch (ExecutionException ex)
+        {
+            // Failed requests do not fail the completion, so this only happens if it is cancelled
+            throw Throwables.propagate(ex.getCause());
+        }
+    }
+
+    /**
+     * Get the future result of the state change of the given virtual machine.
+     * 
+     * @param vm The virtual machine.
+     * @return The future task reference, or <code>null</code> if the virtual machine is not part
+     *         of this state change.
+     */
+    public ListenableFuture<AsyncTask> getResult(final VirtualMachine vm)
+    {
+        return results.get(vm);
+    }
+
+    /**
+     * Get the tasks of the virtual machines whose state change request has been accepted so far.
+     * <p>
+     * The task of a virtual machine is <code>null</code> if its state changed synchronously.
+     */
+    public Map<VirtualMachine, AsyncTask> getTasks()
+    {
+        Map<VirtualMachine, AsyncTask> tasks = Maps.newLinkedHashMap();
+        for (Map.Entry<VirtualMachine, ListenableFuture<AsyncTask>> entry : results.entrySet())
+        {
+            if (entry.getValue().isDone())
+            {
+                try
+                {
+                    AsyncTask task = Uninterruptibles.getUninterruptibly(entry.getValue());
+                    tasks.put(entry.getKey(), task);
+                }
+                catch (ExecutionException ex)
+                {
+                    // Reported in the failures
+                }
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Get the errors of the virtual machines whose state change request has failed so far.
+     */
+    public Map<VirtualMachine, Throwable> getFailures()
+    {
+        Map<VirtualMachine, Throwable> failures = Maps.newLinkedHashMap();
+        for (Map.Entry<VirtualMachine, ListenableFuture<AsyncTask>> entry : results.entrySet())
+        {
+            if (entry.getValue().isDone())
+            {
+                try
+                {
+                    Uninterruptibles.getUninterruptibly(entry.getValue());
+                }
+                catch (ExecutionException ex)
+                {
+                    failures.put(entry.getKey(), ex.getCause());
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Get the virtual machines whose state change request has been accepted so far.
+     * <p>
+     * These are the virtual machines that can be monitored until they reach the new state.
+     */
+    public List<VirtualMachine> getChanged()
+    {
+        return Lists.newArrayList(getTasks().keySet());
+    }
+}
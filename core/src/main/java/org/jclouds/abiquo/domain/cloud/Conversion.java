@@ -65,7 +65,7 @@ public class Conversion extends DomainWithTasksWrapper<ConversionDto>
     public void refresh()
     {
         RESTLink link =
-            checkNotNull(target.searchLink("edit"), ValidationErrors.MISSING_REQUIRED_LINK + "edit");
+            checkNotNull(searchLink("edit"), ValidationErrors.MISSING_REQUIRED_LINK + "edit");
 
         ExtendedUtils utils = (ExtendedUtils) context.getUtils();
         HttpResponse response = checkNotNull(utils.getAbiquoHttpClient().get(link), "conversion");
@@ -87,7 +87,7 @@ public class Conversion extends DomainWithTasksWrapper<ConversionDto>
     public VirtualMachineTemplate getVirtualMachineTemplate()
     {
         RESTLink link =
-            checkNotNull(target.searchLink(ParentLinkName.VIRTUAL_MACHINE_TEMPLATE),
+            checkNotNull(searchLink(ParentLinkName.VIRTUAL_MACHINE_TEMPLATE),
                 ValidationErrors.MISSING_REQUIRED_LINK + " "
                     + ParentLinkName.VIRTUAL_MACHINE_TEMPLATE);
 
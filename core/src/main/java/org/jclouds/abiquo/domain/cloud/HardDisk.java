@@ -90,7 +90,7 @@ public class HardDisk extends DomainWrapper<DiskManagementDto>
      */
     public VirtualDatacenter getVirtualDatacenter()
     {
-        Integer virtualDatacenterId = target.getIdFromLink(ParentLinkName.VIRTUAL_DATACENTER);
+        Integer virtualDatacenterId = getIdFromLink(ParentLinkName.VIRTUAL_DATACENTER);
         VirtualDatacenterDto dto =
             context.getApi().getCloudApi().getVirtualDatacenter(virtualDatacenterId);
         virtualDatacenter = wrap(context, VirtualDatacenter.class, dto);
@@ -149,7 +149,7 @@ public class HardDisk extends DomainWrapper<DiskManagementDto>
     public Integer getId()
     {
         // TODO: DiskManagementDto does not have an id field
-        return target.getEditLink() == null ? null : target.getIdFromLink("edit");
+        return target.getEditLink() == null ? null : getIdFromLink("edit");
     }
 
     /**
@@ -27,13 +27,17 @@ import java.util.List;
 import org.jclouds.abiquo.AbiquoApi;
 import org.jclouds.abiquo.AbiquoAsyncApi;
 import org.jclouds.abiquo.domain.DomainWrapper;
+import org.jclouds.abiquo.domain.WrapperFactories;
+import org.jclouds.abiquo.domain.WrapperFactory;
 import org.jclouds.abiquo.domain.cloud.options.VirtualMachineOptions;
 import org.jclouds.abiquo.domain.enterprise.Enterprise;
 import org.jclouds.abiquo.domain.task.AsyncTask;
+import org.jclouds.abiquo.events.cloud.VirtualApplianceDeletedEvent;
 import org.jclouds.abiquo.reference.ValidationErrors;
 import org.jclouds.abiquo.reference.rest.ParentLinkName;
 import org.jclouds.rest.RestContext;
 
+import com.abiquo.model.rest.RESTLink;
 import com.abiquo.model.transport.AcceptedRequestDto;
 import com.abiquo.server.core.cloud.VirtualApplianceDto;
 import com.abiquo.server.core.cloud.VirtualApplianceState;
@@ -43,9 +47,11 @@ import com.abiquo.server.core.cloud.VirtualMachineTaskDto;
 import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
 import com.abiquo.server.core.cloud.VirtualMachinesWithNodeExtendedDto;
 import com.abiquo.server.core.enterprise.EnterpriseDto;
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Represents a virtual appliance.
@@ -62,6 +68,22 @@ public class VirtualAppliance extends DomainWrapper<VirtualApplianceDto>
     /** The virtual datacenter where the virtual appliance belongs. */
     private VirtualDatacenter virtualDatacenter;
 
+    static
+    {
+        // Wrap without reflection, since it is listed in big collections
+        WrapperFactories.register(VirtualAppliance.class, VirtualApplianceDto.class,
+            new WrapperFactory<VirtualApplianceDto, VirtualAppliance>()
+            {
+                @Override
+                public VirtualAppliance create(
+                    final RestContext<AbiquoApi, AbiquoAsyncApi> context,
+                    final VirtualApplianceDto target)
+                {
+                    return new VirtualAppliance(context, target);
+                }
+            });
+    }
+
     /**
      * Constructor to be used only by the builder.
      */
@@ -78,8 +100,13 @@ public class VirtualAppliance extends DomainWrapper<VirtualApplianceDto>
      */
     public void delete()
     {
+        Integer id = target.getId();
         context.getApi().getCloudApi().deleteVirtualAppliance(target);
+        invalidateParentCache();
         target = null;
+
+        // Let the caches of resolved resources know that it no longer exists
+        context.getUtils().getEventBus().post(new VirtualApplianceDeletedEvent(id));
     }
 
     /**
@@ -98,6 +125,7 @@ public class VirtualAppliance extends DomainWrapper<VirtualApplianceDto>
     public void update()
     {
         target = context.getApi().getCloudApi().updateVirtualAppliance(target);
+        invalidateParentCache();
     }
 
     // Parent access
@@ -113,7 +141,7 @@ public class VirtualAppliance extends DomainWrapper<VirtualApplianceDto>
      */
     public VirtualDatacenter getVirtualDatacenter()
     {
-        Integer virtualDatacenterId = target.getIdFromLink(ParentLinkName.VIRTUAL_DATACENTER);
+        Integer virtualDatacenterId = getIdFromLink(ParentLinkName.VIRTUAL_DATACENTER);
         VirtualDatacenterDto dto =
             context.getApi().getCloudApi().getVirtualDatacenter(virtualDatacenterId);
         virtualDatacenter = wrap(context, VirtualDatacenter.class, dto);
@@ -131,7 +159,7 @@ public class VirtualAppliance extends DomainWrapper<VirtualApplianceDto>
      */
     public Enterprise getEnterprise()
     {
-        Integer enterpriseId = target.getIdFromLink(ParentLinkName.ENTERPRISE);
+        Integer enterpriseId = getIdFromLink(ParentLinkName.ENTERPRISE);
         EnterpriseDto dto = context.getApi().getEnterpriseApi().getEnterprise(enterpriseId);
         return wrap(context, Enterprise.class, dto);
     }
@@ -204,6 +232,27 @@ public class VirtualAppliance extends DomainWrapper<VirtualApplianceDto>
         return Iterables.getFirst(filter(listVirtualMachines(), filter), null);
     }
 
+    /**
+     * Reads the virtual machines in the virtual appliance one by one, handing each one to the
+     * given consumer as soon as it is read.
+     * <p>
+     * Use this method instead of the list ones when the virtual appliance has a large number of
+     * virtual machines, since they are not kept in memory.
+     * 
+     * @param options The options to use when reading the virtual machines.
+     * @param consumer The function that will process each virtual machine.
+     * @return The number of virtual machines processed.
+     */
+    public int streamVirtualMachines(final VirtualMachineOptions options,
+        final Function< ? super VirtualMachine, ? > consumer)
+    {
+        RESTLink link =
+            getCollectionLink("virtualmachines",
+                VirtualMachinesWithNodeExtendedDto.BASE_MEDIA_TYPE);
+        return stream(context, VirtualMachine.class, VirtualMachineWithNodeExtendedDto.class, link,
+            options, consumer);
+    }
+
     /**
      * Gets a concrete virtual machine in the virtual appliance.
      * 
@@ -308,6 +357,48 @@ public class VirtualAppliance extends DomainWrapper<VirtualApplianceDto>
 
     }
 
+    // Non-blocking actions
+
+    /**
+     * Non-blocking version of {@link #deploy()}.
+     */
+    public ListenableFuture<AsyncTask[]> deployAsync()
+    {
+        return deployAsync(false);
+    }
+
+    /**
+     * Non-blocking version of {@link #deploy(boolean)}.
+     */
+    public ListenableFuture<AsyncTask[]> deployAsync(final boolean forceEnterpriseSoftLimits)
+    {
+        VirtualMachineTaskDto force = new VirtualMachineTaskDto();
+        force.setForceEnterpriseSoftLimits(forceEnterpriseSoftLimits);
+
+        return getTasksAsync(context.getAsyncApi().getCloudApi()
+            .deployVirtualAppliance(unwrap(), force));
+    }
+
+    /**
+     * Non-blocking version of {@link #undeploy()}.
+     */
+    public ListenableFuture<AsyncTask[]> undeployAsync()
+    {
+        return undeployAsync(false);
+    }
+
+    /**
+     * Non-blocking version of {@link #undeploy(boolean)}.
+     */
+    public ListenableFuture<AsyncTask[]> undeployAsync(final boolean forceUndeploy)
+    {
+        VirtualMachineTaskDto force = new VirtualMachineTaskDto();
+        force.setForceUndeploy(forceUndeploy);
+
+        return getTasksAsync(context.getAsyncApi().getCloudApi()
+            .undeployVirtualAppliance(unwrap(), force));
+    }
+
     // Builder
 
     public static Builder builder(final RestContext<AbiquoApi, AbiquoAsyncApi> context,
@@ -27,6 +27,8 @@ import java.util.List;
 import org.jclouds.abiquo.AbiquoApi;
 import org.jclouds.abiquo.AbiquoAsyncApi;
 import org.jclouds.abiquo.domain.DomainWithLimitsWrapper;
+import org.jclouds.abiquo.domain.WrapperFactories;
+import org.jclouds.abiquo.domain.WrapperFactory;
 import org.jclouds.abiquo.domain.builder.LimitsBuilder;
 import org.jclouds.abiquo.domain.cloud.options.VirtualMachineTemplateOptions;
 import org.jclouds.abiquo.domain.enterprise.Enterprise;
@@ -38,6 +40,7 @@ import org.jclouds.abiquo.domain.network.PrivateIp;
 import org.jclouds.abiquo.domain.network.PrivateNetwork;
 import org.jclouds.abiquo.domain.network.PublicIp;
 import org.jclouds.abiquo.domain.network.options.IpOptions;
+import org.jclouds.abiquo.events.cloud.VirtualDatacenterDeletedEvent;
 import org.jclouds.abiquo.predicates.infrastructure.DatacenterPredicates;
 import org.jclouds.abiquo.reference.ValidationErrors;
 import org.jclouds.abiquo.reference.rest.ParentLinkName;
@@ -82,6 +85,22 @@ public class VirtualDatacenter extends DomainWithLimitsWrapper<VirtualDatacenter
     /** The dataceter where the virtual datacenter will be deployed. */
     private Datacenter datacenter;
 
+    static
+    {
+        // Wrap without reflection, since it is listed in big collections
+        WrapperFactories.register(VirtualDatacenter.class, VirtualDatacenterDto.class,
+            new WrapperFactory<VirtualDatacenterDto, VirtualDatacenter>()
+            {
+                @Override
+                public VirtualDatacenter create(
+                    final RestContext<AbiquoApi, AbiquoAsyncApi> context,
+                    final VirtualDatacenterDto target)
+                {
+                    return new VirtualDatacenter(context, target);
+                }
+            });
+    }
+
     /**
      * Constructor to be used only by the builder.
      */
@@ -103,8 +122,13 @@ public class VirtualDatacenter extends DomainWithLimitsWrapper<VirtualDatacenter
      */
     public void delete()
     {
+        Integer id = target.getId();
         context.getApi().getCloudApi().deleteVirtualDatacenter(target);
+        invalidateParentCache();
         target = null;
+
+        // Let the caches of resolved resources know that it no longer exists
+        context.getUtils().getEventBus().post(new VirtualDatacenterDeletedEvent(id));
     }
 
     /**
@@ -124,6 +148,9 @@ public class VirtualDatacenter extends DomainWithLimitsWrapper<VirtualDatacenter
 
     /**
      * Updates the virtual datacenter information when some of its properties have changed.
+     * <p>
+     * Nothing is sent to the server if the virtual datacenter has not been modified. Call
+     * {@link #markModified()} first if it has been modified through {@link #unwrap()}.
      * 
      * @see API: <a href=
      *      "http://community.abiquo.com/display/ABI20/Virtual+Datacenter+Resource#VirtualDatacenterResource-UpdatesanexistingVirtualDatacenter"
@@ -132,7 +159,14 @@ public class VirtualDatacenter extends DomainWithLimitsWrapper<VirtualDatacenter
      */
     public void update()
     {
+        if (!isDirty())
+        {
+            return;
+        }
+
         target = context.getApi().getCloudApi().updateVirtualDatacenter(target);
+        clearDirty();
+        invalidateParentCache();
     }
 
     // Parent access
@@ -148,7 +182,7 @@ public class VirtualDatacenter extends DomainWithLimitsWrapper<VirtualDatacenter
      */
     public Datacenter getDatacenter()
     {
-        Integer datacenterId = target.getIdFromLink(ParentLinkName.DATACENTER);
+        Integer datacenterId = getIdFromLink(ParentLinkName.DATACENTER);
         datacenter = getEnterprise().findAllowedDatacenter(DatacenterPredicates.id(datacenterId));
         return datacenter;
     }
@@ -164,7 +198,7 @@ public class VirtualDatacenter extends DomainWithLimitsWrapper<VirtualDatacenter
      */
     public Enterprise getEnterprise()
     {
-        Integer enterpriseId = target.getIdFromLink(ParentLinkName.ENTERPRISE);
+        Integer enterpriseId = getIdFromLink(ParentLinkName.ENTERPRISE);
         enterprise =
             wrap(context, Enterprise.class,
                 context.getApi().getEnterpriseApi().getEnterprise(enterpriseId));
@@ -662,11 +696,13 @@ public class VirtualDatacenter extends DomainWithLimitsWrapper<VirtualDatacenter
 
     public void setHypervisorType(final HypervisorType hypervisorType)
     {
+        markDirty("hypervisorType", target.getHypervisorType(), hypervisorType);
         target.setHypervisorType(hypervisorType);
     }
 
     public void setName(final String name)
     {
+        markDirty("name", target.getName(), name);
         target.setName(name);
     }
 
@@ -24,10 +24,15 @@ import static com.google.common.collect.Iterables.filter;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.jclouds.abiquo.AbiquoApi;
 import org.jclouds.abiquo.AbiquoAsyncApi;
 import org.jclouds.abiquo.domain.DomainWithTasksWrapper;
+import org.jclouds.abiquo.domain.MergeFunction;
+import org.jclouds.abiquo.domain.WrapperFactories;
+import org.jclouds.abiquo.domain.WrapperFactory;
 import org.jclouds.abiquo.domain.cloud.options.VirtualMachineOptions;
 import org.jclouds.abiquo.domain.enterprise.Enterprise;
 import org.jclouds.abiquo.domain.network.Ip;
@@ -35,6 +40,7 @@ import org.jclouds.abiquo.domain.network.Network;
 import org.jclouds.abiquo.domain.network.UnmanagedNetwork;
 import org.jclouds.abiquo.domain.task.AsyncTask;
 import org.jclouds.abiquo.domain.util.LinkUtils;
+import org.jclouds.abiquo.domain.util.UpdateCoalescer;
 import org.jclouds.abiquo.predicates.LinkPredicates;
 import org.jclouds.abiquo.reference.ValidationErrors;
 import org.jclouds.abiquo.reference.rest.ParentLinkName;
@@ -63,8 +69,11 @@ import com.abiquo.server.core.infrastructure.storage.VolumesManagementDto;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.base.Supplier;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.TypeLiteral;
 
 /**
@@ -77,12 +86,31 @@ import com.google.inject.TypeLiteral;
  */
 public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNodeExtendedDto>
 {
+    /** The maximum number of times an update is sent when it is rejected by a conflict. */
+    private static final int MAX_UPDATE_ATTEMPTS = 3;
+
     /** The virtual appliance where the virtual machine belongs. */
     private VirtualAppliance virtualAppliance;
 
     /** The virtual machine template of the virtual machine. */
     private VirtualMachineTemplate template;
 
+    static
+    {
+        // Wrap without reflection, since it is listed in big collections
+        WrapperFactories.register(VirtualMachine.class, VirtualMachineWithNodeExtendedDto.class,
+            new WrapperFactory<VirtualMachineWithNodeExtendedDto, VirtualMachine>()
+            {
+                @Override
+                public VirtualMachine create(
+                    final RestContext<AbiquoApi, AbiquoAsyncApi> context,
+                    final VirtualMachineWithNodeExtendedDto target)
+                {
+                    return new VirtualMachine(context, target);
+                }
+            });
+    }
+
     /**
      * Constructor to be used only by the builder.
      */
@@ -127,6 +155,7 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
 
         target =
             context.getApi().getCloudApi().createVirtualMachine(virtualAppliance.unwrap(), target);
+        clearDirty();
     }
 
     /**
@@ -134,6 +163,10 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
      * This is an asynchronous call. This method returns a
      * {@link org.jclouds.abiquo.domain.task.AsyncTask} object that keeps track of the task
      * completion. Please refer to the documentation for details.
+     * <p>
+     * Nothing is sent to the server, and no task is started, if the virtual machine has not been
+     * modified. Call {@link #markModified()} first if it has been modified through
+     * {@link #unwrap()}.
      * 
      * @see API: <a href=
      *      "http://community.abiquo.com/display/ABI20/VirtualMachineResource#VirtualMachineResource-Modifyavirtualmachine"
@@ -146,11 +179,62 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
      */
     public AsyncTask update()
     {
+        if (!isDirty())
+        {
+            return null;
+        }
+
         AcceptedRequestDto<String> taskRef =
-            context.getApi().getCloudApi().updateVirtualMachine(target);
+            getETag() == null ? context.getApi().getCloudApi().updateVirtualMachine(target)
+                : context.getApi().getCloudApi().updateVirtualMachine(target, updateOptions(null));
+        clearDirty();
+        clearETag();
         return taskRef == null ? null : getTask(taskRef);
     }
 
+    /**
+     * Update virtual machine information in the server with the data from this virtual machine,
+     * merging the changes if the virtual machine has been modified since it was read.
+     * <p>
+     * If the version of the virtual machine is known, the update is only applied if the virtual
+     * machine has not been modified since then. Otherwise the virtual machine is refreshed, the
+     * given function merges the rejected changes into it, and the update is retried.
+     * <p>
+     * The version is only known after the virtual machine has been read with {@link #refresh()}
+     * or found by id through the compute service. Virtual machines returned by the listings of
+     * the api have no version, and the version is forgotten after each successful update, so in
+     * those cases the update is not conditional and no changes are merged.
+     * 
+     * @param merge The function that merges the rejected changes.
+     * @return The task reference or <code>null</code> if the operation completed synchronously.
+     * @see #update()
+     */
+    public AsyncTask update(
+        final MergeFunction<VirtualMachineWithNodeExtendedDto, VirtualMachine> merge)
+    {
+        checkNotNull(merge, "merge");
+
+        for (int attempt = 1;; attempt++)
+        {
+            try
+            {
+                return update();
+            }
+            catch (RuntimeException ex)
+            {
+                if (attempt >= MAX_UPDATE_ATTEMPTS || !isPreconditionFailed(ex))
+                {
+                    throw ex;
+                }
+
+                VirtualMachineWithNodeExtendedDto rejected = target;
+                Set<String> fields = getDirtyFields();
+                refresh();
+                merge.merge(this, rejected, fields);
+            }
+        }
+    }
+
     /**
      * Update virtual machine information in the server with the data from this virtual machine.
      * This is an asynchronous call. This method returns a
@@ -170,8 +254,9 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
     public AsyncTask update(final boolean force)
     {
         AcceptedRequestDto<String> taskRef =
-            context.getApi().getCloudApi()
-                .updateVirtualMachine(target, VirtualMachineOptions.builder().force(force).build());
+            context.getApi().getCloudApi().updateVirtualMachine(target, updateOptions(force));
+        clearDirty();
+        clearETag();
         return taskRef == null ? null : getTask(taskRef);
     }
 
@@ -233,6 +318,9 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
                 TypeLiteral.get(VirtualMachineWithNodeExtendedDto.class));
 
         target = parser.apply(response);
+        invalidateLinkIndex();
+        readETag(response);
+        clearDirty();
     }
 
     // Parent access
@@ -248,18 +336,29 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
      */
     public VirtualAppliance getVirtualAppliance()
     {
-        RESTLink link =
-            checkNotNull(target.searchLink(ParentLinkName.VIRTUAL_APPLIANCE),
+        final RESTLink link =
+            checkNotNull(searchLink(ParentLinkName.VIRTUAL_APPLIANCE),
                 ValidationErrors.MISSING_REQUIRED_LINK + " " + ParentLinkName.VIRTUAL_APPLIANCE);
 
-        ExtendedUtils utils = (ExtendedUtils) context.getUtils();
-        HttpResponse response = utils.getAbiquoHttpClient().get(link);
+        VirtualApplianceDto dto =
+            getParent(ParentLinkName.VIRTUAL_APPLIANCE, VirtualApplianceDto.class,
+                new Supplier<VirtualApplianceDto>()
+                {
+                    @Override
+                    public VirtualApplianceDto get()
+                    {
+                        ExtendedUtils utils = (ExtendedUtils) context.getUtils();
+                        HttpResponse response = utils.getAbiquoHttpClient().get(link);
 
-        ParseXMLWithJAXB<VirtualApplianceDto> parser =
-            new ParseXMLWithJAXB<VirtualApplianceDto>(utils.getXml(),
-                TypeLiteral.get(VirtualApplianceDto.class));
+                        ParseXMLWithJAXB<VirtualApplianceDto> parser =
+                            new ParseXMLWithJAXB<VirtualApplianceDto>(utils.getXml(),
+                                TypeLiteral.get(VirtualApplianceDto.class));
 
-        return wrap(context, VirtualAppliance.class, parser.apply(response));
+                        return parser.apply(response);
+                    }
+                });
+
+        return wrap(context, VirtualAppliance.class, dto);
     }
 
     /**
@@ -273,9 +372,19 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
      */
     public VirtualDatacenter getVirtualDatacenter()
     {
-        Integer virtualDatacenterId = target.getIdFromLink(ParentLinkName.VIRTUAL_DATACENTER);
+        final Integer virtualDatacenterId =
+            getIdFromLink(ParentLinkName.VIRTUAL_DATACENTER);
         VirtualDatacenterDto dto =
-            context.getApi().getCloudApi().getVirtualDatacenter(virtualDatacenterId);
+            getParent(ParentLinkName.VIRTUAL_DATACENTER, VirtualDatacenterDto.class,
+                new Supplier<VirtualDatacenterDto>()
+                {
+                    @Override
+                    public VirtualDatacenterDto get()
+                    {
+                        return context.getApi().getCloudApi()
+                            .getVirtualDatacenter(virtualDatacenterId);
+                    }
+                });
         return wrap(context, VirtualDatacenter.class, dto);
     }
 
@@ -290,8 +399,16 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
      */
     public Enterprise getEnterprise()
     {
-        Integer enterpriseId = target.getIdFromLink(ParentLinkName.ENTERPRISE);
-        EnterpriseDto dto = context.getApi().getEnterpriseApi().getEnterprise(enterpriseId);
+        final Integer enterpriseId = getIdFromLink(ParentLinkName.ENTERPRISE);
+        EnterpriseDto dto =
+            getParent(ParentLinkName.ENTERPRISE, EnterpriseDto.class, new Supplier<EnterpriseDto>()
+            {
+                @Override
+                public EnterpriseDto get()
+                {
+                    return context.getApi().getEnterpriseApi().getEnterprise(enterpriseId);
+                }
+            });
         return wrap(context, Enterprise.class, dto);
     }
 
@@ -303,7 +420,15 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
     public VirtualMachineTemplate getTemplate()
     {
         VirtualMachineTemplateDto dto =
-            context.getApi().getCloudApi().getVirtualMachineTemplate(target);
+            getParent(ParentLinkName.VIRTUAL_MACHINE_TEMPLATE, VirtualMachineTemplateDto.class,
+                new Supplier<VirtualMachineTemplateDto>()
+                {
+                    @Override
+                    public VirtualMachineTemplateDto get()
+                    {
+                        return context.getApi().getCloudApi().getVirtualMachineTemplate(target);
+                    }
+                });
         return wrap(context, VirtualMachineTemplate.class, dto);
     }
 
@@ -419,7 +544,8 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
 
     public AsyncTask attachHardDisks(final HardDisk... hardDisks)
     {
-        List<HardDisk> expected = listAttachedHardDisks();
+        // The listing may be read-only
+        List<HardDisk> expected = Lists.newArrayList(listAttachedHardDisks());
         expected.addAll(Arrays.asList(hardDisks));
 
         HardDisk[] disks = new HardDisk[expected.size()];
@@ -435,7 +561,8 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
 
     public AsyncTask detachHardDisks(final HardDisk... hardDisks)
     {
-        List<HardDisk> expected = listAttachedHardDisks();
+        // The listing may be read-only
+        List<HardDisk> expected = Lists.newArrayList(listAttachedHardDisks());
         Iterables.removeIf(expected, hardDiskIdIn(hardDisks));
 
         HardDisk[] disks = new HardDisk[expected.size()];
@@ -451,7 +578,8 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
 
     public AsyncTask attachVolumes(final Volume... volumes)
     {
-        List<Volume> expected = listAttachedVolumes();
+        // The listing may be read-only
+        List<Volume> expected = Lists.newArrayList(listAttachedVolumes());
         expected.addAll(Arrays.asList(volumes));
 
         Volume[] vols = new Volume[expected.size()];
@@ -467,7 +595,8 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
 
     public AsyncTask detachVolumes(final Volume... volumes)
     {
-        List<Volume> expected = listAttachedVolumes();
+        // The listing may be read-only
+        List<Volume> expected = Lists.newArrayList(listAttachedVolumes());
         Iterables.removeIf(expected, volumeIdIn(volumes));
 
         Volume[] vols = new Volume[expected.size()];
@@ -524,7 +653,7 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
         final List<UnmanagedNetwork> unmanagetNetworks)
     {
         RESTLink configLink =
-            checkNotNull(target.searchLink(ParentLinkName.NETWORK_CONFIGURATIONS),
+            checkNotNull(searchLink(ParentLinkName.NETWORK_CONFIGURATIONS),
                 ValidationErrors.MISSING_REQUIRED_LINK + ParentLinkName.NETWORK_CONFIGURATIONS);
 
         // Remove the gateway configuration and the current nics
@@ -569,6 +698,8 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
                 + gatewayNetwork.getId()));
         }
 
+        // The links have been modified in place
+        invalidateLinkIndex();
         return update(true);
     }
 
@@ -604,14 +735,282 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
         DvdManagementDto dvd = new DvdManagementDto();
         RESTLink link = new RESTLink("image", "");
         dvd.addLink(link);
+        markDirty("dvd");
         target.setDvd(dvd);
     }
 
     public void detachDvd()
     {
+        markDirty("dvd", target.getDvd(), null);
         target.setDvd(null);
     }
 
+    // Non-blocking actions
+
+    /**
+     * Non-blocking version of {@link #save()}.
+     * <p>
+     * The virtual machine is updated with the created one when the future completes, so it should
+     * not be used until then.
+     * 
+     * @return The future virtual machine.
+     */
+    public ListenableFuture<VirtualMachine> saveAsync()
+    {
+        checkNotNull(template, ValidationErrors.NULL_RESOURCE + VirtualMachineTemplate.class);
+        checkNotNull(template.getId(), ValidationErrors.MISSING_REQUIRED_FIELD + " id in "
+            + VirtualMachineTemplate.class);
+
+        this.updateLink(target, ParentLinkName.VIRTUAL_MACHINE_TEMPLATE, template.unwrap(), "edit");
+
+        return Futures.transform(
+            context.getAsyncApi().getCloudApi()
+                .createVirtualMachine(virtualAppliance.unwrap(), target),
+            new Function<VirtualMachineWithNodeExtendedDto, VirtualMachine>()
+            {
+                @Override
+                public VirtualMachine apply(final VirtualMachineWithNodeExtendedDto input)
+                {
+                    target = input;
+                    clearDirty();
+                    return VirtualMachine.this;
+                }
+            });
+    }
+
+    /**
+     * Non-blocking version of {@link #delete()}.
+     */
+    public ListenableFuture<Void> deleteAsync()
+    {
+        return Futures.transform(context.getAsyncApi().getCloudApi().deleteVirtualMachine(target),
+            new Function<Void, Void>()
+            {
+                @Override
+                public Void apply(final Void input)
+                {
+                    target = null;
+                    return null;
+                }
+            });
+    }
+
+    /**
+     * Non-blocking version of {@link #update()}.
+     * 
+     * @return The future task reference. Its value is <code>null</code> if the operation
+     *         completed synchronously or the virtual machine has not been modified.
+     */
+    public ListenableFuture<AsyncTask> updateAsync()
+    {
+        if (!isDirty())
+        {
+            return Futures.immediateFuture(null);
+        }
+
+        Map<String, Object> written = UpdateCoalescer.readFields(target, getDirtyFields());
+        int modified = getModifications();
+
+        return getTaskAsync(clearDirtyOnSuccess(getETag() == null ? context.getAsyncApi()
+            .getCloudApi().updateVirtualMachine(target) : context.getAsyncApi().getCloudApi()
+            .updateVirtualMachine(target, updateOptions(null)), written, modified));
+    }
+
+    /**
+     * Non-blocking version of {@link #update(boolean)}.
+     * 
+     * @param force Force update.
+     * @return The future task reference. Its value is <code>null</code> if the operation
+     *         completed synchronously.
+     */
+    public ListenableFuture<AsyncTask> updateAsync(final boolean force)
+    {
+        Map<String, Object> written = UpdateCoalescer.readFields(target, getDirtyFields());
+        int modified = getModifications();
+
+        return getTaskAsync(clearDirtyOnSuccess(context.getAsyncApi().getCloudApi()
+            .updateVirtualMachine(target, updateOptions(force)), written, modified));
+    }
+
+    /**
+     * Builds the options of the update, making it conditional if the version of the virtual
+     * machine is known.
+     */
+    private VirtualMachineOptions updateOptions(final Boolean force)
+    {
+        return VirtualMachineOptions.builder().force(force).ifMatch(getETag()).build();
+    }
+
+    /**
+     * Coalescing version of {@link #updateAsync()}.
+     * <p>
+     * The changes are not sent right away. The coalesced updates of this virtual machine requested
+     * within the coalescing window, from this or any other object of the same virtual machine, are
+     * merged and sent in a single request. The last value set to each field wins.
+     * <p>
+     * Unlike {@link #updateAsync()}, the merged update is not conditional, even if the version of
+     * the virtual machine is known, since each merged update may have read a different version.
+     * 
+     * @return The future task reference of the merged update. Its value is <code>null</code> if
+     *         the operation completed synchronously or the virtual machine has not been modified.
+     */
+    public ListenableFuture<AsyncTask> updateCoalesced()
+    {
+        return updateCoalesced(
+            new Function<VirtualMachineWithNodeExtendedDto, ListenableFuture<AsyncTask>>()
+            {
+                @Override
+                public ListenableFuture<AsyncTask> apply(
+                    final VirtualMachineWithNodeExtendedDto input)
+                {
+                    return getTaskAsync(context.getAsyncApi().getCloudApi()
+                        .updateVirtualMachine(input));
+                }
+            });
+    }
+
+    /**
+     * Non-blocking version of {@link #changeState(VirtualMachineState)}.
+     * 
+     * @param state The new state of the virtual machine.
+     * @return The future task reference.
+     */
+    public ListenableFuture<AsyncTask> changeStateAsync(final VirtualMachineState state)
+    {
+        VirtualMachineStateDto dto = new VirtualMachineStateDto();
+        dto.setState(state);
+
+        return getTaskAsync(context.getAsyncApi().getCloudApi()
+            .changeVirtualMachineState(target, dto));
+    }
+
+    /**
+     * Non-blocking version of {@link #deploy()}.
+     */
+    public ListenableFuture<AsyncTask> deployAsync()
+    {
+        return deployAsync(false);
+    }
+
+    /**
+     * Non-blocking version of {@link #deploy(boolean)}.
+     */
+    public ListenableFuture<AsyncTask> deployAsync(final boolean forceEnterpriseSoftLimits)
+    {
+        VirtualMachineTaskDto force = new VirtualMachineTaskDto();
+        force.setForceEnterpriseSoftLimits(forceEnterpriseSoftLimits);
+
+        return getTaskAsync(context.getAsyncApi().getCloudApi()
+            .deployVirtualMachine(unwrap(), force));
+    }
+
+    /**
+     * Non-blocking version of {@link #undeploy()}.
+     */
+    public ListenableFuture<AsyncTask> undeployAsync()
+    {
+        return undeployAsync(false);
+    }
+
+    /**
+     * Non-blocking version of {@link #undeploy(boolean)}.
+     */
+    public ListenableFuture<AsyncTask> undeployAsync(final boolean forceUndeploy)
+    {
+        VirtualMachineTaskDto force = new VirtualMachineTaskDto();
+        force.setForceUndeploy(forceUndeploy);
+
+        return getTaskAsync(context.getAsyncApi().getCloudApi()
+            .undeployVirtualMachine(unwrap(), force));
+    }
+
+    /**
+     * Non-blocking version of {@link #reboot()}.
+     */
+    public ListenableFuture<AsyncTask> rebootAsync()
+    {
+        return getTaskAsync(context.getAsyncApi().getCloudApi().rebootVirtualMachine(unwrap()));
+    }
+
+    /**
+     * Non-blocking version of {@link #listAttachedHardDisks()}.
+     * <p>
+     * The virtual machine is not refreshed before listing the hard disks, so its links must be up
+     * to date.
+     * 
+     * @return The future hard disks attached to the virtual machine.
+     */
+    public ListenableFuture<List<HardDisk>> listAttachedHardDisksAsync()
+    {
+        return Futures.transform(
+            context.getAsyncApi().getCloudApi().listAttachedHardDisks(target),
+            new Function<DisksManagementDto, List<HardDisk>>()
+            {
+                @Override
+                public List<HardDisk> apply(final DisksManagementDto input)
+                {
+                    return wrap(context, HardDisk.class, input.getCollection());
+                }
+            });
+    }
+
+    /**
+     * Non-blocking version of {@link #listAttachedVolumes()}.
+     * <p>
+     * The virtual machine is not refreshed before listing the volumes, so its links must be up to
+     * date.
+     * 
+     * @return The future volumes attached to the virtual machine.
+     */
+    public ListenableFuture<List<Volume>> listAttachedVolumesAsync()
+    {
+        return Futures.transform(context.getAsyncApi().getCloudApi().listAttachedVolumes(target),
+            new Function<VolumesManagementDto, List<Volume>>()
+            {
+                @Override
+                public List<Volume> apply(final VolumesManagementDto input)
+                {
+                    return wrap(context, Volume.class, input.getCollection());
+                }
+            });
+    }
+
+    /**
+     * Non-blocking version of {@link #detachAllHardDisks()}.
+     */
+    public ListenableFuture<AsyncTask> detachAllHardDisksAsync()
+    {
+        return getTaskAsync(context.getAsyncApi().getCloudApi().detachAllHardDisks(target));
+    }
+
+    /**
+     * Non-blocking version of {@link #setHardDisks(HardDisk...)}.
+     */
+    public ListenableFuture<AsyncTask> setHardDisksAsync(final HardDisk... hardDisks)
+    {
+        return getTaskAsync(context.getAsyncApi().getCloudApi()
+            .replaceHardDisks(target, toHardDiskDto(hardDisks)));
+    }
+
+    /**
+     * Non-blocking version of {@link #detachAllVolumes()}.
+     */
+    public ListenableFuture<AsyncTask> detachAllVolumesAsync()
+    {
+        return getTaskAsync(context.getAsyncApi().getCloudApi().detachAllVolumes(target));
+    }
+
+    /**
+     * Non-blocking version of {@link #setVolumes(Boolean, Volume...)}.
+     */
+    public ListenableFuture<AsyncTask> setVolumesAsync(final Boolean forceSoftLimits,
+        final Volume... volumes)
+    {
+        return getTaskAsync(context.getAsyncApi().getCloudApi()
+            .replaceVolumes(target, VirtualMachineOptions.builder().force(forceSoftLimits).build(),
+                toVolumeDto(volumes)));
+    }
+
     // Builder
 
     public static Builder builder(final RestContext<AbiquoApi, AbiquoAsyncApi> context,
@@ -895,31 +1294,37 @@ public class VirtualMachine extends DomainWithTasksWrapper<VirtualMachineWithNod
 
     public void setCpu(final int cpu)
     {
+        markDirty("cpu", target.getCpu(), cpu);
         target.setCpu(cpu);
     }
 
     public void setDescription(final String description)
     {
+        markDirty("description", target.getDescription(), description);
         target.setDescription(description);
     }
 
     public void setNameLabel(final String nameLabel)
     {
+        markDirty("nodeName", target.getNodeName(), nameLabel);
         target.setNodeName(nameLabel);
     }
 
     public void setPassword(final String password)
     {
+        markDirty("password", target.getPassword(), password);
         target.setPassword(password);
     }
 
     public void setRam(final int ram)
     {
+        markDirty("ram", target.getRam(), ram);
         target.setRam(ram);
     }
 
     public void setKeymap(final String keymap)
     {
+        markDirty("keymap", target.getKeymap(), keymap);
         target.setKeymap(keymap);
     }
 
@@ -30,6 +30,8 @@ import java.util.regex.Pattern;
 import org.jclouds.abiquo.AbiquoApi;
 import org.jclouds.abiquo.AbiquoAsyncApi;
 import org.jclouds.abiquo.domain.DomainWrapper;
+import org.jclouds.abiquo.domain.WrapperFactories;
+import org.jclouds.abiquo.domain.WrapperFactory;
 import org.jclouds.abiquo.domain.cloud.options.ConversionOptions;
 import org.jclouds.abiquo.domain.config.Category;
 import org.jclouds.abiquo.domain.enterprise.Enterprise;
@@ -68,6 +70,22 @@ import com.google.inject.TypeLiteral;
  */
 public class VirtualMachineTemplate extends DomainWrapper<VirtualMachineTemplateDto>
 {
+    static
+    {
+        // Wrap without reflection, since it is listed in big collections
+        WrapperFactories.register(VirtualMachineTemplate.class, VirtualMachineTemplateDto.class,
+            new WrapperFactory<VirtualMachineTemplateDto, VirtualMachineTemplate>()
+            {
+                @Override
+                public VirtualMachineTemplate create(
+                    final RestContext<AbiquoApi, AbiquoAsyncApi> context,
+                    final VirtualMachineTemplateDto target)
+                {
+                    return new VirtualMachineTemplate(context, target);
+                }
+            });
+    }
+
     /**
      * Constructor to be used only by the builder.
      */
@@ -82,6 +100,7 @@ public class VirtualMachineTemplate extends DomainWrapper<VirtualMachineTemplate
     public void delete()
     {
         context.getApi().getVirtualMachineTemplateApi().deleteVirtualMachineTemplate(target);
+        invalidateParentCache();
         target = null;
     }
 
@@ -89,6 +108,7 @@ public class VirtualMachineTemplate extends DomainWrapper<VirtualMachineTemplate
     {
         target =
             context.getApi().getVirtualMachineTemplateApi().updateVirtualMachineTemplate(target);
+        invalidateParentCache();
     }
 
     /**
@@ -169,7 +189,7 @@ public class VirtualMachineTemplate extends DomainWrapper<VirtualMachineTemplate
      */
     public Category getCategory()
     {
-        Integer categoryId = target.getIdFromLink(ParentLinkName.CATEGORY);
+        Integer categoryId = getIdFromLink(ParentLinkName.CATEGORY);
         CategoryDto category = context.getApi().getConfigApi().getCategory(categoryId);
         return wrap(context, Category.class, category);
     }
@@ -186,7 +206,7 @@ public class VirtualMachineTemplate extends DomainWrapper<VirtualMachineTemplate
         {
             ExtendedUtils utils = (ExtendedUtils) context.getUtils();
             HttpResponse rp =
-                checkNotNull(utils.getAbiquoHttpClient().get(target.searchLink("volume")), "volume");
+                checkNotNull(utils.getAbiquoHttpClient().get(searchLink("volume")), "volume");
 
             ParseXMLWithJAXB<VolumeManagementDto> parser =
                 new ParseXMLWithJAXB<VolumeManagementDto>(utils.getXml(),
@@ -200,7 +220,7 @@ public class VirtualMachineTemplate extends DomainWrapper<VirtualMachineTemplate
 
     public boolean isPersistent()
     {
-        return target.searchLink("volume") != null;
+        return searchLink("volume") != null;
     }
 
     // Parent access
@@ -213,7 +233,7 @@ public class VirtualMachineTemplate extends DomainWrapper<VirtualMachineTemplate
      */
     public Enterprise getEnterprise()
     {
-        Integer enterpriseId = target.getIdFromLink(ParentLinkName.ENTERPRISE);
+        Integer enterpriseId = getIdFromLink(ParentLinkName.ENTERPRISE);
         return wrap(context, Enterprise.class,
             context.getApi().getEnterpriseApi().getEnterprise(enterpriseId));
     }
@@ -226,7 +246,7 @@ public class VirtualMachineTemplate extends DomainWrapper<VirtualMachineTemplate
      */
     public Datacenter getDatacenter()
     {
-        Integer repositoryId = target.getIdFromLink(ParentLinkName.DATACENTER_REPOSITORY);
+        Integer repositoryId = getIdFromLink(ParentLinkName.DATACENTER_REPOSITORY);
         return wrap(context, Datacenter.class, context.getApi().getInfrastructureApi()
             .getDatacenter(repositoryId));
     }
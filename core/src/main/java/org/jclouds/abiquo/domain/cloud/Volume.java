@@ -37,6 +37,9 @@ import com.abiquo.model.transport.AcceptedRequestDto;
 import com.abiquo.server.core.cloud.VirtualDatacenterDto;
 import com.abiquo.server.core.infrastructure.storage.TierDto;
 import com.abiquo.server.core.infrastructure.storage.VolumeManagementDto;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Adds high level functionality to {@link VolumeManagementDto}.
@@ -94,7 +97,7 @@ public class Volume extends DomainWrapper<VolumeManagementDto>
      */
     public VirtualDatacenter getVirtualDatacenter()
     {
-        Integer virtualDatacenterId = target.getIdFromLink(ParentLinkName.VIRTUAL_DATACENTER);
+        Integer virtualDatacenterId = getIdFromLink(ParentLinkName.VIRTUAL_DATACENTER);
         VirtualDatacenterDto dto =
             context.getApi().getCloudApi().getVirtualDatacenter(virtualDatacenterId);
         virtualDatacenter = wrap(context, VirtualDatacenter.class, dto);
@@ -106,7 +109,7 @@ public class Volume extends DomainWrapper<VolumeManagementDto>
      */
     public Tier getTier()
     {
-        Integer tierId = target.getIdFromLink(ParentLinkName.TIER);
+        Integer tierId = getIdFromLink(ParentLinkName.TIER);
         TierDto dto =
             context.getApi().getCloudApi().getStorageTier(virtualDatacenter.unwrap(), tierId);
         tier = wrap(context, Tier.class, dto);
@@ -126,6 +129,59 @@ public class Volume extends DomainWrapper<VolumeManagementDto>
             context.getApi().getCloudApi().moveVolume(unwrap(), newVirtualDatacenter.unwrap());
     }
 
+    // Non-blocking actions
+
+    /**
+     * Non-blocking version of {@link #save()}.
+     * <p>
+     * The volume is updated with the created one when the future completes, so it should not be
+     * used until then.
+     * 
+     * @return The future volume.
+     */
+    public ListenableFuture<Volume> saveAsync()
+    {
+        return Futures.transform(
+            context.getAsyncApi().getCloudApi().createVolume(virtualDatacenter.unwrap(), target),
+            new Function<VolumeManagementDto, Volume>()
+            {
+                @Override
+                public Volume apply(final VolumeManagementDto input)
+                {
+                    target = input;
+                    return Volume.this;
+                }
+            });
+    }
+
+    /**
+     * Non-blocking version of {@link #update()}.
+     * 
+     * @return The future task reference. Its value is <code>null</code> if the operation
+     *         completed synchronously.
+     */
+    public ListenableFuture<AsyncTask> updateAsync()
+    {
+        return getTaskAsync(context.getAsyncApi().getCloudApi().updateVolume(target));
+    }
+
+    /**
+     * Non-blocking version of {@link #delete()}.
+     */
+    public ListenableFuture<Void> deleteAsync()
+    {
+        return Futures.transform(context.getAsyncApi().getCloudApi().deleteVolume(target),
+            new Function<Void, Void>()
+            {
+                @Override
+                public Void apply(final Void input)
+                {
+                    target = null;
+                    return null;
+                }
+            });
+    }
+
     // Builder
 
     public static Builder builder(final RestContext<AbiquoApi, AbiquoAsyncApi> context,
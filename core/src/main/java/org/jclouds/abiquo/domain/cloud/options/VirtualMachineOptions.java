@@ -19,6 +19,8 @@
 
 package org.jclouds.abiquo.domain.cloud.options;
 
+import javax.ws.rs.core.HttpHeaders;
+
 import org.jclouds.abiquo.domain.options.search.FilterOptions.BaseFilterOptionsBuilder;
 import org.jclouds.http.options.BaseHttpRequestOptions;
 
@@ -39,6 +41,7 @@ public class VirtualMachineOptions extends BaseHttpRequestOptions
     {
         VirtualMachineOptions options = new VirtualMachineOptions();
         options.queryParameters.putAll(queryParameters);
+        options.headers.putAll(headers);
         return options;
     }
 
@@ -46,12 +49,23 @@ public class VirtualMachineOptions extends BaseHttpRequestOptions
     {
         private Boolean force;
 
+        private String ifMatch;
+
         public Builder force(final Boolean force)
         {
             this.force = force;
             return this;
         }
 
+        /**
+         * Only apply the changes if the virtual machine is still in the given version.
+         */
+        public Builder ifMatch(final String etag)
+        {
+            this.ifMatch = etag;
+            return this;
+        }
+
         public VirtualMachineOptions build()
         {
             VirtualMachineOptions options = new VirtualMachineOptions();
@@ -61,6 +75,11 @@ public class VirtualMachineOptions extends BaseHttpRequestOptions
                 options.queryParameters.put("force", String.valueOf(force));
             }
 
+            if (ifMatch != null)
+            {
+                options.headers.put(HttpHeaders.IF_MATCH, ifMatch);
+            }
+
             return addFilterOptions(options);
         }
     }
@@ -39,6 +39,7 @@ import org.jclouds.abiquo.domain.network.ExternalNetwork;
 import org.jclouds.abiquo.domain.network.Network;
 import org.jclouds.abiquo.domain.network.UnmanagedIp;
 import org.jclouds.abiquo.domain.network.UnmanagedNetwork;
+import org.jclouds.abiquo.events.enterprise.TemplateRepositoryRefreshedEvent;
 import org.jclouds.abiquo.reference.annotations.EnterpriseEdition;
 import org.jclouds.abiquo.rest.internal.ExtendedUtils;
 import org.jclouds.abiquo.strategy.enterprise.ListVirtualMachineTemplates;
@@ -104,6 +105,7 @@ public class Enterprise extends DomainWithLimitsWrapper<EnterpriseDto>
     public void delete()
     {
         context.getApi().getEnterpriseApi().deleteEnterprise(target);
+        invalidateParentCache();
         target = null;
     }
 
@@ -122,6 +124,9 @@ public class Enterprise extends DomainWithLimitsWrapper<EnterpriseDto>
 
     /**
      * Update emterprise information in the server with the data from this enterprise.
+     * <p>
+     * Nothing is sent to the server if the enterprise has not been modified. Call
+     * {@link #markModified()} first if it has been modified through {@link #unwrap()}.
      * 
      * @see API: <a href=
      *      "http://community.abiquo.com/display/ABI20/EnterpriseResource#EnterpriseResource-Updateanexistingenterprise"
@@ -130,7 +135,14 @@ public class Enterprise extends DomainWithLimitsWrapper<EnterpriseDto>
      */
     public void update()
     {
+        if (!isDirty())
+        {
+            return;
+        }
+
         target = context.getApi().getEnterpriseApi().updateEnterprise(target);
+        clearDirty();
+        invalidateParentCache();
     }
 
     // Children access
@@ -663,6 +675,10 @@ public class Enterprise extends DomainWithLimitsWrapper<EnterpriseDto>
     {
         context.getApi().getEnterpriseApi()
             .refreshTemplateRepository(target.getId(), datacenter.getId());
+
+        // Let the template caches know that templates may have changed
+        context.getUtils().getEventBus()
+            .post(new TemplateRepositoryRefreshedEvent(target.getId(), datacenter.getId()));
     }
 
     /**
@@ -743,11 +759,11 @@ public class Enterprise extends DomainWithLimitsWrapper<EnterpriseDto>
      */
     public void disableChef()
     {
-        target.setChefClient(null);
-        target.setChefClientCertificate(null);
-        target.setChefURL(null);
-        target.setChefValidator(null);
-        target.setChefValidatorCertificate(null);
+        setChefClient(null);
+        setChefClientCertificate(null);
+        setChefURL(null);
+        setChefValidator(null);
+        setChefValidatorCertificate(null);
         update();
     }
 
@@ -902,26 +918,33 @@ public class Enterprise extends DomainWithLimitsWrapper<EnterpriseDto>
 
     public void setIsReservationRestricted(final boolean isReservationRestricted)
     {
+        markDirty("isReservationRestricted", target.getIsReservationRestricted(),
+            isReservationRestricted);
         target.setIsReservationRestricted(isReservationRestricted);
     }
 
     public void setName(final String name)
     {
+        markDirty("name", target.getName(), name);
         target.setName(name);
     }
 
     public void setRepositoryHard(final long repositoryHard)
     {
+        markDirty("repositoryHard", target.getRepositoryHard(), repositoryHard);
         target.setRepositoryHard(repositoryHard);
     }
 
     public void setRepositoryLimits(final long soft, final long hard)
     {
+        markDirty("repositorySoft", target.getRepositorySoft(), soft);
+        markDirty("repositoryHard", target.getRepositoryHard(), hard);
         target.setRepositoryLimits(soft, hard);
     }
 
     public void setRepositorySoft(final long repositorySoft)
     {
+        markDirty("repositorySoft", target.getRepositorySoft(), repositorySoft);
         target.setRepositorySoft(repositorySoft);
     }
 
@@ -952,26 +975,33 @@ public class Enterprise extends DomainWithLimitsWrapper<EnterpriseDto>
 
     public void setChefClient(final String chefClient)
     {
+        markDirty("chefClient", target.getChefClient(), chefClient);
         target.setChefClient(chefClient);
     }
 
     public void setChefClientCertificate(final String chefClientCertificate)
     {
+        markDirty("chefClientCertificate", target.getChefClientCertificate(),
+            chefClientCertificate);
         target.setChefClientCertificate(chefClientCertificate);
     }
 
     public void setChefURL(final String chefURL)
     {
+        markDirty("chefURL", target.getChefURL(), chefURL);
         target.setChefURL(chefURL);
     }
 
     public void setChefValidator(final String chefValidator)
     {
+        markDirty("chefValidator", target.getChefValidator(), chefValidator);
         target.setChefValidator(chefValidator);
     }
 
     public void setChefValidatorCertificate(final String chefValidatorCertificate)
     {
+        markDirty("chefValidatorCertificate", target.getChefValidatorCertificate(),
+            chefValidatorCertificate);
         target.setChefValidatorCertificate(chefValidatorCertificate);
     }
 
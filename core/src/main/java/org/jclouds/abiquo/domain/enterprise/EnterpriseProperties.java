@@ -70,7 +70,7 @@ public class EnterpriseProperties extends DomainWrapper<EnterprisePropertiesDto>
      */
     public Enterprise getEnterprise()
     {
-        Integer enterpriseId = target.getIdFromLink(ParentLinkName.ENTERPRISE);
+        Integer enterpriseId = getIdFromLink(ParentLinkName.ENTERPRISE);
         return wrap(context, Enterprise.class, context.getApi().getEnterpriseApi()
             .getEnterprise(enterpriseId));
     }
@@ -109,6 +109,7 @@ public class Role extends DomainWrapper<RoleDto>
         checkNotNull(link, ValidationErrors.MISSING_REQUIRED_LINK);
 
         target.addLink(new RESTLink("enterprise", link.getHref()));
+        invalidateLinkIndex();
     }
 
     @EnterpriseEdition
@@ -138,6 +139,7 @@ public class Role extends DomainWrapper<RoleDto>
         checkNotNull(link, ValidationErrors.MISSING_REQUIRED_LINK);
 
         target.addLink(new RESTLink("privilege" + privilege.getId(), link.getHref()));
+        invalidateLinkIndex();
     }
 
     // Children access
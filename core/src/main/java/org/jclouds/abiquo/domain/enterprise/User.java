@@ -118,7 +118,7 @@ public class User extends DomainWrapper<UserDto>
         // update role link (if exists)
         if (role != null)
         {
-            target.searchLink("role").setHref(role.unwrap().getEditLink().getHref());
+            searchLink("role").setHref(role.unwrap().getEditLink().getHref());
         }
 
         target = context.getApi().getEnterpriseApi().updateUser(target);
@@ -187,7 +187,7 @@ public class User extends DomainWrapper<UserDto>
      */
     public Enterprise getEnterprise()
     {
-        Integer enterpriseId = target.getIdFromLink(ParentLinkName.ENTERPRISE);
+        Integer enterpriseId = getIdFromLink(ParentLinkName.ENTERPRISE);
         return wrap(context, Enterprise.class, context.getApi().getEnterpriseApi()
             .getEnterprise(enterpriseId));
     }
@@ -71,7 +71,7 @@ public class Blade extends AbstractPhysicalMachine
     public ManagedRack getRack()
     {
         RESTLink link =
-            checkNotNull(target.searchLink(ParentLinkName.RACK),
+            checkNotNull(searchLink(ParentLinkName.RACK),
                 ValidationErrors.MISSING_REQUIRED_LINK + " " + ParentLinkName.RACK);
 
         ExtendedUtils utils = (ExtendedUtils) context.getUtils();
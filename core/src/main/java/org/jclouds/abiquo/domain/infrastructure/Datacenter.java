@@ -116,6 +116,7 @@ public class Datacenter extends DomainWrapper<DatacenterDto>
     public void delete()
     {
         context.getApi().getInfrastructureApi().deleteDatacenter(target);
+        invalidateParentCache();
         target = null;
     }
 
@@ -147,6 +148,9 @@ public class Datacenter extends DomainWrapper<DatacenterDto>
 
     /**
      * Update datacenter information in the server with the data from this datacenter.
+     * <p>
+     * Nothing is sent to the server if the datacenter has not been modified. Call
+     * {@link #markModified()} first if it has been modified through {@link #unwrap()}.
      * 
      * @see API: <a href=
      *      "http://community.abiquo.com/display/ABI20/DatacenterResource#DatacenterResource-Updateanexistingdatacenter"
@@ -155,7 +159,14 @@ public class Datacenter extends DomainWrapper<DatacenterDto>
      */
     public void update()
     {
+        if (!isDirty())
+        {
+            return;
+        }
+
         target = context.getApi().getInfrastructureApi().updateDatacenter(target);
+        clearDirty();
+        invalidateParentCache();
     }
 
     /**
@@ -1151,11 +1162,13 @@ public class Datacenter extends DomainWrapper<DatacenterDto>
 
     public void setLocation(final String location)
     {
+        markDirty("location", target.getLocation(), location);
         target.setLocation(location);
     }
 
     public void setName(final String name)
     {
+        markDirty("name", target.getName(), name);
         target.setName(name);
     }
 
@@ -116,7 +116,7 @@ public class Machine extends AbstractPhysicalMachine
     public Rack getRack()
     {
         RESTLink link =
-            checkNotNull(target.searchLink(ParentLinkName.RACK),
+            checkNotNull(searchLink(ParentLinkName.RACK),
                 ValidationErrors.MISSING_REQUIRED_LINK + " " + ParentLinkName.RACK);
 
         ExtendedUtils utils = (ExtendedUtils) context.getUtils();
@@ -246,7 +246,8 @@ public class Machine extends AbstractPhysicalMachine
     public void cancelReservationFor(final Enterprise enterprise)
     {
         context.getApi().getInfrastructureApi().cancelReservation(enterprise.unwrap(), target);
-        target.getLinks().remove(target.searchLink(ParentLinkName.ENTERPRISE));
+        target.getLinks().remove(searchLink(ParentLinkName.ENTERPRISE));
+        invalidateLinkIndex();
     }
 
     /**
@@ -256,7 +257,7 @@ public class Machine extends AbstractPhysicalMachine
      */
     public boolean isReserved()
     {
-        return target.searchLink(ParentLinkName.ENTERPRISE) != null;
+        return searchLink(ParentLinkName.ENTERPRISE) != null;
     }
 
     /**
@@ -275,7 +276,7 @@ public class Machine extends AbstractPhysicalMachine
 
         EnterpriseDto enterprise =
             context.getApi().getEnterpriseApi()
-                .getEnterprise(target.getIdFromLink(ParentLinkName.ENTERPRISE));
+                .getEnterprise(getIdFromLink(ParentLinkName.ENTERPRISE));
 
         return wrap(context, Enterprise.class, enterprise);
     }
@@ -32,6 +32,7 @@ import org.jclouds.abiquo.reference.annotations.EnterpriseEdition;
 import org.jclouds.abiquo.reference.rest.ParentLinkName;
 import org.jclouds.rest.RestContext;
 
+import com.abiquo.server.core.infrastructure.DatacenterDto;
 import com.abiquo.server.core.infrastructure.FsmsDto;
 import com.abiquo.server.core.infrastructure.LogicServersDto;
 import com.abiquo.server.core.infrastructure.MachinesDto;
@@ -39,6 +40,7 @@ import com.abiquo.server.core.infrastructure.OrganizationsDto;
 import com.abiquo.server.core.infrastructure.RackDto;
 import com.abiquo.server.core.infrastructure.UcsRackDto;
 import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
@@ -135,9 +137,17 @@ public class ManagedRack extends DomainWrapper<UcsRackDto>
      */
     public Datacenter getDatacenter()
     {
-        Integer datacenterId = target.getIdFromLink(ParentLinkName.DATACENTER);
-        return wrap(context, Datacenter.class, context.getApi().getInfrastructureApi()
-            .getDatacenter(datacenterId));
+        final Integer datacenterId = getIdFromLink(ParentLinkName.DATACENTER);
+        DatacenterDto dto =
+            getParent(ParentLinkName.DATACENTER, DatacenterDto.class, new Supplier<DatacenterDto>()
+            {
+                @Override
+                public DatacenterDto get()
+                {
+                    return context.getApi().getInfrastructureApi().getDatacenter(datacenterId);
+                }
+            });
+        return wrap(context, Datacenter.class, dto);
     }
 
     // Children access
@@ -34,6 +34,7 @@ import org.jclouds.rest.RestContext;
 import com.abiquo.server.core.infrastructure.MachineDto;
 import com.abiquo.server.core.infrastructure.MachinesDto;
 import com.abiquo.server.core.infrastructure.RackDto;
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -125,7 +126,7 @@ public class Rack extends DomainWrapper<RackDto>
      */
     public Datacenter getDatacenter()
     {
-        Integer datacenterId = target.getIdFromLink(ParentLinkName.DATACENTER);
+        Integer datacenterId = getIdFromLink(ParentLinkName.DATACENTER);
         return wrap(context, Datacenter.class, context.getApi().getInfrastructureApi()
             .getDatacenter(datacenterId));
     }
@@ -175,6 +176,19 @@ public class Rack extends DomainWrapper<RackDto>
         return Iterables.getFirst(filter(listMachines(), filter), null);
     }
 
+    /**
+     * Read the physical machines in this rack one by one, handing each one to the given consumer
+     * as soon as it is read, without keeping the whole list in memory.
+     * 
+     * @param consumer The function that will process each machine.
+     * @return The number of machines processed.
+     */
+    public int streamMachines(final Function< ? super Machine, ? > consumer)
+    {
+        return stream(context, Machine.class, MachineDto.class,
+            getCollectionLink("machines", MachinesDto.BASE_MEDIA_TYPE), null, consumer);
+    }
+
     /**
      * Retrieve a single physical machine.
      * 
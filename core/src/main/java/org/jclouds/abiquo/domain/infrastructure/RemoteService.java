@@ -126,7 +126,7 @@ public class RemoteService extends DomainWrapper<RemoteServiceDto>
      */
     public Datacenter getDatacenter()
     {
-        Integer datacenterId = target.getIdFromLink(ParentLinkName.DATACENTER);
+        Integer datacenterId = getIdFromLink(ParentLinkName.DATACENTER);
         DatacenterDto dto = context.getApi().getInfrastructureApi().getDatacenter(datacenterId);
         datacenter = wrap(context, Datacenter.class, dto);
         return datacenter;
@@ -39,6 +39,7 @@ import com.abiquo.server.core.infrastructure.storage.StoragePoolDto;
 import com.abiquo.server.core.infrastructure.storage.StoragePoolsDto;
 import com.abiquo.server.core.infrastructure.storage.TiersDto;
 import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
@@ -120,8 +121,16 @@ public class StorageDevice extends DomainWrapper<StorageDeviceDto>
      */
     public Datacenter getDatacenter()
     {
-        Integer datacenterId = target.getIdFromLink(ParentLinkName.DATACENTER);
-        DatacenterDto dto = context.getApi().getInfrastructureApi().getDatacenter(datacenterId);
+        final Integer datacenterId = getIdFromLink(ParentLinkName.DATACENTER);
+        DatacenterDto dto =
+            getParent(ParentLinkName.DATACENTER, DatacenterDto.class, new Supplier<DatacenterDto>()
+            {
+                @Override
+                public DatacenterDto get()
+                {
+                    return context.getApi().getInfrastructureApi().getDatacenter(datacenterId);
+                }
+            });
         datacenter = wrap(context, Datacenter.class, dto);
         return datacenter;
     }
@@ -271,7 +280,7 @@ public class StorageDevice extends DomainWrapper<StorageDeviceDto>
         if (this.datacenter == null)
         {
             datacenter = new DatacenterDto();
-            datacenter.setId(target.getIdFromLink(ParentLinkName.DATACENTER));
+            datacenter.setId(getIdFromLink(ParentLinkName.DATACENTER));
         }
         else
         {
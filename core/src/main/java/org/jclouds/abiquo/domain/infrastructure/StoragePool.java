@@ -153,7 +153,7 @@ public class StoragePool extends DomainWrapper<StoragePoolDto>
     public StorageDevice getStorageDevice()
     {
         RESTLink link =
-            checkNotNull(target.searchLink(ParentLinkName.STORAGE_DEVICE),
+            checkNotNull(searchLink(ParentLinkName.STORAGE_DEVICE),
                 ValidationErrors.MISSING_REQUIRED_LINK + " " + ParentLinkName.STORAGE_DEVICE);
 
         ExtendedUtils utils = (ExtendedUtils) context.getUtils();
@@ -176,7 +176,7 @@ public class StoragePool extends DomainWrapper<StoragePoolDto>
     public Tier getTier()
     {
         RESTLink link =
-            checkNotNull(target.searchLink(ParentLinkName.TIER),
+            checkNotNull(searchLink(ParentLinkName.TIER),
                 ValidationErrors.MISSING_REQUIRED_LINK + " " + ParentLinkName.TIER);
 
         ExtendedUtils utils = (ExtendedUtils) context.getUtils();
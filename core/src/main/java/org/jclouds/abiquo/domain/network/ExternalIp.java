@@ -59,7 +59,7 @@ public class ExternalIp extends AbstractPublicIp<ExternalIpDto, ExternalNetwork>
     public ExternalNetwork getNetwork()
     {
         RESTLink link =
-            checkNotNull(target.searchLink(ParentLinkName.EXTERNAL_NETWORK),
+            checkNotNull(searchLink(ParentLinkName.EXTERNAL_NETWORK),
                 ValidationErrors.MISSING_REQUIRED_LINK + " " + ParentLinkName.EXTERNAL_NETWORK);
 
         ExtendedUtils utils = (ExtendedUtils) context.getUtils();
@@ -139,7 +139,7 @@ public class ExternalNetwork extends Network<ExternalIp>
     public Enterprise getEnterprise()
     {
         RESTLink link =
-            checkNotNull(target.searchLink(ParentLinkName.ENTERPRISE),
+            checkNotNull(searchLink(ParentLinkName.ENTERPRISE),
                 ValidationErrors.MISSING_REQUIRED_LINK + " " + ParentLinkName.ENTERPRISE);
 
         ExtendedUtils utils = (ExtendedUtils) context.getUtils();
@@ -156,7 +156,7 @@ public class ExternalNetwork extends Network<ExternalIp>
     public Datacenter getDatacenter()
     {
         RESTLink link =
-            checkNotNull(target.searchLink(ParentLinkName.DATACENTER),
+            checkNotNull(searchLink(ParentLinkName.DATACENTER),
                 ValidationErrors.MISSING_REQUIRED_LINK + " " + ParentLinkName.DATACENTER);
 
         ExtendedUtils utils = (ExtendedUtils) context.getUtils();
@@ -180,6 +180,7 @@ public class ExternalNetwork extends Network<ExternalIp>
         checkNotNull(link, ValidationErrors.MISSING_REQUIRED_LINK);
 
         target.addLink(new RESTLink("enterprise", link.getHref()));
+        invalidateLinkIndex();
     }
 
     // Builder
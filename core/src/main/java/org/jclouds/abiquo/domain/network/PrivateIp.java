@@ -59,7 +59,7 @@ public class PrivateIp extends Ip<PrivateIpDto, PrivateNetwork>
     public PrivateNetwork getNetwork()
     {
         RESTLink link =
-            checkNotNull(target.searchLink(ParentLinkName.PRIVATE_NETWORK),
+            checkNotNull(searchLink(ParentLinkName.PRIVATE_NETWORK),
                 ValidationErrors.MISSING_REQUIRED_LINK + " " + ParentLinkName.PRIVATE_NETWORK);
 
         ExtendedUtils utils = (ExtendedUtils) context.getUtils();
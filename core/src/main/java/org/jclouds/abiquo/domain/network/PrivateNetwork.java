@@ -31,6 +31,7 @@ import com.abiquo.model.enumerator.NetworkType;
 import com.abiquo.server.core.infrastructure.network.PrivateIpDto;
 import com.abiquo.server.core.infrastructure.network.PrivateIpsDto;
 import com.abiquo.server.core.infrastructure.network.VLANNetworkDto;
+import com.google.common.base.Function;
 
 /**
  * Adds high level functionality to private {@link VLANNetworkDto}.
@@ -113,6 +114,20 @@ public class PrivateNetwork extends Network<PrivateIp>
         return wrap(context, PrivateIp.class, ips.getCollection());
     }
 
+    /**
+     * Read the ips of the network one by one, handing each one to the given consumer as soon as it
+     * is read, without keeping the whole list in memory.
+     * 
+     * @param options The options to use when reading the ips.
+     * @param consumer The function that will process each ip.
+     * @return The number of ips processed.
+     */
+    public int streamIps(final IpOptions options, final Function< ? super PrivateIp, ? > consumer)
+    {
+        return stream(context, PrivateIp.class, PrivateIpDto.class,
+            getCollectionLink("ips", PrivateIpsDto.BASE_MEDIA_TYPE), options, consumer);
+    }
+
     // Override to apply the filter in the server side
     @Override
     public List<PrivateIp> listUnusedIps()
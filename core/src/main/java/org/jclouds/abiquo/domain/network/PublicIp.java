@@ -57,7 +57,7 @@ public class PublicIp extends AbstractPublicIp<PublicIpDto, PublicNetwork>
     public PublicNetwork getNetwork()
     {
         RESTLink link =
-            checkNotNull(target.searchLink(ParentLinkName.PUBLIC_NETWORK),
+            checkNotNull(searchLink(ParentLinkName.PUBLIC_NETWORK),
                 ValidationErrors.MISSING_REQUIRED_LINK + ParentLinkName.PUBLIC_NETWORK);
 
         ExtendedUtils utils = (ExtendedUtils) context.getUtils();
@@ -134,7 +134,7 @@ public class PublicNetwork extends Network<PublicIp>
     public Datacenter getDatacenter()
     {
         RESTLink link =
-            checkNotNull(target.searchLink(ParentLinkName.DATACENTER),
+            checkNotNull(searchLink(ParentLinkName.DATACENTER),
                 ValidationErrors.MISSING_REQUIRED_LINK + " " + ParentLinkName.DATACENTER);
 
         ExtendedUtils utils = (ExtendedUtils) context.getUtils();
@@ -59,7 +59,7 @@ public class UnmanagedIp extends AbstractPublicIp<UnmanagedIpDto, UnmanagedNetwo
     public UnmanagedNetwork getNetwork()
     {
         RESTLink link =
-            checkNotNull(target.searchLink(ParentLinkName.UNMANAGED_NETWORK),
+            checkNotNull(searchLink(ParentLinkName.UNMANAGED_NETWORK),
                 ValidationErrors.MISSING_REQUIRED_LINK + " " + ParentLinkName.UNMANAGED_NETWORK);
 
         ExtendedUtils utils = (ExtendedUtils) context.getUtils();
@@ -139,7 +139,7 @@ public class UnmanagedNetwork extends Network<UnmanagedIp>
     public Enterprise getEnterprise()
     {
         RESTLink link =
-            checkNotNull(target.searchLink(ParentLinkName.ENTERPRISE),
+            checkNotNull(searchLink(ParentLinkName.ENTERPRISE),
                 ValidationErrors.MISSING_REQUIRED_LINK + " " + ParentLinkName.ENTERPRISE);
 
         ExtendedUtils utils = (ExtendedUtils) context.getUtils();
@@ -156,7 +156,7 @@ public class UnmanagedNetwork extends Network<UnmanagedIp>
     public Datacenter getDatacenter()
     {
         RESTLink link =
-            checkNotNull(target.searchLink(ParentLinkName.DATACENTER),
+            checkNotNull(searchLink(ParentLinkName.DATACENTER),
                 ValidationErrors.MISSING_REQUIRED_LINK + " " + ParentLinkName.DATACENTER);
 
         ExtendedUtils utils = (ExtendedUtils) context.getUtils();
@@ -181,6 +181,7 @@ public class UnmanagedNetwork extends Network<UnmanagedIp>
         checkNotNull(link, ValidationErrors.MISSING_REQUIRED_LINK);
 
         target.addLink(new RESTLink("enterprise", link.getHref()));
+        invalidateLinkIndex();
     }
 
     // Builder
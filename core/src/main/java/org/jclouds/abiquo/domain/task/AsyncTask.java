@@ -58,7 +58,7 @@ public class AsyncTask extends DomainWrapper<TaskDto>
     public void refresh()
     {
         RESTLink self =
-            checkNotNull(target.searchLink("self"), ValidationErrors.MISSING_REQUIRED_LINK + "self");
+            checkNotNull(searchLink("self"), ValidationErrors.MISSING_REQUIRED_LINK + "self");
 
         target = context.getApi().getTaskApi().getTask(self);
     }
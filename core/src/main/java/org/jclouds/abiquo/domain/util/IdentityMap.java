@@ -0,0 +1,121 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.abiquo.reference.AbiquoConstants.IDENTITY_MAP;
+
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.abiquo.domain.DomainWrapper;
+
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Keeps a single domain object for each resource of the context.
+ * <p>
+ * Domain objects are identified by their class and the href of their self link, and are weakly
+ * referenced, so they are discarded when they are no longer used.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class IdentityMap
+{
+    /** The domain objects, or <code>null</code> if the identity map is disabled. */
+    private final ConcurrentMap<String, DomainWrapper< ? >> wrappers;
+
+    @Inject
+    public IdentityMap(@Named(IDENTITY_MAP) final String enabled)
+    {
+        super();
+        this.wrappers =
+            Boolean.valueOf(checkNotNull(enabled, "enabled")) ? CacheBuilder.newBuilder()
+                .weakValues().<String, DomainWrapper< ? >> build().asMap() : null;
+    }
+
+    /**
+     * Checks if the identity map is enabled.
+     */
+    public boolean isEnabled()
+    {
+        return wrappers != null;
+    }
+
+    /**
+     * Get the domain object for the given resource, registering the given candidate if there is
+     * not one yet.
+     * 
+     * @param href The href of the self link of the resource.
+     * @param candidate The domain object to register if there is not one for the resource.
+     * @return The registered domain object, or the candidate if the identity map is disabled.
+     */
+    public <W extends DomainWrapper< ? >> W get(final String href, final W candidate)
+    {
+        checkNotNull(candidate, "candidate");
+        if (wrappers == null || href == null)
+        {
+            return candidate;
+        }
+
+        String key = key(candidate.getClass(), href);
+        DomainWrapper< ? > existing = wrappers.get(key);
+        if (existing == null)
+        {
+            existing = wrappers.putIfAbsent(key, candidate);
+        }
+
+        @SuppressWarnings("unchecked")
+        W canonical = existing == null ? candidate : (W) existing;
+        return canonical;
+    }
+
+    /**
+     * Get the domain object of the given class registered for the given resource.
+     * 
+     * @param wrapperClass The class of the domain object.
+     * @param href The href of the self link of the resource.
+     * @return The registered domain object, or <code>null</code> if there is not one or the
+     *         identity map is disabled.
+     */
+    @SuppressWarnings("unchecked")
+    public <W extends DomainWrapper< ? >> W get(final Class<W> wrapperClass, final String href)
+    {
+        checkNotNull(wrapperClass, "wrapperClass");
+        return wrappers == null || href == null ? null : (W) wrappers.get(key(wrapperClass, href));
+    }
+
+    /**
+     * Get the number of domain objects in the identity map.
+     */
+    public int size()
+    {
+        return wrappers == null ? 0 : wrappers.size();
+    }
+
+    private static String key(final Class< ? > wrapperClass, final String href)
+    {
+        return wrapperClass.getName() + "@" + href;
+    }
+}
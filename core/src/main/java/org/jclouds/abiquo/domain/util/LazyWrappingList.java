@@ -0,0 +1,92 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.DomainWrapper;
+import org.jclouds.rest.RestContext;
+
+import com.abiquo.model.transport.SingleResourceTransportDto;
+import com.google.common.collect.Lists;
+
+/**
+ * Read-only view of a collection of transport objects that wraps each element the first time it
+ * is accessed.
+ * <p>
+ * Filtering or looking for an element in the view does not create intermediate lists, and
+ * elements that are never accessed are never wrapped. Each element is wrapped only once, so
+ * accessing the same position returns always the same domain object.
+ * 
+ * @author Ignasi Barrera
+ */
+public class LazyWrappingList<T extends SingleResourceTransportDto, W extends DomainWrapper<T>>
+    extends AbstractList<W> implements RandomAccess
+{
+    private final RestContext<AbiquoApi, AbiquoAsyncApi> context;
+
+    private final Class<W> wrapperClass;
+
+    private final List<T> targets;
+
+    /** The elements that have already been wrapped. */
+    private final AtomicReferenceArray<W> wrapped;
+
+    @SuppressWarnings("unchecked")
+    public LazyWrappingList(final RestContext<AbiquoApi, AbiquoAsyncApi> context,
+        final Class<W> wrapperClass, final Iterable<T> targets)
+    {
+        super();
+        this.context = checkNotNull(context, "context");
+        this.wrapperClass = checkNotNull(wrapperClass, "wrapperClass");
+        checkNotNull(targets, "targets");
+        // Transport collections are array lists, so they are usually not copied
+        this.targets =
+            targets instanceof List< ? > && targets instanceof RandomAccess ? (List<T>) targets
+                : Lists.newArrayList(targets);
+        this.wrapped = new AtomicReferenceArray<W>(this.targets.size());
+    }
+
+    @Override
+    public W get(final int index)
+    {
+        W wrapper = wrapped.get(index);
+        if (wrapper == null)
+        {
+            W created = DomainWrapper.wrap(context, wrapperClass, targets.get(index));
+            // If another thread wrapped it first, use its domain object
+            wrapper = wrapped.compareAndSet(index, null, created) ? created : wrapped.get(index);
+        }
+        return wrapper;
+    }
+
+    @Override
+    public int size()
+    {
+        return wrapped.length();
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.model.transport.SingleResourceTransportDto;
+import com.google.common.collect.Maps;
+
+/**
+ * Index of the links of a transport object by their rel.
+ * <p>
+ * Domain objects look for the same links many times, and some transport objects have dozens of
+ * links, so the links are indexed once and the ids parsed from them are cached. The index is
+ * only valid while the transport object has the same link list, so checking it does not depend on
+ * the number of links. Links added to or removed from the list are not detected: whoever modifies
+ * the list must discard the index. Changes in the href of an indexed link are detected when
+ * reading its id.
+ * 
+ * @author Ignasi Barrera
+ */
+public class LinkIndex
+{
+    /** The indexed transport object. */
+    private final SingleResourceTransportDto dto;
+
+    /** The indexed link list, used to detect if it has been replaced. */
+    private final List<RESTLink> links;
+
+    /** The first link with each rel. */
+    private final Map<String, RESTLink> linksByRel;
+
+    /** The ids parsed from the links, with the href they were parsed from. */
+    private final Map<String, ParsedId> ids = Maps.newConcurrentMap();
+
+    public LinkIndex(final SingleResourceTransportDto dto)
+    {
+        super();
+        this.dto = checkNotNull(dto, "dto");
+        this.links = dto.getLinks();
+        this.linksByRel = Maps.newHashMapWithExpectedSize(links == null ? 0 : links.size());
+
+        for (RESTLink link : links == null ? Collections.<RESTLink> emptyList() : links)
+        {
+            String rel = link.getRel();
+            if (rel != null && !linksByRel.containsKey(rel))
+            {
+                linksByRel.put(rel, link);
+            }
+        }
+    }
+
+    /**
+     * Checks if the index can be used to look for links in the given transport object.
+     * <p>
+     * Only the identity of the transport object and its link list are checked, so changes made to
+     * the link list itself are not detected.
+     */
+    public boolean isValidFor(final SingleResourceTransportDto dto)
+    {
+        return this.dto == dto && links == dto.getLinks();
+    }
+
+    /**
+     * Get the first link with the given rel.
+     * 
+     * @return The link or <code>null</code> if there is no link with the given rel.
+     */
+    public RESTLink searchLink(final String rel)
+    {
+        return linksByRel.get(rel);
+    }
+
+    /**
+     * Get the id of the resource pointed by the first link with the given rel.
+     * 
+     * @return The id or <code>null</code> if there is no link with the given rel.
+     */
+    public Integer getIdFromLink(final String rel)
+    {
+        RESTLink link = linksByRel.get(rel);
+        if (link == null || link.getHref() == null)
+        {
+            return null;
+        }
+
+        String href = link.getHref();
+        ParsedId parsed = ids.get(rel);
+        if (parsed == null || !href.equals(parsed.href))
+        {
+            parsed = new ParsedId(href);
+            ids.put(rel, parsed);
+        }
+        return parsed.id;
+    }
+
+    /**
+     * Get the link that points to the resource itself.
+     */
+    public RESTLink getSelfLink()
+    {
+        RESTLink link = linksByRel.get("edit");
+        return link == null ? linksByRel.get("self") : link;
+    }
+
+    private static class ParsedId
+    {
+        private final String href;
+
+        private final Integer id;
+
+        public ParsedId(final String href)
+        {
+            this.href = href;
+            String path = href.endsWith("/") ? href.substring(0, href.length() - 1) : href;
+            this.id = Integer.valueOf(path.substring(path.lastIndexOf('/') + 1));
+        }
+    }
+}
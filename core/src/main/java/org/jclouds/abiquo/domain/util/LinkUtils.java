@@ -44,8 +44,26 @@ public class LinkUtils
      */
     public static RESTLink getSelfLink(final SingleResourceTransportDto dto)
     {
-        RESTLink link = dto.searchLink("edit");
-        return link == null ? dto.searchLink("self") : link;
+        List<RESTLink> links = dto.getLinks();
+        if (links == null)
+        {
+            return null;
+        }
+
+        // Look for both links in a single pass, since some objects have many links
+        RESTLink self = null;
+        for (RESTLink link : links)
+        {
+            if ("edit".equals(link.getRel()))
+            {
+                return link;
+            }
+            if (self == null && "self".equals(link.getRel()))
+            {
+                self = link;
+            }
+        }
+        return self;
     }
 
     /**
@@ -56,6 +74,6 @@ public class LinkUtils
      */
     public static List<RESTLink> filterNicLinks(final List<RESTLink> links)
     {
-        return Lists.newLinkedList(filter(links, LinkPredicates.isNic()));
+        return Lists.newArrayList(filter(links, LinkPredicates.isNic()));
     }
 }
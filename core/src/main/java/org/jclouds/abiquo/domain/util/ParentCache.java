@@ -0,0 +1,162 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.abiquo.reference.AbiquoConstants.PARENT_CACHE_SIZE;
+import static org.jclouds.abiquo.reference.AbiquoConstants.PARENT_CACHE_TTL;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.xml.XMLParser;
+
+import com.abiquo.model.transport.SingleResourceTransportDto;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Shared cache of the parent resources retrieved by the navigation methods of the domain objects.
+ * <p>
+ * Resources are cached by the href of the link used to get them, so all the children of the same
+ * parent share the same entry. Entries expire after the configured time, and are invalidated when
+ * the cached resource is updated or deleted through its domain object.
+ * <p>
+ * Resources are cached in their serialized form, and each call gets its own copy. This way a
+ * change made to a parent resource and not saved is not seen by the other callers.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class ParentCache
+{
+    /** The cache, or <code>null</code> if caching is disabled. */
+    private final Cache<String, CachedResource> cache;
+
+    private final XMLParser xml;
+
+    @Inject
+    public ParentCache(@Named(PARENT_CACHE_TTL) final Long ttl,
+        @Named(PARENT_CACHE_SIZE) final Long maxSize, final XMLParser xml)
+    {
+        super();
+        checkNotNull(ttl, "ttl");
+        checkNotNull(maxSize, "maxSize");
+        this.xml = checkNotNull(xml, "xml");
+        this.cache =
+            ttl <= 0 ? null : CacheBuilder.newBuilder().maximumSize(maxSize)
+                .expireAfterWrite(ttl, TimeUnit.MILLISECONDS).recordStats()
+                .<String, CachedResource> build();
+    }
+
+    /**
+     * Get the resource with the given href from the cache, loading it if it is not present.
+     * 
+     * @param href The href of the link to the resource.
+     * @param type The type of the resource.
+     * @param loader The function that retrieves the resource from the API.
+     * @return A copy of the resource that can be modified by the caller.
+     */
+    public <T extends SingleResourceTransportDto> T get(final String href, final Class<T> type,
+        final Supplier<T> loader)
+    {
+        checkNotNull(type, "type");
+        checkNotNull(loader, "loader");
+
+        if (cache == null || href == null)
+        {
+            return loader.get();
+        }
+
+        try
+        {
+            CachedResource cached = cache.getIfPresent(href);
+            if (cached != null && cached.type == type)
+            {
+                return xml.fromXML(cached.xml, type);
+            }
+
+            T loaded = loader.get();
+            if (loaded != null)
+            {
+                cache.put(href, new CachedResource(type, xml.toXML(loaded, type)));
+            }
+            return loaded;
+        }
+        catch (IOException ex)
+        {
+            throw Throwables.propagate(ex);
+        }
+    }
+
+    /**
+     * Removes the resource with the given href from the cache.
+     */
+    public void invalidate(final String href)
+    {
+        if (cache != null && href != null)
+        {
+            cache.invalidate(href);
+        }
+    }
+
+    /**
+     * Removes all the resources from the cache.
+     */
+    public void invalidateAll()
+    {
+        if (cache != null)
+        {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Get the statistics of the cache, or <code>null</code> if caching is disabled.
+     */
+    public CacheStats stats()
+    {
+        return cache == null ? null : cache.stats();
+    }
+
+    /**
+     * The serialized form of a cached resource.
+     */
+    private static class CachedResource
+    {
+        private final Class< ? extends SingleResourceTransportDto> type;
+
+        private final String xml;
+
+        private CachedResource(final Class< ? extends SingleResourceTransportDto> type,
+            final String xml)
+        {
+            this.type = type;
+            this.xml = xml;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Sends non-blocking requests with a limited number of requests in flight.
+ * <p>
+ * Requests that can not be sent right away are queued, and each answered request sends the next
+ * one in the queue. The queue is drained in a loop by a single thread at a time, so requests
+ * answered right away do not send the next ones recursively. The limit is shared by all the
+ * requests submitted to the same limiter.
+ * 
+ * @author Ignasi Barrera
+ */
+public class RequestLimiter
+{
+    /** The requests waiting to be sent. */
+    private final Queue<PendingRequest< ? , ? >> queue =
+        new ConcurrentLinkedQueue<PendingRequest< ? , ? >>();
+
+    /** The number of requests that can still be sent. */
+    private final AtomicInteger available;
+
+    /** The number of pending drain attempts. Only the thread that sets it to one drains. */
+    private final AtomicInteger draining = new AtomicInteger();
+
+    public RequestLimiter(final int maxInFlight)
+    {
+        super();
+        checkArgument(maxInFlight > 0, "maxInFlight must be greater than zero");
+        this.available = new AtomicInteger(maxInFlight);
+    }
+
+    /**
+     * Sends the request of each of the given inputs, without exceeding the requests in flight.
+     * <p>
+     * This is a non-blocking call. Errors thrown while sending a request are returned as failed
+     * results.
+     * 
+     * @param inputs The inputs of the requests.
+     * @param request The function that sends the request of each input.
+     * @return The future results of the requests, in the same order as the inputs.
+     */
+    public <T, R> List<ListenableFuture<R>> submit(final Iterable< ? extends T> inputs,
+        final Function< ? super T, ListenableFuture<R>> request)
+    {
+        checkNotNull(inputs, "inputs");
+        checkNotNull(request, "request");
+
+        List<ListenableFuture<R>> results = Lists.newArrayList();
+        for (T input : inputs)
+        {
+            PendingRequest<T, R> pending = new PendingRequest<T, R>(input, request);
+            results.add(pending.result);
+            queue.add(pending);
+        }
+
+        drain();
+        return results;
+    }
+
+    /**
+     * Sends the queued requests while there are requests available.
+     */
+    private void drain()
+    {
+        if (draining.getAndIncrement() != 0)
+        {
+            // The thread draining the queue will try again
+            return;
+        }
+
+        do
+        {
+            while (available.get() > 0)
+            {
+                PendingRequest< ? , ? > next = queue.poll();
+                if (next == null)
+                {
+                    break;
+                }
+
+                available.decrementAndGet();
+                next.send();
+            }
+        }
+        while (draining.decrementAndGet() != 0);
+    }
+
+    private void release()
+    {
+        available.incrementAndGet();
+        drain();
+    }
+
+    /**
+     * A request waiting to be sent.
+     * 
+     * @author Ignasi Barrera
+     */
+    private class PendingRequest<T, R>
+    {
+        private final T input;
+
+        private final Function< ? super T, ListenableFuture<R>> request;
+
+        private final SettableFuture<R> result = SettableFuture.create();
+
+        public PendingRequest(final T input,
+            final Function< ? super T, ListenableFuture<R>> request)
+        {
+            super();
+            this.input = input;
+            this.request = request;
+        }
+
+        public void send()
+        {
+            ListenableFuture<R> future;
+            try
+            {
+                future = request.apply(input);
+            }
+            catch (RuntimeException ex)
+            {
+                // The request was not sent, so the next one can be sent right away
+                result.setException(ex);
+                available.incrementAndGet();
+                return;
+            }
+
+            Futures.addCallback(future, new FutureCallback<R>()
+            {
+                @Override
+                public void onSuccess(final R value)
+                {
+                    result.set(value);
+                    release();
+                }
+
+                @Override
+                public void onFailure(final Throwable t)
+                {
+                    result.setException(t);
+                    release();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.Constants.PROPERTY_SCHEDULER_THREADS;
+import static org.jclouds.abiquo.reference.AbiquoConstants.UPDATE_COALESCING_WINDOW;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.xml.XMLParser;
+
+import com.abiquo.model.transport.SingleResourceTransportDto;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Coalesces the updates of the same resource requested within a short window into a single write.
+ * <p>
+ * The first update of a resource opens the window, and a copy of the transport object it sends is
+ * the one that will be written. The modified fields of the updates requested before the window
+ * closes are copied to it, so the last value set to each field wins. All the updates share the
+ * result of the single write.
+ * <p>
+ * The transport objects of the updates are only read when they are submitted, so they can be
+ * modified again while the write is pending without changing what is written.
+ * <p>
+ * The merged write is not conditional, since each update may have read a different version of
+ * the resource.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class UpdateCoalescer
+{
+    private final ScheduledExecutorService scheduler;
+
+    /** The time the updates of a resource are gathered before writing them, in ms. */
+    private final Long window;
+
+    /** The parser used to copy the transport objects. */
+    private final XMLParser xml;
+
+    /** The updates waiting for the write, by the href of the resource. Guarded by itself. */
+    private final Map<String, PendingUpdate< ? , ? >> pending = Maps.newHashMap();
+
+    @Inject
+    public UpdateCoalescer(
+        @Named(PROPERTY_SCHEDULER_THREADS) final ScheduledExecutorService scheduler,
+        @Named(UPDATE_COALESCING_WINDOW) final Long window, final XMLParser xml)
+    {
+        super();
+        this.scheduler = checkNotNull(scheduler, "scheduler");
+        this.window = checkNotNull(window, "window");
+        this.xml = checkNotNull(xml, "xml");
+    }
+
+    /**
+     * Adds the modified fields of the given transport object to the next write of the resource.
+     * 
+     * @param href The href of the resource, or <code>null</code> if it has not been created yet.
+     * @param target The transport object with the modifications.
+     * @param fields The names of the modified fields.
+     * @param writer The function that writes the merged transport object.
+     * @return The future result of the write. Its value is <code>null</code> if there were no
+     *         modifications and no write of the resource was pending.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends SingleResourceTransportDto, R> ListenableFuture<R> submit(
+        final String href, final T target, final Set<String> fields,
+        final Function< ? super T, ListenableFuture<R>> writer)
+    {
+        checkNotNull(target, "target");
+        checkNotNull(fields, "fields");
+        checkNotNull(writer, "writer");
+
+        // Resources that do not exist yet can not be identified, so there is nothing to merge
+        if (href == null || window <= 0)
+        {
+            return fields.isEmpty() ? Futures.<R> immediateFuture(null) : writer.apply(target);
+        }
+
+        synchronized (pending)
+        {
+            PendingUpdate<T, R> update = (PendingUpdate<T, R>) pending.get(href);
+            if (fields.isEmpty())
+            {
+                return update == null ? Futures.<R> immediateFuture(null) : update.result;
+            }
+
+            if (update == null)
+            {
+                update = new PendingUpdate<T, R>(href, copy(target), writer);
+                pending.put(href, update);
+                scheduler.schedule(update, window, TimeUnit.MILLISECONDS);
+            }
+            else
+            {
+                copyFields(target, update.target, fields);
+            }
+            return update.result;
+        }
+    }
+
+    /**
+     * Copies the given transport object, so the pending write does not share it with the caller.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends SingleResourceTransportDto> T copy(final T target)
+    {
+        Class<T> type = (Class<T>) target.getClass();
+        try
+        {
+            return xml.fromXML(xml.toXML(target, type), type);
+        }
+        catch (IOException ex)
+        {
+            throw Throwables.propagate(ex);
+        }
+    }
+
+    @VisibleForTesting
+    int getPendingUpdates()
+    {
+        synchronized (pending)
+        {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Reads the values of the given properties of a transport object.
+     * 
+     * @param source The transport object.
+     * @param fields The names of the properties to read.
+     * @return The values of the properties, by name. Values may be <code>null</code>.
+     */
+    public static Map<String, Object> readFields(final Object source, final Set<String> fields)
+    {
+        Map<String, Object> values = Maps.newHashMap();
+        try
+        {
+            for (PropertyDescriptor property : Introspector.getBeanInfo(source.getClass())
+                .getPropertyDescriptors())
+            {
+                if (fields.contains(property.getName()) && property.getReadMethod() != null)
+                {
+                    values.put(property.getName(), property.getReadMethod().invoke(source));
+                }
+            }
+        }
+        catch (Exception ex)
+        {
+            throw Throwables.propagate(ex);
+        }
+
+        // Fields without a property are still reported, so they can be merged and cleared
+        for (String field : fields)
+        {
+            if (!values.containsKey(field))
+            {
+                values.put(field, null);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Copies the values of the given properties from one transport object to the other.
+     */
+    @VisibleForTesting
+    static void copyFields(final Object source, final Object target, final Set<String> fields)
+    {
+        try
+        {
+            for (PropertyDescriptor property : Introspector.getBeanInfo(target.getClass())
+                .getPropertyDescriptors())
+            {
+                if (fields.contains(property.getName()) && property.getReadMethod() != null
+                    && property.getWriteMethod() != null)
+                {
+                    property.getWriteMethod().invoke(target,
+                        property.getReadMethod().invoke(source));
+                }
+            }
+        }
+        catch (Exception ex)
+        {
+            throw Throwables.propagate(ex);
+        }
+    }
+
+    /**
+     * The merged update of a resource.
+     * 
+     * @author Ignasi Barrera
+     */
+    private class PendingUpdate<T extends SingleResourceTransportDto, R> implements Runnable
+    {
+        private final String href;
+
+        /** The copy of the transport object to write. Guarded by the pending map. */
+        private final T target;
+
+        private final Function< ? super T, ListenableFuture<R>> writer;
+
+        private final SettableFuture<R> result = SettableFuture.create();
+
+        public PendingUpdate(final String href, final T target,
+            final Function< ? super T, ListenableFuture<R>> writer)
+        {
+            super();
+            this.href = href;
+            this.target = target;
+            this.writer = writer;
+        }
+
+        @Override
+        public void run()
+        {
+            synchronized (pending)
+            {
+                // Updates requested from now on go to the next write
+                pending.remove(href);
+            }
+
+            ListenableFuture<R> write;
+            try
+            {
+                write = writer.apply(target);
+            }
+            catch (RuntimeException ex)
+            {
+                result.setException(ex);
+                return;
+            }
+
+            Futures.addCallback(write, new FutureCallback<R>()
+            {
+                @Override
+                public void onSuccess(final R value)
+                {
+                    result.set(value);
+                }
+
+                @Override
+                public void onFailure(final Throwable t)
+                {
+                    result.setException(t);
+                }
+            });
+        }
+    }
+}
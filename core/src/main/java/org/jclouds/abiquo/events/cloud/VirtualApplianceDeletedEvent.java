@@ -0,0 +1,52 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.events.cloud;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Event fired when a virtual appliance is deleted, so the resources that reference it are no longer
+ * valid.
+ * 
+ * @author Ignasi Barrera
+ */
+public class VirtualApplianceDeletedEvent
+{
+    /** The id of the virtual appliance. */
+    private Integer virtualApplianceId;
+
+    public VirtualApplianceDeletedEvent(final Integer virtualApplianceId)
+    {
+        super();
+        this.virtualApplianceId = checkNotNull(virtualApplianceId, "virtualApplianceId");
+    }
+
+    public Integer getVirtualApplianceId()
+    {
+        return virtualApplianceId;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "VirtualApplianceDeletedEvent [virtualApplianceId=" + virtualApplianceId + "]";
+    }
+
+}
@@ -0,0 +1,52 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.events.cloud;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Event fired when a virtual datacenter is deleted, so the resources that reference it are no longer
+ * valid.
+ * 
+ * @author Ignasi Barrera
+ */
+public class VirtualDatacenterDeletedEvent
+{
+    /** The id of the virtual datacenter. */
+    private Integer virtualDatacenterId;
+
+    public VirtualDatacenterDeletedEvent(final Integer virtualDatacenterId)
+    {
+        super();
+        this.virtualDatacenterId = checkNotNull(virtualDatacenterId, "virtualDatacenterId");
+    }
+
+    public Integer getVirtualDatacenterId()
+    {
+        return virtualDatacenterId;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "VirtualDatacenterDeletedEvent [virtualDatacenterId=" + virtualDatacenterId + "]";
+    }
+
+}
@@ -0,0 +1,63 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.events.enterprise;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Event fired when the template repository of an enterprise in a datacenter is refreshed, so its
+ * templates may have changed.
+ * 
+ * @author Ignasi Barrera
+ */
+public class TemplateRepositoryRefreshedEvent
+{
+    /** The id of the enterprise. */
+    private Integer enterpriseId;
+
+    /** The id of the datacenter. */
+    private Integer datacenterId;
+
+    public TemplateRepositoryRefreshedEvent(final Integer enterpriseId,
+        final Integer datacenterId)
+    {
+        super();
+        this.enterpriseId = checkNotNull(enterpriseId, "enterpriseId");
+        this.datacenterId = checkNotNull(datacenterId, "datacenterId");
+    }
+
+    public Integer getEnterpriseId()
+    {
+        return enterpriseId;
+    }
+
+    public Integer getDatacenterId()
+    {
+        return datacenterId;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TemplateRepositoryRefreshedEvent [enterpriseId=" + enterpriseId
+            + ", datacenterId=" + datacenterId + "]";
+    }
+
+}
@@ -0,0 +1,71 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.events.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.jclouds.abiquo.http.internal.CircuitBreaker.State;
+
+/**
+ * Event fired when the circuit breaker of an endpoint changes its state.
+ * 
+ * @author Ignasi Barrera
+ */
+public class CircuitBreakerEvent
+{
+    /** The endpoint protected by the circuit breaker. */
+    private String endpoint;
+
+    /** The previous state of the circuit breaker. */
+    private State from;
+
+    /** The new state of the circuit breaker. */
+    private State to;
+
+    public CircuitBreakerEvent(final String endpoint, final State from, final State to)
+    {
+        super();
+        this.endpoint = checkNotNull(endpoint, "endpoint");
+        this.from = checkNotNull(from, "from");
+        this.to = checkNotNull(to, "to");
+    }
+
+    public String getEndpoint()
+    {
+        return endpoint;
+    }
+
+    public State getFrom()
+    {
+        return from;
+    }
+
+    public State getTo()
+    {
+        return to;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CircuitBreakerEvent [endpoint=" + endpoint + ", from=" + from + ", to=" + to + "]";
+    }
+
+}
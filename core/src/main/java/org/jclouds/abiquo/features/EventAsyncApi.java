@@ -25,7 +25,10 @@ import javax.ws.rs.Path;
 
 import org.jclouds.abiquo.domain.event.options.EventOptions;
 import org.jclouds.abiquo.http.filters.AbiquoAuthentication;
+import org.jclouds.abiquo.http.filters.AcceptGzipEncoding;
 import org.jclouds.abiquo.http.filters.AppendApiVersionToMediaType;
+import org.jclouds.abiquo.http.filters.FailFastWhenCircuitIsOpen;
+import org.jclouds.abiquo.http.filters.LimitRequestRate;
 import org.jclouds.rest.annotations.JAXBResponseParser;
 import org.jclouds.rest.annotations.RequestFilters;
 
@@ -41,7 +44,8 @@ import com.google.common.util.concurrent.ListenableFuture;
  * @author Ignasi Barrera
  * @author Vivien Mahé
  */
-@RequestFilters({AbiquoAuthentication.class, AppendApiVersionToMediaType.class})
+@RequestFilters({AbiquoAuthentication.class, AppendApiVersionToMediaType.class,
+    AcceptGzipEncoding.class, FailFastWhenCircuitIsOpen.class, LimitRequestRate.class})
 public interface EventAsyncApi
 {
     /**
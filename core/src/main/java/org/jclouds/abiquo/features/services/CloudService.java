@@ -21,12 +21,14 @@ package org.jclouds.abiquo.features.services;
 
 import java.util.List;
 
+import org.jclouds.abiquo.domain.cloud.BulkStateChange;
 import org.jclouds.abiquo.domain.cloud.VirtualAppliance;
 import org.jclouds.abiquo.domain.cloud.VirtualDatacenter;
 import org.jclouds.abiquo.domain.cloud.VirtualMachine;
 import org.jclouds.abiquo.domain.enterprise.Enterprise;
 import org.jclouds.abiquo.internal.BaseCloudService;
 
+import com.abiquo.server.core.cloud.VirtualMachineState;
 import com.google.common.base.Predicate;
 import com.google.inject.ImplementedBy;
 
@@ -108,4 +110,17 @@ public interface CloudService
      * Get the first virtual machine that matches the given filter.
      */
     VirtualMachine findVirtualMachine(Predicate<VirtualMachine> filter);
+
+    /**
+     * Changes the state of all the given virtual machines.
+     * <p>
+     * This is a non-blocking call. The requests are sent concurrently, with at most the number of
+     * requests configured in the <code>abiquo.bulk-operations.concurrency</code> property in
+     * flight.
+     * 
+     * @param vms The virtual machines.
+     * @param state The new state of the virtual machines.
+     * @return The state change, with the result of each virtual machine.
+     */
+    BulkStateChange changeState(Iterable<VirtualMachine> vms, VirtualMachineState state);
 }
@@ -23,6 +23,7 @@ import org.jclouds.abiquo.domain.event.Event;
 import org.jclouds.abiquo.domain.event.options.EventOptions;
 import org.jclouds.abiquo.internal.BaseEventService;
 
+import com.google.common.base.Function;
 import com.google.inject.ImplementedBy;
 
 /**
@@ -43,4 +44,12 @@ public interface EventService
      * Get the list of all events using filters as query params.
      */
     Iterable<Event> listEvents(EventOptions options);
+
+    /**
+     * Read the events matching the given filters one by one, handing each one to the consumer as
+     * soon as it is read, without keeping the whole list in memory.
+     * 
+     * @return The number of events processed.
+     */
+    int streamEvents(EventOptions options, Function< ? super Event, ? > consumer);
 }
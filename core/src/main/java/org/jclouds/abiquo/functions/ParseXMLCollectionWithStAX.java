@@ -0,0 +1,197 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.functions;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static javax.xml.stream.XMLStreamConstants.END_DOCUMENT;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+import static org.jclouds.http.HttpUtils.releasePayload;
+
+import java.io.InputStream;
+import java.util.concurrent.ExecutionException;
+
+import javax.inject.Singleton;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.HttpResponseException;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Parses a collection response element by element using StAX.
+ * <p>
+ * Each element of the collection is unmarshalled to the given type and handed to the consumer
+ * before the next one is read, so only one element is kept in memory at a time. The links and the
+ * total size of the collection are skipped.
+ *
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class ParseXMLCollectionWithStAX
+{
+    /** Elements of the collection transport objects that are not part of the collection. */
+    @VisibleForTesting
+    static final ImmutableSet<String> NON_COLLECTION_ELEMENTS = ImmutableSet.of("link",
+        "totalSize");
+
+    private final XMLInputFactory inputFactory;
+
+    /** JAXB contexts are expensive to create, so there is one per element type. */
+    private final LoadingCache<Class< ? >, JAXBContext> contexts = CacheBuilder.newBuilder()
+        .build(new CacheLoader<Class< ? >, JAXBContext>()
+        {
+            @Override
+            public JAXBContext load(final Class< ? > type) throws JAXBException
+            {
+                return JAXBContext.newInstance(type);
+            }
+        });
+
+    public ParseXMLCollectionWithStAX()
+    {
+        super();
+        this.inputFactory = XMLInputFactory.newInstance();
+    }
+
+    /**
+     * Parses the given response and hands each element of the collection to the given consumer.
+     *
+     * @param response The response containing the collection.
+     * @param elementType The type of the elements in the collection.
+     * @param consumer The function that will process each element.
+     * @return The number of elements in the response.
+     */
+    public <T> int apply(final HttpResponse response, final Class<T> elementType,
+        final Function< ? super T, ? > consumer)
+    {
+        checkNotNull(response, "response");
+        checkNotNull(elementType, "elementType");
+        checkNotNull(consumer, "consumer");
+
+        if (response.getPayload() == null)
+        {
+            return 0;
+        }
+
+        try
+        {
+            return apply(response.getPayload().getInput(), elementType, consumer);
+        }
+        catch (Exception ex)
+        {
+            throw new HttpResponseException("could not parse collection of "
+                + elementType.getName(), null, response, ex);
+        }
+        finally
+        {
+            releasePayload(response);
+        }
+    }
+
+    @VisibleForTesting
+    <T> int apply(final InputStream input, final Class<T> elementType,
+        final Function< ? super T, ? > consumer) throws XMLStreamException, JAXBException,
+        ExecutionException
+    {
+        Unmarshaller unmarshaller = contexts.get(elementType).createUnmarshaller();
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(input);
+
+        try
+        {
+            int count = 0;
+
+            // Move to the first element inside the collection element
+            if (nextElement(reader) != START_ELEMENT)
+            {
+                return 0;
+            }
+            reader.next();
+
+            while (nextElement(reader) == START_ELEMENT)
+            {
+                if (NON_COLLECTION_ELEMENTS.contains(reader.getLocalName()))
+                {
+                    skipElement(reader);
+                    reader.next();
+                }
+                else
+                {
+                    // The unmarshaller leaves the reader after the end of the element
+                    T element = unmarshaller.unmarshal(reader, elementType).getValue();
+                    consumer.apply(element);
+                    count++;
+                }
+            }
+
+            return count;
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Moves the reader to the next start or end element.
+     */
+    private static int nextElement(final XMLStreamReader reader) throws XMLStreamException
+    {
+        int event = reader.getEventType();
+        while (event != START_ELEMENT && event != END_ELEMENT && event != END_DOCUMENT)
+        {
+            event = reader.next();
+        }
+        return event;
+    }
+
+    /**
+     * Moves the reader to the end of the current element.
+     */
+    private static void skipElement(final XMLStreamReader reader) throws XMLStreamException
+    {
+        int depth = 1;
+        while (depth > 0)
+        {
+            switch (reader.next())
+            {
+                case START_ELEMENT:
+                    depth++;
+                    break;
+                case END_ELEMENT:
+                    depth--;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
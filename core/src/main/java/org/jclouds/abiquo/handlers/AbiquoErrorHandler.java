@@ -26,6 +26,7 @@ import javax.inject.Singleton;
 
 import org.jclouds.abiquo.domain.exception.AbiquoException;
 import org.jclouds.abiquo.functions.ParseErrors;
+import org.jclouds.abiquo.http.internal.DecompressGzipResponse;
 import org.jclouds.http.HttpCommand;
 import org.jclouds.http.HttpErrorHandler;
 import org.jclouds.http.HttpResponse;
@@ -47,11 +48,15 @@ public class AbiquoErrorHandler implements HttpErrorHandler
     /** The error parser. */
     private ParseErrors errorParser;
 
+    /** Decompresses the errors if response compression is enabled. */
+    private DecompressGzipResponse decompressor;
+
     @Inject
-    AbiquoErrorHandler(final ParseErrors errorParser)
+    AbiquoErrorHandler(final ParseErrors errorParser, final DecompressGzipResponse decompressor)
     {
         super();
         this.errorParser = errorParser;
+        this.decompressor = decompressor;
     }
 
     @Override
@@ -108,7 +113,9 @@ public class AbiquoErrorHandler implements HttpErrorHandler
         {
             try
             {
-                ErrorsDto errors = errorParser.apply(response);
+                // Error handlers run before the executor decompresses the response
+                ErrorsDto errors = errorParser.apply(decompressor.decompress(
+                    command.getCurrentRequest(), response));
                 exception = new AbiquoException(fromStatusCode(response.getStatusCode()), errors);
             }
             catch (Exception ex)
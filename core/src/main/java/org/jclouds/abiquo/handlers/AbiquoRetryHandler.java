@@ -0,0 +1,227 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.handlers;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.Constants.PROPERTY_MAX_RETRIES;
+import static org.jclouds.abiquo.reference.AbiquoConstants.RETRY_DELAY_MAX;
+import static org.jclouds.abiquo.reference.AbiquoConstants.RETRY_DELAY_START;
+import static org.jclouds.http.HttpUtils.releasePayload;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.abiquo.http.internal.AdaptiveRateLimiter;
+import org.jclouds.abiquo.http.internal.CircuitBreaker;
+import org.jclouds.abiquo.http.internal.CircuitBreaker.State;
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.HttpRetryHandler;
+import org.jclouds.http.IOExceptionRetryHandler;
+import org.jclouds.logging.Logger;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Retries the idempotent requests that failed with a transient server or connection error, and the
+ * requests rejected because too many requests were sent.
+ * <p>
+ * Retries are delayed with a capped exponential backoff with jitter, and all transient failures
+ * are recorded in the {@link CircuitBreaker}, so requests are not retried once the circuit of the
+ * endpoint is open. Throttling signals are reported to the {@link AdaptiveRateLimiter}.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class AbiquoRetryHandler implements HttpRetryHandler, IOExceptionRetryHandler
+{
+    /** Methods that can be safely repeated. */
+    @VisibleForTesting
+    static final Set<String> IDEMPOTENT_METHODS = ImmutableSet.of("GET", "HEAD", "OPTIONS",
+        "PUT", "DELETE");
+
+    /** Server errors returned while the API is not available. */
+    @VisibleForTesting
+    static final Set<Integer> TRANSIENT_ERRORS = ImmutableSet.of(502, 503, 504);
+
+    /** The API rejected the request because too many requests were sent. */
+    @VisibleForTesting
+    static final int TOO_MANY_REQUESTS = 429;
+
+    /** The API is overloaded. */
+    @VisibleForTesting
+    static final int SERVICE_UNAVAILABLE = 503;
+
+    @Resource
+    protected Logger logger = Logger.NULL;
+
+    private final int maxRetries;
+
+    private final long delayStart;
+
+    private final long delayMax;
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final AdaptiveRateLimiter rateLimiter;
+
+    private final Random random = new Random();
+
+    private final AtomicLong retries = new AtomicLong();
+
+    private final AtomicLong exhaustedRetries = new AtomicLong();
+
+    @Inject
+    public AbiquoRetryHandler(@Named(PROPERTY_MAX_RETRIES) final Integer maxRetries,
+        @Named(RETRY_DELAY_START) final Long delayStart,
+        @Named(RETRY_DELAY_MAX) final Long delayMax, final CircuitBreaker circuitBreaker,
+        final AdaptiveRateLimiter rateLimiter)
+    {
+        super();
+        this.maxRetries = checkNotNull(maxRetries, "maxRetries");
+        this.delayStart = checkNotNull(delayStart, "delayStart");
+        this.delayMax = checkNotNull(delayMax, "delayMax");
+        this.circuitBreaker = checkNotNull(circuitBreaker, "circuitBreaker");
+        this.rateLimiter = checkNotNull(rateLimiter, "rateLimiter");
+    }
+
+    @Override
+    public boolean shouldRetryRequest(final HttpCommand command, final HttpResponse response)
+    {
+        int statusCode = response.getStatusCode();
+        if (statusCode == TOO_MANY_REQUESTS || statusCode == SERVICE_UNAVAILABLE)
+        {
+            rateLimiter.throttle(command.getCurrentRequest());
+        }
+
+        boolean retry = false;
+        if (statusCode == TOO_MANY_REQUESTS)
+        {
+            // Throttled requests have not been processed, so they can always be repeated
+            retry = retry(command, true);
+        }
+        else if (TRANSIENT_ERRORS.contains(statusCode))
+        {
+            circuitBreaker.recordFailure(command.getCurrentRequest().getEndpoint());
+            retry = retry(command, false);
+        }
+        // Other errors are returned by a working API, and will fail again
+
+        if (!retry)
+        {
+            return false;
+        }
+
+        releasePayload(response);
+        return true;
+    }
+
+    @Override
+    public boolean shouldRetryRequest(final HttpCommand command, final IOException error)
+    {
+        if (error instanceof SocketTimeoutException)
+        {
+            // The API is too slow to answer
+            rateLimiter.throttle(command.getCurrentRequest());
+        }
+
+        circuitBreaker.recordFailure(command.getCurrentRequest().getEndpoint());
+        return retry(command, false);
+    }
+
+    /**
+     * Get the number of requests that have been retried.
+     */
+    public long getRetries()
+    {
+        return retries.get();
+    }
+
+    /**
+     * Get the number of requests that failed after all the retries.
+     */
+    public long getExhaustedRetries()
+    {
+        return exhaustedRetries.get();
+    }
+
+    private boolean retry(final HttpCommand command, final boolean notProcessed)
+    {
+        String method = command.getCurrentRequest().getMethod();
+        if (!(notProcessed || IDEMPOTENT_METHODS.contains(method)) || !command.isReplayable())
+        {
+            return false;
+        }
+
+        if (circuitBreaker.getState(command.getCurrentRequest().getEndpoint()) != State.CLOSED)
+        {
+            return false;
+        }
+
+        int failures = command.incrementFailureCount();
+        if (failures > maxRetries)
+        {
+            exhaustedRetries.incrementAndGet();
+            logger.warn("giving up %s after %s retries", command.getCurrentRequest()
+                .getRequestLine(), maxRetries);
+            return false;
+        }
+
+        long delay = delay(failures);
+        logger.debug("retrying %s in %s ms (attempt %s of %s)", command.getCurrentRequest()
+            .getRequestLine(), delay, failures, maxRetries);
+
+        try
+        {
+            Thread.sleep(delay);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        retries.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Computes the delay before the given retry.
+     * <p>
+     * The delay doubles with each failure up to the maximum delay, and half of it is randomized so
+     * concurrent clients do not retry at the same time.
+     */
+    @VisibleForTesting
+    long delay(final int failures)
+    {
+        long backoff = Math.min(delayMax, delayStart << Math.min(failures - 1, 30));
+        long half = backoff / 2;
+        return half + (long) (random.nextDouble() * (backoff - half));
+    }
+}
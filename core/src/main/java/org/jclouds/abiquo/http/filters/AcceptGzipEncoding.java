@@ -0,0 +1,72 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.filters;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.jclouds.abiquo.reference.AbiquoConstants.COMPRESS_RESPONSES;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.jclouds.abiquo.http.internal.DecompressingHttpCommandExecutorService;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpException;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpRequestFilter;
+
+/**
+ * Asks the Abiquo API to gzip the responses, if response compression is enabled.
+ * <p>
+ * Compressed responses can only be parsed if they are decompressed by the executor, so this filter
+ * refuses to be created if compression is enabled and the configured executor is not a
+ * {@link DecompressingHttpCommandExecutorService}. The filter is created when the context is
+ * built, so the misconfiguration is reported before any request is sent.
+ * 
+ * @author Ignasi Barrera
+ * @see org.jclouds.abiquo.config.GzipHttpCommandExecutorServiceModule
+ */
+@Singleton
+public class AcceptGzipEncoding implements HttpRequestFilter
+{
+    /** The value of the Accept-Encoding header. */
+    public static final String GZIP = "gzip";
+
+    protected boolean compressResponses;
+
+    @Inject
+    public AcceptGzipEncoding(@Named(COMPRESS_RESPONSES) final String compressResponses,
+        final HttpCommandExecutorService executor)
+    {
+        super();
+        this.compressResponses = Boolean.valueOf(compressResponses);
+        checkState(!this.compressResponses
+            || executor instanceof DecompressingHttpCommandExecutorService, "%s is enabled but "
+            + "the GzipHttpCommandExecutorServiceModule is not configured", COMPRESS_RESPONSES);
+    }
+
+    @Override
+    public HttpRequest filter(final HttpRequest request) throws HttpException
+    {
+        return compressResponses ? request.toBuilder()
+            .replaceHeader(HttpHeaders.ACCEPT_ENCODING, GZIP).build() : request;
+    }
+}
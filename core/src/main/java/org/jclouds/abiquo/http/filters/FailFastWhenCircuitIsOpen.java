@@ -0,0 +1,82 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.filters;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static org.jclouds.abiquo.reference.AbiquoConstants.CIRCUIT_BREAKER_THRESHOLD;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.jclouds.abiquo.domain.exception.CircuitOpenException;
+import org.jclouds.abiquo.http.internal.CircuitBreaker;
+import org.jclouds.abiquo.http.internal.DecompressingHttpCommandExecutorService;
+import org.jclouds.abiquo.http.internal.SuccessReportingHttpCommandExecutorService;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpException;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpRequestFilter;
+
+/**
+ * Rejects the requests to the endpoints whose circuit breaker is open.
+ * <p>
+ * Open circuits are only closed when successful requests are reported, so this filter refuses to
+ * be created if the circuit breaker is enabled and the configured executor does not report them.
+ * The filter is created when the context is built, so the misconfiguration is reported before any
+ * request is sent.
+ * 
+ * @author Ignasi Barrera
+ * @see CircuitBreaker
+ */
+@Singleton
+public class FailFastWhenCircuitIsOpen implements HttpRequestFilter
+{
+    private final CircuitBreaker circuitBreaker;
+
+    @Inject
+    public FailFastWhenCircuitIsOpen(final CircuitBreaker circuitBreaker,
+        final HttpCommandExecutorService executor)
+    {
+        super();
+        this.circuitBreaker = checkNotNull(circuitBreaker, "circuitBreaker");
+        checkState(!circuitBreaker.isEnabled() || reportsSuccesses(executor), "%s is enabled but "
+            + "the CircuitBreakerHttpCommandExecutorServiceModule is not configured",
+            CIRCUIT_BREAKER_THRESHOLD);
+    }
+
+    @Override
+    public HttpRequest filter(final HttpRequest request) throws HttpException
+    {
+        if (!circuitBreaker.allowRequest(request.getEndpoint()))
+        {
+            throw new CircuitOpenException("circuit is open for " + request.getEndpoint().getHost()
+                + ", rejecting " + request.getRequestLine());
+        }
+        return request;
+    }
+
+    private static boolean reportsSuccesses(final HttpCommandExecutorService executor)
+    {
+        // The decompressing executor always wraps the one that reports the successes
+        return executor instanceof SuccessReportingHttpCommandExecutorService
+            || executor instanceof DecompressingHttpCommandExecutorService;
+    }
+}
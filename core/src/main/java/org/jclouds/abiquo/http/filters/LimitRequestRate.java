@@ -0,0 +1,78 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.filters;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.jclouds.abiquo.reference.AbiquoConstants.RATE_LIMIT_POLLING;
+import static org.jclouds.abiquo.reference.AbiquoConstants.RATE_LIMIT_READS;
+import static org.jclouds.abiquo.reference.AbiquoConstants.RATE_LIMIT_WRITES;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.jclouds.abiquo.http.internal.AdaptiveRateLimiter;
+import org.jclouds.abiquo.http.internal.DecompressingHttpCommandExecutorService;
+import org.jclouds.abiquo.http.internal.RateLimitingHttpCommandExecutorService;
+import org.jclouds.abiquo.http.internal.SuccessReportingHttpCommandExecutorService;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpException;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpRequestFilter;
+
+/**
+ * Ensures the requests are delayed when they exceed the rate allowed by the
+ * {@link AdaptiveRateLimiter}.
+ * <p>
+ * Requests are delayed by the {@link RateLimitingHttpCommandExecutorService}, so they do not block
+ * any thread while they wait. This filter refuses to be created if rate limiting is enabled and
+ * the configured executor does not delay the requests. The filter is created when the context is
+ * built, so the misconfiguration is reported before any request is sent.
+ * 
+ * @author Ignasi Barrera
+ * @see org.jclouds.abiquo.config.RateLimitingHttpCommandExecutorServiceModule
+ */
+@Singleton
+public class LimitRequestRate implements HttpRequestFilter
+{
+    @Inject
+    public LimitRequestRate(final AdaptiveRateLimiter rateLimiter,
+        final HttpCommandExecutorService executor)
+    {
+        super();
+        checkState(!rateLimiter.isEnabled() || limitsRate(executor), "%s, %s or %s is enabled "
+            + "but the RateLimitingHttpCommandExecutorServiceModule is not configured",
+            RATE_LIMIT_READS, RATE_LIMIT_WRITES, RATE_LIMIT_POLLING);
+    }
+
+    @Override
+    public HttpRequest filter(final HttpRequest request) throws HttpException
+    {
+        // The requests are delayed by the executor
+        return request;
+    }
+
+    private static boolean limitsRate(final HttpCommandExecutorService executor)
+    {
+        // The decorating executors always wrap the one that limits the rate
+        return executor instanceof RateLimitingHttpCommandExecutorService
+            || executor instanceof SuccessReportingHttpCommandExecutorService
+            || executor instanceof DecompressingHttpCommandExecutorService;
+    }
+}
@@ -0,0 +1,355 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.abiquo.reference.AbiquoConstants.RATE_LIMIT_POLLING;
+import static org.jclouds.abiquo.reference.AbiquoConstants.RATE_LIMIT_READS;
+import static org.jclouds.abiquo.reference.AbiquoConstants.RATE_LIMIT_WRITES;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.http.HttpRequest;
+import org.jclouds.logging.Logger;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Limits the rate of the requests sent to the Abiquo API.
+ * <p>
+ * Requests are classified in reads, writes and polling requests, and each class has its own rate.
+ * Requests exceeding the rate are delayed, not rejected. Each rate is halved when the API signals
+ * it is overloaded or when the smoothed latency of its requests doubles, and increased by a tenth
+ * of the maximum rate for each second without signals, up to the configured maximum.
+ * <p>
+ * This class only computes the delays. The requests are delayed by the
+ * {@link RateLimitingHttpCommandExecutorService}, without blocking any thread.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class AdaptiveRateLimiter
+{
+    /**
+     * The classes of requests with independent rates.
+     */
+    public static enum RequestClass
+    {
+        READ, WRITE, POLLING;
+    }
+
+    /** Methods that do not modify resources. */
+    private static final ImmutableSet<String> READ_METHODS = ImmutableSet.of("GET", "HEAD",
+        "OPTIONS");
+
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /** Weight of each new sample in the smoothed latency. */
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    /** Weight of each new sample in the baseline latency, that follows increases slowly. */
+    private static final double BASELINE_WEIGHT = 0.01;
+
+    /** Ratio between the smoothed and the baseline latencies that decreases the rate. */
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    @Resource
+    protected Logger logger = Logger.NULL;
+
+    private final Map<RequestClass, Limiter> limiters =
+        new EnumMap<RequestClass, Limiter>(RequestClass.class);
+
+    private final Ticker ticker;
+
+    @Inject
+    public AdaptiveRateLimiter(@Named(RATE_LIMIT_READS) final Double reads,
+        @Named(RATE_LIMIT_WRITES) final Double writes,
+        @Named(RATE_LIMIT_POLLING) final Double polling)
+    {
+        this(reads, writes, polling, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    AdaptiveRateLimiter(final Double reads, final Double writes, final Double polling,
+        final Ticker ticker)
+    {
+        super();
+        this.ticker = checkNotNull(ticker, "ticker");
+        addLimiter(RequestClass.READ, checkNotNull(reads, "reads"));
+        addLimiter(RequestClass.WRITE, checkNotNull(writes, "writes"));
+        addLimiter(RequestClass.POLLING, checkNotNull(polling, "polling"));
+    }
+
+    /**
+     * Reserves a slot for the given request.
+     * <p>
+     * Requests that must be delayed are counted as waiting until {@link #released(HttpRequest)}
+     * is called.
+     * 
+     * @param request The request to send.
+     * @return The time to wait before sending the request, in nanoseconds.
+     */
+    public long reserve(final HttpRequest request)
+    {
+        Limiter limiter = limiters.get(classify(request));
+        if (limiter == null)
+        {
+            return 0;
+        }
+
+        long wait = limiter.reserve(ticker.read());
+        if (wait > 0)
+        {
+            logger.trace("delaying %s %s ms", request.getRequestLine(),
+                TimeUnit.NANOSECONDS.toMillis(wait));
+            limiter.waiting.incrementAndGet();
+        }
+
+        limiter.acquired.incrementAndGet();
+        limiter.totalWait.addAndGet(wait);
+        return wait;
+    }
+
+    /**
+     * Stops counting a delayed request as waiting, because it has been sent or aborted.
+     * 
+     * @param request The delayed request.
+     */
+    public void released(final HttpRequest request)
+    {
+        Limiter limiter = limiters.get(classify(request));
+        if (limiter != null)
+        {
+            limiter.waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Records the latency of a request, and decreases the rate of its class if the smoothed
+     * latency has doubled.
+     * 
+     * @param request The request that has been sent.
+     * @param latency The time elapsed until the response was received, in nanoseconds.
+     */
+    public void recordLatency(final HttpRequest request, final long latency)
+    {
+        RequestClass requestClass = classify(request);
+        Limiter limiter = limiters.get(requestClass);
+        if (limiter != null && limiter.recordLatency(latency, ticker.read()))
+        {
+            logger.debug("%s latency increased, decreased rate to %s requests per second",
+                requestClass, limiter.getRate());
+        }
+    }
+
+    /**
+     * Decreases the rate of the class of the given request, because the API is overloaded.
+     * 
+     * @param request The request that was throttled or timed out.
+     */
+    public void throttle(final HttpRequest request)
+    {
+        RequestClass requestClass = classify(request);
+        Limiter limiter = limiters.get(requestClass);
+        if (limiter != null && limiter.decrease(ticker.read()))
+        {
+            logger.debug("decreased %s rate to %s requests per second", requestClass,
+                limiter.getRate());
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the rate of any class of requests is limited.
+     */
+    public boolean isEnabled()
+    {
+        return !limiters.isEmpty();
+    }
+
+    /**
+     * Get the current rate (in requests per second) of the given class of requests, or
+     * <code>0</code> if it is not limited.
+     */
+    public double getRate(final RequestClass requestClass)
+    {
+        Limiter limiter = limiters.get(requestClass);
+        return limiter == null ? 0 : limiter.getRate();
+    }
+
+    /**
+     * Get the number of requests of the given class that are currently waiting.
+     */
+    public long getWaitingRequests(final RequestClass requestClass)
+    {
+        Limiter limiter = limiters.get(requestClass);
+        return limiter == null ? 0 : limiter.waiting.get();
+    }
+
+    /**
+     * Get the number of requests of the given class that have been sent.
+     */
+    public long getAcquired(final RequestClass requestClass)
+    {
+        Limiter limiter = limiters.get(requestClass);
+        return limiter == null ? 0 : limiter.acquired.get();
+    }
+
+    /**
+     * Get the total time (in milliseconds) the requests of the given class have been delayed.
+     */
+    public long getTotalWaitTime(final RequestClass requestClass)
+    {
+        Limiter limiter = limiters.get(requestClass);
+        return limiter == null ? 0 : TimeUnit.NANOSECONDS.toMillis(limiter.totalWait.get());
+    }
+
+    @VisibleForTesting
+    static RequestClass classify(final HttpRequest request)
+    {
+        if (!READ_METHODS.contains(request.getMethod()))
+        {
+            return RequestClass.WRITE;
+        }
+
+        String path = request.getEndpoint().getPath();
+        return path != null && (path.contains("/tasks") || path.endsWith("/state")) ? //
+            RequestClass.POLLING : RequestClass.READ;
+    }
+
+    @VisibleForTesting
+    long reserve(final RequestClass requestClass)
+    {
+        return limiters.get(requestClass).reserve(ticker.read());
+    }
+
+    private void addLimiter(final RequestClass requestClass, final double maxRate)
+    {
+        if (maxRate > 0)
+        {
+            limiters.put(requestClass, new Limiter(maxRate, ticker.read()));
+        }
+    }
+
+    /**
+     * Schedules the requests of a class at the current rate.
+     */
+    private static class Limiter
+    {
+        private final double maxRate;
+
+        private final double minRate;
+
+        private final double increment;
+
+        private double rate;
+
+        /** The time the next request can be sent. */
+        private long next;
+
+        private long lastAdjustment;
+
+        private long lastDecrease = Long.MIN_VALUE / 2;
+
+        /** Exponentially weighted moving average of the latency. */
+        private double latency;
+
+        /** The latency considered normal. */
+        private double baseline;
+
+        private final AtomicLong waiting = new AtomicLong();
+
+        private final AtomicLong acquired = new AtomicLong();
+
+        private final AtomicLong totalWait = new AtomicLong();
+
+        private Limiter(final double maxRate, final long now)
+        {
+            this.maxRate = maxRate;
+            this.minRate = maxRate / 20;
+            this.increment = maxRate / 10;
+            this.rate = maxRate;
+            this.next = now;
+            this.lastAdjustment = now;
+        }
+
+        /**
+         * Reserves the next slot and returns the time to wait for it.
+         */
+        private synchronized long reserve(final long now)
+        {
+            increase(now);
+            long slot = Math.max(now, next);
+            next = slot + (long) (ONE_SECOND / rate);
+            return slot - now;
+        }
+
+        private synchronized boolean decrease(final long now)
+        {
+            // The requests sent at the same time get the same signal, so react only once
+            if (now - lastDecrease < ONE_SECOND)
+            {
+                return false;
+            }
+            rate = Math.max(minRate, rate / 2);
+            lastDecrease = now;
+            lastAdjustment = now;
+            return true;
+        }
+
+        private synchronized boolean recordLatency(final long sample, final long now)
+        {
+            if (latency == 0)
+            {
+                latency = sample;
+                baseline = sample;
+                return false;
+            }
+
+            latency = LATENCY_WEIGHT * sample + (1 - LATENCY_WEIGHT) * latency;
+            baseline = Math.min(latency, baseline + BASELINE_WEIGHT * (latency - baseline));
+            return latency > baseline * LATENCY_TOLERANCE && decrease(now);
+        }
+
+        private void increase(final long now)
+        {
+            long seconds = (now - lastAdjustment) / ONE_SECOND;
+            if (seconds > 0)
+            {
+                rate = Math.min(maxRate, rate + increment * seconds);
+                lastAdjustment += seconds * ONE_SECOND;
+            }
+        }
+
+        private synchronized double getRate()
+        {
+            return rate;
+        }
+    }
+}
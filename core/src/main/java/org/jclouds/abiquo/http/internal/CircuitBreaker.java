@@ -0,0 +1,333 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.abiquo.reference.AbiquoConstants.CIRCUIT_BREAKER_OPEN_PERIOD;
+import static org.jclouds.abiquo.reference.AbiquoConstants.CIRCUIT_BREAKER_PROBE_TIMEOUT;
+import static org.jclouds.abiquo.reference.AbiquoConstants.CIRCUIT_BREAKER_THRESHOLD;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.abiquo.events.http.CircuitBreakerEvent;
+import org.jclouds.logging.Logger;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Maps;
+import com.google.common.eventbus.EventBus;
+
+/**
+ * Keeps track of the transient failures of each endpoint to fail fast while it is down.
+ * <p>
+ * The circuit of an endpoint is opened when it accumulates the configured number of failures, and
+ * requests to that endpoint are rejected until the open period expires. Then a single probe
+ * request is allowed. The circuit is closed again only when the probe succeeds, and is opened for
+ * another period if it fails. If the outcome of the probe is not known within the probe timeout,
+ * another probe is allowed.
+ * <p>
+ * Successful requests are only reported when the
+ * {@link org.jclouds.abiquo.config.CircuitBreakerHttpCommandExecutorServiceModule} or the
+ * {@link org.jclouds.abiquo.config.GzipHttpCommandExecutorServiceModule} is used. A threshold of
+ * <code>0</code> disables the circuit breaker.
+ * <p>
+ * Each state transition is posted to the {@link EventBus} as a {@link CircuitBreakerEvent}.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class CircuitBreaker
+{
+    /**
+     * The states of the circuit of an endpoint.
+     */
+    public static enum State
+    {
+        CLOSED, OPEN, HALF_OPEN;
+    }
+
+    @Resource
+    protected Logger logger = Logger.NULL;
+
+    private final int threshold;
+
+    private final long openPeriodNanos;
+
+    private final long probeTimeoutNanos;
+
+    private final EventBus eventBus;
+
+    private final Ticker ticker;
+
+    private final ConcurrentMap<String, Circuit> circuits = Maps.newConcurrentMap();
+
+    @Inject
+    public CircuitBreaker(@Named(CIRCUIT_BREAKER_THRESHOLD) final Integer threshold,
+        @Named(CIRCUIT_BREAKER_OPEN_PERIOD) final Long openPeriod,
+        @Named(CIRCUIT_BREAKER_PROBE_TIMEOUT) final Long probeTimeout, final EventBus eventBus)
+    {
+        this(threshold, openPeriod, probeTimeout, eventBus, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    CircuitBreaker(final Integer threshold, final Long openPeriod, final Long probeTimeout,
+        final EventBus eventBus, final Ticker ticker)
+    {
+        super();
+        this.threshold = checkNotNull(threshold, "threshold");
+        checkArgument(threshold >= 0, "threshold must not be negative");
+        this.openPeriodNanos =
+            TimeUnit.MILLISECONDS.toNanos(checkNotNull(openPeriod, "openPeriod"));
+        this.probeTimeoutNanos =
+            TimeUnit.MILLISECONDS.toNanos(checkNotNull(probeTimeout, "probeTimeout"));
+        this.eventBus = checkNotNull(eventBus, "eventBus");
+        this.ticker = checkNotNull(ticker, "ticker");
+    }
+
+    /**
+     * Checks if a request to the given endpoint can be performed.
+     * 
+     * @param endpoint The endpoint of the request.
+     * @return Boolean indicating if the request is allowed.
+     */
+    public boolean allowRequest(final URI endpoint)
+    {
+        if (!isEnabled())
+        {
+            return true;
+        }
+
+        String key = key(endpoint);
+        Circuit circuit = circuit(key);
+        State from = null;
+        State to = null;
+        boolean allowed;
+
+        synchronized (circuit)
+        {
+            from = circuit.state;
+            long now = ticker.read();
+            switch (circuit.state)
+            {
+                case OPEN:
+                    // After the open period, let a probe request go through
+                    allowed = now - circuit.since >= openPeriodNanos;
+                    if (allowed)
+                    {
+                        circuit.transition(State.HALF_OPEN, now);
+                    }
+                    break;
+                case HALF_OPEN:
+                    // The outcome of the probe is unknown, so let another one go through
+                    allowed = now - circuit.since >= probeTimeoutNanos;
+                    if (allowed)
+                    {
+                        circuit.since = now;
+                    }
+                    break;
+                default:
+                    allowed = true;
+                    break;
+            }
+            to = circuit.state;
+        }
+
+        fireIfChanged(key, from, to);
+        return allowed;
+    }
+
+    /**
+     * Records a transient failure of a request to the given endpoint.
+     * 
+     * @param endpoint The endpoint of the failed request.
+     */
+    public void recordFailure(final URI endpoint)
+    {
+        if (!isEnabled())
+        {
+            return;
+        }
+
+        String key = key(endpoint);
+        Circuit circuit = circuit(key);
+        State from = null;
+        State to = null;
+
+        synchronized (circuit)
+        {
+            from = circuit.state;
+            long now = ticker.read();
+            switch (circuit.state)
+            {
+                case HALF_OPEN:
+                    // The probe failed
+                    circuit.transition(State.OPEN, now);
+                    break;
+                case CLOSED:
+                    // Only recent failures count
+                    if (now - circuit.lastFailure > openPeriodNanos)
+                    {
+                        circuit.failures = 0;
+                    }
+                    circuit.failures++;
+                    circuit.lastFailure = now;
+                    if (circuit.failures >= threshold)
+                    {
+                        circuit.transition(State.OPEN, now);
+                    }
+                    break;
+                default:
+                    // Failures of requests that were in flight when the circuit was opened
+                    break;
+            }
+            to = circuit.state;
+        }
+
+        fireIfChanged(key, from, to);
+    }
+
+    /**
+     * Records a successful request to the given endpoint.
+     * 
+     * @param endpoint The endpoint of the successful request.
+     */
+    public void recordSuccess(final URI endpoint)
+    {
+        if (!isEnabled())
+        {
+            return;
+        }
+
+        String key = key(endpoint);
+        Circuit circuit = circuits.get(key);
+        if (circuit == null)
+        {
+            return;
+        }
+
+        State from = null;
+        State to = null;
+
+        synchronized (circuit)
+        {
+            from = circuit.state;
+            switch (circuit.state)
+            {
+                case HALF_OPEN:
+                    // The probe succeeded, so the endpoint is back
+                    circuit.transition(State.CLOSED, ticker.read());
+                    break;
+                case CLOSED:
+                    circuit.failures = 0;
+                    break;
+                default:
+                    // Responses of requests that were in flight when the circuit was opened
+                    break;
+            }
+            to = circuit.state;
+        }
+
+        fireIfChanged(key, from, to);
+    }
+
+    /**
+     * Checks if the circuit breaker is enabled.
+     */
+    public boolean isEnabled()
+    {
+        return threshold > 0;
+    }
+
+    /**
+     * Get the current state of the circuit of the given endpoint.
+     */
+    public State getState(final URI endpoint)
+    {
+        Circuit circuit = circuits.get(key(endpoint));
+        if (circuit == null)
+        {
+            return State.CLOSED;
+        }
+        synchronized (circuit)
+        {
+            return circuit.state;
+        }
+    }
+
+    private Circuit circuit(final String key)
+    {
+        Circuit circuit = circuits.get(key);
+        if (circuit == null)
+        {
+            Circuit existing = circuits.putIfAbsent(key, circuit = new Circuit());
+            if (existing != null)
+            {
+                circuit = existing;
+            }
+        }
+        return circuit;
+    }
+
+    private void fireIfChanged(final String endpoint, final State from, final State to)
+    {
+        if (from != to)
+        {
+            // Posted outside the lock, since handlers may perform requests
+            logger.warn("circuit for %s changed from %s to %s", endpoint, from, to);
+            eventBus.post(new CircuitBreakerEvent(endpoint, from, to));
+        }
+    }
+
+    /**
+     * Circuits are kept per host, since all the resources of an endpoint fail at the same time.
+     */
+    @VisibleForTesting
+    static String key(final URI endpoint)
+    {
+        checkNotNull(endpoint, "endpoint");
+        return endpoint.getScheme() + "://" + endpoint.getHost() + ":" + endpoint.getPort();
+    }
+
+    private static class Circuit
+    {
+        private State state = State.CLOSED;
+
+        private long since;
+
+        private int failures;
+
+        private long lastFailure;
+
+        private void transition(final State to, final long now)
+        {
+            state = to;
+            since = now;
+            failures = 0;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.abiquo.http.filters.AcceptGzipEncoding.GZIP;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.io.MutableContentMetadata;
+import org.jclouds.io.Payload;
+import org.jclouds.io.Payloads;
+
+import com.google.common.base.Function;
+
+/**
+ * Replaces the payload of gzipped responses with one that decompresses the content while it is
+ * being read.
+ * <p>
+ * The response is returned untouched if it is not compressed. The sizes of each decompressed
+ * response are reported to the {@link ResponseCompressionStats} when its payload is closed.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class DecompressGzipResponse implements Function<HttpResponse, HttpResponse>
+{
+    private final ResponseCompressionStats stats;
+
+    @Inject
+    public DecompressGzipResponse(final ResponseCompressionStats stats)
+    {
+        super();
+        this.stats = checkNotNull(stats, "stats");
+    }
+
+    /**
+     * Decompresses a response whose originating request is unknown.
+     * 
+     * @see #decompress(HttpRequest, HttpResponse)
+     */
+    @Override
+    public HttpResponse apply(final HttpResponse response)
+    {
+        return decompress(null, response);
+    }
+
+    /**
+     * Decompresses the response to the given request.
+     * 
+     * @param request The request that produced the response, reported along with the sizes of the
+     *            response.
+     * @param response The response to decompress.
+     * @return The decompressed response, or the given one if it is not compressed.
+     */
+    public HttpResponse decompress(final HttpRequest request, final HttpResponse response)
+    {
+        if (!isCompressed(response))
+        {
+            return response;
+        }
+
+        try
+        {
+            Payload compressed = response.getPayload();
+            Payload payload =
+                Payloads.newInputStreamPayload(new DecompressingInputStream(compressed
+                    .getInput(), request, stats));
+
+            // The length of the decompressed content is unknown until it is read
+            MutableContentMetadata metadata = payload.getContentMetadata();
+            metadata.setContentType(compressed.getContentMetadata().getContentType());
+
+            return response.toBuilder().payload(payload)
+                .removeHeader(HttpHeaders.CONTENT_ENCODING)
+                .removeHeader(HttpHeaders.CONTENT_LENGTH).build();
+        }
+        catch (IOException ex)
+        {
+            throw new HttpResponseException("could not decompress the response", null, response,
+                ex);
+        }
+    }
+
+    private static boolean isCompressed(final HttpResponse response)
+    {
+        if (response.getPayload() == null)
+        {
+            return false;
+        }
+
+        String encoding = response.getPayload().getContentMetadata().getContentEncoding();
+        if (encoding == null)
+        {
+            encoding = response.getFirstHeaderOrNull(HttpHeaders.CONTENT_ENCODING);
+        }
+
+        return encoding != null && encoding.toLowerCase().contains(GZIP);
+    }
+}
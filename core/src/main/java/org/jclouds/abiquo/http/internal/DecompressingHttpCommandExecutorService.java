@@ -0,0 +1,80 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpResponse;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Decompresses the gzipped responses returned by the wrapped executor.
+ * <p>
+ * The <code>java.net</code> executor does not decompress the responses, so this decorator is
+ * required to enable response compression.
+ * 
+ * @author Ignasi Barrera
+ * @see DecompressGzipResponse
+ */
+@Singleton
+public class DecompressingHttpCommandExecutorService implements HttpCommandExecutorService
+{
+    /** Name of the binding of the wrapped executor. */
+    public static final String DELEGATE = "abiquo.http.delegate-executor";
+
+    private final HttpCommandExecutorService delegate;
+
+    private final DecompressGzipResponse decompressor;
+
+    @Inject
+    public DecompressingHttpCommandExecutorService(
+        @Named(DELEGATE) final HttpCommandExecutorService delegate,
+        final DecompressGzipResponse decompressor)
+    {
+        super();
+        this.delegate = checkNotNull(delegate, "delegate");
+        this.decompressor = checkNotNull(decompressor, "decompressor");
+    }
+
+    @Override
+    public ListenableFuture<HttpResponse> submit(final HttpCommand command)
+    {
+        // The request is reported along with the sizes of its response
+        Function<HttpResponse, HttpResponse> decompress = new Function<HttpResponse, HttpResponse>()
+        {
+            @Override
+            public HttpResponse apply(final HttpResponse response)
+            {
+                return decompressor.decompress(command.getCurrentRequest(), response);
+            }
+        };
+
+        return Futures.transform(delegate.submit(command), decompress);
+    }
+}
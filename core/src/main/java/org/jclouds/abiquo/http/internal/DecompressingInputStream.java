@@ -0,0 +1,107 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.jclouds.http.HttpRequest;
+
+import com.google.common.io.CountingInputStream;
+
+/**
+ * Decompresses a gzipped stream while it is being read, counting the bytes read before and after
+ * decompressing it.
+ * <p>
+ * The counts of the stream are recorded in the given {@link ResponseCompressionStats}, along with
+ * the request that produced the response, when the stream is closed.
+ * 
+ * @author Ignasi Barrera
+ */
+public class DecompressingInputStream extends FilterInputStream
+{
+    private final CountingInputStream compressed;
+
+    private final HttpRequest request;
+
+    private final ResponseCompressionStats stats;
+
+    private boolean closed = false;
+
+    public DecompressingInputStream(final InputStream input, final HttpRequest request,
+        final ResponseCompressionStats stats) throws IOException
+    {
+        this(new CountingInputStream(checkNotNull(input, "input")), request, stats);
+    }
+
+    private DecompressingInputStream(final CountingInputStream compressed,
+        final HttpRequest request, final ResponseCompressionStats stats) throws IOException
+    {
+        super(new CountingInputStream(new GZIPInputStream(compressed)));
+        this.compressed = compressed;
+        this.request = request;
+        this.stats = checkNotNull(stats, "stats");
+    }
+
+    /**
+     * Get the request that produced the response being decompressed, if known.
+     */
+    public HttpRequest getRequest()
+    {
+        return request;
+    }
+
+    /**
+     * Get the number of bytes read from the compressed stream.
+     */
+    public long getCompressedBytes()
+    {
+        return compressed.getCount();
+    }
+
+    /**
+     * Get the number of bytes returned after decompressing the stream.
+     */
+    public long getUncompressedBytes()
+    {
+        return ((CountingInputStream) in).getCount();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            super.close();
+        }
+        finally
+        {
+            if (!closed)
+            {
+                closed = true;
+                stats.record(request, getCompressedBytes(), getUncompressedBytes());
+            }
+        }
+    }
+}
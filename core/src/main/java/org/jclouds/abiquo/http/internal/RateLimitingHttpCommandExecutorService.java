@@ -0,0 +1,183 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.Constants.PROPERTY_SCHEDULER_THREADS;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Delays the requests that exceed the rate allowed by the {@link AdaptiveRateLimiter}.
+ * <p>
+ * Delayed requests are scheduled, so no thread is blocked while they wait. Cancelling the returned
+ * future aborts a request that has not been sent yet. The latency of the sent requests is reported
+ * to the rate limiter, to decrease the rate when the API slows down.
+ * 
+ * @author Ignasi Barrera
+ * @see AdaptiveRateLimiter
+ */
+@Singleton
+public class RateLimitingHttpCommandExecutorService implements HttpCommandExecutorService
+{
+    /** Name of the binding of the wrapped executor. */
+    public static final String DELEGATE = "abiquo.http.limited-executor";
+
+    private final HttpCommandExecutorService delegate;
+
+    private final AdaptiveRateLimiter rateLimiter;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Ticker ticker = Ticker.systemTicker();
+
+    @Inject
+    public RateLimitingHttpCommandExecutorService(
+        @Named(DELEGATE) final HttpCommandExecutorService delegate,
+        final AdaptiveRateLimiter rateLimiter,
+        @Named(PROPERTY_SCHEDULER_THREADS) final ScheduledExecutorService scheduler)
+    {
+        super();
+        this.delegate = checkNotNull(delegate, "delegate");
+        this.rateLimiter = checkNotNull(rateLimiter, "rateLimiter");
+        this.scheduler = checkNotNull(scheduler, "scheduler");
+    }
+
+    @Override
+    public ListenableFuture<HttpResponse> submit(final HttpCommand command)
+    {
+        final HttpRequest request = command.getCurrentRequest();
+        long wait = rateLimiter.reserve(request);
+        if (wait <= 0)
+        {
+            return send(command, request);
+        }
+
+        final SettableFuture<HttpResponse> response = SettableFuture.create();
+        final ScheduledFuture< ? > delayed = scheduler.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                rateLimiter.released(request);
+                if (!response.isDone())
+                {
+                    try
+                    {
+                        forward(send(command, request), response);
+                    }
+                    catch (RuntimeException ex)
+                    {
+                        response.setException(ex);
+                    }
+                }
+            }
+        }, wait, TimeUnit.NANOSECONDS);
+
+        // Requests cancelled while they wait are never sent
+        response.addListener(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (response.isCancelled() && delayed.cancel(false))
+                {
+                    rateLimiter.released(request);
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+
+        return response;
+    }
+
+    private ListenableFuture<HttpResponse> send(final HttpCommand command,
+        final HttpRequest request)
+    {
+        final long start = ticker.read();
+        ListenableFuture<HttpResponse> response = delegate.submit(command);
+
+        // Failed requests are already reported by the retry handler
+        Futures.addCallback(response, new FutureCallback<HttpResponse>()
+        {
+            @Override
+            public void onSuccess(final HttpResponse result)
+            {
+                rateLimiter.recordLatency(request, ticker.read() - start);
+            }
+
+            @Override
+            public void onFailure(final Throwable t)
+            {
+                // Nothing to report
+            }
+        }, MoreExecutors.sameThreadExecutor());
+
+        return response;
+    }
+
+    private static void forward(final ListenableFuture<HttpResponse> sent,
+        final SettableFuture<HttpResponse> response)
+    {
+        Futures.addCallback(sent, new FutureCallback<HttpResponse>()
+        {
+            @Override
+            public void onSuccess(final HttpResponse result)
+            {
+                response.set(result);
+            }
+
+            @Override
+            public void onFailure(final Throwable t)
+            {
+                response.setException(t);
+            }
+        }, MoreExecutors.sameThreadExecutor());
+
+        response.addListener(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (response.isCancelled())
+                {
+                    sent.cancel(true);
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+import javax.inject.Singleton;
+
+import org.jclouds.http.HttpRequest;
+import org.jclouds.logging.Logger;
+
+/**
+ * Accumulates the number of bytes received and decompressed in the compressed responses.
+ * <p>
+ * The sizes of each individual response are reported to the registered {@link Listener}s once
+ * the response has been read.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class ResponseCompressionStats
+{
+    @Resource
+    protected Logger logger = Logger.NULL;
+
+    private final AtomicLong responses = new AtomicLong();
+
+    private final AtomicLong compressedBytes = new AtomicLong();
+
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    /**
+     * Receives the sizes of each decompressed response.
+     * 
+     * @author Ignasi Barrera
+     */
+    public static interface Listener
+    {
+        /**
+         * Called once the compressed response to the given request has been read.
+         * 
+         * @param request The request that produced the response, or <code>null</code> if it is
+         *            unknown.
+         * @param compressed The number of bytes read from the network.
+         * @param uncompressed The number of bytes after decompressing the response.
+         */
+        void responseRead(HttpRequest request, long compressed, long uncompressed);
+    }
+
+    /**
+     * Registers a listener to be notified of the sizes of each decompressed response.
+     */
+    public void addListener(final Listener listener)
+    {
+        listeners.add(checkNotNull(listener, "listener"));
+    }
+
+    /**
+     * Unregisters the given listener.
+     */
+    public void removeListener(final Listener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Records the sizes of a decompressed response.
+     * 
+     * @param request The request that produced the response, or <code>null</code> if it is
+     *            unknown.
+     * @param compressed The number of bytes read from the network.
+     * @param uncompressed The number of bytes after decompressing the response.
+     */
+    public void record(final HttpRequest request, final long compressed, final long uncompressed)
+    {
+        responses.incrementAndGet();
+        compressedBytes.addAndGet(compressed);
+        uncompressedBytes.addAndGet(uncompressed);
+        logger.debug("decompressed response to %s: %s bytes received, %s bytes read",
+            request == null ? "unknown request" : request.getRequestLine(), compressed,
+            uncompressed);
+
+        for (Listener listener : listeners)
+        {
+            try
+            {
+                listener.responseRead(request, compressed, uncompressed);
+            }
+            catch (RuntimeException ex)
+            {
+                logger.warn(ex, "compression stats listener %s failed", listener);
+            }
+        }
+    }
+
+    /**
+     * Get the number of compressed responses that have been read.
+     */
+    public long getResponses()
+    {
+        return responses.get();
+    }
+
+    /**
+     * Get the number of bytes received in compressed responses.
+     */
+    public long getCompressedBytes()
+    {
+        return compressedBytes.get();
+    }
+
+    /**
+     * Get the number of bytes the compressed responses would have taken without compression.
+     */
+    public long getUncompressedBytes()
+    {
+        return uncompressedBytes.get();
+    }
+}
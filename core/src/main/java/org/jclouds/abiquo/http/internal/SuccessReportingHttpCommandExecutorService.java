@@ -0,0 +1,90 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpResponse;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Reports the successful requests performed by the wrapped executor to the
+ * {@link CircuitBreaker}.
+ * <p>
+ * The request filters and the error and retry handlers never see the successful responses, so
+ * this decorator is required to close the circuits again.
+ * 
+ * @author Ignasi Barrera
+ * @see CircuitBreaker
+ */
+@Singleton
+public class SuccessReportingHttpCommandExecutorService implements HttpCommandExecutorService
+{
+    /** Name of the binding of the wrapped executor. */
+    public static final String DELEGATE = "abiquo.http.reported-executor";
+
+    private final HttpCommandExecutorService delegate;
+
+    private final CircuitBreaker circuitBreaker;
+
+    @Inject
+    public SuccessReportingHttpCommandExecutorService(
+        @Named(DELEGATE) final HttpCommandExecutorService delegate,
+        final CircuitBreaker circuitBreaker)
+    {
+        super();
+        this.delegate = checkNotNull(delegate, "delegate");
+        this.circuitBreaker = checkNotNull(circuitBreaker, "circuitBreaker");
+    }
+
+    @Override
+    public ListenableFuture<HttpResponse> submit(final HttpCommand command)
+    {
+        ListenableFuture<HttpResponse> response = delegate.submit(command);
+
+        // Failed requests are already recorded by the retry handler
+        Futures.addCallback(response, new FutureCallback<HttpResponse>()
+        {
+            @Override
+            public void onSuccess(final HttpResponse result)
+            {
+                circuitBreaker.recordSuccess(command.getCurrentRequest().getEndpoint());
+            }
+
+            @Override
+            public void onFailure(final Throwable t)
+            {
+                // Nothing to report
+            }
+        }, MoreExecutors.sameThreadExecutor());
+
+        return response;
+    }
+}
@@ -19,21 +19,28 @@
 
 package org.jclouds.abiquo.internal;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+import static org.jclouds.abiquo.reference.AbiquoConstants.BULK_OPERATIONS_CONCURRENCY;
 
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.jclouds.abiquo.AbiquoAsyncApi;
 import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.domain.cloud.BulkStateChange;
 import org.jclouds.abiquo.domain.cloud.VirtualAppliance;
 import org.jclouds.abiquo.domain.cloud.VirtualDatacenter;
 import org.jclouds.abiquo.domain.cloud.VirtualMachine;
 import org.jclouds.abiquo.domain.cloud.options.VirtualDatacenterOptions;
 import org.jclouds.abiquo.domain.enterprise.Enterprise;
+import org.jclouds.abiquo.domain.task.AsyncTask;
+import org.jclouds.abiquo.domain.util.RequestLimiter;
 import org.jclouds.abiquo.features.services.CloudService;
 import org.jclouds.abiquo.reference.ValidationErrors;
 import org.jclouds.abiquo.strategy.cloud.ListVirtualAppliances;
@@ -42,9 +49,15 @@ import org.jclouds.abiquo.strategy.cloud.ListVirtualMachines;
 import org.jclouds.rest.RestContext;
 
 import com.abiquo.server.core.cloud.VirtualDatacenterDto;
+import com.abiquo.server.core.cloud.VirtualMachineState;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Provides high level Abiquo cloud operations.
@@ -67,17 +80,24 @@ public class BaseCloudService implements CloudService
     @VisibleForTesting
     protected ListVirtualMachines listVirtualMachines;
 
+    /** The maximum number of requests in flight in bulk operations. */
+    @VisibleForTesting
+    protected Integer bulkConcurrency;
+
     @Inject
     protected BaseCloudService(final RestContext<AbiquoApi, AbiquoAsyncApi> context,
         final ListVirtualDatacenters listVirtualDatacenters,
         final ListVirtualAppliances listVirtualAppliances,
-        final ListVirtualMachines listVirtualMachines)
+        final ListVirtualMachines listVirtualMachines,
+        @Named(BULK_OPERATIONS_CONCURRENCY) final Integer bulkConcurrency)
     {
         this.context = checkNotNull(context, "context");
         this.listVirtualDatacenters =
             checkNotNull(listVirtualDatacenters, "listVirtualDatacenters");
         this.listVirtualAppliances = checkNotNull(listVirtualAppliances, "listVirtualAppliances");
         this.listVirtualMachines = checkNotNull(listVirtualMachines, "listVirtualMachines");
+        this.bulkConcurrency = checkNotNull(bulkConcurrency, "bulkConcurrency");
+        checkArgument(bulkConcurrency > 0, "bulkConcurrency must be greater than zero");
     }
 
     /*********************** Virtual Datacenter ********************** */
@@ -168,4 +188,31 @@ public class BaseCloudService implements CloudService
     {
         return Iterables.getFirst(listVirtualMachines(filter), null);
     }
+
+    @Override
+    public BulkStateChange changeState(final Iterable<VirtualMachine> vms,
+        final VirtualMachineState state)
+    {
+        checkNotNull(vms, "vms");
+        checkNotNull(state, "state");
+
+        List<VirtualMachine> targets = ImmutableList.copyOf(Sets.newLinkedHashSet(vms));
+        List<ListenableFuture<AsyncTask>> futures =
+            new RequestLimiter(bulkConcurrency).submit(targets,
+                new Function<VirtualMachine, ListenableFuture<AsyncTask>>()
+                {
+                    @Override
+                    public ListenableFuture<AsyncTask> apply(final VirtualMachine vm)
+                    {
+                        return vm.changeStateAsync(state);
+                    }
+                });
+
+        Map<VirtualMachine, ListenableFuture<AsyncTask>> results = Maps.newLinkedHashMap();
+        for (int i = 0; i < targets.size(); i++)
+        {
+            results.put(targets.get(i), futures.get(i));
+        }
+        return new BulkStateChange(state, results);
+    }
 }
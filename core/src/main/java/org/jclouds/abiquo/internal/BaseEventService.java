@@ -33,6 +33,7 @@ import org.jclouds.abiquo.strategy.event.ListEvents;
 import org.jclouds.rest.RestContext;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
 
 /**
  * Provides high level Abiquo event operations.
@@ -68,4 +69,10 @@ public class BaseEventService implements EventService
     {
         return listEvents.execute(options);
     }
+
+    @Override
+    public int streamEvents(final EventOptions options, final Function< ? super Event, ? > consumer)
+    {
+        return listEvents.stream(options, consumer);
+    }
 }
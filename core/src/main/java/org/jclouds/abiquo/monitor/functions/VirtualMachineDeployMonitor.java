@@ -50,18 +50,7 @@ public class VirtualMachineDeployMonitor implements Function<VirtualMachine, Mon
 
         try
         {
-            VirtualMachineState state = virtualMachine.getState();
-
-            switch (state)
-            {
-                case NOT_ALLOCATED:
-                case UNKNOWN:
-                    return MonitorStatus.FAILED;
-                case ON:
-                    return MonitorStatus.DONE;
-                default:
-                    return MonitorStatus.CONTINUE;
-            }
+            return deployStatus(virtualMachine.getState());
         }
         catch (Exception ex)
         {
@@ -71,4 +60,21 @@ public class VirtualMachineDeployMonitor implements Function<VirtualMachine, Mon
             return MonitorStatus.CONTINUE;
         }
     }
+
+    /**
+     * Get the status of a deploy operation, given the state of the virtual machine.
+     */
+    public static MonitorStatus deployStatus(final VirtualMachineState state)
+    {
+        switch (state)
+        {
+            case NOT_ALLOCATED:
+            case UNKNOWN:
+                return MonitorStatus.FAILED;
+            case ON:
+                return MonitorStatus.DONE;
+            default:
+                return MonitorStatus.CONTINUE;
+        }
+    }
 }
@@ -22,6 +22,7 @@ package org.jclouds.abiquo.predicates;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Arrays;
+import java.util.regex.Pattern;
 
 import com.abiquo.model.rest.RESTLink;
 import com.google.common.base.Predicate;
@@ -33,6 +34,8 @@ import com.google.common.base.Predicate;
  */
 public class LinkPredicates
 {
+    private static final Pattern NIC_REL = Pattern.compile("^nic[0-9]+$");
+
     public static Predicate<RESTLink> rel(final String... rels)
     {
         checkNotNull(rels, "rels must be defined");
@@ -54,7 +57,7 @@ public class LinkPredicates
             @Override
             public boolean apply(final RESTLink link)
             {
-                return link.getRel().matches("^nic[0-9]+$");
+                return NIC_REL.matcher(link.getRel()).matches();
             }
         };
     }
@@ -42,4 +42,188 @@ public interface AbiquoConstants
      * Default value: 5000 ms
      */
     public static final String ASYNC_TASK_MONITOR_DELAY = "abiquo.monitor-delay";
+
+    /**
+     * Boolean property indicating if gzip compressed responses should be requested to the Abiquo
+     * API.
+     * <p>
+     * Compressed responses are only understood when the
+     * {@link org.jclouds.abiquo.config.GzipHttpCommandExecutorServiceModule} is used, and the
+     * context can not be created if this property is enabled without it.
+     * <p>
+     * Default value: false
+     */
+    public static final String COMPRESS_RESPONSES = "abiquo.compress-responses";
+
+    /**
+     * The initial delay (in ms) between retries of idempotent requests that failed with a transient
+     * server or connection error. The delay doubles with each retry, and the maximum number of
+     * retries is given by the {@link org.jclouds.Constants#PROPERTY_MAX_RETRIES} property.
+     * <p>
+     * Default value: 500 ms
+     */
+    public static final String RETRY_DELAY_START = "abiquo.retry.delay-start";
+
+    /**
+     * The maximum delay (in ms) between retries of idempotent requests.
+     * <p>
+     * Default value: 10000 ms
+     */
+    public static final String RETRY_DELAY_MAX = "abiquo.retry.delay-max";
+
+    /**
+     * The number of transient failures against an endpoint that open its circuit breaker. A value
+     * of 0 disables the circuit breaker.
+     * <p>
+     * The circuit breaker can only be enabled when the
+     * {@link org.jclouds.abiquo.config.CircuitBreakerHttpCommandExecutorServiceModule} or the
+     * {@link org.jclouds.abiquo.config.GzipHttpCommandExecutorServiceModule} is used, since they
+     * report the successful requests that close the circuit again.
+     * <p>
+     * Default value: 0
+     */
+    public static final String CIRCUIT_BREAKER_THRESHOLD = "abiquo.circuit-breaker.threshold";
+
+    /**
+     * The time (in ms) requests to an endpoint fail fast once its circuit breaker is open, before
+     * a probe request is allowed.
+     * <p>
+     * Default value: 30000 ms
+     */
+    public static final String CIRCUIT_BREAKER_OPEN_PERIOD = "abiquo.circuit-breaker.open-period";
+
+    /**
+     * The time (in ms) to wait for the outcome of a probe request before another probe is allowed.
+     * <p>
+     * Default value: 5000 ms
+     */
+    public static final String CIRCUIT_BREAKER_PROBE_TIMEOUT =
+        "abiquo.circuit-breaker.probe-timeout";
+
+    /**
+     * The maximum number of read requests per second sent to the Abiquo API. The actual rate is
+     * decreased when the API signals it is overloaded or responds slower, and slowly recovered
+     * afterwards. A value of 0 disables the limit.
+     * <p>
+     * Rate limits can only be enabled if the
+     * {@link org.jclouds.abiquo.config.RateLimitingHttpCommandExecutorServiceModule}, the
+     * {@link org.jclouds.abiquo.config.CircuitBreakerHttpCommandExecutorServiceModule} or the
+     * {@link org.jclouds.abiquo.config.GzipHttpCommandExecutorServiceModule} is used.
+     * <p>
+     * Default value: 0
+     */
+    public static final String RATE_LIMIT_READS = "abiquo.rate-limit.reads";
+
+    /**
+     * The maximum number of write requests per second sent to the Abiquo API. A value of 0
+     * disables the limit.
+     * <p>
+     * Default value: 0
+     */
+    public static final String RATE_LIMIT_WRITES = "abiquo.rate-limit.writes";
+
+    /**
+     * The maximum number of task and state polling requests per second sent to the Abiquo API. A
+     * value of 0 disables the limit.
+     * <p>
+     * Default value: 0
+     */
+    public static final String RATE_LIMIT_POLLING = "abiquo.rate-limit.polling";
+
+    /**
+     * The time (in ms) the parent resources retrieved by the navigation methods of the domain
+     * objects are cached. A value of 0 disables the cache.
+     * <p>
+     * Default value: 0 ms
+     */
+    public static final String PARENT_CACHE_TTL = "abiquo.parent-cache.ttl";
+
+    /**
+     * The maximum number of parent resources in the cache.
+     * <p>
+     * Default value: 1000
+     */
+    public static final String PARENT_CACHE_SIZE = "abiquo.parent-cache.size";
+
+    /**
+     * Boolean property indicating if the domain objects must be kept in an identity map, so
+     * wrapping the same resource more than once returns the same domain object, updated with the
+     * latest data. Domain objects are weakly referenced and are discarded when they are no longer
+     * used.
+     * <p>
+     * Default value: false
+     */
+    public static final String IDENTITY_MAP = "abiquo.identity-map";
+
+    /**
+     * Boolean property indicating if listings must return read-only views of the returned
+     * collection that wrap each element the first time it is accessed, instead of wrapping all the
+     * elements in a new list.
+     * <p>
+     * Default value: false
+     */
+    public static final String LAZY_LISTINGS = "abiquo.lazy-listings";
+
+    /**
+     * The interval (in ms) after which the templates used as images and hardware profiles by the
+     * compute service are refreshed. Templates are refreshed in the background while the previous
+     * ones are still returned. A value of 0 disables the cache, so templates are retrieved every
+     * time.
+     * <p>
+     * Default value: 0 ms
+     */
+    public static final String TEMPLATE_CATALOG_REFRESH = "abiquo.template-catalog.refresh";
+
+    /**
+     * The maximum number of requests sent at the same time when changing the state of or
+     * destroying several nodes or virtual machines at once.
+     * <p>
+     * Default value: 10
+     */
+    public static final String BULK_OPERATIONS_CONCURRENCY = "abiquo.bulk-operations.concurrency";
+
+    /**
+     * The interval (in ms) after which the nodes listed by the compute service are refreshed. Nodes
+     * are refreshed in the background while the previous ones are still returned, and the nodes
+     * are listed again right after a node is created, destroyed or changes its state. A value of 0
+     * disables the cache, so nodes are listed every time.
+     * <p>
+     * Default value: 0 ms
+     */
+    public static final String NODE_SNAPSHOT_REFRESH = "abiquo.node-snapshot.refresh";
+
+    /**
+     * The time (in ms) the coalesced updates of the same resource are gathered before sending them
+     * in a single request. A value of 0 sends each coalesced update right away.
+     * <p>
+     * Default value: 100 ms
+     */
+    public static final String UPDATE_COALESCING_WINDOW = "abiquo.update-coalescing.window";
+
+    /**
+     * The maximum time (in ms) to wait for the deploy of a node created by the compute service. A
+     * node that has not been deployed after this time is considered failed.
+     * <p>
+     * Default value: 1200000 ms
+     */
+    public static final String DEPLOY_TIMEOUT = "abiquo.deploy.timeout";
+
+    /**
+     * The time (in ms) the virtual datacenter, virtual appliance and template resolved for a group
+     * of nodes are reused by the compute service when creating more nodes in the same group.
+     * Resolved groups are discarded as soon as their virtual appliance or virtual datacenter is
+     * deleted or is not found. A value of 0 resolves the group for each node.
+     * <p>
+     * Default value: 60000 ms
+     */
+    public static final String NODE_GROUP_CACHE_TTL = "abiquo.node-group-cache.ttl";
+
+    /**
+     * The time (in ms) the nodes of a group created with the group deploy option are gathered
+     * before deploying them together. The deploy starts once no new node has been added to the
+     * group for this time.
+     * <p>
+     * Default value: 5000 ms
+     */
+    public static final String DEPLOY_GATHER_WINDOW = "abiquo.deploy.gather-window";
 }
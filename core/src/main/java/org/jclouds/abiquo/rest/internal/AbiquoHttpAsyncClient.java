@@ -23,8 +23,12 @@ import javax.ws.rs.GET;
 
 import org.jclouds.abiquo.binders.BindLinkToPathAndAcceptHeader;
 import org.jclouds.abiquo.http.filters.AbiquoAuthentication;
+import org.jclouds.abiquo.http.filters.AcceptGzipEncoding;
 import org.jclouds.abiquo.http.filters.AppendApiVersionToMediaType;
+import org.jclouds.abiquo.http.filters.FailFastWhenCircuitIsOpen;
+import org.jclouds.abiquo.http.filters.LimitRequestRate;
 import org.jclouds.http.HttpResponse;
+import org.jclouds.http.options.HttpRequestOptions;
 import org.jclouds.rest.annotations.BinderParam;
 import org.jclouds.rest.annotations.ExceptionParser;
 import org.jclouds.rest.annotations.RequestFilters;
@@ -38,7 +42,8 @@ import com.google.common.util.concurrent.ListenableFuture;
  * 
  * @author Ignasi Barrera
  */
-@RequestFilters({AbiquoAuthentication.class, AppendApiVersionToMediaType.class})
+@RequestFilters({AbiquoAuthentication.class, AppendApiVersionToMediaType.class,
+    AcceptGzipEncoding.class, FailFastWhenCircuitIsOpen.class, LimitRequestRate.class})
 public interface AbiquoHttpAsyncClient
 {
     /**
@@ -48,4 +53,13 @@ public interface AbiquoHttpAsyncClient
     @ExceptionParser(ReturnNullOnNotFoundOr404.class)
     public ListenableFuture<HttpResponse> get(
         @BinderParam(BindLinkToPathAndAcceptHeader.class) final RESTLink link);
+
+    /**
+     * @see AbiquoHttpClient#get(RESTLink, HttpRequestOptions)
+     */
+    @GET
+    @ExceptionParser(ReturnNullOnNotFoundOr404.class)
+    public ListenableFuture<HttpResponse> get(
+        @BinderParam(BindLinkToPathAndAcceptHeader.class) final RESTLink link,
+        final HttpRequestOptions options);
 }
@@ -23,6 +23,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.jclouds.concurrent.Timeout;
 import org.jclouds.http.HttpResponse;
+import org.jclouds.http.options.HttpRequestOptions;
 
 import com.abiquo.model.rest.RESTLink;
 
@@ -41,4 +42,13 @@ public interface AbiquoHttpClient
      * @return The response.
      */
     public HttpResponse get(final RESTLink link);
+
+    /**
+     * Perform a GET request to the given link, with the given query options.
+     * 
+     * @param link The link to get.
+     * @param options The options of the request.
+     * @return The response.
+     */
+    public HttpResponse get(final RESTLink link, final HttpRequestOptions options);
 }
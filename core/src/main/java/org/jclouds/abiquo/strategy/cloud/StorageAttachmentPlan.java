@@ -0,0 +1,178 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.strategy.cloud;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jclouds.abiquo.domain.cloud.HardDisk;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.cloud.Volume;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+/**
+ * The changes needed to attach the desired storage to a set of virtual machines.
+ * <p>
+ * Only the virtual machines whose attached storage differs from the desired one are part of the
+ * plan.
+ * 
+ * @author Ignasi Barrera
+ * @see StorageAttachmentPlanner
+ */
+public class StorageAttachmentPlan
+{
+    /** Gets the id of a volume. */
+    public static final Function<Volume, Integer> VOLUME_ID = new Function<Volume, Integer>()
+    {
+        @Override
+        public Integer apply(final Volume input)
+        {
+            return input.getId();
+        }
+    };
+
+    /** Gets the id of a hard disk. */
+    public static final Function<HardDisk, Integer> HARD_DISK_ID = new Function<HardDisk, Integer>()
+    {
+        @Override
+        public Integer apply(final HardDisk input)
+        {
+            return input.getId();
+        }
+    };
+
+    /** The volumes currently attached to the virtual machines to change. */
+    private final Map<VirtualMachine, List<Volume>> attachedVolumes;
+
+    /** The desired volumes of the virtual machines to change. */
+    private final Map<VirtualMachine, List<Volume>> volumes;
+
+    /** The hard disks currently attached to the virtual machines to change. */
+    private final Map<VirtualMachine, List<HardDisk>> attachedHardDisks;
+
+    /** The desired hard disks of the virtual machines to change. */
+    private final Map<VirtualMachine, List<HardDisk>> hardDisks;
+
+    public StorageAttachmentPlan(final Map<VirtualMachine, List<Volume>> attachedVolumes,
+        final Map<VirtualMachine, List<Volume>> volumes,
+        final Map<VirtualMachine, List<HardDisk>> attachedHardDisks,
+        final Map<VirtualMachine, List<HardDisk>> hardDisks)
+    {
+        super();
+        this.attachedVolumes =
+            ImmutableMap.copyOf(checkNotNull(attachedVolumes, "attachedVolumes"));
+        this.volumes = ImmutableMap.copyOf(checkNotNull(volumes, "volumes"));
+        this.attachedHardDisks =
+            ImmutableMap.copyOf(checkNotNull(attachedHardDisks, "attachedHardDisks"));
+        this.hardDisks = ImmutableMap.copyOf(checkNotNull(hardDisks, "hardDisks"));
+    }
+
+    /**
+     * Checks if the storage of all the virtual machines is already the desired one.
+     */
+    public boolean isEmpty()
+    {
+        return volumes.isEmpty() && hardDisks.isEmpty();
+    }
+
+    /**
+     * Get the desired volumes of the virtual machines whose volumes must be replaced.
+     */
+    public Map<VirtualMachine, List<Volume>> getVolumes()
+    {
+        return volumes;
+    }
+
+    /**
+     * Get the desired hard disks of the virtual machines whose hard disks must be replaced.
+     */
+    public Map<VirtualMachine, List<HardDisk>> getHardDisks()
+    {
+        return hardDisks;
+    }
+
+    /**
+     * Get the volumes that will be attached to the given virtual machine.
+     */
+    public List<Volume> getVolumesToAttach(final VirtualMachine vm)
+    {
+        return missing(volumes.get(vm), attachedVolumes.get(vm), VOLUME_ID);
+    }
+
+    /**
+     * Get the volumes that will be detached from the given virtual machine.
+     */
+    public List<Volume> getVolumesToDetach(final VirtualMachine vm)
+    {
+        return missing(attachedVolumes.get(vm), volumes.get(vm), VOLUME_ID);
+    }
+
+    /**
+     * Get the hard disks that will be attached to the given virtual machine.
+     */
+    public List<HardDisk> getHardDisksToAttach(final VirtualMachine vm)
+    {
+        return missing(hardDisks.get(vm), attachedHardDisks.get(vm), HARD_DISK_ID);
+    }
+
+    /**
+     * Get the hard disks that will be detached from the given virtual machine.
+     */
+    public List<HardDisk> getHardDisksToDetach(final VirtualMachine vm)
+    {
+        return missing(attachedHardDisks.get(vm), hardDisks.get(vm), HARD_DISK_ID);
+    }
+
+    /**
+     * Get the elements of the first list that are not in the second one.
+     */
+    private static <T> List<T> missing(final List<T> elements, final List<T> others,
+        final Function<T, Integer> id)
+    {
+        if (elements == null)
+        {
+            return Collections.emptyList();
+        }
+
+        final Set<Integer> otherIds =
+            others == null ? ImmutableSet.<Integer> of() : ImmutableSet.copyOf(Lists.transform(
+                others, id));
+
+        return ImmutableList.copyOf(Iterables.filter(elements, new Predicate<T>()
+        {
+            @Override
+            public boolean apply(final T input)
+            {
+                return !otherIds.contains(id.apply(input));
+            }
+        }));
+    }
+}
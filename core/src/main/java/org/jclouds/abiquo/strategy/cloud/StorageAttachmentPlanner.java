@@ -0,0 +1,75 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.strategy.cloud;
+
+import java.util.List;
+import java.util.Map;
+
+import org.jclouds.abiquo.domain.cloud.HardDisk;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.cloud.Volume;
+import org.jclouds.abiquo.strategy.cloud.internal.StorageAttachmentPlannerImpl;
+
+import com.google.inject.ImplementedBy;
+
+/**
+ * Attaches the desired volumes and hard disks to several virtual machines at once.
+ * 
+ * @author Ignasi Barrera
+ */
+@ImplementedBy(StorageAttachmentPlannerImpl.class)
+public interface StorageAttachmentPlanner
+{
+    /**
+     * Reads the storage currently attached to the given virtual machines and compares it with the
+     * desired one.
+     * 
+     * @param volumes The desired volumes of each virtual machine. The volumes of the virtual
+     *            machines that are not in the map are not changed.
+     * @param hardDisks The desired hard disks of each virtual machine. The hard disks of the
+     *            virtual machines that are not in the map are not changed.
+     * @return The changes needed to attach the desired storage.
+     */
+    StorageAttachmentPlan plan(Map<VirtualMachine, ? extends List<Volume>> volumes,
+        Map<VirtualMachine, ? extends List<HardDisk>> hardDisks);
+
+    /**
+     * Applies the given plan and waits until all the changes have been completed, forcing the
+     * soft limits of the volumes.
+     * 
+     * @param plan The plan to apply.
+     * @return The outcome of the changes of each virtual machine.
+     * @see #apply(StorageAttachmentPlan, boolean)
+     */
+    StorageAttachmentResult apply(StorageAttachmentPlan plan);
+
+    /**
+     * Applies the given plan and waits until all the changes have been completed.
+     * <p>
+     * The changes that can not be applied are logged and skipped, and reported in the result.
+     * Planning again returns the changes that are still pending.
+     * 
+     * @param plan The plan to apply.
+     * @param forceSoftLimits Boolean indicating if the volumes must be attached even if the soft
+     *            limits are exceeded.
+     * @return The outcome of the changes of each virtual machine.
+     */
+    StorageAttachmentResult apply(StorageAttachmentPlan plan, boolean forceSoftLimits);
+}
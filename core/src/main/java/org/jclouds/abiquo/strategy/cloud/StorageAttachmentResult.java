@@ -0,0 +1,182 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.strategy.cloud;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.task.AsyncTask;
+
+import com.abiquo.server.core.task.enums.TaskState;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * The outcome of applying a {@link StorageAttachmentPlan}.
+ * <p>
+ * Each virtual machine has its own result for the replacement of its volumes and of its hard
+ * disks: the task that applied the change, or the error that prevented it. Tasks are
+ * <code>null</code> if the change was applied synchronously.
+ * 
+ * @author Ignasi Barrera
+ * @see StorageAttachmentPlanner
+ */
+public class StorageAttachmentResult
+{
+    /** The tasks of the accepted volume replacements. */
+    private final Map<VirtualMachine, AsyncTask> volumeTasks;
+
+    /** The errors of the rejected volume replacements. */
+    private final Map<VirtualMachine, Throwable> volumeFailures;
+
+    /** The tasks of the accepted hard disk replacements. */
+    private final Map<VirtualMachine, AsyncTask> hardDiskTasks;
+
+    /** The errors of the rejected hard disk replacements. */
+    private final Map<VirtualMachine, Throwable> hardDiskFailures;
+
+    public StorageAttachmentResult(final Map<VirtualMachine, AsyncTask> volumeTasks,
+        final Map<VirtualMachine, Throwable> volumeFailures,
+        final Map<VirtualMachine, AsyncTask> hardDiskTasks,
+        final Map<VirtualMachine, Throwable> hardDiskFailures)
+    {
+        super();
+        // Tasks may be null, so the maps can not be immutable ones
+        this.volumeTasks = copy(checkNotNull(volumeTasks, "volumeTasks"));
+        this.volumeFailures = copy(checkNotNull(volumeFailures, "volumeFailures"));
+        this.hardDiskTasks = copy(checkNotNull(hardDiskTasks, "hardDiskTasks"));
+        this.hardDiskFailures = copy(checkNotNull(hardDiskFailures, "hardDiskFailures"));
+    }
+
+    /**
+     * Get the tasks of the virtual machines whose volume replacement was accepted.
+     */
+    public Map<VirtualMachine, AsyncTask> getVolumeTasks()
+    {
+        return volumeTasks;
+    }
+
+    /**
+     * Get the errors of the virtual machines whose volume replacement was rejected.
+     */
+    public Map<VirtualMachine, Throwable> getVolumeFailures()
+    {
+        return volumeFailures;
+    }
+
+    /**
+     * Get the tasks of the virtual machines whose hard disk replacement was accepted.
+     */
+    public Map<VirtualMachine, AsyncTask> getHardDiskTasks()
+    {
+        return hardDiskTasks;
+    }
+
+    /**
+     * Get the errors of the virtual machines whose hard disk replacement was rejected.
+     */
+    public Map<VirtualMachine, Throwable> getHardDiskFailures()
+    {
+        return hardDiskFailures;
+    }
+
+    /**
+     * Get the tasks of all the accepted replacements, volumes first.
+     */
+    public List<AsyncTask> getTasks()
+    {
+        List<AsyncTask> tasks = Lists.newArrayList();
+        for (AsyncTask task : Iterables.concat(volumeTasks.values(), hardDiskTasks.values()))
+        {
+            if (task != null)
+            {
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Get the tasks of the accepted replacements that did not finish successfully.
+     */
+    public List<AsyncTask> getUnsuccessfulTasks()
+    {
+        List<AsyncTask> unsuccessful = Lists.newArrayList();
+        for (AsyncTask task : getTasks())
+        {
+            if (task.getState() != TaskState.FINISHED_SUCCESSFULLY)
+            {
+                unsuccessful.add(task);
+            }
+        }
+        return unsuccessful;
+    }
+
+    /**
+     * Get the virtual machines whose storage could not be replaced, because the replacement was
+     * rejected or its task did not finish successfully.
+     * <p>
+     * Planning again for these virtual machines returns the changes that are still pending.
+     */
+    public Set<VirtualMachine> getFailed()
+    {
+        Set<VirtualMachine> failed = Sets.newLinkedHashSet();
+        failed.addAll(volumeFailures.keySet());
+        failed.addAll(unsuccessful(volumeTasks));
+        failed.addAll(hardDiskFailures.keySet());
+        failed.addAll(unsuccessful(hardDiskTasks));
+        return failed;
+    }
+
+    /**
+     * Checks if the storage of all the virtual machines in the plan has been replaced.
+     */
+    public boolean isSuccessful()
+    {
+        return getFailed().isEmpty();
+    }
+
+    private static List<VirtualMachine> unsuccessful(final Map<VirtualMachine, AsyncTask> tasks)
+    {
+        List<VirtualMachine> vms = Lists.newArrayList();
+        for (Map.Entry<VirtualMachine, AsyncTask> entry : tasks.entrySet())
+        {
+            // Null tasks mean that the change has been applied synchronously
+            if (entry.getValue() != null
+                && entry.getValue().getState() != TaskState.FINISHED_SUCCESSFULLY)
+            {
+                vms.add(entry.getKey());
+            }
+        }
+        return vms;
+    }
+
+    private static <V> Map<VirtualMachine, V> copy(final Map<VirtualMachine, V> map)
+    {
+        return Collections.unmodifiableMap(Maps.newLinkedHashMap(map));
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.strategy.cloud.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Predicates.notNull;
+import static com.google.common.collect.Iterables.toArray;
+import static org.jclouds.abiquo.reference.AbiquoConstants.BULK_OPERATIONS_CONCURRENCY;
+import static org.jclouds.abiquo.strategy.cloud.StorageAttachmentPlan.HARD_DISK_ID;
+import static org.jclouds.abiquo.strategy.cloud.StorageAttachmentPlan.VOLUME_ID;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.abiquo.domain.cloud.HardDisk;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.cloud.Volume;
+import org.jclouds.abiquo.domain.task.AsyncTask;
+import org.jclouds.abiquo.domain.util.RequestLimiter;
+import org.jclouds.abiquo.features.services.MonitoringService;
+import org.jclouds.abiquo.strategy.cloud.StorageAttachmentPlan;
+import org.jclouds.abiquo.strategy.cloud.StorageAttachmentPlanner;
+import org.jclouds.abiquo.strategy.cloud.StorageAttachmentResult;
+import org.jclouds.logging.Logger;
+
+import com.abiquo.server.core.task.enums.TaskState;
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Attaches the desired volumes and hard disks to several virtual machines at once.
+ * <p>
+ * The storage attached to all the virtual machines is read concurrently, and only the virtual
+ * machines whose storage differs from the desired one are changed. Requests are sent concurrently,
+ * with a limited number of requests in flight, and the resulting tasks are monitored together.
+ * Rejected requests and tasks that do not finish successfully are logged and reported in the
+ * result.
+ * 
+ * @author Ignasi Barrera
+ */
+@Singleton
+public class StorageAttachmentPlannerImpl implements StorageAttachmentPlanner
+{
+    @Resource
+    protected Logger logger = Logger.NULL;
+
+    protected final MonitoringService monitoringService;
+
+    protected final int maxConcurrency;
+
+    @Inject
+    public StorageAttachmentPlannerImpl(final MonitoringService monitoringService,
+        @Named(BULK_OPERATIONS_CONCURRENCY) final Integer maxConcurrency)
+    {
+        super();
+        this.monitoringService = checkNotNull(monitoringService, "monitoringService");
+        this.maxConcurrency = checkNotNull(maxConcurrency, "maxConcurrency");
+        checkArgument(maxConcurrency > 0, "maxConcurrency must be greater than zero");
+    }
+
+    @Override
+    public StorageAttachmentPlan plan(final Map<VirtualMachine, ? extends List<Volume>> volumes,
+        final Map<VirtualMachine, ? extends List<HardDisk>> hardDisks)
+    {
+        checkNotNull(volumes, "volumes");
+        checkNotNull(hardDisks, "hardDisks");
+
+        List<VirtualMachine> volumeVms = ImmutableList.copyOf(volumes.keySet());
+        List<VirtualMachine> hardDiskVms = ImmutableList.copyOf(hardDisks.keySet());
+
+        // Read all the attached storage before comparing any of it
+        RequestLimiter limiter = new RequestLimiter(maxConcurrency);
+        List<ListenableFuture<List<Volume>>> volumeReads =
+            limiter.submit(volumeVms,
+                new Function<VirtualMachine, ListenableFuture<List<Volume>>>()
+                {
+                    @Override
+                    public ListenableFuture<List<Volume>> apply(final VirtualMachine vm)
+                    {
+                        return vm.listAttachedVolumesAsync();
+                    }
+                });
+        List<ListenableFuture<List<HardDisk>>> hardDiskReads =
+            limiter.submit(hardDiskVms,
+                new Function<VirtualMachine, ListenableFuture<List<HardDisk>>>()
+                {
+                    @Override
+                    public ListenableFuture<List<HardDisk>> apply(final VirtualMachine vm)
+                    {
+                        return vm.listAttachedHardDisksAsync();
+                    }
+                });
+
+        Map<VirtualMachine, List<Volume>> attachedVolumes = Maps.newLinkedHashMap();
+        Map<VirtualMachine, List<Volume>> changedVolumes = Maps.newLinkedHashMap();
+        for (int i = 0; i < volumeVms.size(); i++)
+        {
+            VirtualMachine vm = volumeVms.get(i);
+            List<Volume> attached = get(volumeReads.get(i));
+            List<Volume> desired =
+                ImmutableList.copyOf(checkNotNull(volumes.get(vm), "volumes of %s", vm));
+
+            if (!Lists.transform(attached, VOLUME_ID).equals(Lists.transform(desired, VOLUME_ID)))
+            {
+                attachedVolumes.put(vm, attached);
+                changedVolumes.put(vm, desired);
+            }
+        }
+
+        Map<VirtualMachine, List<HardDisk>> attachedHardDisks = Maps.newLinkedHashMap();
+        Map<VirtualMachine, List<HardDisk>> changedHardDisks = Maps.newLinkedHashMap();
+        for (int i = 0; i < hardDiskVms.size(); i++)
+        {
+            VirtualMachine vm = hardDiskVms.get(i);
+            List<HardDisk> attached = get(hardDiskReads.get(i));
+            List<HardDisk> desired =
+                ImmutableList.copyOf(checkNotNull(hardDisks.get(vm), "hard disks of %s", vm));
+
+            if (!Lists.transform(attached, HARD_DISK_ID).equals(
+                Lists.transform(desired, HARD_DISK_ID)))
+            {
+                attachedHardDisks.put(vm, attached);
+                changedHardDisks.put(vm, desired);
+            }
+        }
+
+        logger.debug("volumes of %s of %s and hard disks of %s of %s virtual machines must change",
+            changedVolumes.size(), volumeVms.size(), changedHardDisks.size(), hardDiskVms.size());
+
+        return new StorageAttachmentPlan(attachedVolumes, changedVolumes, attachedHardDisks,
+            changedHardDisks);
+    }
+
+    @Override
+    public StorageAttachmentResult apply(final StorageAttachmentPlan plan)
+    {
+        return apply(plan, true);
+    }
+
+    @Override
+    public StorageAttachmentResult apply(final StorageAttachmentPlan plan,
+        final boolean forceSoftLimits)
+    {
+        checkNotNull(plan, "plan");
+
+        // A virtual machine can not be reconfigured twice at the same time, so the hard disks are
+        // replaced once the volumes have been replaced
+        final Map<VirtualMachine, List<Volume>> volumes = plan.getVolumes();
+        Map<VirtualMachine, AsyncTask> volumeTasks = Maps.newLinkedHashMap();
+        Map<VirtualMachine, Throwable> volumeFailures = Maps.newLinkedHashMap();
+        replace("volumes", ImmutableList.copyOf(volumes.keySet()),
+            new Function<VirtualMachine, ListenableFuture<AsyncTask>>()
+            {
+                @Override
+                public ListenableFuture<AsyncTask> apply(final VirtualMachine vm)
+                {
+                    List<Volume> desired = volumes.get(vm);
+                    return desired.isEmpty() ? vm.detachAllVolumesAsync() : vm.setVolumesAsync(
+                        forceSoftLimits, toArray(desired, Volume.class));
+                }
+            }, volumeTasks, volumeFailures);
+
+        final Map<VirtualMachine, List<HardDisk>> hardDisks = plan.getHardDisks();
+        Map<VirtualMachine, AsyncTask> hardDiskTasks = Maps.newLinkedHashMap();
+        Map<VirtualMachine, Throwable> hardDiskFailures = Maps.newLinkedHashMap();
+        replace("hard disks", ImmutableList.copyOf(hardDisks.keySet()),
+            new Function<VirtualMachine, ListenableFuture<AsyncTask>>()
+            {
+                @Override
+                public ListenableFuture<AsyncTask> apply(final VirtualMachine vm)
+                {
+                    List<HardDisk> desired = hardDisks.get(vm);
+                    return desired.isEmpty() ? vm.detachAllHardDisksAsync() : vm
+                        .setHardDisksAsync(toArray(desired, HardDisk.class));
+                }
+            }, hardDiskTasks, hardDiskFailures);
+
+        return new StorageAttachmentResult(volumeTasks, volumeFailures, hardDiskTasks,
+            hardDiskFailures);
+    }
+
+    /**
+     * Sends the given replace requests and waits until all the resulting tasks have completed,
+     * monitoring them together.
+     * 
+     * @param tasks The map where the task of each accepted request is added.
+     * @param failures The map where the error of each rejected request is added.
+     */
+    private void replace(final String storage, final List<VirtualMachine> vms,
+        final Function<VirtualMachine, ListenableFuture<AsyncTask>> operation,
+        final Map<VirtualMachine, AsyncTask> tasks, final Map<VirtualMachine, Throwable> failures)
+    {
+        List<ListenableFuture<AsyncTask>> results =
+            new RequestLimiter(maxConcurrency).submit(vms, operation);
+
+        for (int i = 0; i < vms.size(); i++)
+        {
+            try
+            {
+                // Null tasks mean that the change has been applied synchronously
+                tasks.put(vms.get(i), Uninterruptibles.getUninterruptibly(results.get(i)));
+            }
+            catch (ExecutionException ex)
+            {
+                logger.warn(ex.getCause(), "could not replace the %s of %s", storage, vms.get(i));
+                failures.put(vms.get(i), ex.getCause());
+            }
+        }
+
+        List<AsyncTask> pending = Lists.newArrayList(Iterables.filter(tasks.values(), notNull()));
+        if (pending.isEmpty())
+        {
+            return;
+        }
+
+        monitoringService.getAsyncTaskMonitor().awaitCompletion(
+            toArray(pending, AsyncTask.class));
+
+        for (Map.Entry<VirtualMachine, AsyncTask> entry : tasks.entrySet())
+        {
+            AsyncTask task = entry.getValue();
+            if (task != null && task.getState() != TaskState.FINISHED_SUCCESSFULLY)
+            {
+                logger.warn("could not replace the %s of %s: task %s finished with state %s",
+                    storage, entry.getKey(), task.getTaskId(), task.getState());
+            }
+        }
+    }
+
+    private static <T> T get(final ListenableFuture<T> future)
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(ex);
+        }
+        catch (ExecutionException ex)
+        {
+            throw Throwables.propagate(ex.getCause());
+        }
+    }
+}
@@ -24,6 +24,7 @@ import org.jclouds.abiquo.domain.event.options.EventOptions;
 import org.jclouds.abiquo.strategy.ListRootEntities;
 import org.jclouds.abiquo.strategy.event.internal.ListEventsImpl;
 
+import com.google.common.base.Function;
 import com.google.inject.ImplementedBy;
 
 /**
@@ -35,4 +36,11 @@ import com.google.inject.ImplementedBy;
 public interface ListEvents extends ListRootEntities<Event>
 {
     Iterable<Event> execute(EventOptions options);
+
+    /**
+     * Reads the events one by one, handing each one to the consumer as soon as it is read.
+     * 
+     * @return The number of events processed.
+     */
+    int stream(EventOptions options, Function< ? super Event, ? > consumer);
 }
@@ -19,18 +19,27 @@
 
 package org.jclouds.abiquo.strategy.event.internal;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Iterables.filter;
 import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
 
+import java.net.URI;
+
 import org.jclouds.abiquo.AbiquoAsyncApi;
 import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.domain.DomainWrapper;
 import org.jclouds.abiquo.domain.event.Event;
 import org.jclouds.abiquo.domain.event.options.EventOptions;
 import org.jclouds.abiquo.strategy.event.ListEvents;
+import org.jclouds.location.Provider;
 import org.jclouds.rest.RestContext;
 
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.server.core.event.EventDto;
 import com.abiquo.server.core.event.EventsDto;
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
 import com.google.inject.Inject;
 
 public class ListEventsImpl implements ListEvents
@@ -40,10 +49,14 @@ public class ListEventsImpl implements ListEvents
 
     protected final RestContext<AbiquoApi, AbiquoAsyncApi> context;
 
+    protected final Supplier<URI> endpoint;
+
     @Inject
-    ListEventsImpl(final RestContext<AbiquoApi, AbiquoAsyncApi> context)
+    ListEventsImpl(final RestContext<AbiquoApi, AbiquoAsyncApi> context,
+        @Provider final Supplier<URI> endpoint)
     {
         this.context = context;
+        this.endpoint = checkNotNull(endpoint, "endpoint");
     }
 
     @Override
@@ -60,6 +73,14 @@ public class ListEventsImpl implements ListEvents
         return wrap(context, Event.class, result.getCollection());
     }
 
+    @Override
+    public int stream(final EventOptions options, final Function< ? super Event, ? > consumer)
+    {
+        RESTLink link = new RESTLink("events", endpoint.get().toString() + "/events");
+        link.setType(EventsDto.BASE_MEDIA_TYPE);
+        return DomainWrapper.stream(context, Event.class, EventDto.class, link, options, consumer);
+    }
+
     @Override
     public Iterable<Event> execute(final Predicate<Event> selector)
     {
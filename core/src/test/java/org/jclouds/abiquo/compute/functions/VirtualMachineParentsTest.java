@@ -0,0 +1,208 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.functions;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.domain.cloud.VirtualAppliance;
+import org.jclouds.abiquo.domain.cloud.VirtualDatacenter;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.cloud.VirtualMachineTemplate;
+import org.jclouds.abiquo.domain.infrastructure.Datacenter;
+import org.jclouds.abiquo.reference.rest.ParentLinkName;
+import org.jclouds.rest.AuthorizationException;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.server.core.cloud.VirtualDatacenterDto;
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Unit tests for the {@link VirtualMachineParents} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class VirtualMachineParentsTest
+{
+    private static final String VDC = "http://localhost/api/cloud/virtualdatacenters/1";
+
+    private static final String VAPP = VDC + "/virtualappliances/1";
+
+    private static final String TEMPLATE = "http://localhost/api/admin/enterprises/1/"
+        + "datacenterrepositories/1/virtualmachinetemplates/1";
+
+    private static final String DATACENTER = "http://localhost/api/admin/datacenters/1";
+
+    private VirtualMachineParents parents;
+
+    private VirtualAppliance vapp;
+
+    private VirtualDatacenter vdc;
+
+    private VirtualMachineTemplate template;
+
+    @BeforeMethod
+    public void setup()
+    {
+        parents = new VirtualMachineParents(MoreExecutors.sameThreadExecutor());
+        vapp = EasyMock.createMock(VirtualAppliance.class);
+        template = EasyMock.createMock(VirtualMachineTemplate.class);
+
+        VirtualDatacenterDto vdcDto = new VirtualDatacenterDto();
+        vdcDto.addLink(new RESTLink(ParentLinkName.DATACENTER, DATACENTER));
+        vdc = EasyMock.createMock(VirtualDatacenter.class);
+        expect(vdc.unwrap()).andReturn(vdcDto).anyTimes();
+    }
+
+    public void testSharedParentsAreRetrievedOnce()
+    {
+        Datacenter datacenter = EasyMock.createMock(Datacenter.class);
+        expect(vdc.getDatacenter()).andReturn(datacenter);
+        replay(vdc);
+
+        VirtualMachine first = mockVirtualMachine(true);
+        VirtualMachine second = mockVirtualMachine(false);
+
+        parents.prefetch(ImmutableList.of(first, second));
+
+        assertEquals(parents.prefetchedHrefs(second),
+            ImmutableSet.of(VAPP, VDC, TEMPLATE, DATACENTER));
+        assertSame(parents.getVirtualAppliance(second), vapp);
+        assertSame(parents.getVirtualDatacenter(second), vdc);
+        assertSame(parents.getTemplate(second), template);
+        assertSame(parents.getDatacenter(vdc), datacenter);
+
+        verify(first, second, vdc);
+    }
+
+    public void testParentsAreRetrievedIfNotPrefetched()
+    {
+        replay(vdc);
+        VirtualMachine vm = mockVirtualMachine(true);
+
+        assertSame(parents.getVirtualAppliance(vm), vapp);
+        assertSame(parents.getVirtualDatacenter(vm), vdc);
+        assertSame(parents.getTemplate(vm), template);
+
+        verify(vm);
+    }
+
+    public void testParentsAreOnlySharedWithinTheListing()
+    {
+        expect(vdc.getDatacenter()).andReturn(EasyMock.createMock(Datacenter.class)).times(2);
+        replay(vdc);
+
+        VirtualMachine listed = mockVirtualMachine(true);
+        parents.prefetch(ImmutableList.of(listed));
+
+        // A later listing retrieves the parents again, and a virtual machine of the first
+        // listing does not see them
+        VirtualAppliance renamed = EasyMock.createMock(VirtualAppliance.class);
+        VirtualMachine relisted = mockVirtualMachine(renamed);
+        parents.prefetch(ImmutableList.of(relisted));
+
+        assertSame(parents.getVirtualAppliance(relisted), renamed);
+        assertSame(parents.getVirtualAppliance(listed), vapp);
+        assertTrue(parents.prefetchedHrefs(mockVirtualMachine(false)).isEmpty());
+
+        verify(listed, relisted, vdc);
+    }
+
+    public void testQueuedParentsAreRetrievedByTheCaller()
+    {
+        Datacenter datacenter = EasyMock.createMock(Datacenter.class);
+        expect(vdc.getDatacenter()).andReturn(datacenter);
+        replay(vdc);
+
+        // A pool whose threads are all busy
+        ExecutorService busy = EasyMock.createMock(ExecutorService.class);
+        busy.execute(EasyMock.<Runnable> anyObject());
+        EasyMock.expectLastCall().anyTimes();
+        replay(busy);
+
+        VirtualMachine vm = mockVirtualMachine(true);
+        parents = new VirtualMachineParents(busy);
+        parents.prefetch(ImmutableList.of(vm));
+
+        assertEquals(parents.prefetchedHrefs(vm),
+            ImmutableSet.of(VAPP, VDC, TEMPLATE, DATACENTER));
+        assertSame(parents.getDatacenter(vdc), datacenter);
+
+        verify(vm, vdc);
+    }
+
+    @Test(expectedExceptions = AuthorizationException.class)
+    public void testDeniedDatacentersAreRetrievedOnce()
+    {
+        expect(vdc.getDatacenter()).andThrow(new AuthorizationException());
+        replay(vdc);
+
+        parents.prefetch(ImmutableList.of(mockVirtualMachine(true)));
+
+        try
+        {
+            parents.getDatacenter(vdc);
+        }
+        finally
+        {
+            verify(vdc);
+        }
+    }
+
+    private VirtualMachine mockVirtualMachine(final boolean retrievesParents)
+    {
+        return mockVirtualMachine(retrievesParents ? vapp : null);
+    }
+
+    /**
+     * Mocks a virtual machine that retrieves its parents if a virtual appliance is given.
+     */
+    private VirtualMachine mockVirtualMachine(final VirtualAppliance parent)
+    {
+        VirtualMachineWithNodeExtendedDto dto = new VirtualMachineWithNodeExtendedDto();
+        dto.addLink(new RESTLink(ParentLinkName.VIRTUAL_APPLIANCE, VAPP));
+        dto.addLink(new RESTLink(ParentLinkName.VIRTUAL_DATACENTER, VDC));
+        dto.addLink(new RESTLink(ParentLinkName.VIRTUAL_MACHINE_TEMPLATE, TEMPLATE));
+
+        VirtualMachine vm = EasyMock.createMock(VirtualMachine.class);
+        expect(vm.unwrap()).andReturn(dto).anyTimes();
+        if (parent != null)
+        {
+            expect(vm.getVirtualAppliance()).andReturn(parent);
+            expect(vm.getVirtualDatacenter()).andReturn(vdc);
+            expect(vm.getTemplate()).andReturn(template);
+        }
+        replay(vm);
+        return vm;
+    }
+}
@@ -29,6 +29,10 @@ import static org.testng.Assert.assertEquals;
 import java.net.URI;
 
 import org.easymock.EasyMock;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.compute.strategy.NodeSnapshot;
+import org.jclouds.abiquo.compute.strategy.VirtualMachineIndex;
 import org.jclouds.abiquo.domain.cloud.VirtualAppliance;
 import org.jclouds.abiquo.domain.cloud.VirtualDatacenter;
 import org.jclouds.abiquo.domain.cloud.VirtualMachine;
@@ -38,6 +42,7 @@ import org.jclouds.abiquo.domain.network.ExternalIp;
 import org.jclouds.abiquo.domain.network.Ip;
 import org.jclouds.abiquo.domain.network.PrivateIp;
 import org.jclouds.abiquo.domain.network.PublicIp;
+import org.jclouds.abiquo.features.services.CloudService;
 import org.jclouds.compute.domain.Hardware;
 import org.jclouds.compute.domain.HardwareBuilder;
 import org.jclouds.compute.domain.Image;
@@ -50,6 +55,7 @@ import org.testng.annotations.Test;
 
 import com.abiquo.model.enumerator.HypervisorType;
 import com.abiquo.model.rest.RESTLink;
+import com.abiquo.server.core.cloud.VirtualDatacenterDto;
 import com.abiquo.server.core.cloud.VirtualMachineState;
 import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
 import com.abiquo.server.core.infrastructure.network.ExternalIpDto;
@@ -57,6 +63,7 @@ import com.abiquo.server.core.infrastructure.network.PrivateIpDto;
 import com.abiquo.server.core.infrastructure.network.PublicIpDto;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Unit tests for the {@link VirtualMachineToNodeMetadata} class.
@@ -111,7 +118,8 @@ public class VirtualMachineToNodeMetadataTest
             new VirtualMachineToNodeMetadata(templateToImage(),
                 templateToHardware(),
                 stateToNodeState(),
-                datacenterToLocation());
+                datacenterToLocation(),
+                new VirtualMachineParents(MoreExecutors.sameThreadExecutor()), nodeSnapshot());
     }
 
     public void testVirtualMachineToNodeMetadata()
@@ -144,6 +152,15 @@ public class VirtualMachineToNodeMetadataTest
         assertEquals(Iterables.get(node.getPublicAddresses(), 1), extNic.getIp());
     }
 
+    @SuppressWarnings("unchecked")
+    private static NodeSnapshot nodeSnapshot()
+    {
+        CloudService cloudService = EasyMock.createMock(CloudService.class);
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = EasyMock.createMock(RestContext.class);
+        return new NodeSnapshot(cloudService, new VirtualMachineIndex(context, cloudService), 0L,
+            MoreExecutors.sameThreadExecutor());
+    }
+
     private VirtualMachineTemplateToImage templateToImage()
     {
         VirtualMachineTemplateToImage templateToImage =
@@ -204,6 +221,7 @@ public class VirtualMachineToNodeMetadataTest
         VirtualDatacenter vdc = EasyMock.createMock(VirtualDatacenter.class);
         expect(vdc.getHypervisorType()).andReturn(HypervisorType.VMX_04);
         expect(vdc.getDatacenter()).andReturn(null);
+        expect(vdc.unwrap()).andReturn(new VirtualDatacenterDto()).anyTimes();
         replay(vdc);
         return vdc;
     }
@@ -225,6 +243,7 @@ public class VirtualMachineToNodeMetadataTest
         Ip< ? , ? > mockExtNic =
             wrap(EasyMock.createMock(RestContext.class), ExternalIp.class, extNic);
 
+        expect(mockVm.unwrap()).andReturn(vm).anyTimes();
         expect(mockVm.getId()).andReturn(vm.getId());
         expect(mockVm.getURI()).andReturn(URI.create(vm.getEditLink().getHref()));
         expect(mockVm.getNameLabel()).andReturn(vm.getNodeName());
@@ -22,6 +22,7 @@ package org.jclouds.abiquo.compute.options;
 import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
 
 import org.easymock.EasyMock;
 import org.jclouds.abiquo.AbiquoAsyncApi;
@@ -77,6 +78,13 @@ public class AbiquoTemplateOptionsTest
         assertEquals(options.as(AbiquoTemplateOptions.class).getVirtualDatacenter(), "foo");
     }
 
+    public void testGroupDeploy()
+    {
+        TemplateOptions options = new AbiquoTemplateOptions().groupDeploy(true);
+        assertTrue(options.as(AbiquoTemplateOptions.class).isGroupDeploy());
+        assertTrue(options.clone().as(AbiquoTemplateOptions.class).isGroupDeploy());
+    }
+
     @SuppressWarnings("unchecked")
     public void testIps()
     {
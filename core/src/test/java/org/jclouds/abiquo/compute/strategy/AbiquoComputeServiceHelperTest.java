@@ -0,0 +1,156 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.strategy;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+import static org.testng.Assert.assertEquals;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.Conversion;
+import org.jclouds.abiquo.domain.cloud.VirtualMachineTemplate;
+import org.jclouds.abiquo.events.monitor.CompletedEvent;
+import org.jclouds.abiquo.events.monitor.FailedEvent;
+import org.jclouds.abiquo.features.services.CloudService;
+import org.jclouds.rest.RestContext;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.abiquo.model.enumerator.ConversionState;
+import com.abiquo.model.enumerator.DiskFormatType;
+import com.abiquo.model.enumerator.HypervisorType;
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.server.core.appslibrary.ConversionDto;
+import com.google.common.collect.ImmutableList;
+import com.google.common.eventbus.EventBus;
+
+/**
+ * Unit tests for the {@link AbiquoComputeServiceHelper} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class AbiquoComputeServiceHelperTest
+{
+    private RestContext<AbiquoApi, AbiquoAsyncApi> context;
+
+    private CloudService cloudService;
+
+    private EventBus eventBus;
+
+    private AbiquoComputeServiceHelper helper;
+
+    @BeforeMethod
+    @SuppressWarnings("unchecked")
+    public void setup()
+    {
+        context = EasyMock.createMock(RestContext.class);
+        cloudService = EasyMock.createMock(CloudService.class);
+        eventBus = new EventBus();
+        helper = new AbiquoComputeServiceHelper(context, cloudService, eventBus);
+    }
+
+    public void testCompatibleHypervisorsIncludeFinishedConversions()
+    {
+        Conversion raw = conversion(DiskFormatType.RAW, ConversionState.FINISHED);
+        Conversion flat = conversion(DiskFormatType.VMDK_FLAT, ConversionState.ENQUEUED);
+        VirtualMachineTemplate template = template(ImmutableList.of(raw, flat), 1);
+
+        Set<HypervisorType> expected = EnumSet.noneOf(HypervisorType.class);
+        for (HypervisorType type : HypervisorType.values())
+        {
+            if (type.isCompatible(DiskFormatType.VMDK_STREAM_OPTIMIZED)
+                || type.isCompatible(DiskFormatType.RAW))
+            {
+                expected.add(type);
+            }
+        }
+
+        assertEquals(helper.getCompatibleHypervisors(template), expected);
+        verify(template);
+    }
+
+    public void testConversionsAreListedOnce()
+    {
+        VirtualMachineTemplate template = template(ImmutableList.<Conversion> of(), 1);
+
+        for (HypervisorType type : HypervisorType.values())
+        {
+            helper.getCompatibleHypervisors(template).contains(type);
+        }
+
+        verify(template);
+    }
+
+    public void testCompletedConversionsInvalidateTheTemplate()
+    {
+        VirtualMachineTemplate template = template(ImmutableList.<Conversion> of(), 2);
+
+        helper.getCompatibleHypervisors(template);
+        eventBus.post(new CompletedEvent<Conversion>(conversion(DiskFormatType.RAW,
+            ConversionState.FINISHED)));
+        helper.getCompatibleHypervisors(template);
+
+        verify(template);
+    }
+
+    public void testFailedConversionsDoNotInvalidateTheTemplate()
+    {
+        VirtualMachineTemplate template = template(ImmutableList.<Conversion> of(), 1);
+
+        helper.getCompatibleHypervisors(template);
+        eventBus.post(new FailedEvent<Conversion>(conversion(DiskFormatType.RAW,
+            ConversionState.FAILED)));
+        helper.getCompatibleHypervisors(template);
+
+        verify(template);
+    }
+
+    private static VirtualMachineTemplate template(final List<Conversion> conversions,
+        final int listings)
+    {
+        VirtualMachineTemplate template = EasyMock.createMock(VirtualMachineTemplate.class);
+        expect(template.getId()).andReturn(1).anyTimes();
+        expect(template.getDiskFormatType()).andReturn(DiskFormatType.VMDK_STREAM_OPTIMIZED)
+            .anyTimes();
+        expect(template.listConversions()).andReturn(conversions).times(listings);
+        replay(template);
+        return template;
+    }
+
+    private Conversion conversion(final DiskFormatType targetFormat, final ConversionState state)
+    {
+        ConversionDto dto = new ConversionDto();
+        dto.setTargetFormat(targetFormat);
+        dto.setState(state);
+        dto.addLink(new RESTLink("virtualmachinetemplate",
+            "http://localhost/api/admin/enterprises/1/datacenterrepositories/1/"
+                + "virtualmachinetemplates/1"));
+        return wrap(context, Conversion.class, dto);
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.strategy;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.task.AsyncTask;
+import org.jclouds.abiquo.features.services.CloudService;
+import org.jclouds.abiquo.features.services.MonitoringService;
+import org.jclouds.abiquo.monitor.VirtualMachineMonitor;
+import org.jclouds.abiquo.util.DelayedRequests;
+import org.jclouds.rest.RestContext;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.abiquo.server.core.cloud.VirtualMachineState;
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Unit tests for the {@link BulkNodeOperations} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class BulkNodeOperationsTest
+{
+    private ScheduledExecutorService scheduler;
+
+    private DelayedRequests requests;
+
+    @BeforeMethod
+    public void setup()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        requests = new DelayedRequests(scheduler);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    public void testRequestsInFlightAreLimited()
+    {
+        List<VirtualMachine> vms = ImmutableList.of(virtualMachine(1, true),
+            virtualMachine(2, true), virtualMachine(3, true), virtualMachine(4, true),
+            virtualMachine(5, true));
+
+        VirtualMachineMonitor monitor = EasyMock.createMock(VirtualMachineMonitor.class);
+        monitor.awaitState(VirtualMachineState.PAUSED, vms.get(0), vms.get(1), vms.get(2),
+            vms.get(3), vms.get(4));
+        expectLastCall().once();
+        replay(monitor);
+
+        BulkNodeOperations operations = bulkOperations(vms, monitor, 2);
+        List<VirtualMachine> suspended =
+            operations.suspend(ImmutableList.of("1", "2", "3", "4", "5"));
+
+        assertEquals(suspended, vms);
+        assertTrue(requests.getMaxInFlight() <= 2,
+            "more than 2 requests in flight: " + requests.getMaxInFlight());
+        verify(monitor);
+    }
+
+    public void testVirtualMachinesAreCreatedConcurrently()
+    {
+        VirtualMachine ok = virtualMachine(1, true);
+        VirtualMachine failed = virtualMachine(2, false);
+        VirtualMachine other = virtualMachine(3, true);
+
+        VirtualMachineMonitor monitor = EasyMock.createMock(VirtualMachineMonitor.class);
+        replay(monitor);
+
+        BulkNodeOperations operations =
+            bulkOperations(ImmutableList.<VirtualMachine> of(), monitor, 2);
+        List<VirtualMachine> created = operations.create(ImmutableList.of(ok, failed, other));
+
+        assertEquals(created, ImmutableList.of(ok, other));
+        assertTrue(requests.getMaxInFlight() <= 2,
+            "more than 2 requests in flight: " + requests.getMaxInFlight());
+        verify(monitor);
+    }
+
+    public void testFailedNodesAreNotMonitored()
+    {
+        VirtualMachine ok = virtualMachine(1, true);
+        VirtualMachine failed = virtualMachine(2, false);
+        List<VirtualMachine> vms = ImmutableList.of(ok, failed);
+
+        VirtualMachineMonitor monitor = EasyMock.createMock(VirtualMachineMonitor.class);
+        monitor.awaitState(VirtualMachineState.PAUSED, ok);
+        expectLastCall().once();
+        replay(monitor);
+
+        BulkNodeOperations operations = bulkOperations(vms, monitor, 10);
+
+        assertEquals(operations.suspend(ImmutableList.of("1", "2")), ImmutableList.of(ok));
+        verify(monitor);
+    }
+
+    public void testNoNodes()
+    {
+        VirtualMachineMonitor monitor = EasyMock.createMock(VirtualMachineMonitor.class);
+        replay(monitor);
+
+        BulkNodeOperations operations =
+            bulkOperations(ImmutableList.<VirtualMachine> of(), monitor, 10);
+
+        assertTrue(operations.suspend(ImmutableList.<String> of()).isEmpty());
+        verify(monitor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private BulkNodeOperations bulkOperations(final List<VirtualMachine> vms,
+        final VirtualMachineMonitor monitor, final int maxConcurrency)
+    {
+        CloudService cloudService = EasyMock.createMock(CloudService.class);
+        expect(cloudService.listVirtualMachines(anyObject(Predicate.class))).andReturn(vms)
+            .anyTimes();
+        replay(cloudService);
+
+        MonitoringService monitoringService = EasyMock.createMock(MonitoringService.class);
+        expect(monitoringService.getVirtualMachineMonitor()).andReturn(monitor).anyTimes();
+        replay(monitoringService);
+
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = EasyMock.createMock(RestContext.class);
+        VirtualMachineIndex vmIndex = new VirtualMachineIndex(context, cloudService);
+
+        return new BulkNodeOperations(cloudService, monitoringService, vmIndex, maxConcurrency);
+    }
+
+    private VirtualMachine virtualMachine(final Integer id, final boolean succeeds)
+    {
+        VirtualMachineWithNodeExtendedDto dto = new VirtualMachineWithNodeExtendedDto();
+        dto.setId(id);
+
+        final VirtualMachine vm = EasyMock.createMock(VirtualMachine.class);
+        expect(vm.getId()).andReturn(id).anyTimes();
+        expect(vm.unwrap()).andReturn(dto).anyTimes();
+        expect(vm.changeStateAsync(VirtualMachineState.PAUSED)).andAnswer(
+            new IAnswer<ListenableFuture<AsyncTask>>()
+            {
+                @Override
+                public ListenableFuture<AsyncTask> answer()
+                {
+                    return succeeds ? requests.send((AsyncTask) null) : Futures
+                        .<AsyncTask> immediateFailedFuture(new RuntimeException("failed"));
+                }
+            });
+        expect(vm.saveAsync()).andAnswer(new IAnswer<ListenableFuture<VirtualMachine>>()
+        {
+            @Override
+            public ListenableFuture<VirtualMachine> answer()
+            {
+                return succeeds ? requests.send(vm) : Futures
+                    .<VirtualMachine> immediateFailedFuture(new RuntimeException("failed"));
+            }
+        });
+        replay(vm);
+        return vm;
+    }
+}
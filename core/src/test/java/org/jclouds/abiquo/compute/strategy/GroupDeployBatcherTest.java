@@ -0,0 +1,221 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.strategy;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.VirtualAppliance;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.task.AsyncTask;
+import org.jclouds.abiquo.monitor.MonitorStatus;
+import org.jclouds.rest.RestContext;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.abiquo.server.core.cloud.VirtualMachineState;
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Unit tests for the {@link GroupDeployBatcher} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class GroupDeployBatcherTest
+{
+    private ScheduledExecutorService scheduler;
+
+    private RestContext<AbiquoApi, AbiquoAsyncApi> context;
+
+    @BeforeMethod
+    @SuppressWarnings("unchecked")
+    public void setup()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        context = EasyMock.createMock(RestContext.class);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    public void testVirtualApplianceIsDeployedOnce() throws Exception
+    {
+        VirtualMachine first = virtualMachine(1);
+        VirtualMachine second = virtualMachine(2);
+
+        VirtualAppliance vapp = EasyMock.createMock(VirtualAppliance.class);
+        expect(vapp.getId()).andReturn(1).anyTimes();
+        expect(vapp.listVirtualMachines()).andReturn(ImmutableList.of(first, second)).anyTimes();
+        expect(vapp.deployAsync()).andReturn(accepted()).once();
+        replay(vapp);
+
+        GroupDeployMonitor monitor = EasyMock.createMock(GroupDeployMonitor.class);
+        expect(monitor.monitorDeploy(vapp, first)).andReturn(done());
+        expect(monitor.monitorDeploy(vapp, second)).andReturn(done());
+        replay(monitor);
+
+        GroupDeployBatcher batcher = new GroupDeployBatcher(scheduler, 50L, monitor);
+        ListenableFuture<MonitorStatus> firstStatus = batcher.deployAsync(vapp, first);
+        ListenableFuture<MonitorStatus> secondStatus = batcher.deployAsync(vapp, second);
+
+        assertEquals(firstStatus.get(5, TimeUnit.SECONDS), MonitorStatus.DONE);
+        assertEquals(secondStatus.get(5, TimeUnit.SECONDS), MonitorStatus.DONE);
+        assertEquals(batcher.getPendingBatches(), 0);
+        verify(vapp);
+        verify(monitor);
+    }
+
+    public void testDeploysAreSerializedPerVirtualAppliance() throws Exception
+    {
+        VirtualMachine first = virtualMachine(1);
+        VirtualMachine second = virtualMachine(2);
+        SettableFuture<MonitorStatus> firstDeploy = SettableFuture.create();
+
+        VirtualAppliance vapp = EasyMock.createMock(VirtualAppliance.class);
+        expect(vapp.getId()).andReturn(1).anyTimes();
+        expect(vapp.listVirtualMachines()).andReturn(ImmutableList.of(first, second)).anyTimes();
+        expect(vapp.deployAsync()).andReturn(accepted()).times(2);
+        replay(vapp);
+
+        GroupDeployMonitor monitor = EasyMock.createMock(GroupDeployMonitor.class);
+        expect(monitor.monitorDeploy(vapp, first)).andReturn(firstDeploy);
+        expect(monitor.monitorDeploy(vapp, second)).andReturn(done());
+        replay(monitor);
+
+        GroupDeployBatcher batcher = new GroupDeployBatcher(scheduler, 10L, monitor);
+        ListenableFuture<MonitorStatus> firstStatus = batcher.deployAsync(vapp, first);
+        while (batcher.getPendingBatches() > 0)
+        {
+            Thread.sleep(10);
+        }
+
+        // The second batch waits until the first deploy has finished, not only been accepted
+        ListenableFuture<MonitorStatus> secondStatus = batcher.deployAsync(vapp, second);
+        Thread.sleep(100);
+        assertEquals(batcher.getPendingBatches(), 1);
+        assertFalse(firstStatus.isDone());
+        assertFalse(secondStatus.isDone());
+
+        firstDeploy.set(MonitorStatus.DONE);
+
+        assertEquals(firstStatus.get(5, TimeUnit.SECONDS), MonitorStatus.DONE);
+        assertEquals(secondStatus.get(5, TimeUnit.SECONDS), MonitorStatus.DONE);
+        verify(vapp);
+        verify(monitor);
+    }
+
+    public void testOnlyTheBatchIsDeployedIfOtherVirtualMachinesAreNotDeployed() throws Exception
+    {
+        VirtualMachine vm = EasyMock.createMock(VirtualMachine.class);
+        expect(vm.getId()).andReturn(1).anyTimes();
+        expect(vm.deployAsync()).andReturn(Futures.<AsyncTask> immediateFuture(null)).once();
+        replay(vm);
+
+        // A virtual machine of the same virtual appliance being created out of the batch
+        VirtualMachine other = virtualMachine(2, VirtualMachineState.NOT_ALLOCATED);
+
+        VirtualAppliance vapp = EasyMock.createMock(VirtualAppliance.class);
+        expect(vapp.getId()).andReturn(1).anyTimes();
+        expect(vapp.listVirtualMachines()).andReturn(
+            ImmutableList.of(virtualMachine(1, VirtualMachineState.NOT_ALLOCATED), other));
+        replay(vapp);
+
+        GroupDeployMonitor monitor = EasyMock.createMock(GroupDeployMonitor.class);
+        expect(monitor.monitorDeploy(vapp, vm)).andReturn(done());
+        replay(monitor);
+
+        GroupDeployBatcher batcher = new GroupDeployBatcher(scheduler, 10L, monitor);
+
+        assertEquals(batcher.deployAsync(vapp, vm).get(5, TimeUnit.SECONDS), MonitorStatus.DONE);
+        verify(vm);
+        verify(vapp);
+        verify(monitor);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testFailedDeployFailsAllTheVirtualMachines() throws Throwable
+    {
+        VirtualAppliance vapp = EasyMock.createMock(VirtualAppliance.class);
+        expect(vapp.getId()).andReturn(1).anyTimes();
+        expect(vapp.listVirtualMachines()).andReturn(ImmutableList.<VirtualMachine> of());
+        expect(vapp.deployAsync()).andReturn(
+            Futures.<AsyncTask[]> immediateFailedFuture(new IllegalStateException(
+                "not enough resources")));
+        replay(vapp);
+
+        GroupDeployMonitor monitor = EasyMock.createMock(GroupDeployMonitor.class);
+        replay(monitor);
+
+        GroupDeployBatcher batcher = new GroupDeployBatcher(scheduler, 10L, monitor);
+
+        try
+        {
+            batcher.deployAsync(vapp, virtualMachine(1)).get(5, TimeUnit.SECONDS);
+        }
+        catch (ExecutionException ex)
+        {
+            throw ex.getCause();
+        }
+    }
+
+    private static ListenableFuture<AsyncTask[]> accepted()
+    {
+        return Futures.immediateFuture(new AsyncTask[0]);
+    }
+
+    private static ListenableFuture<MonitorStatus> done()
+    {
+        return Futures.immediateFuture(MonitorStatus.DONE);
+    }
+
+    private VirtualMachine virtualMachine(final Integer id)
+    {
+        return virtualMachine(id, VirtualMachineState.LOCKED);
+    }
+
+    private VirtualMachine virtualMachine(final Integer id, final VirtualMachineState state)
+    {
+        VirtualMachineWithNodeExtendedDto dto = new VirtualMachineWithNodeExtendedDto();
+        dto.setId(id);
+        dto.setState(state);
+        return wrap(context, VirtualMachine.class, dto);
+    }
+}
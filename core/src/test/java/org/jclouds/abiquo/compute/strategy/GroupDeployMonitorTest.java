@@ -0,0 +1,200 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.strategy;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.VirtualAppliance;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.monitor.MonitorStatus;
+import org.jclouds.rest.RestContext;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.abiquo.server.core.cloud.VirtualMachineState;
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Unit tests for the {@link GroupDeployMonitor} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class GroupDeployMonitorTest
+{
+    private ScheduledExecutorService scheduler;
+
+    private GroupDeployMonitor monitor;
+
+    @BeforeMethod
+    public void setup()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        monitor = new GroupDeployMonitor(scheduler, 10L, 500L);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    public void testDeployedVirtualMachines() throws Exception
+    {
+        VirtualMachine first = virtualMachine(1, VirtualMachineState.ON);
+        VirtualMachine second = virtualMachine(2, VirtualMachineState.NOT_ALLOCATED);
+        VirtualAppliance vapp = virtualAppliance(ImmutableList.of(first, second));
+
+        ListenableFuture<MonitorStatus> firstStatus = monitor.monitorDeploy(vapp, first);
+        ListenableFuture<MonitorStatus> secondStatus = monitor.monitorDeploy(vapp, second);
+
+        assertEquals(firstStatus.get(5, TimeUnit.SECONDS), MonitorStatus.DONE);
+        assertEquals(secondStatus.get(5, TimeUnit.SECONDS), MonitorStatus.FAILED);
+    }
+
+    public void testRemovedVirtualMachinesFail() throws Exception
+    {
+        VirtualMachine vm = virtualMachine(1, VirtualMachineState.LOCKED);
+        VirtualAppliance vapp = virtualAppliance(ImmutableList.<VirtualMachine> of());
+
+        assertEquals(monitor.awaitCompletionDeploy(vapp, vm), MonitorStatus.FAILED);
+    }
+
+    public void testNotAllocatedVirtualMachinesAreCheckedAgain() throws Exception
+    {
+        VirtualMachine vm = virtualMachine(1, VirtualMachineState.NOT_ALLOCATED);
+        VirtualMachine deployed = virtualMachine(1, VirtualMachineState.ON);
+
+        VirtualAppliance vapp = EasyMock.createMock(VirtualAppliance.class);
+        expect(vapp.getId()).andReturn(1).anyTimes();
+        expect(vapp.listVirtualMachines()).andReturn(ImmutableList.of(vm));
+        expect(vapp.listVirtualMachines()).andReturn(ImmutableList.of(deployed)).anyTimes();
+        replay(vapp);
+
+        assertEquals(monitor.awaitCompletionDeploy(vapp, vm), MonitorStatus.DONE);
+    }
+
+    public void testNotAllocatedVirtualMachinesFailOnceTheDeployHasStarted() throws Exception
+    {
+        VirtualMachine vm = virtualMachine(1, VirtualMachineState.NOT_ALLOCATED);
+        VirtualMachine deploying = virtualMachine(1, VirtualMachineState.LOCKED);
+
+        VirtualAppliance vapp = EasyMock.createMock(VirtualAppliance.class);
+        expect(vapp.getId()).andReturn(1).anyTimes();
+        expect(vapp.listVirtualMachines()).andReturn(ImmutableList.of(vm)).times(3);
+        expect(vapp.listVirtualMachines()).andReturn(ImmutableList.of(deploying));
+        expect(vapp.listVirtualMachines()).andReturn(ImmutableList.of(vm)).anyTimes();
+        replay(vapp);
+
+        // The deploy fails without waiting for the timeout
+        GroupDeployMonitor patient = new GroupDeployMonitor(scheduler, 10L, 60000L);
+        ListenableFuture<MonitorStatus> status = patient.monitorDeploy(vapp, vm);
+
+        assertEquals(status.get(5, TimeUnit.SECONDS), MonitorStatus.FAILED);
+    }
+
+    public void testStuckVirtualMachinesTimeOut() throws Exception
+    {
+        VirtualMachine vm = virtualMachine(1, VirtualMachineState.LOCKED);
+        VirtualAppliance vapp = virtualAppliance(ImmutableList.of(vm));
+
+        ListenableFuture<MonitorStatus> status = monitor.monitorDeploy(vapp, vm);
+
+        assertEquals(status.get(5, TimeUnit.SECONDS), MonitorStatus.FAILED);
+        Thread.sleep(50);
+        assertEquals(monitor.getMonitoredVirtualAppliances(), 0);
+    }
+
+    public void testVirtualMachinesRegisteredWhileListingAreNotChecked() throws Exception
+    {
+        final VirtualMachine first = virtualMachine(1, VirtualMachineState.LOCKED);
+        final VirtualMachine late = virtualMachine(2, VirtualMachineState.ON);
+        final VirtualAppliance vapp = EasyMock.createMock(VirtualAppliance.class);
+        final List<ListenableFuture<MonitorStatus>> lateStatus = Lists.newArrayList();
+
+        expect(vapp.getId()).andReturn(1).anyTimes();
+        // The late virtual machine is registered after the listing has been loaded
+        expect(vapp.listVirtualMachines()).andAnswer(new IAnswer<List<VirtualMachine>>()
+        {
+            @Override
+            public List<VirtualMachine> answer() throws Throwable
+            {
+                lateStatus.add(monitor.monitorDeploy(vapp, late));
+                return ImmutableList.of(first);
+            }
+        });
+        expect(vapp.listVirtualMachines()).andReturn(ImmutableList.of(first, late)).times(2);
+        expect(vapp.listVirtualMachines()).andReturn(ImmutableList.<VirtualMachine> of())
+            .anyTimes();
+        replay(vapp);
+
+        ListenableFuture<MonitorStatus> firstStatus = monitor.monitorDeploy(vapp, first);
+
+        assertEquals(firstStatus.get(5, TimeUnit.SECONDS), MonitorStatus.FAILED);
+        assertEquals(lateStatus.get(0).get(5, TimeUnit.SECONDS), MonitorStatus.DONE);
+    }
+
+    public void testMonitorIsStoppedWhenAllVirtualMachinesFinish() throws Exception
+    {
+        VirtualMachine vm = virtualMachine(1, VirtualMachineState.ON);
+        VirtualAppliance vapp = virtualAppliance(ImmutableList.of(vm));
+
+        monitor.awaitCompletionDeploy(vapp, vm);
+
+        // The monitor is removed right after notifying the virtual machines
+        Thread.sleep(50);
+        assertEquals(monitor.getMonitoredVirtualAppliances(), 0);
+    }
+
+    private static VirtualAppliance virtualAppliance(final List<VirtualMachine> vms)
+    {
+        VirtualAppliance vapp = EasyMock.createMock(VirtualAppliance.class);
+        expect(vapp.getId()).andReturn(1).anyTimes();
+        expect(vapp.listVirtualMachines()).andReturn(vms).anyTimes();
+        replay(vapp);
+        return vapp;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static VirtualMachine virtualMachine(final Integer id, final VirtualMachineState state)
+    {
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = EasyMock.createMock(RestContext.class);
+        VirtualMachineWithNodeExtendedDto dto = new VirtualMachineWithNodeExtendedDto();
+        dto.setId(id);
+        dto.setState(state);
+        return wrap(context, VirtualMachine.class, dto);
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.strategy;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.compute.options.AbiquoTemplateOptions;
+import org.jclouds.abiquo.compute.strategy.NodeGroupResolver.NodeGroup;
+import org.jclouds.abiquo.domain.cloud.VirtualAppliance;
+import org.jclouds.abiquo.domain.cloud.VirtualDatacenter;
+import org.jclouds.abiquo.domain.cloud.VirtualMachineTemplate;
+import org.jclouds.abiquo.domain.enterprise.Enterprise;
+import org.jclouds.abiquo.domain.enterprise.User;
+import org.jclouds.abiquo.domain.infrastructure.Datacenter;
+import org.jclouds.abiquo.events.cloud.VirtualApplianceDeletedEvent;
+import org.jclouds.abiquo.events.cloud.VirtualDatacenterDeletedEvent;
+import org.jclouds.abiquo.features.services.AdministrationService;
+import org.jclouds.compute.domain.Image;
+import org.jclouds.compute.domain.Template;
+import org.jclouds.domain.Location;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import com.google.common.eventbus.EventBus;
+
+/**
+ * Unit tests for the {@link NodeGroupResolver} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class NodeGroupResolverTest
+{
+    private Template template;
+
+    private EventBus eventBus;
+
+    @BeforeMethod
+    public void setup()
+    {
+        Image image = EasyMock.createMock(Image.class);
+        expect(image.getId()).andReturn("1").anyTimes();
+        replay(image);
+
+        Location location = EasyMock.createMock(Location.class);
+        expect(location.getId()).andReturn("1").anyTimes();
+        replay(location);
+
+        template = EasyMock.createMock(Template.class);
+        expect(template.getImage()).andReturn(image).anyTimes();
+        expect(template.getLocation()).andReturn(location).anyTimes();
+        expect(template.getOptions()).andReturn(new AbiquoTemplateOptions()).anyTimes();
+        replay(template);
+
+        eventBus = new EventBus();
+    }
+
+    public void testConcurrentNodesResolveTheGroupOnce() throws Exception
+    {
+        AbiquoComputeServiceHelper helper = helper(1);
+        final NodeGroupResolver resolver = resolver(helper, 60000L);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try
+        {
+            List<Callable<NodeGroup>> nodes = Lists.newArrayList();
+            for (int i = 0; i < 16; i++)
+            {
+                nodes.add(new Callable<NodeGroup>()
+                {
+                    @Override
+                    public NodeGroup call()
+                    {
+                        return resolver.resolve("group", template);
+                    }
+                });
+            }
+
+            List<Future<NodeGroup>> results = executor.invokeAll(nodes);
+            for (Future<NodeGroup> result : results)
+            {
+                assertSame(result.get(), results.get(0).get());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        verify(helper);
+    }
+
+    public void testGroupsAreResolvedForEachNodeIfDisabled()
+    {
+        AbiquoComputeServiceHelper helper = helper(2);
+        NodeGroupResolver resolver = resolver(helper, 0L);
+
+        resolver.resolve("group", template);
+        resolver.resolve("group", template);
+
+        verify(helper);
+    }
+
+    public void testInvalidatedGroupsAreResolvedAgain()
+    {
+        AbiquoComputeServiceHelper helper = helper(2);
+        NodeGroupResolver resolver = resolver(helper, 60000L);
+
+        resolver.resolve("group", template);
+        resolver.invalidate("group", template);
+        resolver.resolve("group", template);
+
+        verify(helper);
+    }
+
+    public void testGroupsAreDiscardedWhenTheVirtualApplianceIsDeleted()
+    {
+        AbiquoComputeServiceHelper helper = helper(2);
+        NodeGroupResolver resolver = resolver(helper, 60000L);
+
+        resolver.resolve("group", template);
+        eventBus.post(new VirtualApplianceDeletedEvent(2));
+        resolver.resolve("group", template);
+        eventBus.post(new VirtualApplianceDeletedEvent(1));
+        resolver.resolve("group", template);
+
+        verify(helper);
+    }
+
+    public void testGroupsAreDiscardedWhenTheVirtualDatacenterIsDeleted()
+    {
+        AbiquoComputeServiceHelper helper = helper(2);
+        NodeGroupResolver resolver = resolver(helper, 60000L);
+
+        resolver.resolve("group", template);
+        eventBus.post(new VirtualDatacenterDeletedEvent(2));
+        resolver.resolve("group", template);
+        eventBus.post(new VirtualDatacenterDeletedEvent(1));
+        resolver.resolve("group", template);
+
+        verify(helper);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeTtl()
+    {
+        resolver(helper(0), -1L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private NodeGroupResolver resolver(final AbiquoComputeServiceHelper helper, final Long ttl)
+    {
+        Datacenter datacenter = EasyMock.createMock(Datacenter.class);
+        replay(datacenter);
+
+        VirtualMachineTemplate virtualMachineTemplate =
+            EasyMock.createMock(VirtualMachineTemplate.class);
+        replay(virtualMachineTemplate);
+
+        Enterprise enterprise = EasyMock.createMock(Enterprise.class);
+        expect(enterprise.findAllowedDatacenter(anyObject(Predicate.class))).andReturn(datacenter)
+            .anyTimes();
+        expect(enterprise.getTemplateInRepository(datacenter, 1))
+            .andReturn(virtualMachineTemplate).anyTimes();
+        replay(enterprise);
+
+        AdministrationService adminService = EasyMock.createMock(AdministrationService.class);
+        expect(adminService.getCurrentUser()).andReturn(null).anyTimes();
+        expect(adminService.getCurrentEnterprise()).andReturn(enterprise).anyTimes();
+        replay(adminService);
+
+        return new NodeGroupResolver(adminService, helper, ttl, eventBus);
+    }
+
+    /**
+     * Creates a helper that resolves the virtual datacenter and virtual appliance of the group
+     * the given number of times.
+     */
+    private static AbiquoComputeServiceHelper helper(final int resolutions)
+    {
+        VirtualDatacenter vdc = EasyMock.createMock(VirtualDatacenter.class);
+        expect(vdc.getId()).andReturn(1).anyTimes();
+        replay(vdc);
+
+        VirtualAppliance vapp = EasyMock.createMock(VirtualAppliance.class);
+        expect(vapp.getId()).andReturn(1).anyTimes();
+        replay(vapp);
+
+        AbiquoComputeServiceHelper helper = EasyMock.createMock(AbiquoComputeServiceHelper.class);
+        expect(
+            helper.getOrCreateVirtualDatacenter(anyObject(User.class), anyObject(Enterprise.class),
+                anyObject(Datacenter.class), anyObject(VirtualMachineTemplate.class),
+                anyObject(AbiquoTemplateOptions.class))).andReturn(vdc).times(resolutions);
+        expect(helper.getOrCreateVirtualAppliance(vdc, "group")).andReturn(vapp).times(
+            resolutions);
+        replay(helper);
+        return helper;
+    }
+}
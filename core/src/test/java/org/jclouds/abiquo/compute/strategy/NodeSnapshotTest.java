@@ -0,0 +1,251 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.strategy;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.features.services.CloudService;
+import org.jclouds.compute.domain.NodeMetadata;
+import org.jclouds.rest.RestContext;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.google.common.base.Function;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Unit tests for the {@link NodeSnapshot} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class NodeSnapshotTest
+{
+    private RestContext<AbiquoApi, AbiquoAsyncApi> context;
+
+    private FakeTicker ticker;
+
+    private List<VirtualMachine> first;
+
+    private List<VirtualMachine> second;
+
+    @BeforeMethod
+    @SuppressWarnings("unchecked")
+    public void setup()
+    {
+        context = EasyMock.createMock(RestContext.class);
+        ticker = new FakeTicker();
+        first = ImmutableList.of(virtualMachine(1));
+        second = ImmutableList.of(virtualMachine(1), virtualMachine(2));
+    }
+
+    public void testNodesAreListedEveryTimeIfDisabled()
+    {
+        CloudService cloudService = EasyMock.createMock(CloudService.class);
+        expect(cloudService.listVirtualMachines()).andReturn(first).times(2);
+        replay(cloudService);
+
+        NodeSnapshot snapshot = snapshot(cloudService, 0L);
+        snapshot.listNodes();
+        snapshot.listNodes();
+
+        assertEquals(snapshot.getAge(TimeUnit.MILLISECONDS), -1L);
+        verify(cloudService);
+    }
+
+    public void testNodesAreReturnedFromTheSnapshot()
+    {
+        CloudService cloudService = EasyMock.createMock(CloudService.class);
+        expect(cloudService.listVirtualMachines()).andReturn(first).once();
+        replay(cloudService);
+
+        NodeSnapshot snapshot = snapshot(cloudService, 1000L);
+        snapshot.listNodes();
+        ticker.advance(500);
+
+        assertEquals(snapshot.listNodes(), first);
+        assertEquals(snapshot.getAge(TimeUnit.MILLISECONDS), 500L);
+        verify(cloudService);
+    }
+
+    public void testStaleSnapshotIsReturnedWhileRefreshing()
+    {
+        CloudService cloudService = EasyMock.createMock(CloudService.class);
+        expect(cloudService.listVirtualMachines()).andReturn(first).once();
+        expect(cloudService.listVirtualMachines()).andReturn(second).once();
+        replay(cloudService);
+
+        NodeSnapshot snapshot = snapshot(cloudService, 1000L);
+        snapshot.listNodes();
+        ticker.advance(1500);
+
+        assertEquals(snapshot.listNodes(), first);
+        assertEquals(snapshot.listNodes(), second);
+        assertEquals(snapshot.getAge(TimeUnit.MILLISECONDS), 0L);
+        verify(cloudService);
+    }
+
+    public void testFailedRefreshKeepsThePreviousSnapshot()
+    {
+        CloudService cloudService = EasyMock.createMock(CloudService.class);
+        expect(cloudService.listVirtualMachines()).andReturn(first).once();
+        expect(cloudService.listVirtualMachines()).andThrow(new RuntimeException("failed"));
+        replay(cloudService);
+
+        NodeSnapshot snapshot = snapshot(cloudService, 1000L);
+        snapshot.listNodes();
+        ticker.advance(1500);
+
+        assertEquals(snapshot.listNodes(), first);
+        assertEquals(snapshot.getAge(TimeUnit.MILLISECONDS), 1500L);
+        verify(cloudService);
+    }
+
+    public void testInvalidatedSnapshotIsListedAgain()
+    {
+        CloudService cloudService = EasyMock.createMock(CloudService.class);
+        expect(cloudService.listVirtualMachines()).andReturn(first).once();
+        expect(cloudService.listVirtualMachines()).andReturn(second).once();
+        replay(cloudService);
+
+        NodeSnapshot snapshot = snapshot(cloudService, 1000L);
+        snapshot.listNodes();
+        snapshot.invalidate();
+
+        assertEquals(snapshot.getAge(TimeUnit.MILLISECONDS), -1L);
+        assertEquals(snapshot.listNodes(), second);
+        verify(cloudService);
+    }
+
+    public void testSnapshotInvalidatedWhileListingIsDiscarded()
+    {
+        final NodeSnapshot[] holder = new NodeSnapshot[1];
+        CloudService cloudService = EasyMock.createMock(CloudService.class);
+        // The nodes are modified while they are being listed for the first time
+        expect(cloudService.listVirtualMachines()).andAnswer(new IAnswer<List<VirtualMachine>>()
+        {
+            @Override
+            public List<VirtualMachine> answer() throws Throwable
+            {
+                holder[0].invalidate();
+                return first;
+            }
+        });
+        expect(cloudService.listVirtualMachines()).andReturn(second).once();
+        replay(cloudService);
+
+        NodeSnapshot snapshot = snapshot(cloudService, 1000L);
+        holder[0] = snapshot;
+
+        assertEquals(snapshot.listNodes(), first);
+        assertEquals(snapshot.getAge(TimeUnit.MILLISECONDS), -1L);
+        assertEquals(snapshot.listNodes(), second);
+        verify(cloudService);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testSharedNodesAreConvertedOnce()
+    {
+        CloudService cloudService = EasyMock.createMock(CloudService.class);
+        expect(cloudService.listVirtualMachines()).andReturn(first).once();
+        replay(cloudService);
+
+        NodeMetadata node = EasyMock.createMock(NodeMetadata.class);
+        Function<VirtualMachine, NodeMetadata> converter = EasyMock.createMock(Function.class);
+        expect(converter.apply(first.get(0))).andReturn(node).once();
+        replay(node, converter);
+
+        NodeSnapshot snapshot = snapshot(cloudService, 1000L);
+        VirtualMachine vm = snapshot.listNodes().get(0);
+
+        assertTrue(snapshot.isShared(vm));
+        assertSame(snapshot.convert(vm, converter), node);
+        assertSame(snapshot.convert(snapshot.listNodes().get(0), converter), node);
+        verify(cloudService, converter);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testNodesAreConvertedEveryTimeIfDisabled()
+    {
+        CloudService cloudService = EasyMock.createMock(CloudService.class);
+        expect(cloudService.listVirtualMachines()).andReturn(first).once();
+        replay(cloudService);
+
+        NodeMetadata node = EasyMock.createMock(NodeMetadata.class);
+        Function<VirtualMachine, NodeMetadata> converter = EasyMock.createMock(Function.class);
+        expect(converter.apply(first.get(0))).andReturn(node).times(2);
+        replay(node, converter);
+
+        NodeSnapshot snapshot = snapshot(cloudService, 0L);
+        VirtualMachine vm = snapshot.listNodes().get(0);
+
+        assertFalse(snapshot.isShared(vm));
+        snapshot.convert(vm, converter);
+        snapshot.convert(vm, converter);
+        verify(cloudService, converter);
+    }
+
+    private NodeSnapshot snapshot(final CloudService cloudService, final Long refreshInterval)
+    {
+        return new NodeSnapshot(cloudService, new VirtualMachineIndex(context, cloudService),
+            refreshInterval, MoreExecutors.sameThreadExecutor(), ticker);
+    }
+
+    private VirtualMachine virtualMachine(final Integer id)
+    {
+        VirtualMachineWithNodeExtendedDto dto = new VirtualMachineWithNodeExtendedDto();
+        dto.setId(id);
+        return wrap(context, VirtualMachine.class, dto);
+    }
+
+    private static class FakeTicker extends Ticker
+    {
+        private long nanos;
+
+        @Override
+        public long read()
+        {
+            return nanos;
+        }
+
+        public void advance(final long millis)
+        {
+            nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+    }
+}
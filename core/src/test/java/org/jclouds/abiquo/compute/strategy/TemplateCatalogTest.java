@@ -0,0 +1,141 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.strategy;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.List;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.domain.cloud.VirtualMachineTemplate;
+import org.jclouds.abiquo.domain.enterprise.Enterprise;
+import org.jclouds.abiquo.events.enterprise.TemplateRepositoryRefreshedEvent;
+import org.jclouds.abiquo.features.services.AdministrationService;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Unit tests for the {@link TemplateCatalog} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class TemplateCatalogTest
+{
+    public void testTemplatesAreListedEveryTimeIfDisabled()
+    {
+        Enterprise enterprise = enterprise(2);
+        TemplateCatalog catalog = new TemplateCatalog(adminService(enterprise), 0L,
+            MoreExecutors.sameThreadExecutor(), new EventBus());
+
+        catalog.listTemplates();
+        catalog.listTemplates();
+
+        verify(enterprise);
+    }
+
+    public void testTemplatesAreCached()
+    {
+        Enterprise enterprise = enterprise(1);
+        TemplateCatalog catalog = new TemplateCatalog(adminService(enterprise), 60000L,
+            MoreExecutors.sameThreadExecutor(), new EventBus());
+
+        List<VirtualMachineTemplate> templates = catalog.listTemplates();
+        assertEquals(catalog.listTemplates(), templates);
+
+        verify(enterprise);
+    }
+
+    public void testFindTemplateUsesTheCachedTemplates()
+    {
+        Enterprise enterprise = enterprise(1);
+        TemplateCatalog catalog = new TemplateCatalog(adminService(enterprise), 60000L,
+            MoreExecutors.sameThreadExecutor(), new EventBus());
+
+        catalog.listTemplates();
+        assertNull(catalog.findTemplate(Predicates.<VirtualMachineTemplate> alwaysTrue()));
+
+        verify(enterprise);
+    }
+
+    public void testTemplatesAreDiscardedWhenTheRepositoryIsRefreshed()
+    {
+        Enterprise enterprise = enterprise(2);
+        EventBus eventBus = new EventBus();
+        TemplateCatalog catalog = new TemplateCatalog(adminService(enterprise), 60000L,
+            MoreExecutors.sameThreadExecutor(), eventBus);
+
+        catalog.listTemplates();
+        eventBus.post(new TemplateRepositoryRefreshedEvent(1, 5));
+        catalog.listTemplates();
+
+        verify(enterprise);
+    }
+
+    public void testTemplatesOfOtherEnterprisesAreKept()
+    {
+        Enterprise enterprise = enterprise(1);
+        EventBus eventBus = new EventBus();
+        TemplateCatalog catalog = new TemplateCatalog(adminService(enterprise), 60000L,
+            MoreExecutors.sameThreadExecutor(), eventBus);
+
+        catalog.listTemplates();
+        eventBus.post(new TemplateRepositoryRefreshedEvent(2, 5));
+        catalog.listTemplates();
+
+        verify(enterprise);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeRefreshInterval()
+    {
+        new TemplateCatalog(adminService(enterprise(0)), -1L,
+            MoreExecutors.sameThreadExecutor(), new EventBus());
+    }
+
+    private static Enterprise enterprise(final int listings)
+    {
+        Enterprise enterprise = EasyMock.createMock(Enterprise.class);
+        expect(enterprise.getId()).andReturn(1).anyTimes();
+        if (listings > 0)
+        {
+            expect(enterprise.listTemplates()).andReturn(
+                ImmutableList.<VirtualMachineTemplate> of()).times(listings);
+        }
+        replay(enterprise);
+        return enterprise;
+    }
+
+    private static AdministrationService adminService(final Enterprise enterprise)
+    {
+        AdministrationService adminService = EasyMock.createMock(AdministrationService.class);
+        expect(adminService.getCurrentEnterprise()).andReturn(enterprise).anyTimes();
+        replay(adminService);
+        return adminService;
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.compute.strategy;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import javax.ws.rs.core.HttpHeaders;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.features.services.CloudService;
+import org.jclouds.abiquo.rest.internal.AbiquoHttpClient;
+import org.jclouds.abiquo.rest.internal.ExtendedUtils;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.io.Payloads;
+import org.jclouds.rest.RestContext;
+import org.jclouds.xml.XMLParser;
+import org.jclouds.xml.internal.JAXBParser;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMultimap;
+
+/**
+ * Unit tests for the {@link VirtualMachineIndex} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class VirtualMachineIndexTest
+{
+    private XMLParser xml;
+
+    private RestContext<AbiquoApi, AbiquoAsyncApi> context;
+
+    private AbiquoHttpClient http;
+
+    private CloudService cloudService;
+
+    @BeforeMethod
+    @SuppressWarnings("unchecked")
+    public void setup()
+    {
+        xml = new JAXBParser("false");
+        http = EasyMock.createMock(AbiquoHttpClient.class);
+        cloudService = EasyMock.createMock(CloudService.class);
+
+        ExtendedUtils utils = EasyMock.createMock(ExtendedUtils.class);
+        expect(utils.getAbiquoHttpClient()).andReturn(http).anyTimes();
+        expect(utils.getXml()).andReturn(xml).anyTimes();
+        expect(utils.getInjector()).andReturn(null).anyTimes();
+        replay(utils);
+
+        context = EasyMock.createMock(RestContext.class);
+        expect(context.getUtils()).andReturn(utils).anyTimes();
+        replay(context);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testIndexedVirtualMachinesAreRetrievedDirectly() throws Exception
+    {
+        VirtualMachine vm = virtualMachine(5);
+
+        expect(http.get(vm.unwrap().getEditLink())).andReturn(response(vm.unwrap()));
+        replay(http);
+        replay(cloudService);
+
+        VirtualMachineIndex index = new VirtualMachineIndex(context, cloudService);
+        index.index(vm);
+
+        assertEquals(index.find(5).getId(), Integer.valueOf(5));
+        verify(http);
+        verify(cloudService);
+    }
+
+    public void testFoundVirtualMachinesHaveTheirVersion() throws Exception
+    {
+        VirtualMachine vm = virtualMachine(5);
+
+        String payload = xml.toXML(vm.unwrap(), VirtualMachineWithNodeExtendedDto.class);
+        expect(http.get(vm.unwrap().getEditLink())).andReturn(
+            HttpResponse.builder().statusCode(200).payload(Payloads.newStringPayload(payload))
+                .headers(ImmutableMultimap.of(HttpHeaders.ETAG, "\"1\"")).build());
+        replay(http);
+        replay(cloudService);
+
+        VirtualMachineIndex index = new VirtualMachineIndex(context, cloudService);
+        index.index(vm);
+
+        assertEquals(index.find(5).getETag(), "\"1\"");
+        verify(http);
+        verify(cloudService);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testUnknownVirtualMachinesScanTheCloud()
+    {
+        VirtualMachine vm = virtualMachine(5);
+
+        expect(cloudService.findVirtualMachine(anyObject(Predicate.class))).andReturn(vm);
+        replay(http);
+        replay(cloudService);
+
+        VirtualMachineIndex index = new VirtualMachineIndex(context, cloudService);
+
+        assertEquals(index.find(5), vm);
+        assertEquals(index.size(), 1);
+        verify(cloudService);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testDeletedVirtualMachinesAreRemoved()
+    {
+        VirtualMachine vm = virtualMachine(5);
+
+        expect(http.get(vm.unwrap().getEditLink())).andReturn(null);
+        expect(cloudService.findVirtualMachine(anyObject(Predicate.class))).andReturn(null);
+        replay(http);
+        replay(cloudService);
+
+        VirtualMachineIndex index = new VirtualMachineIndex(context, cloudService);
+        index.index(vm);
+
+        assertNull(index.find(5));
+        assertEquals(index.size(), 0);
+        verify(http);
+        verify(cloudService);
+    }
+
+    public void testRemove()
+    {
+        VirtualMachineIndex index = new VirtualMachineIndex(context, cloudService);
+        index.index(virtualMachine(5));
+        index.remove(5);
+
+        assertEquals(index.size(), 0);
+    }
+
+    private VirtualMachine virtualMachine(final Integer id)
+    {
+        VirtualMachineWithNodeExtendedDto dto = new VirtualMachineWithNodeExtendedDto();
+        dto.setId(id);
+        dto.addLink(new RESTLink("edit",
+            "http://localhost/api/cloud/virtualdatacenters/1/virtualappliances/1/virtualmachines/"
+                + id));
+        return wrap(context, VirtualMachine.class, dto);
+    }
+
+    private HttpResponse response(final VirtualMachineWithNodeExtendedDto dto) throws Exception
+    {
+        String payload = xml.toXML(dto, VirtualMachineWithNodeExtendedDto.class);
+        return HttpResponse.builder().statusCode(200).payload(Payloads.newStringPayload(payload))
+            .build();
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.same;
+import static org.easymock.EasyMock.verify;
+import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.VirtualAppliance;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.cloud.VirtualMachineTemplate;
+import org.jclouds.abiquo.domain.cloud.Volume;
+import org.jclouds.abiquo.domain.task.AsyncTask;
+import org.jclouds.abiquo.features.CloudAsyncApi;
+import org.jclouds.abiquo.features.TaskAsyncApi;
+import org.jclouds.rest.RestContext;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.model.transport.AcceptedRequestDto;
+import com.abiquo.server.core.appslibrary.VirtualMachineTemplateDto;
+import com.abiquo.server.core.cloud.VirtualApplianceDto;
+import com.abiquo.server.core.cloud.VirtualMachineTaskDto;
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.abiquo.server.core.infrastructure.storage.VolumeManagementDto;
+import com.abiquo.server.core.task.TaskDto;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Unit tests for the non-blocking operations of the domain objects.
+ * <p>
+ * The responses of the async api are completed from another thread, as the I/O threads do.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class AsyncOperationsTest
+{
+    private ScheduledExecutorService scheduler;
+
+    private CloudAsyncApi cloudApi;
+
+    private TaskAsyncApi taskApi;
+
+    private RestContext<AbiquoApi, AbiquoAsyncApi> context;
+
+    @BeforeMethod
+    @SuppressWarnings("unchecked")
+    public void setup()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        cloudApi = EasyMock.createMock(CloudAsyncApi.class);
+        taskApi = EasyMock.createMock(TaskAsyncApi.class);
+
+        AbiquoAsyncApi asyncApi = EasyMock.createMock(AbiquoAsyncApi.class);
+        expect(asyncApi.getCloudApi()).andReturn(cloudApi).anyTimes();
+        expect(asyncApi.getTaskApi()).andReturn(taskApi).anyTimes();
+        replay(asyncApi);
+
+        context = EasyMock.createMock(RestContext.class);
+        expect(context.getAsyncApi()).andReturn(asyncApi).anyTimes();
+        expect(context.getUtils()).andReturn(null).anyTimes();
+        replay(context);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    public void testSaveAsyncReplacesTheWrappedObject() throws Exception
+    {
+        VirtualApplianceDto vappDto = new VirtualApplianceDto();
+        VirtualMachineTemplateDto templateDto = new VirtualMachineTemplateDto();
+        templateDto.setId(1);
+        templateDto.setHdRequired(1L);
+        templateDto.addLink(new RESTLink("edit", "http://localhost/api/templates/1"));
+
+        VirtualMachine vm =
+            VirtualMachine
+                .builder(context, wrap(context, VirtualAppliance.class, vappDto),
+                    wrap(context, VirtualMachineTemplate.class, templateDto)).build();
+
+        VirtualMachineWithNodeExtendedDto created = new VirtualMachineWithNodeExtendedDto();
+        created.setId(5);
+        expect(cloudApi.createVirtualMachine(same(vappDto), same(vm.unwrap()))).andReturn(
+            delayed(created));
+        replay(cloudApi, taskApi);
+
+        assertSame(vm.saveAsync().get(), vm);
+        assertSame(vm.unwrap(), created);
+        assertEquals(vm.getId(), Integer.valueOf(5));
+        verify(cloudApi, taskApi);
+    }
+
+    public void testDeleteAsyncClearsTheWrappedObject() throws Exception
+    {
+        VirtualMachine vm =
+            wrap(context, VirtualMachine.class, new VirtualMachineWithNodeExtendedDto());
+
+        expect(cloudApi.deleteVirtualMachine(same(vm.unwrap()))).andReturn(
+            delayed((Void) null));
+        replay(cloudApi, taskApi);
+
+        vm.deleteAsync().get();
+        assertNull(vm.unwrap());
+        verify(cloudApi, taskApi);
+    }
+
+    public void testUpdateAsyncResolvesTheTask() throws Exception
+    {
+        Volume volume = wrap(context, Volume.class, new VolumeManagementDto());
+        TaskDto task = new TaskDto();
+
+        expect(cloudApi.updateVolume(same(volume.unwrap()))).andReturn(
+            delayed(acceptedRequest(1)));
+        expect(taskApi.getTask(anyObject(RESTLink.class))).andReturn(delayed(task));
+        replay(cloudApi, taskApi);
+
+        AsyncTask result = volume.updateAsync().get();
+        assertNotNull(result);
+        assertSame(result.unwrap(), task);
+        verify(cloudApi, taskApi);
+    }
+
+    public void testDeployAsyncResolvesAllTheTasks() throws Exception
+    {
+        VirtualAppliance vapp = wrap(context, VirtualAppliance.class, new VirtualApplianceDto());
+
+        expect(
+            cloudApi.deployVirtualAppliance(same(vapp.unwrap()),
+                anyObject(VirtualMachineTaskDto.class))).andReturn(delayed(acceptedRequest(3)));
+        expect(taskApi.getTask(anyObject(RESTLink.class))).andReturn(delayed(new TaskDto()))
+            .times(3);
+        replay(cloudApi, taskApi);
+
+        assertEquals(vapp.deployAsync().get().length, 3);
+        verify(cloudApi, taskApi);
+    }
+
+    public void testDeployAsyncCompletedSynchronously() throws Exception
+    {
+        VirtualAppliance vapp = wrap(context, VirtualAppliance.class, new VirtualApplianceDto());
+
+        expect(
+            cloudApi.deployVirtualAppliance(same(vapp.unwrap()),
+                anyObject(VirtualMachineTaskDto.class))).andReturn(
+            delayed((AcceptedRequestDto<String>) null));
+        replay(cloudApi, taskApi);
+
+        assertEquals(vapp.deployAsync().get().length, 0);
+        verify(cloudApi, taskApi);
+    }
+
+    public void testFailuresArePropagated() throws Exception
+    {
+        VirtualMachine vm =
+            wrap(context, VirtualMachine.class, new VirtualMachineWithNodeExtendedDto());
+        VirtualMachineWithNodeExtendedDto original = vm.unwrap();
+        RuntimeException error = new RuntimeException("failed");
+
+        expect(cloudApi.deleteVirtualMachine(same(original))).andReturn(
+            Futures.<Void> immediateFailedFuture(error));
+        replay(cloudApi, taskApi);
+
+        try
+        {
+            vm.deleteAsync().get();
+            fail("the operation should have failed");
+        }
+        catch (ExecutionException ex)
+        {
+            assertSame(ex.getCause(), error);
+        }
+
+        // The wrapped object is only replaced when the operation succeeds
+        assertSame(vm.unwrap(), original);
+        verify(cloudApi, taskApi);
+    }
+
+    private static AcceptedRequestDto<String> acceptedRequest(final int tasks)
+    {
+        AcceptedRequestDto<String> request = new AcceptedRequestDto<String>();
+        for (int i = 0; i < tasks; i++)
+        {
+            request.addLink(new RESTLink("status", "http://localhost/api/tasks/" + i));
+        }
+        return request;
+    }
+
+    private <T> ListenableFuture<T> delayed(final T value)
+    {
+        final SettableFuture<T> future = SettableFuture.create();
+        scheduler.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                future.set(value);
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        return future;
+    }
+}
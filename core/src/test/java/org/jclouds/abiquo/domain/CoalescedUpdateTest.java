@@ -0,0 +1,171 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.task.AsyncTask;
+import org.jclouds.abiquo.domain.util.IdentityMap;
+import org.jclouds.abiquo.domain.util.UpdateCoalescer;
+import org.jclouds.abiquo.features.CloudAsyncApi;
+import org.jclouds.rest.RestContext;
+import org.jclouds.rest.Utils;
+import org.jclouds.xml.internal.JAXBParser;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.model.transport.AcceptedRequestDto;
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.inject.Injector;
+
+/**
+ * Unit tests for the coalesced updates of the domain objects.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class CoalescedUpdateTest
+{
+    private ScheduledExecutorService scheduler;
+
+    private CloudAsyncApi cloudApi;
+
+    private RestContext<AbiquoApi, AbiquoAsyncApi> context;
+
+    @BeforeMethod
+    @SuppressWarnings("unchecked")
+    public void setup()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        cloudApi = EasyMock.createMock(CloudAsyncApi.class);
+
+        Injector injector = EasyMock.createMock(Injector.class);
+        expect(injector.getInstance(UpdateCoalescer.class)).andReturn(
+            new UpdateCoalescer(scheduler, 10L, new JAXBParser("false"))).anyTimes();
+        expect(injector.getInstance(IdentityMap.class)).andReturn(new IdentityMap("false"))
+            .anyTimes();
+        replay(injector);
+
+        Utils utils = EasyMock.createMock(Utils.class);
+        expect(utils.getInjector()).andReturn(injector).anyTimes();
+        replay(utils);
+
+        AbiquoAsyncApi asyncApi = EasyMock.createMock(AbiquoAsyncApi.class);
+        expect(asyncApi.getCloudApi()).andReturn(cloudApi).anyTimes();
+        replay(asyncApi);
+
+        context = EasyMock.createMock(RestContext.class);
+        expect(context.getAsyncApi()).andReturn(asyncApi).anyTimes();
+        expect(context.getUtils()).andReturn(utils).anyTimes();
+        replay(context);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    public void testWrittenFieldsAreCleared() throws Exception
+    {
+        VirtualMachine vm = vm();
+        SettableFuture<AcceptedRequestDto<String>> write = SettableFuture.create();
+        CountDownLatch writing = expectWrite(write);
+
+        vm.setCpu(4);
+        ListenableFuture<AsyncTask> result = vm.updateCoalesced();
+
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        write.set(null);
+        result.get(5, TimeUnit.SECONDS);
+
+        assertFalse(vm.isDirty());
+    }
+
+    public void testFieldsModifiedWhileWritingAreKept() throws Exception
+    {
+        VirtualMachine vm = vm();
+        SettableFuture<AcceptedRequestDto<String>> write = SettableFuture.create();
+        CountDownLatch writing = expectWrite(write);
+
+        vm.setCpu(4);
+        vm.setDescription("first");
+        ListenableFuture<AsyncTask> result = vm.updateCoalesced();
+
+        // Modified once the write has been sent
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        vm.setCpu(8);
+        vm.setRam(1024);
+
+        write.set(null);
+        result.get(5, TimeUnit.SECONDS);
+
+        assertEquals(vm.getDirtyFields(), ImmutableSet.of("cpu", "ram"));
+    }
+
+    private CountDownLatch expectWrite(final ListenableFuture<AcceptedRequestDto<String>> write)
+    {
+        final CountDownLatch writing = new CountDownLatch(1);
+        // The coalescer writes a copy of the transport object of the virtual machine
+        expect(cloudApi.updateVirtualMachine(isA(VirtualMachineWithNodeExtendedDto.class)))
+            .andAnswer(new IAnswer<ListenableFuture<AcceptedRequestDto<String>>>()
+            {
+                @Override
+                public ListenableFuture<AcceptedRequestDto<String>> answer() throws Throwable
+                {
+                    writing.countDown();
+                    return write;
+                }
+            });
+        replay(cloudApi);
+        return writing;
+    }
+
+    private VirtualMachine vm()
+    {
+        VirtualMachineWithNodeExtendedDto dto = new VirtualMachineWithNodeExtendedDto();
+        dto.setId(1);
+        dto.setCpu(1);
+        dto.setRam(512);
+        dto.addLink(new RESTLink("edit", "http://localhost/api/cloud/virtualmachines/1"));
+        return wrap(context, VirtualMachine.class, dto);
+    }
+}
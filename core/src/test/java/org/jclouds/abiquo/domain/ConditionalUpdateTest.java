@@ -0,0 +1,264 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.same;
+import static org.easymock.EasyMock.verify;
+import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+import java.util.Set;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response.Status;
+
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.cloud.options.VirtualMachineOptions;
+import org.jclouds.abiquo.domain.exception.AbiquoException;
+import org.jclouds.abiquo.features.CloudApi;
+import org.jclouds.abiquo.rest.internal.AbiquoHttpClient;
+import org.jclouds.abiquo.rest.internal.ExtendedUtils;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.io.Payloads;
+import org.jclouds.rest.RestContext;
+import org.jclouds.xml.XMLParser;
+import org.jclouds.xml.internal.JAXBParser;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.model.transport.error.ErrorsDto;
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Unit tests for the conditional updates of the domain objects.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class ConditionalUpdateTest
+{
+    private static final RESTLink EDIT_LINK = new RESTLink("edit",
+        "http://localhost/api/cloud/virtualdatacenters/1/virtualappliances/1/virtualmachines/1");
+
+    private XMLParser xml;
+
+    private AbiquoHttpClient http;
+
+    private CloudApi cloudApi;
+
+    private RestContext<AbiquoApi, AbiquoAsyncApi> context;
+
+    @BeforeMethod
+    @SuppressWarnings("unchecked")
+    public void setup()
+    {
+        xml = new JAXBParser("false");
+        http = EasyMock.createMock(AbiquoHttpClient.class);
+        cloudApi = EasyMock.createMock(CloudApi.class);
+
+        ExtendedUtils utils = EasyMock.createMock(ExtendedUtils.class);
+        expect(utils.getAbiquoHttpClient()).andReturn(http).anyTimes();
+        expect(utils.getXml()).andReturn(xml).anyTimes();
+        expect(utils.getInjector()).andReturn(null).anyTimes();
+        replay(utils);
+
+        AbiquoApi api = EasyMock.createMock(AbiquoApi.class);
+        expect(api.getCloudApi()).andReturn(cloudApi).anyTimes();
+        replay(api);
+
+        context = EasyMock.createMock(RestContext.class);
+        expect(context.getApi()).andReturn(api).anyTimes();
+        expect(context.getUtils()).andReturn(utils).anyTimes();
+        replay(context);
+    }
+
+    public void testUpdateWithoutVersionIsNotConditional() throws Exception
+    {
+        VirtualMachine vm = wrap(context, VirtualMachine.class, vm(2, 512));
+
+        expect(cloudApi.updateVirtualMachine(same(vm.unwrap()))).andReturn(null);
+        replay(http, cloudApi);
+
+        vm.setCpu(4);
+        vm.update();
+
+        verify(http, cloudApi);
+    }
+
+    public void testUpdateAfterListingIsNotConditional() throws Exception
+    {
+        // The listings of the api do not return the version of each virtual machine
+        VirtualMachine vm =
+            wrap(context, VirtualMachine.class, ImmutableList.of(vm(2, 512))).get(0);
+
+        expect(cloudApi.updateVirtualMachine(same(vm.unwrap()))).andReturn(null);
+        replay(http, cloudApi);
+
+        assertNull(vm.getETag());
+        vm.setCpu(4);
+        vm.update();
+
+        verify(http, cloudApi);
+    }
+
+    public void testUpdateAfterReadIsConditional() throws Exception
+    {
+        VirtualMachine vm =
+            wrap(context, VirtualMachine.class, vm(2, 512), response(vm(2, 512), "\"1\""));
+        Capture<VirtualMachineOptions> options = new Capture<VirtualMachineOptions>();
+
+        expect(cloudApi.updateVirtualMachine(same(vm.unwrap()), capture(options))).andReturn(null);
+        replay(http, cloudApi);
+
+        vm.setCpu(4);
+        vm.update();
+
+        assertEquals(options.getValue().buildRequestHeaders().get(HttpHeaders.IF_MATCH),
+            ImmutableSet.of("\"1\""));
+        verify(http, cloudApi);
+    }
+
+    public void testUpdateAfterRefreshIsConditional() throws Exception
+    {
+        VirtualMachine vm = wrap(context, VirtualMachine.class, vm(2, 512));
+        Capture<VirtualMachineOptions> options = new Capture<VirtualMachineOptions>();
+
+        expect(http.get(anyObject(RESTLink.class))).andReturn(response(vm(2, 512), "\"1\""));
+        expect(
+            cloudApi.updateVirtualMachine(anyObject(VirtualMachineWithNodeExtendedDto.class),
+                capture(options))).andReturn(null);
+        replay(http, cloudApi);
+
+        vm.refresh();
+        assertEquals(vm.getETag(), "\"1\"");
+
+        vm.setCpu(4);
+        vm.update();
+
+        assertEquals(options.getValue().buildRequestHeaders().get(HttpHeaders.IF_MATCH),
+            ImmutableSet.of("\"1\""));
+        // The version changed with the update
+        assertNull(vm.getETag());
+        verify(http, cloudApi);
+    }
+
+    public void testConflictsAreMergedAndRetried() throws Exception
+    {
+        VirtualMachine vm = wrap(context, VirtualMachine.class, vm(2, 512));
+        Capture<VirtualMachineOptions> options = new Capture<VirtualMachineOptions>();
+
+        expect(http.get(anyObject(RESTLink.class))).andReturn(response(vm(2, 512), "\"1\""));
+        expect(http.get(anyObject(RESTLink.class))).andReturn(response(vm(2, 1024), "\"2\""));
+        expect(
+            cloudApi.updateVirtualMachine(anyObject(VirtualMachineWithNodeExtendedDto.class),
+                anyObject(VirtualMachineOptions.class))).andThrow(preconditionFailed());
+        expect(
+            cloudApi.updateVirtualMachine(anyObject(VirtualMachineWithNodeExtendedDto.class),
+                capture(options))).andReturn(null);
+        replay(http, cloudApi);
+
+        vm.refresh();
+        vm.setCpu(4);
+        vm.update(new MergeFunction<VirtualMachineWithNodeExtendedDto, VirtualMachine>()
+        {
+            @Override
+            public void merge(final VirtualMachine latest,
+                final VirtualMachineWithNodeExtendedDto rejected, final Set<String> fields)
+            {
+                assertEquals(fields, ImmutableSet.of("cpu"));
+                latest.setCpu(rejected.getCpu());
+            }
+        });
+
+        // The rejected change is applied on top of the concurrent one
+        assertEquals(vm.getCpu(), 4);
+        assertEquals(vm.getRam(), 1024);
+        assertEquals(options.getValue().buildRequestHeaders().get(HttpHeaders.IF_MATCH),
+            ImmutableSet.of("\"2\""));
+        verify(http, cloudApi);
+    }
+
+    public void testOtherErrorsAreNotRetried() throws Exception
+    {
+        VirtualMachine vm = wrap(context, VirtualMachine.class, vm(2, 512));
+        AbiquoException error = new AbiquoException(Status.CONFLICT, new ErrorsDto());
+
+        expect(cloudApi.updateVirtualMachine(same(vm.unwrap()))).andThrow(error);
+        replay(http, cloudApi);
+
+        vm.setCpu(4);
+        try
+        {
+            vm.update(new MergeFunction<VirtualMachineWithNodeExtendedDto, VirtualMachine>()
+            {
+                @Override
+                public void merge(final VirtualMachine latest,
+                    final VirtualMachineWithNodeExtendedDto rejected, final Set<String> fields)
+                {
+                    fail("the update should not be merged");
+                }
+            });
+            fail("the update should have failed");
+        }
+        catch (AbiquoException ex)
+        {
+            assertEquals(ex, error);
+        }
+
+        verify(http, cloudApi);
+    }
+
+    private static AbiquoException preconditionFailed()
+    {
+        return new AbiquoException(Status.PRECONDITION_FAILED, new ErrorsDto());
+    }
+
+    private static VirtualMachineWithNodeExtendedDto vm(final int cpu, final int ram)
+    {
+        VirtualMachineWithNodeExtendedDto dto = new VirtualMachineWithNodeExtendedDto();
+        dto.setId(1);
+        dto.setCpu(cpu);
+        dto.setRam(ram);
+        dto.addLink(EDIT_LINK);
+        return dto;
+    }
+
+    private HttpResponse response(final VirtualMachineWithNodeExtendedDto dto, final String etag)
+        throws Exception
+    {
+        String payload = xml.toXML(dto, VirtualMachineWithNodeExtendedDto.class);
+        return HttpResponse.builder().statusCode(200).payload(Payloads.newStringPayload(payload))
+            .headers(ImmutableMultimap.of(HttpHeaders.ETAG, etag)).build();
+    }
+}
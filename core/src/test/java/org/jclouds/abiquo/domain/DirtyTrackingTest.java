@@ -0,0 +1,220 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.same;
+import static org.easymock.EasyMock.verify;
+import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.enterprise.Enterprise;
+import org.jclouds.abiquo.features.CloudApi;
+import org.jclouds.abiquo.features.CloudAsyncApi;
+import org.jclouds.abiquo.features.EnterpriseApi;
+import org.jclouds.rest.RestContext;
+import org.testng.annotations.Test;
+
+import com.abiquo.model.transport.AcceptedRequestDto;
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.abiquo.server.core.enterprise.EnterpriseDto;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Unit tests for the tracking of the modified fields in {@link DomainWrapper}.
+ * <p>
+ * The api mocks fail if a request that was not expected is sent.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class DirtyTrackingTest
+{
+    public void testUpdateWithoutChangesDoesNotSendAnything()
+    {
+        CloudApi cloudApi = EasyMock.createMock(CloudApi.class);
+        replay(cloudApi);
+
+        VirtualMachine vm =
+            wrap(context(cloudApi, null), VirtualMachine.class,
+                new VirtualMachineWithNodeExtendedDto());
+
+        assertFalse(vm.isDirty());
+        assertNull(vm.update());
+        verify(cloudApi);
+    }
+
+    public void testSettingTheSameValueIsNotAChange()
+    {
+        CloudApi cloudApi = EasyMock.createMock(CloudApi.class);
+        replay(cloudApi);
+
+        VirtualMachineWithNodeExtendedDto dto = new VirtualMachineWithNodeExtendedDto();
+        dto.setCpu(2);
+        dto.setDescription("description");
+
+        VirtualMachine vm = wrap(context(cloudApi, null), VirtualMachine.class, dto);
+        vm.setCpu(2);
+        vm.setDescription("description");
+        vm.detachDvd();
+
+        assertFalse(vm.isDirty());
+        assertNull(vm.update());
+        verify(cloudApi);
+    }
+
+    public void testUpdateSendsChangesOnce()
+    {
+        VirtualMachineWithNodeExtendedDto dto = new VirtualMachineWithNodeExtendedDto();
+        dto.setCpu(2);
+        dto.setRam(512);
+
+        CloudApi cloudApi = EasyMock.createMock(CloudApi.class);
+        expect(cloudApi.updateVirtualMachine(same(dto))).andReturn(null).once();
+        replay(cloudApi);
+
+        VirtualMachine vm = wrap(context(cloudApi, null), VirtualMachine.class, dto);
+        vm.setCpu(4);
+        vm.setRam(1024);
+
+        assertTrue(vm.isDirty());
+        assertEquals(vm.getDirtyFields(), ImmutableSet.of("cpu", "ram"));
+
+        vm.update();
+        assertFalse(vm.isDirty());
+
+        vm.update();
+        verify(cloudApi);
+    }
+
+    public void testDisableChefWithoutChefDoesNotSendAnything()
+    {
+        EnterpriseApi enterpriseApi = EasyMock.createMock(EnterpriseApi.class);
+        replay(enterpriseApi);
+
+        Enterprise enterprise =
+            wrap(context(null, enterpriseApi), Enterprise.class, new EnterpriseDto());
+        enterprise.disableChef();
+
+        assertFalse(enterprise.isDirty());
+        verify(enterpriseApi);
+    }
+
+    public void testLimitChangesAreTracked()
+    {
+        EnterpriseDto dto = new EnterpriseDto();
+        dto.setCpuCountLimits(2, 4);
+
+        EnterpriseApi enterpriseApi = EasyMock.createMock(EnterpriseApi.class);
+        expect(enterpriseApi.updateEnterprise(same(dto))).andReturn(dto).once();
+        replay(enterpriseApi);
+
+        Enterprise enterprise = wrap(context(null, enterpriseApi), Enterprise.class, dto);
+        enterprise.setCpuCountLimits(2, 8);
+
+        assertEquals(enterprise.getDirtyFields(), ImmutableSet.of("cpuCountHardLimit"));
+
+        enterprise.update();
+        enterprise.update();
+        verify(enterpriseApi);
+    }
+
+    public void testUpdateSendsChangesMadeThroughTheTransportObjectWhenMarked()
+    {
+        VirtualMachineWithNodeExtendedDto dto = new VirtualMachineWithNodeExtendedDto();
+
+        CloudApi cloudApi = EasyMock.createMock(CloudApi.class);
+        expect(cloudApi.updateVirtualMachine(same(dto))).andReturn(null).once();
+        replay(cloudApi);
+
+        VirtualMachine vm = wrap(context(cloudApi, null), VirtualMachine.class, dto);
+        vm.unwrap().setCpu(4);
+        vm.markModified();
+
+        assertTrue(vm.isDirty());
+
+        vm.update();
+        assertFalse(vm.isDirty());
+
+        vm.update();
+        verify(cloudApi);
+    }
+
+    public void testUpdateAsyncKeepsTheChangesMadeWhileItIsPending()
+    {
+        VirtualMachineWithNodeExtendedDto dto = new VirtualMachineWithNodeExtendedDto();
+        dto.setCpu(2);
+        dto.setRam(512);
+        SettableFuture<AcceptedRequestDto<String>> pending = SettableFuture.create();
+
+        CloudAsyncApi cloudAsyncApi = EasyMock.createMock(CloudAsyncApi.class);
+        expect(cloudAsyncApi.updateVirtualMachine(same(dto))).andReturn(pending).once();
+        replay(cloudAsyncApi);
+
+        VirtualMachine vm = wrap(asyncContext(cloudAsyncApi), VirtualMachine.class, dto);
+        vm.setCpu(4);
+        vm.updateAsync();
+
+        vm.setCpu(8);
+        vm.setRam(1024);
+        pending.set(null);
+
+        assertEquals(vm.getDirtyFields(), ImmutableSet.of("cpu", "ram"));
+        verify(cloudAsyncApi);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RestContext<AbiquoApi, AbiquoAsyncApi> asyncContext(
+        final CloudAsyncApi cloudAsyncApi)
+    {
+        AbiquoAsyncApi asyncApi = EasyMock.createMock(AbiquoAsyncApi.class);
+        expect(asyncApi.getCloudApi()).andReturn(cloudAsyncApi).anyTimes();
+        replay(asyncApi);
+
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = EasyMock.createMock(RestContext.class);
+        expect(context.getAsyncApi()).andReturn(asyncApi).anyTimes();
+        replay(context);
+        return context;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RestContext<AbiquoApi, AbiquoAsyncApi> context(final CloudApi cloudApi,
+        final EnterpriseApi enterpriseApi)
+    {
+        AbiquoApi api = EasyMock.createMock(AbiquoApi.class);
+        expect(api.getCloudApi()).andReturn(cloudApi).anyTimes();
+        expect(api.getEnterpriseApi()).andReturn(enterpriseApi).anyTimes();
+        replay(api);
+
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = EasyMock.createMock(RestContext.class);
+        expect(context.getApi()).andReturn(api).anyTimes();
+        replay(context);
+        return context;
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain;
+
+import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.enterprise.Enterprise;
+import org.jclouds.abiquo.domain.enterprise.Role;
+import org.jclouds.rest.RestContext;
+import org.testng.annotations.Test;
+
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.server.core.enterprise.EnterpriseDto;
+import com.abiquo.server.core.enterprise.RoleDto;
+
+/**
+ * Unit tests for the invalidation of the link index of the {@link DomainWrapper}.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class LinkIndexInvalidationTest
+{
+    private static final String ENTERPRISE = "http://localhost/api/admin/enterprises/1";
+
+    public void testLinksAddedByTheWrapperAreIndexed()
+    {
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = context();
+        Role role = wrap(context, Role.class, new RoleDto());
+        assertNull(role.searchLink("enterprise"));
+
+        EnterpriseDto enterprise = new EnterpriseDto();
+        enterprise.setId(1);
+        enterprise.addLink(new RESTLink("edit", ENTERPRISE));
+        role.setEnterprise(wrap(context, Enterprise.class, enterprise));
+
+        assertEquals(role.searchLink("enterprise").getHref(), ENTERPRISE);
+    }
+
+    public void testReplacedTargetIsIndexed()
+    {
+        Role role = wrap(context(), Role.class, new RoleDto());
+        assertNull(role.searchLink("enterprise"));
+
+        RoleDto updated = new RoleDto();
+        updated.addLink(new RESTLink("enterprise", ENTERPRISE));
+        role.target = updated;
+
+        assertEquals(role.searchLink("enterprise").getHref(), ENTERPRISE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RestContext<AbiquoApi, AbiquoAsyncApi> context()
+    {
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = EasyMock.createMock(RestContext.class);
+        EasyMock.expect(context.getUtils()).andReturn(null).anyTimes();
+        EasyMock.replay(context);
+        return context;
+    }
+}
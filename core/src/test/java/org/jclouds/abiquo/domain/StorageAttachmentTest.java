@@ -0,0 +1,243 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.aryEq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+import static org.jclouds.abiquo.reference.AbiquoConstants.LAZY_LISTINGS;
+import static org.testng.Assert.assertTrue;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.HardDisk;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.cloud.Volume;
+import org.jclouds.abiquo.domain.cloud.options.VirtualMachineOptions;
+import org.jclouds.abiquo.domain.util.IdentityMap;
+import org.jclouds.abiquo.domain.util.LazyWrappingList;
+import org.jclouds.abiquo.features.CloudApi;
+import org.jclouds.abiquo.rest.internal.AbiquoHttpClient;
+import org.jclouds.abiquo.rest.internal.ExtendedUtils;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.io.Payloads;
+import org.jclouds.rest.RestContext;
+import org.jclouds.xml.XMLParser;
+import org.jclouds.xml.internal.JAXBParser;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.abiquo.server.core.infrastructure.storage.DiskManagementDto;
+import com.abiquo.server.core.infrastructure.storage.DisksManagementDto;
+import com.abiquo.server.core.infrastructure.storage.VolumeManagementDto;
+import com.abiquo.server.core.infrastructure.storage.VolumesManagementDto;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+
+/**
+ * Unit tests for the attachment of storage to virtual machines when lazy listings are enabled.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class StorageAttachmentTest
+{
+    private static final RESTLink EDIT_LINK = new RESTLink("edit",
+        "http://localhost/api/cloud/virtualdatacenters/1/virtualappliances/1/virtualmachines/1");
+
+    private XMLParser xml;
+
+    private AbiquoHttpClient http;
+
+    private CloudApi cloudApi;
+
+    private RestContext<AbiquoApi, AbiquoAsyncApi> context;
+
+    @BeforeMethod
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception
+    {
+        xml = new JAXBParser("false");
+        http = EasyMock.createMock(AbiquoHttpClient.class);
+        cloudApi = EasyMock.createMock(CloudApi.class);
+
+        Injector injector = EasyMock.createMock(Injector.class);
+        expect(injector.getInstance(Key.get(String.class, Names.named(LAZY_LISTINGS))))
+            .andReturn("true").anyTimes();
+        expect(injector.getInstance(IdentityMap.class)).andReturn(new IdentityMap("false"))
+            .anyTimes();
+        replay(injector);
+
+        ExtendedUtils utils = EasyMock.createMock(ExtendedUtils.class);
+        expect(utils.getAbiquoHttpClient()).andReturn(http).anyTimes();
+        expect(utils.getXml()).andReturn(xml).anyTimes();
+        expect(utils.getInjector()).andReturn(injector).anyTimes();
+        replay(utils);
+
+        AbiquoApi api = EasyMock.createMock(AbiquoApi.class);
+        expect(api.getCloudApi()).andReturn(cloudApi).anyTimes();
+        replay(api);
+
+        context = EasyMock.createMock(RestContext.class);
+        expect(context.getApi()).andReturn(api).anyTimes();
+        expect(context.getUtils()).andReturn(utils).anyTimes();
+        replay(context);
+
+        // Every listing refreshes the virtual machine
+        expect(http.get(anyObject(RESTLink.class))).andReturn(response()).anyTimes();
+    }
+
+    public void testListingsAreLazy() throws Exception
+    {
+        expect(cloudApi.listAttachedHardDisks(anyObject(VirtualMachineWithNodeExtendedDto.class)))
+            .andReturn(hardDisks(disk(1)));
+        replay(http, cloudApi);
+
+        assertTrue(vm().listAttachedHardDisks() instanceof LazyWrappingList);
+        verify(http, cloudApi);
+    }
+
+    public void testAttachHardDisks() throws Exception
+    {
+        DiskManagementDto attached = disk(1);
+        DiskManagementDto added = disk(2);
+
+        expect(cloudApi.listAttachedHardDisks(anyObject(VirtualMachineWithNodeExtendedDto.class)))
+            .andReturn(hardDisks(attached));
+        expect(
+            cloudApi.replaceHardDisks(anyObject(VirtualMachineWithNodeExtendedDto.class),
+                aryEq(new DiskManagementDto[] {attached, added}))).andReturn(null);
+        replay(http, cloudApi);
+
+        vm().attachHardDisks(wrap(context, HardDisk.class, added));
+        verify(http, cloudApi);
+    }
+
+    public void testDetachHardDisks() throws Exception
+    {
+        DiskManagementDto kept = disk(1);
+        DiskManagementDto removed = disk(2);
+
+        expect(cloudApi.listAttachedHardDisks(anyObject(VirtualMachineWithNodeExtendedDto.class)))
+            .andReturn(hardDisks(kept, removed));
+        expect(
+            cloudApi.replaceHardDisks(anyObject(VirtualMachineWithNodeExtendedDto.class),
+                aryEq(new DiskManagementDto[] {kept}))).andReturn(null);
+        replay(http, cloudApi);
+
+        vm().detachHardDisks(wrap(context, HardDisk.class, disk(2)));
+        verify(http, cloudApi);
+    }
+
+    public void testAttachVolumes() throws Exception
+    {
+        VolumeManagementDto attached = volume(1);
+        VolumeManagementDto added = volume(2);
+
+        expect(cloudApi.listAttachedVolumes(anyObject(VirtualMachineWithNodeExtendedDto.class)))
+            .andReturn(volumes(attached));
+        expect(
+            cloudApi.replaceVolumes(anyObject(VirtualMachineWithNodeExtendedDto.class),
+                anyObject(VirtualMachineOptions.class),
+                aryEq(new VolumeManagementDto[] {attached, added}))).andReturn(null);
+        replay(http, cloudApi);
+
+        vm().attachVolumes(wrap(context, Volume.class, added));
+        verify(http, cloudApi);
+    }
+
+    public void testDetachVolumes() throws Exception
+    {
+        VolumeManagementDto kept = volume(1);
+        VolumeManagementDto removed = volume(2);
+
+        expect(cloudApi.listAttachedVolumes(anyObject(VirtualMachineWithNodeExtendedDto.class)))
+            .andReturn(volumes(kept, removed));
+        expect(
+            cloudApi.replaceVolumes(anyObject(VirtualMachineWithNodeExtendedDto.class),
+                anyObject(VirtualMachineOptions.class), aryEq(new VolumeManagementDto[] {kept})))
+            .andReturn(null);
+        replay(http, cloudApi);
+
+        vm().detachVolumes(wrap(context, Volume.class, volume(2)));
+        verify(http, cloudApi);
+    }
+
+    private VirtualMachine vm()
+    {
+        return wrap(context, VirtualMachine.class, vmDto());
+    }
+
+    private static VirtualMachineWithNodeExtendedDto vmDto()
+    {
+        VirtualMachineWithNodeExtendedDto dto = new VirtualMachineWithNodeExtendedDto();
+        dto.setId(1);
+        dto.addLink(EDIT_LINK);
+        return dto;
+    }
+
+    private HttpResponse response() throws Exception
+    {
+        String payload = xml.toXML(vmDto(), VirtualMachineWithNodeExtendedDto.class);
+        return HttpResponse.builder().statusCode(200).payload(Payloads.newStringPayload(payload))
+            .build();
+    }
+
+    private static DiskManagementDto disk(final int id)
+    {
+        DiskManagementDto dto = new DiskManagementDto();
+        dto.setId(id);
+        return dto;
+    }
+
+    private static DisksManagementDto hardDisks(final DiskManagementDto... disks)
+    {
+        DisksManagementDto dto = new DisksManagementDto();
+        for (DiskManagementDto disk : disks)
+        {
+            dto.getCollection().add(disk);
+        }
+        return dto;
+    }
+
+    private static VolumeManagementDto volume(final int id)
+    {
+        VolumeManagementDto dto = new VolumeManagementDto();
+        dto.setId(id);
+        return dto;
+    }
+
+    private static VolumesManagementDto volumes(final VolumeManagementDto... volumes)
+    {
+        VolumesManagementDto dto = new VolumesManagementDto();
+        for (VolumeManagementDto volume : volumes)
+        {
+            dto.getCollection().add(volume);
+        }
+        return dto;
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+import static org.testng.Assert.assertEquals;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.task.AsyncTask;
+import org.jclouds.abiquo.features.TaskApi;
+import org.jclouds.abiquo.features.TaskAsyncApi;
+import org.jclouds.rest.RestContext;
+import org.testng.Reporter;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.model.transport.AcceptedRequestDto;
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.abiquo.server.core.task.TaskDto;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Compares the time needed to resolve the tasks of accepted requests in {@link DomainWrapper} one
+ * after the other with the time needed to resolve them concurrently.
+ * <p>
+ * The task api is stubbed with a fixed latency per request. Results are only reported, since
+ * absolute numbers depend on the environment.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "performance")
+public class TaskResolutionPerformanceTest
+{
+    private static final int TASKS = 10;
+
+    private static final long LATENCY_MS = 100;
+
+    private ScheduledExecutorService scheduler;
+
+    @BeforeMethod
+    public void setup()
+    {
+        scheduler = Executors.newScheduledThreadPool(TASKS);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    public void testSequentialAndConcurrentResolution()
+    {
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = context();
+        VirtualMachine vm =
+            wrap(context, VirtualMachine.class, new VirtualMachineWithNodeExtendedDto());
+        AcceptedRequestDto<String> request = acceptedRequest(TASKS);
+
+        // What the tasks used to cost, requesting them one after the other
+        long start = System.nanoTime();
+        for (RESTLink link : request.getLinks())
+        {
+            context.getApi().getTaskApi().getTask(link);
+        }
+        long sequential = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        AsyncTask[] tasks = vm.getTasks(request);
+        long concurrent = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Reporter.log(String.format("%s tasks with %s ms latency: %s ms sequential, %s ms "
+            + "concurrent", TASKS, LATENCY_MS, sequential, concurrent), true);
+
+        assertEquals(tasks.length, TASKS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private RestContext<AbiquoApi, AbiquoAsyncApi> context()
+    {
+        TaskApi taskApi = EasyMock.createMock(TaskApi.class);
+        expect(taskApi.getTask(anyObject(RESTLink.class))).andAnswer(new IAnswer<TaskDto>()
+        {
+            @Override
+            public TaskDto answer() throws Throwable
+            {
+                Thread.sleep(LATENCY_MS);
+                return new TaskDto();
+            }
+        }).anyTimes();
+        replay(taskApi);
+
+        TaskAsyncApi taskAsyncApi = EasyMock.createMock(TaskAsyncApi.class);
+        expect(taskAsyncApi.getTask(anyObject(RESTLink.class))).andAnswer(
+            new IAnswer<ListenableFuture<TaskDto>>()
+            {
+                @Override
+                public ListenableFuture<TaskDto> answer()
+                {
+                    return delayed(new TaskDto());
+                }
+            }).anyTimes();
+        replay(taskAsyncApi);
+
+        AbiquoApi api = EasyMock.createMock(AbiquoApi.class);
+        expect(api.getTaskApi()).andReturn(taskApi).anyTimes();
+        replay(api);
+
+        AbiquoAsyncApi asyncApi = EasyMock.createMock(AbiquoAsyncApi.class);
+        expect(asyncApi.getTaskApi()).andReturn(taskAsyncApi).anyTimes();
+        replay(asyncApi);
+
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = EasyMock.createMock(RestContext.class);
+        expect(context.getApi()).andReturn(api).anyTimes();
+        expect(context.getAsyncApi()).andReturn(asyncApi).anyTimes();
+        expect(context.getUtils()).andReturn(null).anyTimes();
+        replay(context);
+        return context;
+    }
+
+    private ListenableFuture<TaskDto> delayed(final TaskDto task)
+    {
+        final SettableFuture<TaskDto> future = SettableFuture.create();
+        scheduler.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                future.set(task);
+            }
+        }, LATENCY_MS, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    private static AcceptedRequestDto<String> acceptedRequest(final int tasks)
+    {
+        AcceptedRequestDto<String> request = new AcceptedRequestDto<String>();
+        for (int i = 0; i < tasks; i++)
+        {
+            request.addLink(new RESTLink("status", "http://localhost/api/tasks/" + i));
+        }
+        return request;
+    }
+}
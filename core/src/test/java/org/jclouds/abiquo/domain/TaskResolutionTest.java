@@ -0,0 +1,139 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.task.AsyncTask;
+import org.jclouds.abiquo.features.TaskAsyncApi;
+import org.jclouds.abiquo.util.DelayedRequests;
+import org.jclouds.rest.RestContext;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.model.transport.AcceptedRequestDto;
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.abiquo.server.core.task.TaskDto;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Unit tests for the resolution of the tasks of accepted requests in {@link DomainWrapper}.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class TaskResolutionTest
+{
+    private static final int TASKS = 10;
+
+    private ScheduledExecutorService scheduler;
+
+    private DelayedRequests requests;
+
+    @BeforeMethod
+    public void setup()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        requests = new DelayedRequests(scheduler);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    public void testTasksAreResolvedConcurrently()
+    {
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = context();
+        VirtualMachine vm =
+            wrap(context, VirtualMachine.class, new VirtualMachineWithNodeExtendedDto());
+        AsyncTask[] tasks = vm.getTasks(acceptedRequest(TASKS));
+
+        // The tasks are requested before any of them has been returned
+        assertEquals(tasks.length, TASKS);
+        assertTrue(requests.getMaxInFlight() > 1, "tasks were not resolved concurrently");
+    }
+
+    public void testUntrackableTasksAreIgnored()
+    {
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = context();
+        VirtualMachine vm =
+            wrap(context, VirtualMachine.class, new VirtualMachineWithNodeExtendedDto());
+
+        AcceptedRequestDto<String> request = acceptedRequest(2);
+        request.addLink(new RESTLink("status", "http://localhost/api/untrackable"));
+
+        assertEquals(vm.getTasks(request).length, 2);
+    }
+
+    @SuppressWarnings("unchecked")
+    private RestContext<AbiquoApi, AbiquoAsyncApi> context()
+    {
+        TaskAsyncApi taskAsyncApi = EasyMock.createMock(TaskAsyncApi.class);
+        expect(taskAsyncApi.getTask(anyObject(RESTLink.class))).andAnswer(
+            new IAnswer<ListenableFuture<TaskDto>>()
+            {
+                @Override
+                public ListenableFuture<TaskDto> answer()
+                {
+                    RESTLink link = (RESTLink) EasyMock.getCurrentArguments()[0];
+                    return requests.send(link.getHref().endsWith("untrackable") ? null
+                        : new TaskDto());
+                }
+            }).anyTimes();
+        replay(taskAsyncApi);
+
+        AbiquoAsyncApi asyncApi = EasyMock.createMock(AbiquoAsyncApi.class);
+        expect(asyncApi.getTaskApi()).andReturn(taskAsyncApi).anyTimes();
+        replay(asyncApi);
+
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = EasyMock.createMock(RestContext.class);
+        expect(context.getAsyncApi()).andReturn(asyncApi).anyTimes();
+        expect(context.getUtils()).andReturn(null).anyTimes();
+        replay(context);
+        return context;
+    }
+
+    private static AcceptedRequestDto<String> acceptedRequest(final int tasks)
+    {
+        AcceptedRequestDto<String> request = new AcceptedRequestDto<String>();
+        for (int i = 0; i < tasks; i++)
+        {
+            request.addLink(new RESTLink("status", "http://localhost/api/tasks/" + i));
+        }
+        return request;
+    }
+}
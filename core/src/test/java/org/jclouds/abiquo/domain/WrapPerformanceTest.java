@@ -0,0 +1,168 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.util.List;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.rest.RestContext;
+import org.testng.Reporter;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.google.common.collect.Lists;
+
+/**
+ * Compares the cost of wrapping big collections using the registered factories and looking up the
+ * constructor using reflection for each object.
+ * <p>
+ * Results are only reported, since absolute numbers depend on the environment.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "performance")
+public class WrapPerformanceTest
+{
+    private static final int SIZE = 100000;
+
+    private static final int ITERATIONS = 5;
+
+    private RestContext<AbiquoApi, AbiquoAsyncApi> context;
+
+    private List<VirtualMachineWithNodeExtendedDto> dtos;
+
+    @BeforeClass
+    @SuppressWarnings("unchecked")
+    public void setupContext()
+    {
+        // A context without utils, so only the cost of wrapping is measured
+        context = EasyMock.createMock(RestContext.class);
+        expect(context.getUtils()).andReturn(null).anyTimes();
+        replay(context);
+
+        dtos = Lists.newArrayListWithCapacity(SIZE);
+        for (int i = 0; i < SIZE; i++)
+        {
+            dtos.add(new VirtualMachineWithNodeExtendedDto());
+        }
+    }
+
+    public void testWrapWithFactories()
+    {
+        measure("factories", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                wrap(context, VirtualMachine.class, dtos);
+            }
+        });
+    }
+
+    public void testWrapWithReflection()
+    {
+        measure("reflection", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                List<VirtualMachine> wrapped = Lists.newArrayListWithCapacity(dtos.size());
+                for (VirtualMachineWithNodeExtendedDto dto : dtos)
+                {
+                    wrapped.add(reflectiveWrap(dto));
+                }
+            }
+        });
+    }
+
+    /**
+     * Wraps the object the way it was done before the factories were cached.
+     */
+    private VirtualMachine reflectiveWrap(final VirtualMachineWithNodeExtendedDto dto)
+    {
+        try
+        {
+            Constructor<VirtualMachine> cons =
+                VirtualMachine.class.getDeclaredConstructor(RestContext.class, dto.getClass());
+            if (!cons.isAccessible())
+            {
+                cons.setAccessible(true);
+            }
+            return cons.newInstance(context, dto);
+        }
+        catch (Exception ex)
+        {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static void measure(final String name, final Runnable wrapping)
+    {
+        // Warm up
+        wrapping.run();
+
+        long start = System.nanoTime();
+        long allocatedBefore = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            wrapping.run();
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+        long elapsed = System.nanoTime() - start;
+
+        long wraps = (long) SIZE * ITERATIONS;
+        StringBuilder report = new StringBuilder();
+        report.append(name).append(": ");
+        report.append(wraps * 1000000000L / Math.max(elapsed, 1)).append(" wraps/s");
+        if (allocatedBefore >= 0)
+        {
+            report.append(", ").append(allocated / wraps).append(" bytes/wrap");
+        }
+
+        Reporter.log(report.toString(), true);
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread, or -1 if the JVM can not measure it.
+     */
+    private static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if (sunThreads.isThreadAllocatedMemorySupported())
+            {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.infrastructure.Datacenter;
+import org.jclouds.rest.RestContext;
+import org.testng.annotations.Test;
+
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.abiquo.server.core.infrastructure.DatacenterDto;
+
+/**
+ * Unit tests for the {@link WrapperFactories} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class WrapperFactoriesTest
+{
+    public void testRegisteredFactoriesAreUsed()
+    {
+        WrapperFactory<VirtualMachineWithNodeExtendedDto, VirtualMachine> factory =
+            WrapperFactories.get(VirtualMachine.class, VirtualMachineWithNodeExtendedDto.class);
+
+        // The registered factory is an anonymous class in the domain object
+        assertEquals(factory.getClass().getEnclosingClass(), VirtualMachine.class);
+    }
+
+    public void testReflectiveFactoriesAreCached()
+    {
+        WrapperFactory<DatacenterDto, Datacenter> factory =
+            WrapperFactories.get(Datacenter.class, DatacenterDto.class);
+
+        assertEquals(factory.getClass().getEnclosingClass(), WrapperFactories.class);
+        assertSame(WrapperFactories.get(Datacenter.class, DatacenterDto.class), factory);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testCreate()
+    {
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = EasyMock.createMock(RestContext.class);
+        DatacenterDto dto = new DatacenterDto();
+
+        WrapperFactory<DatacenterDto, Datacenter> factory =
+            WrapperFactories.get(Datacenter.class, DatacenterDto.class);
+        Datacenter first = factory.create(context, dto);
+        Datacenter second = factory.create(context, dto);
+
+        assertNotSame(first, second);
+        assertSame(first.unwrap(), dto);
+        assertSame(second.unwrap(), dto);
+    }
+}
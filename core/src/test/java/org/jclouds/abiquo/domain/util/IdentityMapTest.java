@@ -0,0 +1,177 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain.util;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.jclouds.abiquo.domain.DomainWrapper.wrap;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import javax.ws.rs.core.HttpHeaders;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.infrastructure.Datacenter;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.rest.RestContext;
+import org.jclouds.rest.Utils;
+import org.testng.annotations.Test;
+
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.server.core.infrastructure.DatacenterDto;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.inject.Injector;
+
+/**
+ * Unit tests for the {@link IdentityMap} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class IdentityMapTest
+{
+    private static final String HREF = "http://localhost/api/admin/datacenters/1";
+
+    public void testSameResourceReturnsRegisteredObject()
+    {
+        IdentityMap identityMap = new IdentityMap("true");
+        Datacenter first = identityMap.get(HREF, newDatacenter());
+        Datacenter second = identityMap.get(HREF, newDatacenter());
+
+        assertSame(first, second);
+        assertEquals(identityMap.size(), 1);
+    }
+
+    public void testDifferentResourcesAreNotShared()
+    {
+        IdentityMap identityMap = new IdentityMap("true");
+        Datacenter first = identityMap.get(HREF, newDatacenter());
+        Datacenter second = identityMap.get(HREF.replace("/1", "/2"), newDatacenter());
+
+        assertNotSame(first, second);
+        assertEquals(identityMap.size(), 2);
+    }
+
+    public void testResourcesWithoutLinkAreNotRegistered()
+    {
+        IdentityMap identityMap = new IdentityMap("true");
+        Datacenter first = identityMap.get(null, newDatacenter());
+        Datacenter second = identityMap.get(null, newDatacenter());
+
+        assertNotSame(first, second);
+        assertEquals(identityMap.size(), 0);
+    }
+
+    public void testGetRegisteredObjectByClass()
+    {
+        IdentityMap identityMap = new IdentityMap("true");
+        assertNull(identityMap.get(Datacenter.class, HREF));
+
+        Datacenter registered = identityMap.get(HREF, newDatacenter());
+        assertSame(identityMap.get(Datacenter.class, HREF), registered);
+        assertNull(identityMap.get(Datacenter.class, null));
+        assertNull(new IdentityMap("false").get(Datacenter.class, HREF));
+    }
+
+    public void testDisabled()
+    {
+        IdentityMap identityMap = new IdentityMap("false");
+        Datacenter first = identityMap.get(HREF, newDatacenter());
+        Datacenter second = identityMap.get(HREF, newDatacenter());
+
+        assertNotSame(first, second);
+        assertEquals(identityMap.size(), 0);
+    }
+
+    public void testWrappingUpdatesRegisteredObject()
+    {
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = contextWithIdentityMap();
+        Datacenter registered = wrap(context, Datacenter.class, datacenter("dc"));
+        Datacenter wrapped = wrap(context, Datacenter.class, datacenter("renamed"));
+
+        assertSame(wrapped, registered);
+        assertEquals(registered.getName(), "renamed");
+    }
+
+    public void testWrappingForgetsTheVersionOfTheReplacedObject()
+    {
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = contextWithIdentityMap();
+        HttpResponse response = HttpResponse.builder().statusCode(200)
+            .headers(ImmutableMultimap.of(HttpHeaders.ETAG, "\"1\"")).build();
+        Datacenter registered = wrap(context, Datacenter.class, datacenter("dc"), response);
+        assertEquals(registered.getETag(), "\"1\"");
+
+        // The version of the new object is unknown
+        wrap(context, Datacenter.class, datacenter("renamed"));
+        assertNull(registered.getETag());
+    }
+
+    public void testWrappingKeepsUnsavedChanges()
+    {
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = contextWithIdentityMap();
+        Datacenter registered = wrap(context, Datacenter.class, datacenter("dc"));
+        registered.setLocation("changed");
+
+        Datacenter wrapped = wrap(context, Datacenter.class, datacenter("renamed"));
+
+        assertSame(wrapped, registered);
+        assertTrue(registered.isDirty());
+        assertEquals(registered.getName(), "dc");
+        assertEquals(registered.getLocation(), "changed");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RestContext<AbiquoApi, AbiquoAsyncApi> contextWithIdentityMap()
+    {
+        Injector injector = EasyMock.createMock(Injector.class);
+        expect(injector.getInstance(IdentityMap.class)).andReturn(new IdentityMap("true"))
+            .anyTimes();
+        replay(injector);
+
+        Utils utils = EasyMock.createMock(Utils.class);
+        expect(utils.getInjector()).andReturn(injector).anyTimes();
+        replay(utils);
+
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = EasyMock.createMock(RestContext.class);
+        expect(context.getUtils()).andReturn(utils).anyTimes();
+        replay(context);
+        return context;
+    }
+
+    private static DatacenterDto datacenter(final String name)
+    {
+        DatacenterDto dto = new DatacenterDto();
+        dto.setName(name);
+        dto.addLink(new RESTLink("edit", HREF));
+        return dto;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Datacenter newDatacenter()
+    {
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = EasyMock.createMock(RestContext.class);
+        return wrap(context, Datacenter.class, new DatacenterDto());
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.infrastructure.Datacenter;
+import org.jclouds.rest.RestContext;
+import org.testng.annotations.Test;
+
+import com.abiquo.server.core.infrastructure.DatacenterDto;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for the {@link LazyWrappingList} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class LazyWrappingListTest
+{
+    public void testElementsAreWrappedOnce()
+    {
+        DatacenterDto dto = new DatacenterDto();
+        List<Datacenter> datacenters = newList(Lists.newArrayList(dto, new DatacenterDto()));
+
+        assertEquals(datacenters.size(), 2);
+        assertSame(datacenters.get(0).unwrap(), dto);
+        assertSame(datacenters.get(0), datacenters.get(0));
+        assertTrue(datacenters instanceof RandomAccess);
+    }
+
+    public void testElementsAreWrappedOnAccess()
+    {
+        DatacenterDto first = new DatacenterDto();
+        first.setName("first");
+        DatacenterDto second = new DatacenterDto();
+        second.setName("second");
+
+        final List<String> wrapped = Lists.newArrayList();
+        Datacenter found =
+            Iterables.find(newList(ImmutableList.of(first, second)), new Predicate<Datacenter>()
+            {
+                @Override
+                public boolean apply(final Datacenter input)
+                {
+                    wrapped.add(input.getName());
+                    return input.getName().equals("first");
+                }
+            });
+
+        assertSame(found.unwrap(), first);
+        assertEquals(wrapped, ImmutableList.of("first"));
+    }
+
+    public void testNotRandomAccessTargets()
+    {
+        DatacenterDto dto = new DatacenterDto();
+        List<Datacenter> datacenters = newList(Lists.newLinkedList(ImmutableList.of(dto)));
+
+        assertEquals(datacenters.size(), 1);
+        assertSame(datacenters.get(0).unwrap(), dto);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testReadOnly()
+    {
+        newList(Lists.newArrayList(new DatacenterDto())).remove(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Datacenter> newList(final Iterable<DatacenterDto> targets)
+    {
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = EasyMock.createMock(RestContext.class);
+        return new LazyWrappingList<DatacenterDto, Datacenter>(context, Datacenter.class, targets);
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain.util;
+
+import java.util.List;
+
+import org.testng.Reporter;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.google.common.collect.Lists;
+
+/**
+ * Compares looking for links scanning the links of the transport objects and using a
+ * {@link LinkIndex}, with the links usually returned for a virtual machine.
+ * <p>
+ * Each virtual machine is processed the way domain objects do when converting nodes, and the
+ * index is built once for each virtual machine. Results are only reported, since absolute numbers
+ * depend on the environment.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "performance")
+public class LinkIndexPerformanceTest
+{
+    private static final int SIZE = 10000;
+
+    private static final int ITERATIONS = 10;
+
+    /** The links read for each virtual machine. */
+    private static final String[] PARENT_RELS = {"enterprise", "virtualdatacenter",
+        "virtualappliance", "virtualmachinetemplate", "category", "machine"};
+
+    private List<VirtualMachineWithNodeExtendedDto> dtos;
+
+    /** Avoids dead code elimination. */
+    private long sink;
+
+    @BeforeClass
+    public void setupVirtualMachines()
+    {
+        dtos = Lists.newArrayListWithCapacity(SIZE);
+        for (int i = 0; i < SIZE; i++)
+        {
+            dtos.add(newVirtualMachine(i));
+        }
+    }
+
+    public void testScanLinks()
+    {
+        measure("scan", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (VirtualMachineWithNodeExtendedDto dto : dtos)
+                {
+                    sink += LinkUtils.getSelfLink(dto).getHref().length();
+                    for (String rel : PARENT_RELS)
+                    {
+                        sink += dto.getIdFromLink(rel);
+                        sink += dto.searchLink(rel).getHref().length();
+                    }
+                }
+            }
+        });
+    }
+
+    public void testIndexedLinks()
+    {
+        measure("index", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (VirtualMachineWithNodeExtendedDto dto : dtos)
+                {
+                    LinkIndex index = new LinkIndex(dto);
+                    sink += index.getSelfLink().getHref().length();
+                    for (String rel : PARENT_RELS)
+                    {
+                        sink += index.getIdFromLink(rel);
+                        sink += index.searchLink(rel).getHref().length();
+                    }
+                }
+            }
+        });
+    }
+
+    private void measure(final String name, final Runnable lookups)
+    {
+        // Warm up
+        lookups.run();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            lookups.run();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long processed = (long) SIZE * ITERATIONS;
+        Reporter.log(name + ": " + processed * 1000000000L / Math.max(elapsed, 1)
+            + " virtual machines/s (" + sink + ")", true);
+    }
+
+    /**
+     * Builds a virtual machine with the links returned by the API.
+     */
+    private static VirtualMachineWithNodeExtendedDto newVirtualMachine(final int id)
+    {
+        String vdc = "http://localhost/api/cloud/virtualdatacenters/" + id % 10;
+        String vapp = vdc + "/virtualappliances/" + id % 100;
+        String vm = vapp + "/virtualmachines/" + id;
+        String machine = "http://localhost/api/admin/datacenters/1/racks/1/machines/" + id % 50;
+
+        VirtualMachineWithNodeExtendedDto dto = new VirtualMachineWithNodeExtendedDto();
+        dto.addLink(new RESTLink("virtualdatacenter", vdc));
+        dto.addLink(new RESTLink("virtualappliance", vapp));
+        dto.addLink(new RESTLink("enterprise", "http://localhost/api/admin/enterprises/1"));
+        dto.addLink(new RESTLink("virtualmachinetemplate",
+            "http://localhost/api/admin/enterprises/1/datacenterrepositories/1/"
+                + "virtualmachinetemplates/" + id % 20));
+        dto.addLink(new RESTLink("hypervisor", machine + "/hypervisor"));
+        dto.addLink(new RESTLink("machine", machine));
+        dto.addLink(new RESTLink("user", "http://localhost/api/admin/enterprises/1/users/1"));
+        dto.addLink(new RESTLink("category", "http://localhost/api/config/categories/1"));
+        dto.addLink(new RESTLink("configurations", vm + "/network/configurations"));
+        dto.addLink(new RESTLink("nics", vm + "/network/nics"));
+        dto.addLink(new RESTLink("disks", vm + "/storage/disks"));
+        dto.addLink(new RESTLink("volumes", vm + "/storage/volumes"));
+        dto.addLink(new RESTLink("state", vm + "/state"));
+        dto.addLink(new RESTLink("undeploy", vm + "/action/undeploy"));
+        dto.addLink(new RESTLink("deploy", vm + "/action/deploy"));
+        dto.addLink(new RESTLink("reset", vm + "/action/reset"));
+        dto.addLink(new RESTLink("instance", vm + "/action/instance"));
+        dto.addLink(new RESTLink("tasks", vm + "/tasks"));
+        dto.addLink(new RESTLink("rules", vm + "/firewallrules"));
+        dto.addLink(new RESTLink("loadbalancers", vm + "/loadbalancers"));
+        for (int i = 0; i < 4; i++)
+        {
+            dto.addLink(new RESTLink("nic" + i, vdc + "/privatenetworks/1/ips/" + (id * 4 + i)));
+            dto.addLink(new RESTLink("disk" + i, vdc + "/disks/" + (id * 4 + i)));
+        }
+        dto.addLink(new RESTLink("edit", vm));
+        return dto;
+    }
+}
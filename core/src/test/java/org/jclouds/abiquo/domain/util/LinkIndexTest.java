@@ -0,0 +1,104 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+
+/**
+ * Unit tests for the {@link LinkIndex} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class LinkIndexTest
+{
+    public void testSearchLink()
+    {
+        VirtualMachineWithNodeExtendedDto dto = newVirtualMachine();
+        LinkIndex index = new LinkIndex(dto);
+
+        assertSame(index.searchLink("enterprise"), dto.searchLink("enterprise"));
+        assertNull(index.searchLink("unexisting"));
+    }
+
+    public void testGetIdFromLink()
+    {
+        VirtualMachineWithNodeExtendedDto dto = newVirtualMachine();
+        LinkIndex index = new LinkIndex(dto);
+
+        assertEquals(index.getIdFromLink("enterprise"), dto.getIdFromLink("enterprise"));
+        assertEquals(index.getIdFromLink("virtualdatacenter"), Integer.valueOf(5));
+        assertNull(index.getIdFromLink("unexisting"));
+    }
+
+    public void testGetIdFromLinkWithChangedHref()
+    {
+        VirtualMachineWithNodeExtendedDto dto = newVirtualMachine();
+        LinkIndex index = new LinkIndex(dto);
+
+        assertEquals(index.getIdFromLink("enterprise"), Integer.valueOf(1));
+        dto.searchLink("enterprise").setHref("http://localhost/api/admin/enterprises/2");
+        assertEquals(index.getIdFromLink("enterprise"), Integer.valueOf(2));
+    }
+
+    public void testGetSelfLink()
+    {
+        VirtualMachineWithNodeExtendedDto dto = newVirtualMachine();
+        LinkIndex index = new LinkIndex(dto);
+
+        assertSame(index.getSelfLink(), dto.searchLink("edit"));
+        assertSame(index.getSelfLink(), LinkUtils.getSelfLink(dto));
+    }
+
+    public void testIsValidFor()
+    {
+        VirtualMachineWithNodeExtendedDto dto = newVirtualMachine();
+        LinkIndex index = new LinkIndex(dto);
+
+        assertTrue(index.isValidFor(dto));
+        assertFalse(index.isValidFor(newVirtualMachine()));
+
+        // Changes to the link list must be reported by invalidating the index
+        dto.addLink(new RESTLink("nic2", "http://localhost/api/nics/3"));
+        assertTrue(index.isValidFor(dto));
+    }
+
+    static VirtualMachineWithNodeExtendedDto newVirtualMachine()
+    {
+        VirtualMachineWithNodeExtendedDto dto = new VirtualMachineWithNodeExtendedDto();
+        String vdc = "http://localhost/api/cloud/virtualdatacenters/5";
+        dto.addLink(new RESTLink("edit", vdc + "/virtualappliances/3/virtualmachines/7"));
+        dto.addLink(new RESTLink("enterprise", "http://localhost/api/admin/enterprises/1"));
+        dto.addLink(new RESTLink("virtualdatacenter", vdc));
+        dto.addLink(new RESTLink("virtualappliance", vdc + "/virtualappliances/3"));
+        dto.addLink(new RESTLink("nic0", vdc + "/privatenetworks/1/ips/1"));
+        dto.addLink(new RESTLink("nic1", vdc + "/privatenetworks/1/ips/2"));
+        return dto;
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertNotSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jclouds.xml.XMLParser;
+import org.jclouds.xml.internal.JAXBParser;
+import org.testng.annotations.Test;
+
+import com.abiquo.server.core.cloud.VirtualDatacenterDto;
+import com.abiquo.server.core.enterprise.EnterpriseDto;
+import com.google.common.base.Supplier;
+
+/**
+ * Unit tests for the {@link ParentCache} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class ParentCacheTest
+{
+    private static final String HREF = "http://localhost/api/cloud/virtualdatacenters/1";
+
+    private static final XMLParser XML = new JAXBParser("false");
+
+    public void testParentIsLoadedOnce()
+    {
+        ParentCache cache = new ParentCache(60000L, 10L, XML);
+        CountingLoader loader = new CountingLoader();
+
+        VirtualDatacenterDto first = cache.get(HREF, VirtualDatacenterDto.class, loader);
+        VirtualDatacenterDto second = cache.get(HREF, VirtualDatacenterDto.class, loader);
+
+        assertNotSame(first, second);
+        assertEquals(second.getName(), "vdc");
+        assertEquals(loader.calls.get(), 1);
+        assertEquals(cache.stats().hitCount(), 1L);
+    }
+
+    public void testChangesAreNotShared()
+    {
+        ParentCache cache = new ParentCache(60000L, 10L, XML);
+        CountingLoader loader = new CountingLoader();
+
+        cache.get(HREF, VirtualDatacenterDto.class, loader).setName("changed");
+        VirtualDatacenterDto cached = cache.get(HREF, VirtualDatacenterDto.class, loader);
+        cached.setName("changed again");
+
+        assertEquals(cache.get(HREF, VirtualDatacenterDto.class, loader).getName(), "vdc");
+        assertEquals(loader.calls.get(), 1);
+    }
+
+    public void testInvalidate()
+    {
+        ParentCache cache = new ParentCache(60000L, 10L, XML);
+        CountingLoader loader = new CountingLoader();
+
+        cache.get(HREF, VirtualDatacenterDto.class, loader);
+        cache.invalidate(HREF);
+        cache.get(HREF, VirtualDatacenterDto.class, loader);
+
+        assertEquals(loader.calls.get(), 2);
+    }
+
+    public void testCachedResourceOfAnotherTypeIsNotReturned()
+    {
+        ParentCache cache = new ParentCache(60000L, 10L, XML);
+        cache.get(HREF, VirtualDatacenterDto.class, new CountingLoader());
+
+        EnterpriseDto enterprise =
+            cache.get(HREF, EnterpriseDto.class, new Supplier<EnterpriseDto>()
+            {
+                @Override
+                public EnterpriseDto get()
+                {
+                    return new EnterpriseDto();
+                }
+            });
+
+        assertEquals(enterprise.getClass(), EnterpriseDto.class);
+    }
+
+    public void testCacheDisabled()
+    {
+        ParentCache cache = new ParentCache(0L, 10L, XML);
+        CountingLoader loader = new CountingLoader();
+
+        cache.get(HREF, VirtualDatacenterDto.class, loader);
+        cache.get(HREF, VirtualDatacenterDto.class, loader);
+
+        assertEquals(loader.calls.get(), 2);
+        assertNull(cache.stats());
+    }
+
+    private static class CountingLoader implements Supplier<VirtualDatacenterDto>
+    {
+        private AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public VirtualDatacenterDto get()
+        {
+            calls.incrementAndGet();
+            VirtualDatacenterDto vdc = new VirtualDatacenterDto();
+            vdc.setName("vdc");
+            return vdc;
+        }
+    }
+}
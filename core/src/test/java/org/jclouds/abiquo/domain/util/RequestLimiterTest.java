@@ -0,0 +1,165 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.jclouds.abiquo.util.DelayedRequests;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Unit tests for the {@link RequestLimiter} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class RequestLimiterTest
+{
+    private ScheduledExecutorService scheduler;
+
+    private DelayedRequests requests;
+
+    @BeforeMethod
+    public void setup()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        requests = new DelayedRequests(scheduler);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    public void testRequestsInFlightAreLimited() throws Exception
+    {
+        List<Integer> inputs = range(20);
+
+        List<ListenableFuture<Integer>> results =
+            new RequestLimiter(3).submit(inputs, new Function<Integer, ListenableFuture<Integer>>()
+            {
+                @Override
+                public ListenableFuture<Integer> apply(final Integer input)
+                {
+                    return requests.send(input);
+                }
+            });
+
+        // The results are in the same order as the inputs
+        assertEquals(Futures.allAsList(results).get(), inputs);
+        assertTrue(requests.getMaxInFlight() <= 3,
+            "more than 3 requests in flight: " + requests.getMaxInFlight());
+    }
+
+    public void testLimitIsSharedBySubmissions() throws Exception
+    {
+        RequestLimiter limiter = new RequestLimiter(2);
+        Function<Integer, ListenableFuture<Integer>> request =
+            new Function<Integer, ListenableFuture<Integer>>()
+            {
+                @Override
+                public ListenableFuture<Integer> apply(final Integer input)
+                {
+                    return requests.send(input);
+                }
+            };
+
+        List<ListenableFuture<Integer>> first = limiter.submit(range(10), request);
+        List<ListenableFuture<Integer>> second = limiter.submit(range(10), request);
+
+        Futures.allAsList(first).get();
+        Futures.allAsList(second).get();
+        assertTrue(requests.getMaxInFlight() <= 2,
+            "more than 2 requests in flight: " + requests.getMaxInFlight());
+    }
+
+    public void testRequestsAnsweredRightAwayAreNotSentRecursively() throws Exception
+    {
+        // Enough requests to overflow the stack if each one sent the next one
+        List<Integer> inputs = range(100000);
+
+        List<ListenableFuture<Integer>> results =
+            new RequestLimiter(1).submit(inputs, new Function<Integer, ListenableFuture<Integer>>()
+            {
+                @Override
+                public ListenableFuture<Integer> apply(final Integer input)
+                {
+                    return Futures.immediateFuture(input);
+                }
+            });
+
+        assertEquals(Futures.allAsList(results).get(), inputs);
+    }
+
+    public void testErrorsSendingRequestsFailTheirResult() throws Exception
+    {
+        List<ListenableFuture<Integer>> results =
+            new RequestLimiter(1).submit(range(3),
+                new Function<Integer, ListenableFuture<Integer>>()
+                {
+                    @Override
+                    public ListenableFuture<Integer> apply(final Integer input)
+                    {
+                        if (input == 1)
+                        {
+                            throw new IllegalStateException("not sent");
+                        }
+                        return requests.send(input);
+                    }
+                });
+
+        assertEquals(results.get(0).get(), Integer.valueOf(0));
+        assertEquals(results.get(2).get(), Integer.valueOf(2));
+        try
+        {
+            results.get(1).get();
+            fail("the request should have failed");
+        }
+        catch (ExecutionException ex)
+        {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private static List<Integer> range(final int size)
+    {
+        List<Integer> range = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++)
+        {
+            range.add(i);
+        }
+        return range;
+    }
+}
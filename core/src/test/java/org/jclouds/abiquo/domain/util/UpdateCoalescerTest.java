@@ -0,0 +1,242 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.domain.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.jclouds.xml.internal.JAXBParser;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.abiquo.server.core.cloud.VirtualMachineWithNodeExtendedDto;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Unit tests for the {@link UpdateCoalescer} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class UpdateCoalescerTest
+{
+    private static final String HREF = "http://localhost/api/cloud/virtualmachines/1";
+
+    private ScheduledExecutorService scheduler;
+
+    private UpdateCoalescer coalescer;
+
+    /** The transport objects written by the writer. */
+    private List<VirtualMachineWithNodeExtendedDto> writes;
+
+    private Function<VirtualMachineWithNodeExtendedDto, ListenableFuture<String>> writer;
+
+    @BeforeMethod
+    public void setup()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        coalescer = new UpdateCoalescer(scheduler, 50L, new JAXBParser("false"));
+        writes = Lists.newCopyOnWriteArrayList();
+        writer = new Function<VirtualMachineWithNodeExtendedDto, ListenableFuture<String>>()
+        {
+            @Override
+            public ListenableFuture<String> apply(final VirtualMachineWithNodeExtendedDto input)
+            {
+                writes.add(input);
+                return Futures.immediateFuture("written");
+            }
+        };
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    public void testUpdatesOfTheSameResourceAreMerged() throws Exception
+    {
+        VirtualMachineWithNodeExtendedDto first = vm(4, 512);
+        VirtualMachineWithNodeExtendedDto second = vm(8, 2048);
+        VirtualMachineWithNodeExtendedDto third = vm(16, 4096);
+
+        ListenableFuture<String> r1 = coalescer.submit(HREF, first, fields("cpu"), writer);
+        ListenableFuture<String> r2 = coalescer.submit(HREF, second, fields("cpu", "ram"), writer);
+        ListenableFuture<String> r3 = coalescer.submit(HREF, third, fields("cpu"), writer);
+
+        assertEquals(r1.get(), "written");
+        assertSame(r2, r1);
+        assertSame(r3, r1);
+
+        // A copy of the first object is written, with the last value set to each field
+        assertEquals(writes.size(), 1);
+        assertNotSame(writes.get(0), first);
+        assertEquals(writes.get(0).getCpu(), 16);
+        assertEquals(writes.get(0).getRam(), 2048);
+        assertEquals(coalescer.getPendingUpdates(), 0);
+    }
+
+    public void testSubmittedObjectsAreNotShared() throws Exception
+    {
+        VirtualMachineWithNodeExtendedDto first = vm(4, 512);
+        VirtualMachineWithNodeExtendedDto second = vm(8, 2048);
+
+        ListenableFuture<String> result = coalescer.submit(HREF, first, fields("cpu"), writer);
+        coalescer.submit(HREF, second, fields("ram"), writer);
+
+        // Modified once submitted
+        first.setCpu(32);
+        second.setRam(8192);
+
+        assertEquals(result.get(), "written");
+        assertEquals(writes.get(0).getCpu(), 4);
+        assertEquals(writes.get(0).getRam(), 2048);
+
+        // The objects of the callers are not modified by the merge
+        assertEquals(first.getRam(), 512);
+    }
+
+    public void testUpdatesOfTheSameObjectAreMerged() throws Exception
+    {
+        VirtualMachineWithNodeExtendedDto vm = vm(4, 512);
+
+        ListenableFuture<String> r1 = coalescer.submit(HREF, vm, fields("cpu"), writer);
+        vm.setRam(1024);
+        ListenableFuture<String> r2 = coalescer.submit(HREF, vm, fields("cpu", "ram"), writer);
+
+        assertEquals(r2.get(), "written");
+        assertSame(r1, r2);
+        assertEquals(writes.size(), 1);
+        assertEquals(writes.get(0).getRam(), 1024);
+    }
+
+    public void testUpdatesOfDifferentResourcesAreNotMerged() throws Exception
+    {
+        ListenableFuture<String> r1 = coalescer.submit(HREF, vm(4, 512), fields("cpu"), writer);
+        ListenableFuture<String> r2 =
+            coalescer.submit(HREF + "0", vm(8, 512), fields("cpu"), writer);
+
+        r1.get();
+        r2.get();
+        assertEquals(writes.size(), 2);
+    }
+
+    public void testUpdatesAfterTheWriteGoToTheNextWrite() throws Exception
+    {
+        coalescer.submit(HREF, vm(4, 512), fields("cpu"), writer).get();
+        coalescer.submit(HREF, vm(8, 512), fields("cpu"), writer).get();
+
+        assertEquals(writes.size(), 2);
+    }
+
+    public void testUpdateWithoutChanges() throws Exception
+    {
+        assertNull(coalescer.submit(HREF, vm(4, 512), fields(), writer).get());
+        assertEquals(coalescer.getPendingUpdates(), 0);
+        assertTrue(writes.isEmpty());
+    }
+
+    public void testUpdateWithoutChangesWaitsForThePendingWrite() throws Exception
+    {
+        ListenableFuture<String> r1 = coalescer.submit(HREF, vm(4, 512), fields("cpu"), writer);
+        ListenableFuture<String> r2 = coalescer.submit(HREF, vm(4, 512), fields(), writer);
+
+        assertSame(r2, r1);
+        assertEquals(r2.get(), "written");
+    }
+
+    public void testUpdateOfResourceWithoutHrefIsNotDelayed() throws Exception
+    {
+        ListenableFuture<String> result = coalescer.submit(null, vm(4, 512), fields("cpu"), writer);
+
+        assertTrue(result.isDone());
+        assertEquals(writes.size(), 1);
+    }
+
+    public void testFailedWriteFailsAllTheUpdates() throws Exception
+    {
+        Function<VirtualMachineWithNodeExtendedDto, ListenableFuture<String>> failing =
+            new Function<VirtualMachineWithNodeExtendedDto, ListenableFuture<String>>()
+            {
+                @Override
+                public ListenableFuture<String> apply(
+                    final VirtualMachineWithNodeExtendedDto input)
+                {
+                    return Futures.immediateFailedFuture(new IllegalStateException("conflict"));
+                }
+            };
+
+        ListenableFuture<String> r1 = coalescer.submit(HREF, vm(4, 512), fields("cpu"), failing);
+        ListenableFuture<String> r2 = coalescer.submit(HREF, vm(8, 512), fields("cpu"), failing);
+
+        for (ListenableFuture<String> result : ImmutableSet.of(r1, r2))
+        {
+            try
+            {
+                result.get();
+                fail("the update should have failed");
+            }
+            catch (ExecutionException ex)
+            {
+                assertTrue(ex.getCause() instanceof IllegalStateException);
+            }
+        }
+    }
+
+    public void testReadFields()
+    {
+        Map<String, Object> values =
+            UpdateCoalescer.readFields(vm(4, 512), fields("cpu", "description", "unknown"));
+
+        assertEquals(values.size(), 3);
+        assertEquals(values.get("cpu"), 4);
+        assertNull(values.get("description"));
+        assertTrue(values.containsKey("unknown"));
+    }
+
+    private static VirtualMachineWithNodeExtendedDto vm(final int cpu, final int ram)
+    {
+        VirtualMachineWithNodeExtendedDto vm = new VirtualMachineWithNodeExtendedDto();
+        vm.setCpu(cpu);
+        vm.setRam(ram);
+        return vm;
+    }
+
+    private static Set<String> fields(final String... fields)
+    {
+        return ImmutableSet.copyOf(fields);
+    }
+}
@@ -28,7 +28,10 @@ import java.util.Properties;
 import org.jclouds.abiquo.AbiquoApiMetadata;
 import org.jclouds.abiquo.config.AbiquoRestClientModule;
 import org.jclouds.abiquo.http.filters.AbiquoAuthentication;
+import org.jclouds.abiquo.http.filters.AcceptGzipEncoding;
 import org.jclouds.abiquo.http.filters.AppendApiVersionToMediaType;
+import org.jclouds.abiquo.http.filters.FailFastWhenCircuitIsOpen;
+import org.jclouds.abiquo.http.filters.LimitRequestRate;
 import org.jclouds.http.HttpRequest;
 import org.jclouds.providers.AnonymousProviderMetadata;
 import org.jclouds.providers.ProviderMetadata;
@@ -59,9 +62,12 @@ public abstract class BaseAbiquoAsyncApiTest<T> extends BaseAsyncClientTest<T>
     @Override
     protected void checkFilters(final HttpRequest request)
     {
-        assertEquals(request.getFilters().size(), 2);
+        assertEquals(request.getFilters().size(), 5);
         assertEquals(request.getFilters().get(0).getClass(), AbiquoAuthentication.class);
         assertEquals(request.getFilters().get(1).getClass(), AppendApiVersionToMediaType.class);
+        assertEquals(request.getFilters().get(2).getClass(), AcceptGzipEncoding.class);
+        assertEquals(request.getFilters().get(3).getClass(), FailFastWhenCircuitIsOpen.class);
+        assertEquals(request.getFilters().get(4).getClass(), LimitRequestRate.class);
     }
 
     @Override
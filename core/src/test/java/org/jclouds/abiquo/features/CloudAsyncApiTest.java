@@ -975,6 +975,32 @@ public class CloudAsyncApiTest extends BaseAbiquoAsyncApiTest<CloudAsyncApi>
         checkFilters(request);
     }
 
+    public void testUpdateVirtualMachineIfMatch() throws SecurityException,
+        NoSuchMethodException, IOException
+    {
+        Method method =
+            CloudAsyncApi.class.getMethod("updateVirtualMachine",
+                VirtualMachineWithNodeExtendedDto.class, VirtualMachineOptions.class);
+        GeneratedHttpRequest request =
+            processor.createRequest(method, CloudResources.virtualMachinePut(),
+                VirtualMachineOptions.builder().ifMatch("\"1\"").build());
+
+        assertRequestLineEquals(
+            request,
+            "PUT http://localhost/api/cloud/virtualdatacenters/1/virtualappliances/1/virtualmachines/1 HTTP/1.1");
+        assertNonPayloadHeadersEqual(request, "Accept: " + AcceptedRequestDto.BASE_MEDIA_TYPE
+            + "\nIf-Match: \"1\"\n");
+        assertPayloadEquals(request, withHeader(CloudResources.virtualMachinePutPayload()),
+            VirtualMachineWithNodeExtendedDto.class,
+            VirtualMachineWithNodeExtendedDto.BASE_MEDIA_TYPE, false);
+
+        assertResponseParserClassEquals(method, request, ReturnTaskReferenceOrNull.class);
+        assertSaxResponseParserClassEquals(method, null);
+        assertExceptionParserClassEquals(method, null);
+
+        checkFilters(request);
+    }
+
     public void testChangeVirtualMachineState() throws SecurityException, NoSuchMethodException,
         IOException
     {
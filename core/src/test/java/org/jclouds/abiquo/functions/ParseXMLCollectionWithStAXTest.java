@@ -0,0 +1,107 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.functions;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.jclouds.http.HttpResponse;
+import org.jclouds.xml.internal.JAXBParser;
+import org.testng.annotations.Test;
+
+import com.abiquo.model.rest.RESTLink;
+import com.abiquo.server.core.infrastructure.MachineDto;
+import com.abiquo.server.core.infrastructure.MachinesDto;
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for the {@link ParseXMLCollectionWithStAX} function.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class ParseXMLCollectionWithStAXTest
+{
+    public void testParseEmptyResponse()
+    {
+        HttpResponse response = HttpResponse.builder().statusCode(200).build();
+        ParseXMLCollectionWithStAX function = new ParseXMLCollectionWithStAX();
+
+        assertEquals(function.apply(response, MachineDto.class, new CollectElements()), 0);
+    }
+
+    public void testParseEmptyCollection() throws Exception
+    {
+        CollectElements consumer = new CollectElements();
+        ParseXMLCollectionWithStAX function = new ParseXMLCollectionWithStAX();
+
+        int count = function.apply(toXML(new MachinesDto()), MachineDto.class, consumer);
+
+        assertEquals(count, 0);
+        assertEquals(consumer.elements.size(), 0);
+    }
+
+    public void testParseElementsInOrderSkippingLinks() throws Exception
+    {
+        MachinesDto machines = new MachinesDto();
+        machines.addLink(new RESTLink("next", "http://foo/bar?startwith=2"));
+        machines.getCollection().add(machine("first"));
+        machines.getCollection().add(machine("second"));
+
+        CollectElements consumer = new CollectElements();
+        ParseXMLCollectionWithStAX function = new ParseXMLCollectionWithStAX();
+
+        int count = function.apply(toXML(machines), MachineDto.class, consumer);
+
+        assertEquals(count, 2);
+        assertEquals(consumer.elements.size(), 2);
+        assertEquals(consumer.elements.get(0).getName(), "first");
+        assertEquals(consumer.elements.get(1).getName(), "second");
+    }
+
+    private static MachineDto machine(final String name)
+    {
+        MachineDto machine = new MachineDto();
+        machine.setName(name);
+        machine.addLink(new RESTLink("edit", "http://foo/bar/" + name));
+        return machine;
+    }
+
+    private static ByteArrayInputStream toXML(final MachinesDto machines) throws IOException
+    {
+        return new ByteArrayInputStream(new JAXBParser("false").toXML(machines).getBytes("UTF-8"));
+    }
+
+    private static class CollectElements implements Function<MachineDto, Void>
+    {
+        private List<MachineDto> elements = Lists.newArrayList();
+
+        @Override
+        public Void apply(final MachineDto input)
+        {
+            elements.add(input);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.handlers;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.http.internal.AdaptiveRateLimiter;
+import org.jclouds.abiquo.http.internal.CircuitBreaker;
+import org.jclouds.abiquo.http.internal.CircuitBreaker.State;
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+import org.testng.annotations.Test;
+
+import com.google.common.eventbus.EventBus;
+
+/**
+ * Unit tests for the {@link AbiquoRetryHandler} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class AbiquoRetryHandlerTest
+{
+    private static final URI ENDPOINT = URI.create("http://localhost/api/admin/datacenters");
+
+    public void testRetryIdempotentRequestOnTransientError()
+    {
+        AbiquoRetryHandler handler = newHandler(3, 100);
+        HttpCommand command = mockCommand("GET", 1);
+
+        assertTrue(handler.shouldRetryRequest(command, response(503)));
+        assertEquals(handler.getRetries(), 1L);
+    }
+
+    public void testDoNotRetryNonTransientErrors()
+    {
+        AbiquoRetryHandler handler = newHandler(3, 100);
+        HttpCommand command = mockCommand("GET", 1);
+
+        assertFalse(handler.shouldRetryRequest(command, response(500)));
+        assertEquals(handler.getRetries(), 0L);
+    }
+
+    public void testDoNotRetryNonIdempotentRequests()
+    {
+        AbiquoRetryHandler handler = newHandler(3, 100);
+        HttpCommand command = mockCommand("POST", 1);
+
+        assertFalse(handler.shouldRetryRequest(command, response(503)));
+        assertFalse(handler.shouldRetryRequest(command, new IOException()));
+        assertEquals(handler.getRetries(), 0L);
+    }
+
+    public void testRetryThrottledRequests()
+    {
+        AbiquoRetryHandler handler = newHandler(3, 100);
+        HttpCommand command = mockCommand("POST", 1);
+
+        assertTrue(handler.shouldRetryRequest(command, response(429)));
+        assertEquals(handler.getRetries(), 1L);
+    }
+
+    public void testDoNotRetryOtherClientErrors()
+    {
+        AbiquoRetryHandler handler = newHandler(3, 100);
+        HttpCommand command = mockCommand("GET", 1);
+
+        assertFalse(handler.shouldRetryRequest(command, response(404)));
+        assertEquals(handler.getRetries(), 0L);
+    }
+
+    public void testGiveUpAfterMaxRetries()
+    {
+        AbiquoRetryHandler handler = newHandler(3, 100);
+        HttpCommand command = mockCommand("GET", 4);
+
+        assertFalse(handler.shouldRetryRequest(command, new IOException()));
+        assertEquals(handler.getRetries(), 0L);
+        assertEquals(handler.getExhaustedRetries(), 1L);
+    }
+
+    public void testDoNotRetryWhenCircuitIsOpen()
+    {
+        AbiquoRetryHandler handler = newHandler(3, 1);
+        HttpCommand command = mockCommand("GET", 1);
+
+        assertFalse(handler.shouldRetryRequest(command, response(503)));
+        assertEquals(handler.getRetries(), 0L);
+    }
+
+    public void testDelayIsCappedAndRandomized()
+    {
+        AbiquoRetryHandler handler =
+            new AbiquoRetryHandler(10, 100L, 1000L, newCircuitBreaker(100), newRateLimiter());
+
+        for (int failures = 1; failures <= 10; failures++)
+        {
+            long backoff = Math.min(1000L, 100L << (failures - 1));
+            long delay = handler.delay(failures);
+            assertTrue(delay >= backoff / 2 && delay <= backoff, "unexpected delay: " + delay);
+        }
+    }
+
+    private static AbiquoRetryHandler newHandler(final int maxRetries, final int threshold)
+    {
+        return new AbiquoRetryHandler(maxRetries, 0L, 0L, newCircuitBreaker(threshold),
+            newRateLimiter());
+    }
+
+    private static AdaptiveRateLimiter newRateLimiter()
+    {
+        return new AdaptiveRateLimiter(100.0, 100.0, 100.0);
+    }
+
+    private static CircuitBreaker newCircuitBreaker(final int threshold)
+    {
+        CircuitBreaker circuitBreaker =
+            new CircuitBreaker(threshold, 60000L, 1000L, new EventBus());
+        assertEquals(circuitBreaker.getState(ENDPOINT), State.CLOSED);
+        return circuitBreaker;
+    }
+
+    private static HttpCommand mockCommand(final String method, final int failures)
+    {
+        HttpRequest request = HttpRequest.builder().method(method).endpoint(ENDPOINT).build();
+        HttpCommand command = EasyMock.createMock(HttpCommand.class);
+        expect(command.getCurrentRequest()).andReturn(request).anyTimes();
+        expect(command.isReplayable()).andReturn(true).anyTimes();
+        expect(command.incrementFailureCount()).andReturn(failures).anyTimes();
+        replay(command);
+        return command;
+    }
+
+    private static HttpResponse response(final int statusCode)
+    {
+        return HttpResponse.builder().statusCode(statusCode).message("error").build();
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.filters;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import java.net.URI;
+
+import javax.ws.rs.core.HttpHeaders;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.http.internal.DecompressingHttpCommandExecutorService;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpRequest;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the {@link AcceptGzipEncoding} filter.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class AcceptGzipEncodingTest
+{
+    public void testFilterAddsHeaderWhenEnabled()
+    {
+        HttpRequest request =
+            HttpRequest.builder().method("GET").endpoint(URI.create("http://foo")).build();
+
+        AcceptGzipEncoding filter =
+            new AcceptGzipEncoding("true",
+                EasyMock.createMock(DecompressingHttpCommandExecutorService.class));
+        HttpRequest filtered = filter.filter(request);
+
+        assertEquals(filtered.getFirstHeaderOrNull(HttpHeaders.ACCEPT_ENCODING),
+            AcceptGzipEncoding.GZIP);
+    }
+
+    public void testFilterDoesNothingWhenDisabled()
+    {
+        HttpRequest request =
+            HttpRequest.builder().method("GET").endpoint(URI.create("http://foo")).build();
+
+        AcceptGzipEncoding filter =
+            new AcceptGzipEncoding("false",
+                EasyMock.createMock(HttpCommandExecutorService.class));
+        HttpRequest filtered = filter.filter(request);
+
+        assertFalse(filtered.getHeaders().containsKey(HttpHeaders.ACCEPT_ENCODING));
+        assertEquals(filtered, request);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testEnabledWithoutDecompressingExecutor()
+    {
+        new AcceptGzipEncoding("true", EasyMock.createMock(HttpCommandExecutorService.class));
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.filters;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import java.net.URI;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.domain.exception.CircuitOpenException;
+import org.jclouds.abiquo.http.internal.CircuitBreaker;
+import org.jclouds.abiquo.http.internal.SuccessReportingHttpCommandExecutorService;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpRequest;
+import org.testng.annotations.Test;
+
+import com.google.common.eventbus.EventBus;
+
+/**
+ * Unit tests for the {@link FailFastWhenCircuitIsOpen} filter.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class FailFastWhenCircuitIsOpenTest
+{
+    private static final URI ENDPOINT = URI.create("http://localhost/api/admin/datacenters");
+
+    public void testRequestsAreRejectedWhenCircuitIsOpen()
+    {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 60000L, 1000L, new EventBus());
+        FailFastWhenCircuitIsOpen filter =
+            new FailFastWhenCircuitIsOpen(circuitBreaker,
+                EasyMock.createMock(SuccessReportingHttpCommandExecutorService.class));
+
+        HttpRequest request = HttpRequest.builder().method("GET").endpoint(ENDPOINT).build();
+        assertEquals(filter.filter(request), request);
+
+        circuitBreaker.recordFailure(ENDPOINT);
+        try
+        {
+            filter.filter(request);
+            fail("request should have been rejected");
+        }
+        catch (CircuitOpenException ex)
+        {
+            // Expected
+        }
+    }
+
+    public void testDisabledCircuitBreakerWithoutReportingExecutor()
+    {
+        new FailFastWhenCircuitIsOpen(new CircuitBreaker(0, 60000L, 1000L, new EventBus()),
+            EasyMock.createMock(HttpCommandExecutorService.class));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testEnabledCircuitBreakerWithoutReportingExecutor()
+    {
+        new FailFastWhenCircuitIsOpen(new CircuitBreaker(5, 60000L, 1000L, new EventBus()),
+            EasyMock.createMock(HttpCommandExecutorService.class));
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.filters;
+
+import static org.testng.Assert.assertSame;
+
+import java.net.URI;
+
+import org.easymock.EasyMock;
+import org.jclouds.abiquo.http.internal.AdaptiveRateLimiter;
+import org.jclouds.abiquo.http.internal.RateLimitingHttpCommandExecutorService;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpRequest;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the {@link LimitRequestRate} filter.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class LimitRequestRateTest
+{
+    public void testRequestsAreNotDelayedByTheFilter()
+    {
+        LimitRequestRate filter =
+            new LimitRequestRate(new AdaptiveRateLimiter(1.0, 1.0, 1.0),
+                EasyMock.createMock(RateLimitingHttpCommandExecutorService.class));
+
+        HttpRequest request = HttpRequest.builder().method("GET")
+            .endpoint(URI.create("http://localhost/api/admin/datacenters")).build();
+        assertSame(filter.filter(request), request);
+        assertSame(filter.filter(request), request);
+    }
+
+    public void testDisabledRateLimitWithoutLimitingExecutor()
+    {
+        new LimitRequestRate(new AdaptiveRateLimiter(0.0, 0.0, 0.0),
+            EasyMock.createMock(HttpCommandExecutorService.class));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testEnabledRateLimitWithoutLimitingExecutor()
+    {
+        new LimitRequestRate(new AdaptiveRateLimiter(0.0, 10.0, 0.0),
+            EasyMock.createMock(HttpCommandExecutorService.class));
+    }
+}
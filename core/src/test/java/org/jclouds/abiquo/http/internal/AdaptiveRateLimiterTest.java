@@ -0,0 +1,175 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.abiquo.http.internal.AdaptiveRateLimiter.RequestClass;
+import org.jclouds.http.HttpRequest;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Ticker;
+
+/**
+ * Unit tests for the {@link AdaptiveRateLimiter} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class AdaptiveRateLimiterTest
+{
+    private static final HttpRequest READ = request("GET", "/api/admin/datacenters");
+
+    public void testClassify()
+    {
+        assertEquals(AdaptiveRateLimiter.classify(READ), RequestClass.READ);
+        assertEquals(AdaptiveRateLimiter.classify(request("PUT", "/api/admin/datacenters/1")),
+            RequestClass.WRITE);
+        assertEquals(AdaptiveRateLimiter.classify(request("GET", "/api/cloud/virtualdatacenters/1"
+            + "/virtualappliances/1/virtualmachines/1/tasks/f9df77b0")), RequestClass.POLLING);
+        assertEquals(AdaptiveRateLimiter.classify(request("GET", "/api/cloud/virtualdatacenters/1"
+            + "/virtualappliances/1/virtualmachines/1/state")), RequestClass.POLLING);
+    }
+
+    public void testRequestsAreSpacedAtTheCurrentRate()
+    {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(10.0, 10.0, 10.0, new FakeTicker());
+
+        assertEquals(limiter.reserve(RequestClass.READ), 0L);
+        assertEquals(limiter.reserve(RequestClass.READ), millis(100));
+        assertEquals(limiter.reserve(RequestClass.READ), millis(200));
+
+        // Each class has its own schedule
+        assertEquals(limiter.reserve(RequestClass.WRITE), 0L);
+    }
+
+    public void testRateIsHalvedWhenThrottled()
+    {
+        FakeTicker ticker = new FakeTicker();
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(10.0, 10.0, 10.0, ticker);
+
+        limiter.throttle(READ);
+        assertEquals(limiter.getRate(RequestClass.READ), 5.0);
+        assertEquals(limiter.getRate(RequestClass.WRITE), 10.0);
+
+        // Signals of concurrent requests are only considered once
+        limiter.throttle(READ);
+        assertEquals(limiter.getRate(RequestClass.READ), 5.0);
+
+        ticker.advance(1000);
+        limiter.throttle(READ);
+        assertEquals(limiter.getRate(RequestClass.READ), 2.5);
+    }
+
+    public void testRateIsRecoveredAdditively()
+    {
+        FakeTicker ticker = new FakeTicker();
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(10.0, 10.0, 10.0, ticker);
+
+        limiter.throttle(READ);
+        ticker.advance(2000);
+        limiter.reserve(RequestClass.READ);
+        assertEquals(limiter.getRate(RequestClass.READ), 7.0);
+
+        ticker.advance(10000);
+        limiter.reserve(RequestClass.READ);
+        assertEquals(limiter.getRate(RequestClass.READ), 10.0);
+    }
+
+    public void testDisabledLimit()
+    {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(0.0, 10.0, 10.0, new FakeTicker());
+
+        assertEquals(limiter.reserve(READ), 0L);
+        assertEquals(limiter.reserve(READ), 0L);
+        assertEquals(limiter.getRate(RequestClass.READ), 0.0);
+        assertEquals(limiter.getWaitingRequests(RequestClass.READ), 0L);
+        assertTrue(limiter.isEnabled());
+        assertFalse(new AdaptiveRateLimiter(0.0, 0.0, 0.0, new FakeTicker()).isEnabled());
+    }
+
+    public void testDelayedRequestsAreWaitingUntilReleased()
+    {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(10.0, 10.0, 10.0, new FakeTicker());
+
+        assertEquals(limiter.reserve(READ), 0L);
+        assertEquals(limiter.reserve(READ), millis(100));
+        assertEquals(limiter.getWaitingRequests(RequestClass.READ), 1L);
+
+        limiter.released(READ);
+        assertEquals(limiter.getWaitingRequests(RequestClass.READ), 0L);
+        assertEquals(limiter.getAcquired(RequestClass.READ), 2L);
+    }
+
+    public void testRateIsDecreasedWhenLatencyRises()
+    {
+        FakeTicker ticker = new FakeTicker();
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(10.0, 10.0, 10.0, ticker);
+
+        for (int i = 0; i < 20; i++)
+        {
+            limiter.recordLatency(READ, millis(100));
+        }
+        assertEquals(limiter.getRate(RequestClass.READ), 10.0);
+
+        // A single slow response is smoothed out
+        limiter.recordLatency(READ, millis(300));
+        assertEquals(limiter.getRate(RequestClass.READ), 10.0);
+
+        for (int i = 0; i < 5; i++)
+        {
+            limiter.recordLatency(READ, millis(500));
+        }
+        assertEquals(limiter.getRate(RequestClass.READ), 5.0);
+        assertEquals(limiter.getRate(RequestClass.WRITE), 10.0);
+    }
+
+    private static long millis(final long millis)
+    {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static HttpRequest request(final String method, final String path)
+    {
+        return HttpRequest.builder().method(method).endpoint(URI.create("http://localhost" + path))
+            .build();
+    }
+
+    private static class FakeTicker extends Ticker
+    {
+        private long nanos = 0;
+
+        @Override
+        public long read()
+        {
+            return nanos;
+        }
+
+        public void advance(final long millis)
+        {
+            nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.abiquo.events.http.CircuitBreakerEvent;
+import org.jclouds.abiquo.http.internal.CircuitBreaker.State;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Unit tests for the {@link CircuitBreaker} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class CircuitBreakerTest
+{
+    private static final URI ENDPOINT = URI.create("http://localhost:8080/api/admin/datacenters");
+
+    private FakeTicker ticker;
+
+    private EventCollector events;
+
+    private CircuitBreaker circuitBreaker;
+
+    @BeforeMethod
+    public void setupCircuitBreaker()
+    {
+        ticker = new FakeTicker();
+        events = new EventCollector();
+
+        EventBus eventBus = new EventBus();
+        eventBus.register(events);
+
+        circuitBreaker = new CircuitBreaker(2, 1000L, 100L, eventBus, ticker);
+    }
+
+    public void testCircuitsAreKeptPerHost()
+    {
+        assertEquals(CircuitBreaker.key(ENDPOINT),
+            CircuitBreaker.key(URI.create("http://localhost:8080/api/cloud/virtualdatacenters")));
+        assertFalse(CircuitBreaker.key(ENDPOINT).equals(
+            CircuitBreaker.key(URI.create("http://localhost:9090/api"))));
+    }
+
+    public void testCircuitIsOpenedAfterThreshold()
+    {
+        circuitBreaker.recordFailure(ENDPOINT);
+        assertEquals(circuitBreaker.getState(ENDPOINT), State.CLOSED);
+        assertTrue(circuitBreaker.allowRequest(ENDPOINT));
+
+        circuitBreaker.recordFailure(ENDPOINT);
+        assertEquals(circuitBreaker.getState(ENDPOINT), State.OPEN);
+        assertFalse(circuitBreaker.allowRequest(ENDPOINT));
+
+        assertEquals(events.transitions, Lists.newArrayList(State.OPEN));
+    }
+
+    public void testOldFailuresAreNotCounted()
+    {
+        circuitBreaker.recordFailure(ENDPOINT);
+        ticker.advance(1001);
+        circuitBreaker.recordFailure(ENDPOINT);
+
+        assertEquals(circuitBreaker.getState(ENDPOINT), State.CLOSED);
+    }
+
+    public void testProbeIsAllowedAfterOpenPeriod()
+    {
+        openCircuit();
+
+        ticker.advance(1000);
+        assertTrue(circuitBreaker.allowRequest(ENDPOINT));
+        assertEquals(circuitBreaker.getState(ENDPOINT), State.HALF_OPEN);
+
+        // Only the probe goes through
+        assertFalse(circuitBreaker.allowRequest(ENDPOINT));
+    }
+
+    public void testCircuitIsClosedIfProbeSucceeds()
+    {
+        openCircuit();
+        ticker.advance(1000);
+        circuitBreaker.allowRequest(ENDPOINT);
+
+        circuitBreaker.recordSuccess(ENDPOINT);
+        assertEquals(circuitBreaker.getState(ENDPOINT), State.CLOSED);
+        assertTrue(circuitBreaker.allowRequest(ENDPOINT));
+
+        assertEquals(events.transitions,
+            Lists.newArrayList(State.OPEN, State.HALF_OPEN, State.CLOSED));
+    }
+
+    public void testCircuitIsNotClosedIfProbeOutcomeIsUnknown()
+    {
+        openCircuit();
+        ticker.advance(1000);
+        circuitBreaker.allowRequest(ENDPOINT);
+
+        // Another probe is allowed, but the circuit is still half open
+        ticker.advance(100);
+        assertTrue(circuitBreaker.allowRequest(ENDPOINT));
+        assertEquals(circuitBreaker.getState(ENDPOINT), State.HALF_OPEN);
+        assertFalse(circuitBreaker.allowRequest(ENDPOINT));
+
+        assertEquals(events.transitions, Lists.newArrayList(State.OPEN, State.HALF_OPEN));
+    }
+
+    public void testSuccessesResetFailures()
+    {
+        circuitBreaker.recordFailure(ENDPOINT);
+        circuitBreaker.recordSuccess(ENDPOINT);
+        circuitBreaker.recordFailure(ENDPOINT);
+
+        assertEquals(circuitBreaker.getState(ENDPOINT), State.CLOSED);
+    }
+
+    public void testDisabledCircuitBreaker()
+    {
+        CircuitBreaker disabled = new CircuitBreaker(0, 1000L, 100L, new EventBus(), ticker);
+        assertFalse(disabled.isEnabled());
+
+        for (int i = 0; i < 10; i++)
+        {
+            disabled.recordFailure(ENDPOINT);
+        }
+
+        assertEquals(disabled.getState(ENDPOINT), State.CLOSED);
+        assertTrue(disabled.allowRequest(ENDPOINT));
+    }
+
+    public void testCircuitIsOpenedIfProbeFails()
+    {
+        openCircuit();
+        ticker.advance(1000);
+        circuitBreaker.allowRequest(ENDPOINT);
+
+        circuitBreaker.recordFailure(ENDPOINT);
+        assertEquals(circuitBreaker.getState(ENDPOINT), State.OPEN);
+        assertFalse(circuitBreaker.allowRequest(ENDPOINT));
+
+        assertEquals(events.transitions,
+            Lists.newArrayList(State.OPEN, State.HALF_OPEN, State.OPEN));
+    }
+
+    private void openCircuit()
+    {
+        circuitBreaker.recordFailure(ENDPOINT);
+        circuitBreaker.recordFailure(ENDPOINT);
+    }
+
+    private static class FakeTicker extends Ticker
+    {
+        private long nanos = 0;
+
+        @Override
+        public long read()
+        {
+            return nanos;
+        }
+
+        public void advance(final long millis)
+        {
+            nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+    }
+
+    public static class EventCollector
+    {
+        private List<State> transitions = Lists.newArrayList();
+
+        @Subscribe
+        public void handle(final CircuitBreakerEvent event)
+        {
+            transitions.add(event.getTo());
+        }
+    }
+}
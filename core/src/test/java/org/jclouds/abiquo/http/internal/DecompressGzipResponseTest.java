@@ -0,0 +1,186 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.io.Payload;
+import org.jclouds.io.Payloads;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Unit tests for the {@link DecompressGzipResponse} function.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class DecompressGzipResponseTest
+{
+    private static final String CONTENT = "<errors><error><code>VM-0</code></error></errors>";
+
+    public void testUncompressedResponseIsNotModified()
+    {
+        HttpResponse response =
+            HttpResponse.builder().statusCode(200).payload(Payloads.newStringPayload(CONTENT))
+                .build();
+
+        ResponseCompressionStats stats = new ResponseCompressionStats();
+        assertSame(new DecompressGzipResponse(stats).apply(response), response);
+        assertEquals(stats.getResponses(), 0L);
+    }
+
+    public void testResponseWithoutPayloadIsNotModified()
+    {
+        HttpResponse response = HttpResponse.builder().statusCode(204).build();
+        assertSame(new DecompressGzipResponse(new ResponseCompressionStats()).apply(response),
+            response);
+    }
+
+    public void testDecompressResponse() throws IOException
+    {
+        byte[] compressed = gzip(CONTENT);
+        Payload payload = Payloads.newByteArrayPayload(compressed);
+        payload.getContentMetadata().setContentType("application/xml");
+        payload.getContentMetadata().setContentEncoding("gzip");
+
+        HttpResponse response = HttpResponse.builder().statusCode(200).payload(payload).build();
+
+        ResponseCompressionStats stats = new ResponseCompressionStats();
+        HttpResponse decompressed = new DecompressGzipResponse(stats).apply(response);
+
+        InputStream input = decompressed.getPayload().getInput();
+        try
+        {
+            assertEquals(new String(ByteStreams.toByteArray(input), Charsets.UTF_8), CONTENT);
+        }
+        finally
+        {
+            input.close();
+        }
+
+        assertEquals(decompressed.getPayload().getContentMetadata().getContentType(),
+            "application/xml");
+        assertNull(decompressed.getPayload().getContentMetadata().getContentEncoding());
+        assertNull(decompressed.getFirstHeaderOrNull(HttpHeaders.CONTENT_ENCODING));
+
+        assertEquals(stats.getResponses(), 1L);
+        assertEquals(stats.getCompressedBytes(), compressed.length);
+        assertEquals(stats.getUncompressedBytes(), CONTENT.getBytes(Charsets.UTF_8).length);
+    }
+
+    public void testSizesAreReportedPerRequest() throws IOException
+    {
+        final List<Object[]> reported = Lists.newArrayList();
+        ResponseCompressionStats stats = new ResponseCompressionStats();
+        stats.addListener(new ResponseCompressionStats.Listener()
+        {
+            @Override
+            public void responseRead(final HttpRequest request, final long compressed,
+                final long uncompressed)
+            {
+                reported.add(new Object[] {request, compressed, uncompressed});
+            }
+        });
+
+        HttpRequest first = HttpRequest.builder().method("GET").endpoint("http://abiquo/1").build();
+        HttpRequest second =
+            HttpRequest.builder().method("GET").endpoint("http://abiquo/2").build();
+        String longer = CONTENT + CONTENT;
+
+        DecompressGzipResponse decompressor = new DecompressGzipResponse(stats);
+        read(decompressor.decompress(first, gzippedResponse(CONTENT)));
+        read(decompressor.decompress(second, gzippedResponse(longer)));
+
+        assertEquals(reported.size(), 2);
+        assertSame(reported.get(0)[0], first);
+        assertEquals(reported.get(0)[1], (long) gzip(CONTENT).length);
+        assertEquals(reported.get(0)[2], (long) CONTENT.getBytes(Charsets.UTF_8).length);
+        assertSame(reported.get(1)[0], second);
+        assertEquals(reported.get(1)[2], (long) longer.getBytes(Charsets.UTF_8).length);
+
+        // The process wide totals are still accumulated
+        assertEquals(stats.getResponses(), 2L);
+        assertEquals(stats.getUncompressedBytes(),
+            (Long) reported.get(0)[2] + (Long) reported.get(1)[2]);
+    }
+
+    public void testDecompressedPayloadExposesItsOwnSizes() throws IOException
+    {
+        HttpRequest request = HttpRequest.builder().method("GET").endpoint("http://abiquo").build();
+        HttpResponse decompressed =
+            new DecompressGzipResponse(new ResponseCompressionStats()).decompress(request,
+                gzippedResponse(CONTENT));
+
+        InputStream input = decompressed.getPayload().getInput();
+        assertTrue(input instanceof DecompressingInputStream);
+        read(decompressed);
+
+        DecompressingInputStream stream = (DecompressingInputStream) input;
+        assertSame(stream.getRequest(), request);
+        assertEquals(stream.getCompressedBytes(), gzip(CONTENT).length);
+        assertEquals(stream.getUncompressedBytes(), CONTENT.getBytes(Charsets.UTF_8).length);
+    }
+
+    private static HttpResponse gzippedResponse(final String content) throws IOException
+    {
+        Payload payload = Payloads.newByteArrayPayload(gzip(content));
+        payload.getContentMetadata().setContentEncoding("gzip");
+        return HttpResponse.builder().statusCode(200).payload(payload).build();
+    }
+
+    private static void read(final HttpResponse response) throws IOException
+    {
+        InputStream input = response.getPayload().getInput();
+        try
+        {
+            ByteStreams.toByteArray(input);
+        }
+        finally
+        {
+            input.close();
+        }
+    }
+
+    private static byte[] gzip(final String content) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(content.getBytes(Charsets.UTF_8));
+        gzip.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.http.internal;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+
+import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.abiquo.http.internal.AdaptiveRateLimiter.RequestClass;
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Unit tests for the {@link RateLimitingHttpCommandExecutorService} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class RateLimitingHttpCommandExecutorServiceTest
+{
+    private static final HttpRequest REQUEST = HttpRequest.builder().method("GET")
+        .endpoint(URI.create("http://localhost/api/admin/datacenters")).build();
+
+    private static final HttpResponse RESPONSE = HttpResponse.builder().statusCode(200).build();
+
+    private ScheduledExecutorService scheduler;
+
+    @BeforeMethod
+    public void setupScheduler()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterMethod
+    public void shutdownScheduler()
+    {
+        scheduler.shutdownNow();
+    }
+
+    public void testRequestsWithinTheRateAreSentImmediately() throws Exception
+    {
+        HttpCommand command = command();
+        HttpCommandExecutorService delegate = createMock(HttpCommandExecutorService.class);
+        expect(delegate.submit(command)).andReturn(Futures.immediateFuture(RESPONSE));
+        replay(command, delegate);
+
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(10.0, 10.0, 10.0);
+        assertSame(executor(delegate, limiter).submit(command).get(), RESPONSE);
+
+        verify(delegate);
+    }
+
+    public void testDelayedRequestsDoNotBlockTheCaller() throws Exception
+    {
+        HttpCommand command = command();
+        HttpCommandExecutorService delegate = createMock(HttpCommandExecutorService.class);
+        expect(delegate.submit(command)).andReturn(Futures.immediateFuture(RESPONSE)).times(2);
+        replay(command, delegate);
+
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(1.0, 1.0, 1.0);
+        RateLimitingHttpCommandExecutorService executor = executor(delegate, limiter);
+
+        executor.submit(command).get();
+        ListenableFuture<HttpResponse> delayed = executor.submit(command);
+        assertFalse(delayed.isDone());
+        assertEquals(limiter.getWaitingRequests(RequestClass.READ), 1L);
+
+        assertSame(delayed.get(2, TimeUnit.SECONDS), RESPONSE);
+        assertEquals(limiter.getWaitingRequests(RequestClass.READ), 0L);
+
+        verify(delegate);
+    }
+
+    public void testCancelledRequestsAreNotSent() throws Exception
+    {
+        HttpCommand command = command();
+        HttpCommandExecutorService delegate = createMock(HttpCommandExecutorService.class);
+        // Only the first request is sent
+        expect(delegate.submit(command)).andReturn(Futures.immediateFuture(RESPONSE));
+        replay(command, delegate);
+
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(1.0, 1.0, 1.0);
+        RateLimitingHttpCommandExecutorService executor = executor(delegate, limiter);
+
+        executor.submit(command).get();
+        executor.submit(command).cancel(true);
+        assertEquals(limiter.getWaitingRequests(RequestClass.READ), 0L);
+
+        // Give the cancelled request the time it would have waited
+        TimeUnit.MILLISECONDS.sleep(1100);
+        verify(delegate);
+    }
+
+    private RateLimitingHttpCommandExecutorService executor(
+        final HttpCommandExecutorService delegate, final AdaptiveRateLimiter limiter)
+    {
+        return new RateLimitingHttpCommandExecutorService(delegate, limiter, scheduler);
+    }
+
+    private static HttpCommand command()
+    {
+        HttpCommand command = createMock(HttpCommand.class);
+        expect(command.getCurrentRequest()).andReturn(REQUEST).anyTimes();
+        return command;
+    }
+}
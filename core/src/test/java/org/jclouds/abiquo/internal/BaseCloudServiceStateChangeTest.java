@@ -0,0 +1,148 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.internal;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jclouds.abiquo.AbiquoApi;
+import org.jclouds.abiquo.AbiquoAsyncApi;
+import org.jclouds.abiquo.domain.cloud.BulkStateChange;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.task.AsyncTask;
+import org.jclouds.abiquo.strategy.cloud.ListVirtualAppliances;
+import org.jclouds.abiquo.strategy.cloud.ListVirtualDatacenters;
+import org.jclouds.abiquo.strategy.cloud.ListVirtualMachines;
+import org.jclouds.abiquo.util.DelayedRequests;
+import org.jclouds.rest.RestContext;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.abiquo.server.core.cloud.VirtualMachineState;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Unit tests for the bulk state changes of the {@link BaseCloudService} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class BaseCloudServiceStateChangeTest
+{
+    private ScheduledExecutorService scheduler;
+
+    private DelayedRequests requests;
+
+    @BeforeMethod
+    public void setup()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        requests = new DelayedRequests(scheduler);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    public void testRequestsInFlightAreLimited()
+    {
+        List<VirtualMachine> vms = Lists.newArrayList();
+        for (int i = 0; i < 20; i++)
+        {
+            vms.add(virtualMachine(true));
+        }
+
+        BulkStateChange change = cloudService(3).changeState(vms, VirtualMachineState.OFF);
+        change.await();
+
+        assertEquals(change.getState(), VirtualMachineState.OFF);
+        assertEquals(change.getVirtualMachines(), vms);
+        assertEquals(change.getChanged(), vms);
+        assertTrue(change.getFailures().isEmpty());
+        assertTrue(requests.getMaxInFlight() <= 3,
+            "more than 3 requests in flight: " + requests.getMaxInFlight());
+    }
+
+    public void testOutcomeOfEachVirtualMachine()
+    {
+        VirtualMachine ok = virtualMachine(true);
+        VirtualMachine failed = virtualMachine(false);
+
+        BulkStateChange change =
+            cloudService(10).changeState(ImmutableList.of(ok, failed), VirtualMachineState.OFF);
+        change.await();
+
+        assertTrue(change.isDone());
+        assertEquals(change.getChanged(), ImmutableList.of(ok));
+        assertEquals(change.getFailures().keySet(), ImmutableSet.of(failed));
+        assertEquals(change.getFailures().get(failed).getMessage(), "failed");
+    }
+
+    public void testNoVirtualMachines()
+    {
+        BulkStateChange change =
+            cloudService(10).changeState(ImmutableList.<VirtualMachine> of(),
+                VirtualMachineState.OFF);
+
+        assertTrue(change.isDone());
+        assertTrue(change.getTasks().isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private BaseCloudService cloudService(final int concurrency)
+    {
+        RestContext<AbiquoApi, AbiquoAsyncApi> context = EasyMock.createMock(RestContext.class);
+        return new BaseCloudService(context, EasyMock.createMock(ListVirtualDatacenters.class),
+            EasyMock.createMock(ListVirtualAppliances.class),
+            EasyMock.createMock(ListVirtualMachines.class), concurrency);
+    }
+
+    private VirtualMachine virtualMachine(final boolean succeeds)
+    {
+        VirtualMachine vm = EasyMock.createMock(VirtualMachine.class);
+        expect(vm.changeStateAsync(VirtualMachineState.OFF)).andAnswer(
+            new IAnswer<ListenableFuture<AsyncTask>>()
+            {
+                @Override
+                public ListenableFuture<AsyncTask> answer()
+                {
+                    return succeeds ? requests.send((AsyncTask) null) : Futures
+                        .<AsyncTask> immediateFailedFuture(new RuntimeException("failed"));
+                }
+            });
+        replay(vm);
+        return vm;
+    }
+}
@@ -41,5 +41,6 @@ public class BaseCloudServiceTest extends BaseInjectionTest
         assertNotNull(service.listVirtualDatacenters);
         assertNotNull(service.listVirtualAppliances);
         assertNotNull(service.listVirtualMachines);
+        assertNotNull(service.bulkConcurrency);
     }
 }
@@ -22,14 +22,17 @@ package org.jclouds.abiquo.rest.internal;
 import java.io.IOException;
 import java.lang.reflect.Method;
 
+import org.jclouds.abiquo.domain.cloud.options.VirtualMachineOptions;
 import org.jclouds.abiquo.features.BaseAbiquoAsyncApiTest;
 import org.jclouds.functions.IdentityFunction;
+import org.jclouds.http.options.HttpRequestOptions;
 import org.jclouds.rest.functions.ReturnNullOnNotFoundOr404;
 import org.jclouds.rest.internal.GeneratedHttpRequest;
 import org.jclouds.rest.internal.RestAnnotationProcessor;
 import org.testng.annotations.Test;
 
 import com.abiquo.model.rest.RESTLink;
+import com.abiquo.server.core.cloud.VirtualMachinesWithNodeExtendedDto;
 import com.abiquo.server.core.infrastructure.DatacentersDto;
 import com.google.inject.TypeLiteral;
 
@@ -60,6 +63,29 @@ public class AbiquoHttpAsyncClientTest extends BaseAbiquoAsyncApiTest<AbiquoHttp
         checkFilters(request);
     }
 
+    public void testGetWithOptions() throws SecurityException, NoSuchMethodException, IOException
+    {
+        RESTLink link = new RESTLink("virtualmachines", "http://foo/bar");
+        link.setType(VirtualMachinesWithNodeExtendedDto.BASE_MEDIA_TYPE);
+
+        Method method =
+            AbiquoHttpAsyncClient.class.getMethod("get", RESTLink.class, HttpRequestOptions.class);
+        GeneratedHttpRequest request =
+            processor.createRequest(method, link, VirtualMachineOptions.builder()
+                .disablePagination().build());
+
+        assertRequestLineEquals(request, "GET http://foo/bar?limit=0 HTTP/1.1");
+        assertNonPayloadHeadersEqual(request, "Accept: "
+            + VirtualMachinesWithNodeExtendedDto.BASE_MEDIA_TYPE + "\n");
+        assertPayloadEquals(request, null, null, false);
+
+        assertResponseParserClassEquals(method, request, IdentityFunction.class);
+        assertSaxResponseParserClassEquals(method, null);
+        assertExceptionParserClassEquals(method, ReturnNullOnNotFoundOr404.class);
+
+        checkFilters(request);
+    }
+
     @Override
     protected TypeLiteral<RestAnnotationProcessor<AbiquoHttpAsyncClient>> createTypeLiteral()
     {
@@ -0,0 +1,324 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.strategy.cloud.internal;
+
+import static org.easymock.EasyMock.aryEq;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jclouds.abiquo.domain.cloud.HardDisk;
+import org.jclouds.abiquo.domain.cloud.VirtualMachine;
+import org.jclouds.abiquo.domain.cloud.Volume;
+import org.jclouds.abiquo.domain.task.AsyncTask;
+import org.jclouds.abiquo.features.services.MonitoringService;
+import org.jclouds.abiquo.monitor.AsyncTaskMonitor;
+import org.jclouds.abiquo.strategy.cloud.StorageAttachmentPlan;
+import org.jclouds.abiquo.strategy.cloud.StorageAttachmentResult;
+import org.jclouds.abiquo.util.DelayedRequests;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.abiquo.server.core.task.enums.TaskState;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Unit tests for the {@link StorageAttachmentPlannerImpl} class.
+ * 
+ * @author Ignasi Barrera
+ */
+@Test(groups = "unit")
+public class StorageAttachmentPlannerImplTest
+{
+    private ScheduledExecutorService scheduler;
+
+    private DelayedRequests requests;
+
+    @BeforeMethod
+    public void setup()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        requests = new DelayedRequests(scheduler);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    public void testPlanSkipsUnchangedVirtualMachines()
+    {
+        Volume v1 = volume(1);
+        Volume v2 = volume(2);
+        Volume v3 = volume(3);
+        HardDisk hd1 = hardDisk(1);
+
+        VirtualMachine unchanged = EasyMock.createMock(VirtualMachine.class);
+        expect(unchanged.listAttachedVolumesAsync()).andReturn(attached(v1, v2));
+        expect(unchanged.listAttachedHardDisksAsync()).andReturn(attached(hd1));
+        VirtualMachine changed = EasyMock.createMock(VirtualMachine.class);
+        expect(changed.listAttachedVolumesAsync()).andReturn(attached(v1, v2));
+        expect(changed.listAttachedHardDisksAsync()).andReturn(attached(hd1));
+        replay(unchanged, changed);
+
+        StorageAttachmentPlan plan =
+            planner(10, EasyMock.createMock(MonitoringService.class)).plan(
+                ImmutableMap.of(unchanged, ImmutableList.of(v1, v2), changed,
+                    ImmutableList.of(v2, v3)),
+                ImmutableMap.of(unchanged, ImmutableList.of(hd1), changed,
+                    ImmutableList.<HardDisk> of()));
+
+        assertEquals(plan.getVolumes().keySet(), ImmutableSet.of(changed));
+        assertEquals(plan.getHardDisks().keySet(), ImmutableSet.of(changed));
+        assertEquals(plan.getVolumesToAttach(changed), ImmutableList.of(v3));
+        assertEquals(plan.getVolumesToDetach(changed), ImmutableList.of(v1));
+        assertTrue(plan.getHardDisksToAttach(changed).isEmpty());
+        assertEquals(plan.getHardDisksToDetach(changed), ImmutableList.of(hd1));
+        assertTrue(plan.getVolumesToAttach(unchanged).isEmpty());
+        verify(unchanged, changed);
+    }
+
+    public void testPlanWithNoChanges()
+    {
+        Volume v1 = volume(1);
+
+        VirtualMachine vm = EasyMock.createMock(VirtualMachine.class);
+        expect(vm.listAttachedVolumesAsync()).andReturn(attached(v1));
+        replay(vm);
+
+        StorageAttachmentPlan plan =
+            planner(10, EasyMock.createMock(MonitoringService.class)).plan(
+                ImmutableMap.of(vm, ImmutableList.of(v1)),
+                ImmutableMap.<VirtualMachine, List<HardDisk>> of());
+
+        assertTrue(plan.isEmpty());
+        verify(vm);
+    }
+
+    public void testReadsInFlightAreLimited()
+    {
+        Map<VirtualMachine, List<Volume>> volumes = Maps.newLinkedHashMap();
+        for (int i = 0; i < 20; i++)
+        {
+            VirtualMachine vm = EasyMock.createMock(VirtualMachine.class);
+            expect(vm.listAttachedVolumesAsync()).andAnswer(
+                new IAnswer<ListenableFuture<List<Volume>>>()
+                {
+                    @Override
+                    public ListenableFuture<List<Volume>> answer()
+                    {
+                        return requests.<List<Volume>> send(ImmutableList.<Volume> of());
+                    }
+                });
+            replay(vm);
+            volumes.put(vm, ImmutableList.<Volume> of());
+        }
+
+        StorageAttachmentPlan plan =
+            planner(3, EasyMock.createMock(MonitoringService.class)).plan(volumes,
+                ImmutableMap.<VirtualMachine, List<HardDisk>> of());
+
+        assertTrue(plan.isEmpty());
+        assertTrue(requests.getMaxInFlight() <= 3,
+            "more than 3 requests in flight: " + requests.getMaxInFlight());
+    }
+
+    @Test(expectedExceptions = NullPointerException.class,
+        expectedExceptionsMessageRegExp = "volumes of .*")
+    public void testPlanWithoutDesiredVolumes()
+    {
+        VirtualMachine vm = EasyMock.createMock(VirtualMachine.class);
+        expect(vm.listAttachedVolumesAsync()).andReturn(
+            Futures.<List<Volume>> immediateFuture(ImmutableList.<Volume> of()));
+        replay(vm);
+
+        Map<VirtualMachine, List<Volume>> volumes = Maps.newHashMap();
+        volumes.put(vm, null);
+
+        planner(10, EasyMock.createMock(MonitoringService.class)).plan(volumes,
+            ImmutableMap.<VirtualMachine, List<HardDisk>> of());
+    }
+
+    public void testApplyMonitorsEachPhaseTogether()
+    {
+        Volume v1 = volume(1);
+        HardDisk hd1 = hardDisk(1);
+        AsyncTask t1 = task(TaskState.FINISHED_SUCCESSFULLY);
+        AsyncTask t2 = task(TaskState.FINISHED_SUCCESSFULLY);
+        AsyncTask t3 = task(TaskState.FINISHED_SUCCESSFULLY);
+
+        VirtualMachine vm1 = EasyMock.createMock(VirtualMachine.class);
+        expect(vm1.setVolumesAsync(eq(true), aryEq(new Volume[] {v1}))).andReturn(
+            Futures.immediateFuture(t1));
+        expect(vm1.setHardDisksAsync(aryEq(new HardDisk[] {hd1}))).andReturn(
+            Futures.immediateFuture(t3));
+        VirtualMachine vm2 = EasyMock.createMock(VirtualMachine.class);
+        expect(vm2.detachAllVolumesAsync()).andReturn(Futures.immediateFuture(t2));
+        VirtualMachine failed = EasyMock.createMock(VirtualMachine.class);
+        expect(failed.detachAllVolumesAsync()).andReturn(
+            Futures.<AsyncTask> immediateFailedFuture(new RuntimeException("failed")));
+
+        AsyncTaskMonitor monitor = EasyMock.createMock(AsyncTaskMonitor.class);
+        monitor.awaitCompletion(aryEq(new AsyncTask[] {t1, t2}));
+        monitor.awaitCompletion(aryEq(new AsyncTask[] {t3}));
+        MonitoringService monitoringService = EasyMock.createMock(MonitoringService.class);
+        expect(monitoringService.getAsyncTaskMonitor()).andReturn(monitor).times(2);
+        replay(vm1, vm2, failed, monitor, monitoringService);
+
+        Map<VirtualMachine, List<Volume>> volumes = Maps.newLinkedHashMap();
+        volumes.put(vm1, ImmutableList.of(v1));
+        volumes.put(vm2, ImmutableList.<Volume> of());
+        volumes.put(failed, ImmutableList.<Volume> of());
+        Map<VirtualMachine, List<HardDisk>> hardDisks = Maps.newLinkedHashMap();
+        hardDisks.put(vm1, ImmutableList.of(hd1));
+
+        StorageAttachmentPlan plan =
+            new StorageAttachmentPlan(ImmutableMap.<VirtualMachine, List<Volume>> of(), volumes,
+                ImmutableMap.<VirtualMachine, List<HardDisk>> of(), hardDisks);
+
+        StorageAttachmentResult result = planner(10, monitoringService).apply(plan);
+
+        assertEquals(result.getTasks(), ImmutableList.of(t1, t2, t3));
+        assertEquals(result.getVolumeTasks(), ImmutableMap.of(vm1, t1, vm2, t2));
+        assertEquals(result.getHardDiskTasks(), ImmutableMap.of(vm1, t3));
+        assertEquals(result.getVolumeFailures().keySet(), ImmutableSet.of(failed));
+        assertEquals(result.getFailed(), ImmutableSet.of(failed));
+        assertFalse(result.isSuccessful());
+        verify(vm1, vm2, failed, monitor, monitoringService);
+    }
+
+    public void testApplyReportsUnsuccessfulTasks()
+    {
+        Volume v1 = volume(1);
+        AsyncTask succeeded = task(TaskState.FINISHED_SUCCESSFULLY);
+        AsyncTask aborted = task(TaskState.ABORTED);
+
+        VirtualMachine vm1 = EasyMock.createMock(VirtualMachine.class);
+        expect(vm1.setVolumesAsync(eq(false), aryEq(new Volume[] {v1}))).andReturn(
+            Futures.immediateFuture(succeeded));
+        VirtualMachine vm2 = EasyMock.createMock(VirtualMachine.class);
+        expect(vm2.setVolumesAsync(eq(false), aryEq(new Volume[] {v1}))).andReturn(
+            Futures.immediateFuture(aborted));
+        VirtualMachine sync = EasyMock.createMock(VirtualMachine.class);
+        expect(sync.detachAllVolumesAsync()).andReturn(Futures.<AsyncTask> immediateFuture(null));
+
+        AsyncTaskMonitor monitor = EasyMock.createMock(AsyncTaskMonitor.class);
+        monitor.awaitCompletion(aryEq(new AsyncTask[] {succeeded, aborted}));
+        MonitoringService monitoringService = EasyMock.createMock(MonitoringService.class);
+        expect(monitoringService.getAsyncTaskMonitor()).andReturn(monitor);
+        replay(vm1, vm2, sync, monitor, monitoringService);
+
+        Map<VirtualMachine, List<Volume>> volumes = Maps.newLinkedHashMap();
+        volumes.put(vm1, ImmutableList.of(v1));
+        volumes.put(vm2, ImmutableList.of(v1));
+        volumes.put(sync, ImmutableList.<Volume> of());
+
+        StorageAttachmentPlan plan =
+            new StorageAttachmentPlan(ImmutableMap.<VirtualMachine, List<Volume>> of(), volumes,
+                ImmutableMap.<VirtualMachine, List<HardDisk>> of(),
+                ImmutableMap.<VirtualMachine, List<HardDisk>> of());
+
+        StorageAttachmentResult result = planner(10, monitoringService).apply(plan, false);
+
+        assertEquals(result.getUnsuccessfulTasks(), ImmutableList.of(aborted));
+        assertEquals(result.getFailed(), ImmutableSet.of(vm2));
+        assertTrue(result.getVolumeTasks().containsKey(sync));
+        assertTrue(result.getVolumeFailures().isEmpty());
+        verify(vm1, vm2, sync, monitor, monitoringService);
+    }
+
+    public void testApplyEmptyPlan()
+    {
+        MonitoringService monitoringService = EasyMock.createMock(MonitoringService.class);
+        replay(monitoringService);
+
+        StorageAttachmentPlan plan =
+            new StorageAttachmentPlan(ImmutableMap.<VirtualMachine, List<Volume>> of(),
+                ImmutableMap.<VirtualMachine, List<Volume>> of(),
+                ImmutableMap.<VirtualMachine, List<HardDisk>> of(),
+                ImmutableMap.<VirtualMachine, List<HardDisk>> of());
+
+        StorageAttachmentResult result = planner(10, monitoringService).apply(plan);
+
+        assertTrue(result.getTasks().isEmpty());
+        assertTrue(result.isSuccessful());
+        verify(monitoringService);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidConcurrency()
+    {
+        planner(0, EasyMock.createMock(MonitoringService.class));
+    }
+
+    private static StorageAttachmentPlannerImpl planner(final int concurrency,
+        final MonitoringService monitoringService)
+    {
+        return new StorageAttachmentPlannerImpl(monitoringService, concurrency);
+    }
+
+    private static AsyncTask task(final TaskState state)
+    {
+        AsyncTask task = EasyMock.createMock(AsyncTask.class);
+        expect(task.getState()).andReturn(state).anyTimes();
+        expect(task.getTaskId()).andReturn(state.name()).anyTimes();
+        replay(task);
+        return task;
+    }
+
+    private static Volume volume(final int id)
+    {
+        Volume volume = EasyMock.createMock(Volume.class);
+        expect(volume.getId()).andReturn(id).anyTimes();
+        replay(volume);
+        return volume;
+    }
+
+    private static HardDisk hardDisk(final int id)
+    {
+        HardDisk hardDisk = EasyMock.createMock(HardDisk.class);
+        expect(hardDisk.getId()).andReturn(id).anyTimes();
+        replay(hardDisk);
+        return hardDisk;
+    }
+
+    private static <T> ListenableFuture<List<T>> attached(final T... elements)
+    {
+        return Futures.<List<T>> immediateFuture(ImmutableList.copyOf(elements));
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Licensed to jclouds, Inc. (jclouds) under one or more
+ * contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  jclouds licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jclouds.abiquo.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Simulates requests that are answered after a short delay, recording how many of them were in
+ * flight at the same time.
+ * 
+ * @author Ignasi Barrera
+ */
+public class DelayedRequests
+{
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    public DelayedRequests(final ScheduledExecutorService scheduler)
+    {
+        super();
+        this.scheduler = checkNotNull(scheduler, "scheduler");
+    }
+
+    /**
+     * Sends a request that returns the given value after 10 milliseconds.
+     * 
+     * @param value The value of the response.
+     * @return The future response.
+     */
+    public <T> ListenableFuture<T> send(final T value)
+    {
+        int current = inFlight.incrementAndGet();
+        int max = maxInFlight.get();
+        while (current > max && !maxInFlight.compareAndSet(max, current))
+        {
+            max = maxInFlight.get();
+        }
+
+        final SettableFuture<T> response = SettableFuture.create();
+        scheduler.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                inFlight.decrementAndGet();
+                response.set(value);
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        return response;
+    }
+
+    /**
+     * Get the maximum number of requests that have been in flight at the same time.
+     */
+    public int getMaxInFlight()
+    {
+        return maxInFlight.get();
+    }
+}
@@ -63,6 +63,16 @@ public class VirtualMachineLiveTest extends BaseAbiquoApiLiveTest
         assertEquals(env.virtualMachine.getNameLabel(), PREFIX + "-label-updated");
     }
 
+    public void testUpdateInfoFromNodeAsync() throws Exception
+    {
+        env.virtualMachine.setNameLabel(PREFIX + "-label-updated-async");
+        AsyncTask task = env.virtualMachine.updateAsync().get();
+        env.virtualMachine.refresh();
+
+        assertNull(task);
+        assertEquals(env.virtualMachine.getNameLabel(), PREFIX + "-label-updated-async");
+    }
+
     public void testGetTasks()
     {
         List<AsyncTask> tasks = env.virtualMachine.listTasks();